@@ -223,6 +223,7 @@ CTX.INPUT['executors'] = """
  deleteexecutor.cpp
  distinctexecutor.cpp
  executorutil.cpp
+ hashjoinexecutor.cpp
  indexscanexecutor.cpp
  insertexecutor.cpp
  limitexecutor.cpp
@@ -252,6 +253,7 @@ CTX.INPUT['plannodes'] = """
  aggregatenode.cpp
  deletenode.cpp
  distinctnode.cpp
+ hashjoinnode.cpp
  indexscannode.cpp
  insertnode.cpp
  limitnode.cpp
@@ -296,6 +298,7 @@ CTX.INPUT['storage'] = """
  tableutil.cpp
  temptable.cpp
  TempTableLimits.cpp
+ TempTableSpill.cpp
  TupleStreamWrapper.cpp
  RecoveryContext.cpp
  TupleBlock.cpp
@@ -356,6 +359,7 @@ if whichtests in ("${eetestsuite}", "execution"):
     CTX.TESTS['execution'] = """
      add_drop_table
      engine_test
+     SpilledExecutorTest
     """
 
 if whichtests in ("${eetestsuite}", "expressions"):
@@ -385,6 +389,7 @@ if whichtests in ("${eetestsuite}", "storage"):
      table_test
      tabletuple_export_test
      TempTableLimitsTest
+     TempTableSpillTest
      TupleStreamWrapper_test
     """
 
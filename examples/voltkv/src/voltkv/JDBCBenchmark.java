@@ -39,6 +39,7 @@ import java.sql.DriverManager;
 import java.sql.ResultSet;
 
 import java.util.ArrayList;
+import java.util.Properties;
 import java.util.Random;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -175,6 +176,7 @@ public class JDBCBenchmark
                 .add("max-value-size", "max_value_size", "Maximum size for the value blob (in bytes, uncompressed) - set equal to min-value-size for constant size. Max: 1048576", 1000)
                 .add("entropy", "entropy", "How compressible the payload should be, lower is more compressible", 127)
                 .add("use-compression", "use_compression", "Whether value blobs should be compressed (GZip) for storage in the database (true|false).", false)
+                .add("batch-size", "batch_size", "Number of PUTs used to compare one at a time execution with a JDBC batch before the benchmark starts, 0 to skip.", 10000)
                 .setArguments(args)
             ;
 
@@ -193,6 +195,7 @@ public class JDBCBenchmark
             boolean useCompression = apph.booleanValue("use-compression");
             final String csv       = apph.stringValue("stats");
             final int entropy      = apph.intValue("entropy");
+            int batchSize          = apph.intValue("batch-size");
 
             // Validate parameters
             apph.validate("duration", (duration > 0))
@@ -203,6 +206,7 @@ public class JDBCBenchmark
                 .validate("key-size", (keySize > 0) && (keySize < 251))
                 .validate("min-value-size", (minValueSize > 0) && (minValueSize < 1048576))
                 .validate("max-value-size", (maxValueSize > 0) && (maxValueSize < 1048576) && (maxValueSize >= minValueSize))
+                .validate("batch-size", (batchSize >= 0))
             ;
 
             // Display actual parameters, for reference
@@ -255,6 +259,40 @@ public class JDBCBenchmark
                 System.out.println(" Done.");
             }
 
+            // Compare posting PUTs one at a time with posting them as a JDBC batch, which the driver pipelines
+            // when asked to. The PUTs are independent so they can run in any order.
+            if (batchSize > 0)
+            {
+                final Properties pipelined = new Properties();
+                pipelined.setProperty("pipelinebatches", "true");
+                final Connection batchCon = DriverManager.getConnection(url, pipelined);
+                final CallableStatement batchCS = batchCon.prepareCall("{call Put(?,?)}");
+                long start = System.nanoTime();
+                for(int i=0;i<batchSize;i++)
+                {
+                    final PayloadProcessor.Pair pair = processor.generateForStore();
+                    batchCS.setString(1, pair.Key);
+                    batchCS.setBytes(2, pair.getStoreValue());
+                    batchCS.executeUpdate();
+                }
+                final double singleRate = batchSize / ((System.nanoTime() - start) / 1000000000d);
+
+                start = System.nanoTime();
+                for(int i=0;i<batchSize;i++)
+                {
+                    final PayloadProcessor.Pair pair = processor.generateForStore();
+                    batchCS.setString(1, pair.Key);
+                    batchCS.setBytes(2, pair.getStoreValue());
+                    batchCS.addBatch();
+                }
+                batchCS.executeBatch();
+                batchCS.clearBatch();
+                final double batchRate = batchSize / ((System.nanoTime() - start) / 1000000000d);
+                batchCon.close();
+
+                System.out.printf("%,d PUTs one at a time: %,.0f/s, as a single batch: %,.0f/s\n", batchSize, singleRate, batchRate);
+            }
+
 // ---------------------------------------------------------------------------------------------------------------------------------------------------
 
             // Create a Timer task to display performance data on the operating procedures
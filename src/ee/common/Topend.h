@@ -47,7 +47,13 @@ class Topend {
             bool sync,
             bool endOfStream) = 0;
 
-    virtual void fallbackToEEAllocatedBuffer(char *buffer, size_t length) = 0;
+    /**
+     * Called when results outgrow the current result buffer. Returns a buffer
+     * of at least minimumCapacity bytes and sets capacity to its actual size,
+     * or NULL if no larger buffer is available. The buffer belongs to the topend
+     * and is only used until the result output is next reset.
+     */
+    virtual char *nextResultBuffer(size_t minimumCapacity, size_t *capacity) = 0;
     virtual ~Topend()
     {
     }
@@ -21,24 +21,21 @@ using namespace voltdb;
 
 void FallbackSerializeOutput::expand(size_t minimum_desired) {
     /*
-     * Leave some space for message headers and such, almost 50 megabytes
+     * The topend's largest buffer leaves some space for message headers and such,
+     * almost 50 megabytes
      */
-    size_t maxAllocationSize = ((1024 * 1024 *50) - (1024 * 32));
-    if (fallbackBuffer_ != NULL || minimum_desired > maxAllocationSize) {
-        if (fallbackBuffer_ != NULL) {
-            char *temp = fallbackBuffer_;
-            fallbackBuffer_ = NULL;
-            delete []temp;
-        }
+    size_t capacity = 0;
+    char *buffer = ExecutorContext::getExecutorContext()->getTopend()->
+            nextResultBuffer(minimum_desired, &capacity);
+    if (buffer == NULL) {
         throw SQLException(SQLException::volt_output_buffer_overflow,
             "Output from SQL stmt overflowed output/network buffer of 50mb (-32k for message headers). "
             "Try a \"limit\" clause or a stronger predicate.");
     }
-    fallbackBuffer_ = new char[maxAllocationSize];
-    ::memcpy(fallbackBuffer_, data(), position_);
+    assert(capacity >= minimum_desired);
+    ::memcpy(buffer, data(), position_);
     setPosition(position_);
-    initialize(fallbackBuffer_, maxAllocationSize);
-    ExecutorContext::getExecutorContext()->getTopend()->fallbackToEEAllocatedBuffer(fallbackBuffer_, maxAllocationSize);
+    initialize(buffer, capacity);
 }
 
 
@@ -476,35 +476,18 @@ protected:
 };
 
 /*
- * A serialize output class that falls back to allocating a 50 meg buffer
- * if the regular allocation runs out of space. The topend is notified when this occurs.
+ * A serialize output class that switches to a larger buffer supplied by the
+ * topend if the regular one runs out of space. The topend keeps those buffers
+ * for reuse, this goes back to the regular buffer when it is next initialized.
  */
 class FallbackSerializeOutput : public ReferenceSerializeOutput {
 public:
     FallbackSerializeOutput() :
-        ReferenceSerializeOutput(), fallbackBuffer_(NULL) {
+        ReferenceSerializeOutput() {
     }
 
-    /** Set the buffer to buffer with capacity and sets the position. */
-    void initializeWithPosition(void* buffer, size_t capacity, size_t position) {
-        if (fallbackBuffer_ != NULL) {
-            char *temp = fallbackBuffer_;
-            fallbackBuffer_ = NULL;
-            delete []temp;
-        }
-        setPosition(position);
-        initialize(buffer, capacity);
-    }
-
-    // Destructor frees the fallback buffer if it is allocated
-    virtual ~FallbackSerializeOutput() {
-        delete []fallbackBuffer_;
-    }
-
-    /** Expand once to a fallback size, and if that doesn't work abort */
+    /** Move to a larger topend buffer, and if there isn't one abort */
     void expand(size_t minimum_desired);
-private:
-    char *fallbackBuffer_;
 };
 
 /** Implementation of SerializeOutput that makes a copy of the buffer. */
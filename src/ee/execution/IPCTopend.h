@@ -38,8 +38,9 @@ public:
             StreamBlock *block,
             bool sync,
             bool endOfStream);
-    void fallbackToEEAllocatedBuffer(char *buffer, size_t length) {
-
+    /** The IPC protocol can't send more then the regular result buffer */
+    char *nextResultBuffer(size_t minimumCapacity, size_t *capacity) {
+        return NULL;
     }
 private:
     ::VoltDBIPC *m_vdbipc;
@@ -17,6 +17,7 @@
 #include "JNITopend.h"
 #include <cassert>
 #include <iostream>
+#include <limits>
 
 #include "common/debuglog.h"
 #include "storage/table.h"
@@ -79,14 +80,14 @@ JNITopend::JNITopend(JNIEnv *env, jobject caller) : m_jniEnv(env), m_javaExecuti
         throw std::exception();
     }
 
-    m_fallbackToEEAllocatedBufferMID =
+    m_nextResultBufferMID =
             m_jniEnv->GetMethodID(
                     jniClass,
-                    "fallbackToEEAllocatedBuffer",
-                    "(Ljava/nio/ByteBuffer;)V");
-    if (m_fallbackToEEAllocatedBufferMID == NULL) {
+                    "nextResultBuffer",
+                    "(I)Ljava/nio/ByteBuffer;");
+    if (m_nextResultBufferMID == NULL) {
         m_jniEnv->ExceptionDescribe();
-        assert(m_fallbackToEEAllocatedBufferMID != 0);
+        assert(m_nextResultBufferMID != 0);
         throw std::exception();
     }
 
@@ -147,31 +148,37 @@ JNITopend::JNITopend(JNIEnv *env, jobject caller) : m_jniEnv(env), m_javaExecuti
         m_pushExportBufferMID == 0 ||
         m_getQueuedExportBytesMID == 0 ||
         m_exportManagerClass == 0 ||
-        m_fallbackToEEAllocatedBufferMID == 0)
+        m_nextResultBufferMID == 0)
     {
         throw std::exception();
     }
 }
 
 
-void JNITopend::fallbackToEEAllocatedBuffer(char *buffer, size_t length) {
-    JNILocalFrameBarrier jni_frame = JNILocalFrameBarrier(m_jniEnv, 1);
-    if (jni_frame.checkResult() < 0) {
-        VOLT_ERROR("Unable to load dependency: jni frame error.");
-        throw std::exception();
+char *JNITopend::nextResultBuffer(size_t minimumCapacity, size_t *capacity) {
+    if (minimumCapacity > static_cast<size_t>(std::numeric_limits<jint>::max())) {
+        return NULL;
     }
 
-    jobject jbuffer = m_jniEnv->NewDirectByteBuffer(buffer, length);
-    if (jbuffer == NULL) {
-        m_jniEnv->ExceptionDescribe();
+    JNILocalFrameBarrier jni_frame = JNILocalFrameBarrier(m_jniEnv, 1);
+    if (jni_frame.checkResult() < 0) {
+        VOLT_ERROR("Unable to get result buffer: jni frame error.");
         throw std::exception();
     }
 
-    m_jniEnv->CallVoidMethod(m_javaExecutionEngine, m_fallbackToEEAllocatedBufferMID, jbuffer);
+    jobject jbuffer = m_jniEnv->CallObjectMethod(m_javaExecutionEngine, m_nextResultBufferMID,
+                                                 static_cast<jint>(minimumCapacity));
     if (m_jniEnv->ExceptionCheck()) {
         m_jniEnv->ExceptionDescribe();
         throw std::exception();
     }
+    if (jbuffer == NULL) {
+        return NULL;
+    }
+
+    char *buffer = static_cast<char*>(m_jniEnv->GetDirectBufferAddress(jbuffer));
+    *capacity = static_cast<size_t>(m_jniEnv->GetDirectBufferCapacity(jbuffer));
+    return buffer;
 }
 
 int JNITopend::loadNextDependency(int32_t dependencyId, voltdb::Pool *stringPool, Table* destination) {
@@ -74,6 +74,8 @@
 #include "catalog/constraint.h"
 #include "catalog/materializedviewinfo.h"
 #include "catalog/connector.h"
+#include "catalog/deployment.h"
+#include "catalog/systemsettings.h"
 #include "plannodes/abstractplannode.h"
 #include "plannodes/abstractscannode.h"
 #include "plannodes/nodes.h"
@@ -303,6 +305,37 @@ bool VoltDBEngine::serializeTable(int32_t tableId, SerializeOutput* out) const {
 // ------------------------------------------------------------------
 // EXECUTION FUNCTIONS
 // ------------------------------------------------------------------
+
+/*
+ * The intermediate results of a plan fragment aren't read once it
+ * completed. Clear the ones that spilled so that their space in the
+ * spill file can be reused.
+ */
+static void clearSpilledTables(const vector<AbstractExecutor*> &executors) {
+    for (int ctr = 0; ctr < executors.size(); ++ctr) {
+        TempTable *table =
+            dynamic_cast<TempTable*>(executors[ctr]->getPlanNode()->getOutputTable());
+        if (table != NULL && table->spilledBlockCount() > 0) {
+            table->deleteAllTuples(false);
+        }
+    }
+}
+
+/*
+ * Each intermediate result has a single reader. Clear the inputs of an
+ * executor that spilled as soon as it completed, so that the rest of
+ * the fragment can reuse their space in the spill file.
+ */
+static void clearSpilledInputs(AbstractExecutor *executor) {
+    const vector<Table*> &inputs = executor->getPlanNode()->getInputTables();
+    for (int ctr = 0; ctr < inputs.size(); ++ctr) {
+        TempTable *table = dynamic_cast<TempTable*>(inputs[ctr]);
+        if (table != NULL && table->spilledBlockCount() > 0) {
+            table->deleteAllTuples(false);
+        }
+    }
+}
+
 int VoltDBEngine::executeQuery(int64_t planfragmentId,
                                int32_t outputDependencyId,
                                int32_t inputDependencyId,
@@ -375,17 +408,23 @@ int VoltDBEngine::executeQuery(int64_t planfragmentId,
                            ctr, (intmax_t)planfragmentId);
                 if (cleanUpTable != NULL)
                     cleanUpTable->deleteAllTuples(false);
+                if (m_tempTableSpill.get() != NULL)
+                    clearSpilledTables(execsForFrag->list);
                 // set these back to -1 for error handling
                 m_currentOutputDepId = -1;
                 m_currentInputDepId = -1;
                 return ENGINE_ERRORCODE_ERROR;
             }
+            if (m_tempTableSpill.get() != NULL)
+                clearSpilledInputs(executor);
         } catch (SerializableEEException &e) {
             VOLT_TRACE("The Executor's execution at position '%d'"
                        " failed for PlanFragment '%jd'",
                        ctr, (intmax_t)planfragmentId);
             if (cleanUpTable != NULL)
                 cleanUpTable->deleteAllTuples(false);
+            if (m_tempTableSpill.get() != NULL)
+                clearSpilledTables(execsForFrag->list);
             resetReusedResultOutputBuffer();
             e.serialize(getExceptionOutputSerializer());
 
@@ -397,6 +436,8 @@ int VoltDBEngine::executeQuery(int64_t planfragmentId,
     }
     if (cleanUpTable != NULL)
         cleanUpTable->deleteAllTuples(false);
+    if (m_tempTableSpill.get() != NULL)
+        clearSpilledTables(execsForFrag->list);
 
     // assume this is sendless dml
     if (m_numResultDependencies == 0) {
@@ -481,16 +522,15 @@ int VoltDBEngine::executePlanFragment(string fragmentString,
         retval = ENGINE_ERRORCODE_ERROR;
     }
 
-    // clean up stuff
-    m_executorMap.erase(AD_HOC_FRAG_ID);
-
-    // delete any generated plan
+    // clean up stuff, the generated plan first as its temp tables
+    // give back their memory to the limits of the executor list
     size_t nowFrags = m_planFragments.size();
     if (nowFrags > frags) {
         assert ((nowFrags - frags) == 1);
         delete m_planFragments.back();
         m_planFragments.pop_back();
     }
+    m_executorMap.erase(AD_HOC_FRAG_ID);
 
     // set these back to -1 for error handling
     m_currentOutputDepId = -1;
@@ -896,6 +936,7 @@ bool VoltDBEngine::initPlanFragment(const int64_t fragId,
     boost::shared_ptr<ExecutorVector> ev =
         boost::shared_ptr<ExecutorVector>
         (new ExecutorVector(frag_temptable_log_limit, frag_temptable_limit));
+    ev->limits.setSpill(m_tempTableSpill.get());
 
     // Initialize each node!
     for (int ctr = 0, cnt = (int)pnf->getExecuteList().size();
@@ -1027,6 +1068,24 @@ bool VoltDBEngine::initCluster() {
     int64_t epoch = catalogCluster->localepoch() * (int64_t)1000;
     m_executorContext->setEpoch(epoch);
 
+    // temp tables spill to disk once they reach their memory limit
+    // when a spill size is deployed
+    int64_t spillSize = 0;
+    catalog::Deployment *deployment =
+        catalogCluster->deployment().get("deployment");
+    if (deployment != NULL) {
+        catalog::Systemsettings *settings =
+            deployment->systemsettings().get("systemsettings");
+        if (settings != NULL) {
+            spillSize = settings->tempspillsize() * (int64_t)1024 * 1024;
+        }
+    }
+    if (spillSize > 0 && !catalogCluster->tempSpill().empty() &&
+        m_tempTableSpill.get() == NULL) {
+        m_tempTableSpill.reset(new TempTableSpill(catalogCluster->tempSpill(),
+                                                  spillSize));
+    }
+
     return true;
 }
 
@@ -1370,6 +1429,13 @@ void VoltDBEngine::getUSOForExportTable(size_t &ackOffset, int64_t &seqNo, std::
     return;
 }
 
+int64_t VoltDBEngine::getTempTableBytesSpilled() const {
+    if (m_tempTableSpill.get() == NULL) {
+        return 0;
+    }
+    return m_tempTableSpill->getBytesSpilled();
+}
+
 size_t VoltDBEngine::tableHashCode(int32_t tableId) {
     map<int32_t, Table*>::iterator it = m_tables.find(tableId);
     if (it == m_tables.end()) {
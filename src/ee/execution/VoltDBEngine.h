@@ -52,6 +52,7 @@
 #include <vector>
 #include <cassert>
 
+#include "boost/scoped_ptr.hpp"
 #include "boost/shared_ptr.hpp"
 #include "json_spirit/json_spirit.h"
 #include "catalog/database.h"
@@ -70,6 +71,7 @@
 #include "logging/StdoutLogProxy.h"
 #include "stats/StatsAgent.h"
 #include "storage/TempTableLimits.h"
+#include "storage/TempTableSpill.h"
 #include "common/ThreadLocalPool.h"
 
 // shorthand for ExecutionEngine versions generated by javah
@@ -381,6 +383,11 @@ class __attribute__((visibility("default"))) VoltDBEngine {
          */
         size_t tableHashCode(int32_t tableId);
 
+        /**
+         * Bytes of temp table data this site spilled to disk since it started
+         */
+        int64_t getTempTableBytesSpilled() const;
+
     protected:
         /*
          * Get the list of persistent table Ids by inspecting the catalog.
@@ -431,6 +438,12 @@ class __attribute__((visibility("default"))) VoltDBEngine {
         size_t m_startOfResultBuffer;
         int64_t m_tempTableMemoryLimit;
 
+        /*
+         * Spill file of the site's temp tables, NULL unless a spill
+         * size is deployed.
+         */
+        boost::scoped_ptr<TempTableSpill> m_tempTableSpill;
+
         /*
          * Catalog delegates hashed by path.
          */
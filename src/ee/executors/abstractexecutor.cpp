@@ -136,6 +136,20 @@ bool AbstractExecutor::init(VoltDBEngine* engine,
     Table* tmp_output_table_base = m_abstractNode->getOutputTable();
     m_tmpOutputTable = dynamic_cast<TempTable*>(tmp_output_table_base);
 
+    // Let the input tables spill to disk if this executor can read
+    // them back.
+    if (limits != NULL && limits->getSpill() != NULL) {
+        for (int ctr = 0; ctr < input_tables.size(); ctr++) {
+            if (!supportsSpilledInput(ctr)) {
+                continue;
+            }
+            TempTable* input_table = dynamic_cast<TempTable*>(input_tables[ctr]);
+            if (input_table != NULL) {
+                input_table->setSpillable(true);
+            }
+        }
+    }
+
     // determines whether the output table should be cleared or not.
     // specific executor might not need (and must not do) clearing.
     if (!needs_outputtable_clear_cached) {
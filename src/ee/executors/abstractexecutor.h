@@ -103,6 +103,13 @@ class AbstractExecutor {
      */
     virtual bool needsOutputTableClear() { return true; };
 
+    /**
+     * Returns true if the executor reads the given input table front
+     * to back without holding on to tuples it moved past, so that it
+     * can be a spillable temp table.  <b>Default is false</b>.
+     */
+    virtual bool supportsSpilledInput(int inputIndex) const { return false; }
+
     // execution engine owns the plannode allocation.
     AbstractPlanNode* m_abstractNode;
     TempTable* m_tmpOutputTable;
@@ -66,7 +66,11 @@
 #include "storage/table.h"
 #include "storage/tablefactory.h"
 #include "storage/tableiterator.h"
+#include "storage/temptable.h"
+#include "storage/TempTableLimits.h"
 
+#include "boost/scoped_ptr.hpp"
+#include "boost/shared_ptr.hpp"
 #include "boost/unordered_map.hpp"
 
 #include <algorithm>
@@ -385,7 +389,8 @@ class AggregateExecutor : public AbstractExecutor
 {
 public:
     AggregateExecutor(VoltDBEngine* engine, AbstractPlanNode* abstract_node) :
-        AbstractExecutor(engine, abstract_node), m_groupByKeySchema(NULL)
+        AbstractExecutor(engine, abstract_node), m_groupByKeySchema(NULL),
+        m_limits(NULL)
     { };
     ~AggregateExecutor();
 
@@ -394,6 +399,32 @@ protected:
                 TempTableLimits* limits);
     bool p_execute(const NValueArray &params);
 
+    /*
+     * A hash aggregation reads its input in a single pass without
+     * holding on to its tuples when the input spilled to disk.
+     */
+    bool supportsSpilledInput(int inputIndex) const
+    {
+        return aggregateType == PLAN_NODE_TYPE_HASHAGGREGATE;
+    }
+
+    /*
+     * Aggregate an input that spilled to disk. Only implemented for
+     * hash aggregation, which partitions the input on the group by key
+     * and aggregates one partition at a time.
+     */
+    bool p_executeSpilled(TempTable* input_table);
+
+    /*
+     * Partition the tuples of input_table on the hash of the group by
+     * key into partition_count spillable temp tables. Each depth uses a
+     * different hash seed so a partition that is still too big is
+     * split again at the next depth.
+     */
+    void partitionSpilled(TempTable* input_table, size_t partition_count,
+                          int depth,
+                          std::vector<boost::shared_ptr<TempTable> >& partitions);
+
     /*
      * List of columns in the output schema that are passing through
      * the value from a column in the input table and not doing any
@@ -402,6 +433,7 @@ protected:
     PassThroughColType m_passThroughColumns;
     Pool m_memoryPool;
     TupleSchema* m_groupByKeySchema;
+    TempTableLimits* m_limits;
 };
 
 /*
@@ -923,6 +955,226 @@ AggregateExecutor<aggregateType>::p_init(AbstractPlanNode *abstract_node,
                                        groupByColumnAllowNull,
                                        true);
 
+    m_limits = limits;
+    return true;
+}
+
+template<PlanNodeType aggregateType>
+bool
+AggregateExecutor<aggregateType>::p_executeSpilled(TempTable* input_table)
+{
+    throwFatalException("Aggregate plan node type %d can't read a spilled input table",
+                        static_cast<int>(aggregateType));
+}
+
+template<PlanNodeType aggregateType>
+void
+AggregateExecutor<aggregateType>::partitionSpilled(TempTable* input_table,
+                                                   size_t partition_count,
+                                                   int depth,
+                                                   std::vector<boost::shared_ptr<TempTable> >& partitions)
+{
+    AggregatePlanNode* node = dynamic_cast<AggregatePlanNode*>(m_abstractNode);
+    assert(node);
+    std::vector<AbstractExpression*> groupByExpressions =
+        node->getGroupByExpressions();
+
+    partitions.clear();
+    for (size_t ii = 0; ii < partition_count; ii++)
+    {
+        boost::shared_ptr<TempTable>
+            partition(TableFactory::getCopiedTempTable(node->databaseId(),
+                                                       input_table->name(),
+                                                       input_table,
+                                                       m_limits));
+        partition->setSpillable(true);
+        partitions.push_back(partition);
+    }
+
+    TableIterator it = input_table->iterator();
+    TableTuple cur(input_table->schema());
+    while (it.next(cur))
+    {
+        // seeded apart from the hash of the aggregator's group by key so
+        // that a partition's groups don't collide in its hash table, and
+        // apart from the other depths so that a partition split again
+        // doesn't land in a single partition
+        std::size_t seed = partition_count + (depth << 8);
+        for (int i = 0; i < groupByExpressions.size(); i++)
+        {
+            groupByExpressions[i]->eval(&cur, NULL).hashCombine(seed);
+        }
+        partitions[seed % partition_count]->insertTupleNonVirtual(cur);
+    }
+}
+
+//
+// The input is partitioned on the hash of the group-by keys into
+// spillable temp tables, so that all the tuples of a group land in the
+// same partition. A partition that is still too big to aggregate in
+// memory is partitioned again with another seed. Each partition is then
+// read back into memory and hash aggregated on its own.
+//
+template<>
+inline bool
+AggregateExecutor<PLAN_NODE_TYPE_HASHAGGREGATE>::p_executeSpilled(TempTable* input_table)
+{
+    AggregatePlanNode* node = dynamic_cast<AggregatePlanNode*>(m_abstractNode);
+    assert(node);
+    Table* output_table = node->getOutputTable();
+    assert(output_table);
+    assert(m_limits);
+
+    std::vector<ExpressionType> agg_types = node->getAggregates();
+    std::vector<ValueType> col_types(node->getAggregateInputExpressions().size());
+    for (int i = 0; i < col_types.size(); i++)
+    {
+        col_types[i] =
+            node->getAggregateInputExpressions()[i]->getValueType();
+    }
+    const std::vector<bool> distinctAggs =
+        node->getDistinctAggregates();
+    std::vector<AbstractExpression*> groupByExpressions =
+        node->getGroupByExpressions();
+
+    //
+    // Aim for partitions of a quarter of the memory limit. Every
+    // partition keeps the block it appends to in memory, the spilled
+    // input is down to one, so the number of partitions is capped to
+    // keep those blocks to another quarter.
+    //
+    const int64_t tuple_length =
+        TableTuple(input_table->schema()).tupleLength();
+    const int64_t partition_bytes =
+        std::max(m_limits->getMemoryLimit() / 4, static_cast<int64_t>(1));
+    const int64_t block_bytes =
+        std::max(input_table->allocatedTupleMemory(), static_cast<int64_t>(1));
+    const int64_t max_partitions =
+        std::min(std::max(partition_bytes / block_bytes, static_cast<int64_t>(2)),
+                 static_cast<int64_t>(64));
+    const int max_depth = 8;
+
+    //
+    // Partitions left to aggregate and how many times their tuples
+    // were partitioned. The last partitions split are aggregated first
+    // so that only the partitions of one split per depth are pending.
+    //
+    std::vector<std::pair<boost::shared_ptr<TempTable>, int> > pending;
+    std::vector<boost::shared_ptr<TempTable> > partitions;
+    TempTable* to_split = input_table;
+    // owns to_split when it is a partition
+    boost::shared_ptr<TempTable> splitting;
+    int depth = 0;
+
+    //
+    // The aggregates and pass through columns refer to the tuples they
+    // were computed from, so a partition that spilled is aggregated from
+    // an in memory copy. It is charged to the limits, a partition that
+    // can't be split further, like a single group, and doesn't fit fails
+    // the fragment with the memory overflow error.
+    //
+    boost::scoped_ptr<TempTable>
+        workspace(TableFactory::getCopiedTempTable(node->databaseId(),
+                                                   input_table->name(),
+                                                   input_table,
+                                                   m_limits));
+    TableTuple cur(input_table->schema());
+    while (true)
+    {
+        if (to_split != NULL)
+        {
+            const int64_t input_bytes =
+                to_split->activeTupleCount() * tuple_length;
+            const size_t partition_count =
+                static_cast<size_t>(std::min(std::max(input_bytes / partition_bytes + 1,
+                                                      static_cast<int64_t>(2)),
+                                             max_partitions));
+            VOLT_DEBUG("Partitioning spilled aggregate input into %d partitions at depth %d",
+                       static_cast<int>(partition_count), depth);
+            const int64_t split_tuples = to_split->activeTupleCount();
+            partitionSpilled(to_split, partition_count, depth, partitions);
+            to_split->deleteAllTuples(false);
+            for (size_t ii = 0; ii < partition_count; ii++)
+            {
+                // a partition that took every tuple won't split any
+                // better with another seed
+                const bool split = partitions[ii]->activeTupleCount() < split_tuples;
+                pending.push_back(std::make_pair(partitions[ii],
+                                                 split ? depth + 1 : max_depth));
+            }
+            partitions.clear();
+            splitting.reset();
+            to_split = NULL;
+        }
+
+        if (pending.empty())
+        {
+            break;
+        }
+        boost::shared_ptr<TempTable> partition = pending.back().first;
+        depth = pending.back().second;
+        pending.pop_back();
+        if (partition->activeTupleCount() == 0)
+        {
+            continue;
+        }
+        if (depth < max_depth &&
+            partition->activeTupleCount() * tuple_length > partition_bytes)
+        {
+            splitting = partition;
+            to_split = partition.get();
+            continue;
+        }
+
+        // a partition that never spilled is aggregated where it is
+        TempTable* aggregated = partition.get();
+        if (partition->spilledBlockCount() > 0)
+        {
+            // make room for the copy by spilling the partitions that
+            // are still waiting
+            if (m_limits->wouldExceedLimit(partition->activeTupleCount() * tuple_length))
+            {
+                for (size_t ii = 0; ii < pending.size(); ii++)
+                {
+                    pending[ii].first->spill();
+                }
+            }
+            TableIterator partition_it = partition->iterator();
+            while (partition_it.next(cur))
+            {
+                workspace->insertTupleNonVirtual(cur);
+            }
+            partition->deleteAllTuples(false);
+            aggregated = workspace.get();
+        }
+
+        {
+            Aggregator<PLAN_NODE_TYPE_HASHAGGREGATE>
+                aggregator(&m_memoryPool, m_groupByKeySchema,
+                           node, &m_passThroughColumns,
+                           aggregated, output_table,
+                           &agg_types, distinctAggs,
+                           groupByExpressions, &col_types);
+            TableIterator aggregated_it = aggregated->iterator();
+            TableTuple prev(aggregated->schema());
+            for (TableTuple tuple(aggregated->schema()); aggregated_it.next(tuple);
+                 prev.move(tuple.address()))
+            {
+                if (!aggregator.nextTuple(tuple, prev))
+                {
+                    return false;
+                }
+            }
+            if (!aggregator.finalize(prev))
+            {
+                return false;
+            }
+        }
+        aggregated->deleteAllTuples(false);
+        m_memoryPool.purge();
+    }
+
+    VOLT_TRACE("output table\n%s", output_table->debug().c_str());
     return true;
 }
 
@@ -942,6 +1194,12 @@ bool AggregateExecutor<aggregateType>::p_execute(const NValueArray &params)
     assert(input_table);
     VOLT_TRACE("input table\n%s", input_table->debug().c_str());
 
+    TempTable* temp_input = dynamic_cast<TempTable*>(input_table);
+    if (temp_input != NULL && temp_input->spilledBlockCount() > 0)
+    {
+        return p_executeSpilled(temp_input);
+    }
+
     std::vector<ExpressionType> agg_types = node->getAggregates();
     std::vector<ValueType> col_types(node->getAggregateInputExpressions().size());
     for (int i = 0; i < col_types.size(); i++)
@@ -58,6 +58,7 @@ AbstractExecutor* getNewExecutor(VoltDBEngine *engine,
     switch (type) {
     case PLAN_NODE_TYPE_AGGREGATE: return new AggregateExecutor<PLAN_NODE_TYPE_AGGREGATE>(engine, abstract_node);
     case PLAN_NODE_TYPE_HASHAGGREGATE: return new AggregateExecutor<PLAN_NODE_TYPE_HASHAGGREGATE>(engine, abstract_node);
+    case PLAN_NODE_TYPE_HASHJOIN: return new HashJoinExecutor(engine, abstract_node);
     case PLAN_NODE_TYPE_DELETE: return new DeleteExecutor(engine, abstract_node);
     case PLAN_NODE_TYPE_DISTINCT: return new DistinctExecutor(engine, abstract_node);
     case PLAN_NODE_TYPE_INDEXSCAN: return new IndexScanExecutor(engine, abstract_node);
@@ -0,0 +1,332 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "hashjoinexecutor.h"
+
+#include "common/debuglog.h"
+#include "common/tabletuple.h"
+#include "common/TupleSchema.h"
+#include "expressions/abstractexpression.h"
+#include "expressions/tuplevalueexpression.h"
+#include "plannodes/hashjoinnode.h"
+#include "storage/table.h"
+#include "storage/temptable.h"
+#include "storage/tableiterator.h"
+#include "storage/tablefactory.h"
+#include "storage/TempTableLimits.h"
+
+#include "boost/unordered_map.hpp"
+
+#include <algorithm>
+#include <stack>
+#include <string>
+#include <vector>
+
+using namespace std;
+using namespace voltdb;
+
+namespace
+{
+    typedef boost::unordered_multimap<TableTuple,
+                                      TableTuple,
+                                      TableTupleHasher,
+                                      TableTupleEqualityChecker> HashJoinMapType;
+
+    // Rough size of a hash entry besides its key, charged to the temp table limits
+    const int HASH_ENTRY_OVERHEAD = static_cast<int>(sizeof(HashJoinMapType::value_type) +
+                                                     3 * sizeof(void*));
+
+    /**
+     * Gives back the memory charged for the hash however the join exits
+     */
+    class AllocationGuard
+    {
+    public:
+        AllocationGuard(TempTableLimits* limits) : m_limits(limits), m_bytes(0) { }
+        ~AllocationGuard()
+        {
+            if (m_limits != NULL) {
+                m_limits->reduceAllocated(m_bytes);
+            }
+        }
+        void increase(int bytes)
+        {
+            if (m_limits != NULL) {
+                // count the bytes before the limit check may throw
+                m_bytes += bytes;
+                m_limits->increaseAllocated(bytes);
+            }
+        }
+    private:
+        TempTableLimits* m_limits;
+        int m_bytes;
+    };
+
+    // Same naming convention as the nest loop executor: the predicate's
+    // tuple index 0 is the outer table and tuple index 1 the inner table.
+    bool
+    assignTupleValueIndex(AbstractExpression *ae,
+                          const string &oname,
+                          const string &iname)
+    {
+        TupleValueExpression *tve = dynamic_cast<TupleValueExpression*>(ae);
+        string tname = tve->getTableName();
+
+        if (oname == "temp" && iname == "temp") {
+            VOLT_ERROR("Unsupported join on two temp tables.");
+            return false;
+        }
+
+        if (tname == oname)
+            tve->setTupleIndex(0);
+        else if (tname == iname)
+            tve->setTupleIndex(1);
+        else if (oname == "temp")
+            tve->setTupleIndex(0);
+        else if (iname == "temp")
+            tve->setTupleIndex(1);
+        else {
+            VOLT_ERROR("TableTupleValue in join with unknown table name.");
+            return false;
+        }
+
+        return true;
+    }
+
+    bool
+    assignTupleValueIndexes(AbstractExpression* expression,
+                            const string& outer_name,
+                            const string& inner_name)
+    {
+        const AbstractExpression* predicate = expression;
+        stack<const AbstractExpression*> stack;
+        while (predicate != NULL) {
+            const AbstractExpression *left = predicate->getLeft();
+            const AbstractExpression *right = predicate->getRight();
+
+            if (right != NULL) {
+                if (right->getExpressionType() == EXPRESSION_TYPE_VALUE_TUPLE) {
+                    if (!assignTupleValueIndex(const_cast<AbstractExpression*>(right),
+                                               outer_name,
+                                               inner_name))
+                    {
+                        return false;
+                    }
+                }
+                stack.push(right);
+            }
+            if (left != NULL) {
+                if (left->getExpressionType() == EXPRESSION_TYPE_VALUE_TUPLE) {
+                    if (!assignTupleValueIndex(const_cast<AbstractExpression*>(left),
+                                               outer_name,
+                                               inner_name))
+                    {
+                        return false;
+                    }
+                }
+            }
+
+            predicate = left;
+            if (!predicate && !stack.empty()) {
+                predicate = stack.top();
+                stack.pop();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evaluate the keys of a tuple into a key tuple.
+     * @return false if a key is NULL, such a tuple can't join anything
+     */
+    bool
+    evaluateKeys(const vector<AbstractExpression*>& keys,
+                 TableTuple& tuple,
+                 TableTuple& keyTuple,
+                 Pool* objectPool)
+    {
+        for (int ii = 0; ii < keys.size(); ii++) {
+            NValue value = keys[ii]->eval(&tuple, NULL);
+            if (value.isNull()) {
+                return false;
+            }
+            if (objectPool != NULL) {
+                keyTuple.setNValueAllocateForObjectCopies(ii, value, objectPool);
+            } else {
+                keyTuple.setNValue(ii, value);
+            }
+        }
+        return true;
+    }
+}
+
+bool HashJoinExecutor::p_init(AbstractPlanNode* abstract_node,
+                              TempTableLimits* limits)
+{
+    VOLT_TRACE("init HashJoin Executor");
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(abstract_node);
+    assert(node);
+
+    int schema_size = static_cast<int>(node->getOutputSchema().size());
+    string* columnNames = new string[schema_size];
+    for (int i = 0; i < schema_size; i++)
+    {
+        columnNames[i] = node->getOutputSchema()[i]->getColumnName();
+    }
+
+    TupleSchema* schema = node->generateTupleSchema(true);
+
+    // create the output table
+    node->setOutputTable(
+        TableFactory::getTempTable(node->getInputTables()[0]->databaseId(),
+                                   "temp", schema, columnNames,
+                                   limits));
+    delete[] columnNames;
+    m_limits = limits;
+
+    // the planner pairs keys of the same type or integer keys that are
+    // compared as BIGINT. Either side may be the hashed one, so a key
+    // column must be wide enough for both.
+    const vector<AbstractExpression*>& outerKeys = node->getOuterKeys();
+    const vector<AbstractExpression*>& innerKeys = node->getInnerKeys();
+    assert(outerKeys.size() == innerKeys.size());
+    vector<ValueType> keyColumnTypes;
+    vector<int32_t> keyColumnSizes;
+    vector<bool> keyColumnAllowNull;
+    for (int ii = 0; ii < outerKeys.size(); ii++)
+    {
+        ValueType outerType = outerKeys[ii]->getValueType();
+        ValueType innerType = innerKeys[ii]->getValueType();
+        if (outerType == innerType) {
+            keyColumnTypes.push_back(outerType);
+            keyColumnSizes.push_back(std::max(outerKeys[ii]->getValueSize(),
+                                              innerKeys[ii]->getValueSize()));
+        } else {
+            keyColumnTypes.push_back(VALUE_TYPE_BIGINT);
+            keyColumnSizes.push_back(NValue::getTupleStorageSize(VALUE_TYPE_BIGINT));
+        }
+        keyColumnAllowNull.push_back(true);
+    }
+    m_keySchema = TupleSchema::createTupleSchema(keyColumnTypes,
+                                                 keyColumnSizes,
+                                                 keyColumnAllowNull,
+                                                 true);
+
+    // the key expressions are evaluated against a single tuple and keep
+    // their default tuple index, the predicate sees both tuples
+    return assignTupleValueIndexes(node->getPredicate(),
+                                   node->getInputTables()[0]->name(),
+                                   node->getInputTables()[1]->name());
+}
+
+bool HashJoinExecutor::p_execute(const NValueArray &params) {
+    VOLT_DEBUG("executing HashJoin...");
+    m_memoryPool.purge();
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(m_abstractNode);
+    assert(node);
+    assert(node->getInputTables().size() == 2);
+
+    // output table must be a temp table
+    TempTable* output_table = dynamic_cast<TempTable*>(node->getOutputTable());
+    assert(output_table);
+
+    Table* outer_table = node->getInputTables()[0];
+    assert(outer_table);
+
+    Table* inner_table = node->getInputTables()[1];
+    assert(inner_table);
+
+    VOLT_TRACE ("input table left:\n %s", outer_table->debug().c_str());
+    VOLT_TRACE ("input table right:\n %s", inner_table->debug().c_str());
+
+    AbstractExpression *predicate = node->getPredicate();
+    if (predicate) {
+        predicate->substitute(params);
+        VOLT_TRACE ("predicate: %s", predicate == NULL ?
+                    "NULL" : predicate->debug(true).c_str());
+    }
+    const vector<AbstractExpression*>& outerKeys = node->getOuterKeys();
+    const vector<AbstractExpression*>& innerKeys = node->getInnerKeys();
+    for (int ii = 0; ii < outerKeys.size(); ii++) {
+        outerKeys[ii]->substitute(params);
+        innerKeys[ii]->substitute(params);
+    }
+
+    // hash the smaller input, probe with the larger one
+    const bool buildOuter = outer_table->activeTupleCount() < inner_table->activeTupleCount();
+    Table* build_table = buildOuter ? outer_table : inner_table;
+    Table* probe_table = buildOuter ? inner_table : outer_table;
+    const vector<AbstractExpression*>& buildKeys = buildOuter ? outerKeys : innerKeys;
+    const vector<AbstractExpression*>& probeKeys = buildOuter ? innerKeys : outerKeys;
+
+    AllocationGuard allocation(m_limits);
+    const int keyLength = m_keySchema->tupleLength();
+    HashJoinMapType hash(static_cast<size_t>(build_table->activeTupleCount()));
+
+    TableTuple build_tuple(build_table->schema());
+    TableTuple key_tuple(m_keySchema);
+    key_tuple.moveNoHeader(static_cast<char*>(m_memoryPool.allocate(keyLength)));
+    TableIterator build_iterator = build_table->iterator();
+    while (build_iterator.next(build_tuple)) {
+        if (!evaluateKeys(buildKeys, build_tuple, key_tuple, &m_memoryPool)) {
+            continue;
+        }
+        allocation.increase(keyLength + HASH_ENTRY_OVERHEAD);
+        hash.insert(HashJoinMapType::value_type(key_tuple, build_tuple));
+        key_tuple.moveNoHeader(static_cast<char*>(m_memoryPool.allocate(keyLength)));
+    }
+    VOLT_TRACE("hashed %d tuples", static_cast<int>(hash.size()));
+
+    int outer_cols = outer_table->columnCount();
+    int inner_cols = inner_table->columnCount();
+    TableTuple probe_tuple(probe_table->schema());
+    TableTuple &joined = output_table->tempTuple();
+
+    TableIterator probe_iterator = probe_table->iterator();
+    while (probe_iterator.next(probe_tuple)) {
+        if (!evaluateKeys(probeKeys, probe_tuple, key_tuple, NULL)) {
+            continue;
+        }
+        pair<HashJoinMapType::const_iterator, HashJoinMapType::const_iterator> matches =
+            hash.equal_range(key_tuple);
+        for (HashJoinMapType::const_iterator it = matches.first; it != matches.second; ++it) {
+            TableTuple outer_tuple = buildOuter ? it->second : probe_tuple;
+            TableTuple inner_tuple = buildOuter ? probe_tuple : it->second;
+            if (predicate == NULL || predicate->eval(&outer_tuple, &inner_tuple).isTrue()) {
+                // the output is ordered like a nest loop join's, outer columns first
+                for (int col_ctr = 0; col_ctr < outer_cols; col_ctr++) {
+                    joined.setNValue(col_ctr, outer_tuple.getNValue(col_ctr));
+                }
+                for (int col_ctr = 0; col_ctr < inner_cols; col_ctr++) {
+                    joined.setNValue(col_ctr + outer_cols, inner_tuple.getNValue(col_ctr));
+                }
+                output_table->insertTupleNonVirtual(joined);
+            }
+        }
+    }
+
+    return (true);
+}
+
+HashJoinExecutor::~HashJoinExecutor()
+{
+    if (m_keySchema != NULL) {
+        TupleSchema::freeTupleSchema(m_keySchema);
+    }
+}
@@ -0,0 +1,57 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef VOLTDBHASHJOINEXECUTOR_H
+#define VOLTDBHASHJOINEXECUTOR_H
+
+#include "common/common.h"
+#include "common/Pool.hpp"
+#include "common/valuevector.h"
+#include "executors/abstractexecutor.h"
+
+namespace voltdb {
+
+class TempTableLimits;
+class TupleSchema;
+
+/**
+ * Joins the two input tables on the keys of a HashJoinPlanNode. The keys of
+ * the input with fewer tuples are hashed, then every tuple of the other input
+ * looks up its matches in the hash. The memory the hash takes is charged to the
+ * temp table limits of the fragment so a runaway join fails like a runaway temp
+ * table would.
+ */
+class HashJoinExecutor : public AbstractExecutor {
+    public:
+        HashJoinExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node)
+            : AbstractExecutor(engine, abstract_node), m_keySchema(NULL), m_limits(NULL) { }
+        ~HashJoinExecutor();
+    protected:
+        bool p_init(AbstractPlanNode*,
+                    TempTableLimits* limits);
+        bool p_execute(const NValueArray &params);
+
+        // hashed keys and the uninlined objects they copy
+        Pool m_memoryPool;
+        // both sides' keys are stored as tuples of this schema
+        TupleSchema* m_keySchema;
+        TempTableLimits* m_limits;
+};
+
+}
+
+#endif
@@ -73,6 +73,7 @@ namespace voltdb
         bool p_init(AbstractPlanNode*,
                     TempTableLimits* limits);
         bool p_execute(const NValueArray &params);
+        bool supportsSpilledInput(int inputIndex) const { return true; }
     };
 
 }
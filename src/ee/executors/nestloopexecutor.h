@@ -65,6 +65,8 @@ class NestLoopExecutor : public AbstractExecutor {
         bool p_init(AbstractPlanNode*,
                     TempTableLimits* limits);
         bool p_execute(const NValueArray &params);
+        // the inner table is rescanned for every outer tuple
+        bool supportsSpilledInput(int inputIndex) const { return inputIndex == 0; }
 };
 
 }
@@ -92,6 +92,8 @@ protected:
     bool p_init(AbstractPlanNode*,
                 TempTableLimits* limits);
     bool p_execute(const NValueArray &params);
+    // only the outer table is an input, the inner one is a persistent table
+    bool supportsSpilledInput(int inputIndex) const { return inputIndex == 0; }
 
     NestLoopIndexPlanNode* node;
     IndexScanPlanNode* inline_node;
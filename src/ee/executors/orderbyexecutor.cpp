@@ -56,6 +56,10 @@
 #include "storage/temptable.h"
 #include "storage/tableiterator.h"
 #include "storage/tablefactory.h"
+#include "storage/TempTableLimits.h"
+
+#include "boost/scoped_ptr.hpp"
+#include "boost/shared_ptr.hpp"
 
 using namespace voltdb;
 using namespace std;
@@ -87,6 +91,7 @@ OrderByExecutor::p_init(AbstractPlanNode* abstract_node,
         dynamic_cast<LimitPlanNode*>(node->
                                      getInlinePlanNode(PLAN_NODE_TYPE_LIMIT));
 
+    m_limits = limits;
     return true;
 }
 
@@ -133,6 +138,174 @@ private:
     size_t m_keyCount;
 };
 
+/*
+ * The next tuple of a sorted run being merged
+ */
+struct RunHead
+{
+    RunHead(TableTuple tuple, size_t run) : m_tuple(tuple), m_run(run) { }
+
+    TableTuple m_tuple;
+    size_t m_run;
+};
+
+/*
+ * Orders a heap of run heads so that its front is the one sorting first
+ */
+class RunHeadComparer
+{
+public:
+    RunHeadComparer(TupleComparer& comparer) : m_comparer(comparer) { }
+
+    bool operator()(const RunHead& ra, const RunHead& rb)
+    {
+        return m_comparer(rb.m_tuple, ra.m_tuple);
+    }
+
+private:
+    TupleComparer& m_comparer;
+};
+
+bool
+OrderByExecutor::p_executeExternal(TempTable* input_table,
+                                   Table* output_table,
+                                   int limit, int offset)
+{
+    OrderByPlanNode* node = dynamic_cast<OrderByPlanNode*>(m_abstractNode);
+    assert(node);
+    TupleComparer comparer(node->getSortExpressions(),
+                           node->getSortDirections());
+
+    int64_t top_n = -1;
+    if (limit >= 0)
+    {
+        top_n = static_cast<int64_t>(limit) + max(offset, 0);
+    }
+
+    //
+    // The input is copied into a workspace a run at a time. The
+    // workspace gets what is left of the memory limit, but at least a
+    // quarter of it so that a nearly full limit doesn't make for many
+    // tiny runs.
+    //
+    assert(m_limits);
+    const int tuple_length = TableTuple(input_table->schema()).tupleLength();
+    const int64_t room = max(m_limits->getMemoryLimit() - m_limits->getAllocated(),
+                             m_limits->getMemoryLimit() / 4);
+    const int64_t run_tuples = max(room / tuple_length, static_cast<int64_t>(1));
+    boost::scoped_ptr<TempTable>
+        workspace(TableFactory::getCopiedTempTable(node->databaseId(),
+                                                   input_table->name(),
+                                                   input_table,
+                                                   NULL));
+
+    //
+    // Sort each run and write it to a spillable temp table. With a
+    // nested limit only the first limit + offset tuples of a run can
+    // be output.
+    //
+    vector<boost::shared_ptr<TempTable> > runs;
+    TableIterator iterator = input_table->iterator();
+    TableTuple tuple(input_table->schema());
+    bool more = iterator.next(tuple);
+    while (more)
+    {
+        workspace->deleteAllTuples(false);
+        int64_t count = 0;
+        do
+        {
+            workspace->insertTupleNonVirtual(tuple);
+            more = iterator.next(tuple);
+        } while (more && ++count < run_tuples);
+
+        vector<TableTuple> xs;
+        TableIterator workspace_iterator = workspace->iterator();
+        TableTuple copy(workspace->schema());
+        while (workspace_iterator.next(copy))
+        {
+            xs.push_back(copy);
+        }
+        if (top_n >= 0 && top_n < static_cast<int64_t>(xs.size()))
+        {
+            partial_sort(xs.begin(), xs.begin() + top_n, xs.end(), comparer);
+            xs.resize(static_cast<size_t>(top_n));
+        }
+        else
+        {
+            sort(xs.begin(), xs.end(), comparer);
+        }
+
+        boost::shared_ptr<TempTable>
+            run(TableFactory::getCopiedTempTable(node->databaseId(),
+                                                 input_table->name(),
+                                                 input_table,
+                                                 m_limits));
+        run->setSpillable(true);
+        for (vector<TableTuple>::iterator it = xs.begin(); it != xs.end(); it++)
+        {
+            run->insertTupleNonVirtual(*it);
+        }
+        runs.push_back(run);
+    }
+    workspace->deleteAllTuples(false);
+    VOLT_TRACE("Merging %d sorted runs", static_cast<int>(runs.size()));
+
+    //
+    // Merge the runs, each read back through an iterator of its own
+    //
+    vector<TableIterator> run_iterators;
+    vector<RunHead> heads;
+    for (size_t ii = 0; ii < runs.size(); ii++)
+    {
+        run_iterators.push_back(runs[ii]->iterator());
+        TableTuple head(runs[ii]->schema());
+        if (run_iterators[ii].next(head))
+        {
+            heads.push_back(RunHead(head, ii));
+        }
+    }
+    RunHeadComparer merge_comparer(comparer);
+    make_heap(heads.begin(), heads.end(), merge_comparer);
+
+    int tuple_ctr = 0;
+    int tuple_skipped = 0;
+    while (!heads.empty())
+    {
+        pop_heap(heads.begin(), heads.end(), merge_comparer);
+        RunHead& next = heads.back();
+        if (tuple_skipped < offset)
+        {
+            tuple_skipped++;
+        }
+        else
+        {
+            if (!output_table->insertTuple(next.m_tuple))
+            {
+                VOLT_ERROR("Failed to insert order-by tuple from input table '%s'"
+                           " into output table '%s'",
+                           input_table->name().c_str(),
+                           output_table->name().c_str());
+                return false;
+            }
+            if (limit >= 0 && ++tuple_ctr >= limit)
+            {
+                break;
+            }
+        }
+        if (run_iterators[next.m_run].next(next.m_tuple))
+        {
+            push_heap(heads.begin(), heads.end(), merge_comparer);
+        }
+        else
+        {
+            heads.pop_back();
+        }
+    }
+    VOLT_TRACE("Result of OrderBy:\n '%s'", output_table->debug().c_str());
+
+    return true;
+}
+
 bool
 OrderByExecutor::p_execute(const NValueArray &params)
 {
@@ -156,18 +329,68 @@ OrderByExecutor::p_execute(const NValueArray &params)
 
     VOLT_TRACE("Running OrderBy '%s'", m_abstractNode->debug().c_str());
     VOLT_TRACE("Input Table:\n '%s'", input_table->debug().c_str());
+
+    //
+    // An input that spilled to disk doesn't fit in memory, and its tuples
+    // are only valid until its iterator moves on. Sort it externally.
+    //
+    TempTable* temp_input = dynamic_cast<TempTable*>(input_table);
+    if (temp_input != NULL && temp_input->spilledBlockCount() > 0)
+    {
+        return p_executeExternal(temp_input, output_table, limit, offset);
+    }
+
+    TupleComparer comparer(node->getSortExpressions(),
+                           node->getSortDirections());
     TableIterator iterator = input_table->iterator();
     TableTuple tuple(input_table->schema());
     vector<TableTuple> xs;
-    while (iterator.next(tuple))
+
+    //
+    // OPTIMIZATION: TOP-N
+    // Only the first limit + offset tuples of the sorted input are output.
+    // If that is fewer than the input, keep just those in a heap ordered so
+    // its front is the last of them, and replace the front whenever a tuple
+    // sorts ahead of it.
+    //
+    int64_t top_n = -1;
+    if (limit >= 0)
+    {
+        top_n = static_cast<int64_t>(limit) + max(offset, 0);
+    }
+    if (top_n >= 0 && top_n < input_table->activeTupleCount())
+    {
+        VOLT_TRACE("Keeping the top %d of %d tuples", static_cast<int>(top_n),
+                   static_cast<int>(input_table->activeTupleCount()));
+        xs.reserve(static_cast<size_t>(top_n));
+        while (top_n > 0 && iterator.next(tuple))
+        {
+            assert(tuple.isActive());
+            if (static_cast<int64_t>(xs.size()) < top_n)
+            {
+                xs.push_back(tuple);
+                push_heap(xs.begin(), xs.end(), comparer);
+            }
+            else if (comparer(tuple, xs.front()))
+            {
+                pop_heap(xs.begin(), xs.end(), comparer);
+                xs.back() = tuple;
+                push_heap(xs.begin(), xs.end(), comparer);
+            }
+        }
+        sort_heap(xs.begin(), xs.end(), comparer);
+    }
+    else
     {
-        assert(tuple.isActive());
-        xs.push_back(tuple);
+        while (iterator.next(tuple))
+        {
+            assert(tuple.isActive());
+            xs.push_back(tuple);
+        }
+        VOLT_TRACE("\n***** Input Table PreSort:\n '%s'",
+                   input_table->debug().c_str());
+        sort(xs.begin(), xs.end(), comparer);
     }
-    VOLT_TRACE("\n***** Input Table PreSort:\n '%s'",
-               input_table->debug().c_str());
-    sort(xs.begin(), xs.end(), TupleComparer(node->getSortExpressions(),
-                                             node->getSortDirections()));
 
     int tuple_ctr = 0;
     int tuple_skipped = 0;
@@ -55,6 +55,8 @@ namespace voltdb {
     class UndoLog;
     class ReadWriteSet;
     class LimitPlanNode;
+    class TempTable;
+    class TempTableLimits;
 
     /**
      *
@@ -62,7 +64,8 @@ namespace voltdb {
     class OrderByExecutor : public AbstractExecutor {
     public:
         OrderByExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node)
-            : AbstractExecutor(engine, abstract_node), limit_node(NULL)
+            : AbstractExecutor(engine, abstract_node), limit_node(NULL),
+              m_limits(NULL)
             { }
         ~OrderByExecutor();
 
@@ -70,9 +73,18 @@ namespace voltdb {
         bool p_init(AbstractPlanNode* abstract_node,
                     TempTableLimits* limits);
         bool p_execute(const NValueArray &params);
+        bool supportsSpilledInput(int inputIndex) const { return true; }
 
     private:
+        /**
+         * Sort an input that spilled to disk as sorted runs in spillable
+         * temp tables that are merged into the output
+         */
+        bool p_executeExternal(TempTable* input_table, Table* output_table,
+                               int limit, int offset);
+
         LimitPlanNode *limit_node;
+        TempTableLimits* m_limits;
     };
 
 }
@@ -72,6 +72,7 @@ class ProjectionExecutor : public AbstractExecutor {
         bool p_init(AbstractPlanNode*,
                     TempTableLimits* limits);
         bool p_execute(const NValueArray &params);
+        bool supportsSpilledInput(int inputIndex) const { return true; }
 
     private:
         TempTable* output_table;
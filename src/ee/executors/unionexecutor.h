@@ -65,6 +65,7 @@ class UnionExecutor : public AbstractExecutor {
         bool p_init(AbstractPlanNode*,
                     TempTableLimits* limits);
         bool p_execute(const NValueArray &params);
+        bool supportsSpilledInput(int inputIndex) const { return true; }
 };
 
 }
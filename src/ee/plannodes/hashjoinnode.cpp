@@ -0,0 +1,122 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "hashjoinnode.h"
+
+#include "common/SerializableEEException.h"
+#include "expressions/abstractexpression.h"
+#include "storage/table.h"
+
+#include <sstream>
+
+using namespace json_spirit;
+using namespace std;
+using namespace voltdb;
+
+HashJoinPlanNode::HashJoinPlanNode(CatalogId id)
+  : AbstractJoinPlanNode(id)
+{
+    // Do nothing
+}
+
+HashJoinPlanNode::HashJoinPlanNode()
+  : AbstractJoinPlanNode()
+{
+    // Do nothing
+}
+
+HashJoinPlanNode::~HashJoinPlanNode()
+{
+    for (int ii = 0; ii < m_outerKeys.size(); ii++) {
+        delete m_outerKeys[ii];
+    }
+    for (int ii = 0; ii < m_innerKeys.size(); ii++) {
+        delete m_innerKeys[ii];
+    }
+    // must delete the output table that was created in the
+    // executor (and stored here in the plannode).
+    delete getOutputTable();
+}
+
+PlanNodeType
+HashJoinPlanNode::getPlanNodeType() const
+{
+    return PLAN_NODE_TYPE_HASHJOIN;
+}
+
+const vector<AbstractExpression*>&
+HashJoinPlanNode::getOuterKeys() const
+{
+    return m_outerKeys;
+}
+
+const vector<AbstractExpression*>&
+HashJoinPlanNode::getInnerKeys() const
+{
+    return m_innerKeys;
+}
+
+string
+HashJoinPlanNode::debugInfo(const string& spacer) const
+{
+    ostringstream buffer;
+    buffer << AbstractJoinPlanNode::debugInfo(spacer);
+    buffer << spacer << "Keys[" << m_outerKeys.size() << "]\n";
+    for (int ii = 0; ii < m_outerKeys.size(); ii++) {
+        buffer << spacer << "Outer Key[" << ii << "]:\n";
+        buffer << m_outerKeys[ii]->debug(spacer + "   ");
+        buffer << spacer << "Inner Key[" << ii << "]:\n";
+        buffer << m_innerKeys[ii]->debug(spacer + "   ");
+    }
+    return buffer.str();
+}
+
+namespace
+{
+    void
+    loadKeys(Object& obj, const char* name, vector<AbstractExpression*>& keys)
+    {
+        Value keysValue = find_value(obj, name);
+        if (keysValue == Value::null)
+        {
+            throw SerializableEEException(VOLT_EE_EXCEPTION_TYPE_EEEXCEPTION,
+                                          string("HashJoinPlanNode::loadFromJSONObject:"
+                                                 " Couldn't find ") + name);
+        }
+        Array keysArray = keysValue.get_array();
+        for (int ii = 0; ii < keysArray.size(); ii++)
+        {
+            Object keyObject = keysArray[ii].get_obj();
+            keys.push_back(AbstractExpression::buildExpressionTree(keyObject));
+        }
+    }
+}
+
+void
+HashJoinPlanNode::loadFromJSONObject(Object& obj)
+{
+    AbstractJoinPlanNode::loadFromJSONObject(obj);
+
+    loadKeys(obj, "OUTER_KEYS", m_outerKeys);
+    loadKeys(obj, "INNER_KEYS", m_innerKeys);
+    if (m_outerKeys.empty() || m_outerKeys.size() != m_innerKeys.size())
+    {
+        throw SerializableEEException(VOLT_EE_EXCEPTION_TYPE_EEEXCEPTION,
+                                      "HashJoinPlanNode::loadFromJSONObject:"
+                                      " OUTER_KEYS and INNER_KEYS don't pair up");
+    }
+}
@@ -0,0 +1,62 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef VOLTDBHASHJOINNODE_H
+#define VOLTDBHASHJOINNODE_H
+
+#include "abstractjoinnode.h"
+#include "json_spirit/json_spirit.h"
+
+#include <string>
+#include <vector>
+
+namespace voltdb
+{
+
+class AbstractExpression;
+
+/**
+ * Equi-join of the two input tables. The executor hashes the smaller
+ * input on its key expressions and probes the hash with the tuples of
+ * the other. The outer keys are evaluated against the tuples of input
+ * table 0 and the inner keys, paired by position, against input table 1.
+ * The predicate is evaluated for each pair of tuples with equal keys.
+ */
+class HashJoinPlanNode : public AbstractJoinPlanNode
+{
+public:
+    HashJoinPlanNode(CatalogId id);
+    HashJoinPlanNode();
+    ~HashJoinPlanNode();
+
+    virtual PlanNodeType getPlanNodeType() const;
+
+    const std::vector<AbstractExpression*>& getOuterKeys() const;
+    const std::vector<AbstractExpression*>& getInnerKeys() const;
+
+    virtual std::string debugInfo(const std::string& spacer) const;
+
+protected:
+    virtual void loadFromJSONObject(json_spirit::Object& obj);
+
+    std::vector<AbstractExpression*> m_outerKeys;
+    std::vector<AbstractExpression*> m_innerKeys;
+};
+
+}
+
+#endif
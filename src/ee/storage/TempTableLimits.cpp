@@ -28,7 +28,8 @@ TempTableLimits::TempTableLimits()
     : m_currMemoryInBytes(0),
       m_logThreshold(-1),
       m_memoryLimit(1024 * 1024 * 100),
-      m_logLatch(false)
+      m_logLatch(false),
+      m_spill(NULL)
 {
 }
 
@@ -43,10 +44,10 @@ TempTableLimits::reduceAllocated(int bytes)
 }
 
 void
-TempTableLimits::increaseAllocated(int bytes)
+TempTableLimits::increaseAllocated(int bytes, bool enforceLimit)
 {
     m_currMemoryInBytes += bytes;
-    if (m_memoryLimit > 0 &&
+    if (enforceLimit && m_memoryLimit > 0 &&
         m_currMemoryInBytes > m_memoryLimit)
     {
         int limit_mb = static_cast<int>(m_memoryLimit / (1024 * 1024));
@@ -70,6 +71,12 @@ TempTableLimits::increaseAllocated(int bytes)
     }
 }
 
+bool
+TempTableLimits::wouldExceedLimit(int bytes) const
+{
+    return m_memoryLimit > 0 && m_currMemoryInBytes + bytes > m_memoryLimit;
+}
+
 const int64_t
 TempTableLimits::getAllocated() const
 {
@@ -99,3 +106,15 @@ TempTableLimits::getMemoryLimit() const
 {
     return m_memoryLimit;
 }
+
+void
+TempTableLimits::setSpill(TempTableSpill* spill)
+{
+    m_spill = spill;
+}
+
+TempTableSpill*
+TempTableLimits::getSpill() const
+{
+    return m_spill;
+}
@@ -22,10 +22,14 @@
 
 namespace voltdb
 {
+    class TempTableSpill;
+
     /**
      * Track the amount of memory used for the temp tables contained
      * within a plan fragment's executors.  Log or throw exceptions
-     * based on thresholds.
+     * based on thresholds.  When a spill file is set, temp tables
+     * marked spillable write their blocks to it instead of exceeding
+     * the memory limit.
      */
     class TempTableLimits
     {
@@ -36,16 +40,24 @@ namespace voltdb
          * Increase the amount of memory accumulated in temp tables.
          * Will log once at INFO level to the SQL instance if the log
          * threshold is set and it is crossed.  Will throw a
-         * SQLException when the memory limit is exceeded.
+         * SQLException when the memory limit is exceeded, unless
+         * enforceLimit is false.
          */
-        void increaseAllocated(int bytes);
+        void increaseAllocated(int bytes, bool enforceLimit = true);
         void reduceAllocated(int bytes);
 
+        /**
+         * True if allocating bytes more would exceed the memory limit
+         */
+        bool wouldExceedLimit(int bytes) const;
+
         const int64_t getAllocated() const;
         void setLogThreshold(int64_t threshold);
         const int64_t getLogThreshold() const;
         void setMemoryLimit(int64_t limit);
         const int64_t getMemoryLimit() const;
+        void setSpill(TempTableSpill* spill);
+        TempTableSpill* getSpill() const;
 
     private:
         // The current amount of memory used by temp tables for this
@@ -61,6 +73,9 @@ namespace voltdb
         // True if we have already generated a log message for
         // exceeding the log threshold and not yet dropped below it.
         bool m_logLatch;
+        // The site's spill file for spillable temp tables, NULL if
+        // spilling is disabled.
+        TempTableSpill* m_spill;
     };
 }
 
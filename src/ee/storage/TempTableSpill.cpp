@@ -0,0 +1,174 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "TempTableSpill.h"
+
+#include "common/SQLException.h"
+#include "logging/LogManager.h"
+
+#include <cerrno>
+#include <cstdio>
+#include <cstring>
+#include <fcntl.h>
+#include <stdlib.h>
+#include <unistd.h>
+
+using namespace voltdb;
+
+TempTableSpill::TempTableSpill(const std::string &directory, int64_t maxBytes)
+    : m_directory(directory),
+      m_maxBytes(maxBytes),
+      m_fd(-1),
+      m_end(0),
+      m_liveBytes(0),
+      m_bytesSpilled(0)
+{
+}
+
+TempTableSpill::~TempTableSpill()
+{
+    if (m_fd != -1) {
+        ::close(m_fd);
+    }
+}
+
+void
+TempTableSpill::open()
+{
+    std::string path = m_directory + "/temp_spill_XXXXXX";
+    char *name = new char[path.size() + 1];
+    ::strcpy(name, path.c_str());
+    m_fd = ::mkstemp(name);
+    const int error = errno;
+    if (m_fd != -1) {
+        // nobody else needs to find the file, and this way it can't
+        // outlive the site
+        ::unlink(name);
+    }
+    delete[] name;
+    if (m_fd == -1) {
+        char msg[1024];
+        snprintf(msg, 1024,
+                 "Unable to create a temp table spill file in %s: %s",
+                 m_directory.c_str(), strerror(error));
+        throw SQLException(SQLException::volt_temp_table_memory_overflow,
+                           msg);
+    }
+}
+
+int64_t
+TempTableSpill::write(const char *data, size_t length)
+{
+    if (m_end + static_cast<int64_t>(length) > m_maxBytes)
+    {
+        int limit_mb = static_cast<int>(m_maxBytes / (1024 * 1024));
+        char msg[1024];
+        snprintf(msg, 1024,
+                 "More than %d MB of temp table data spilled to disk while executing SQL.  Aborting.",
+                 limit_mb);
+        throw SQLException(SQLException::volt_temp_table_memory_overflow,
+                           msg);
+    }
+    if (m_fd == -1) {
+        open();
+    }
+
+    const int64_t offset = m_end;
+    size_t written = 0;
+    while (written < length) {
+        ssize_t result = ::pwrite(m_fd, data + written, length - written,
+                                  static_cast<off_t>(offset + written));
+        if (result == -1 && errno == EINTR) {
+            continue;
+        }
+        if (result <= 0) {
+            char msg[1024];
+            snprintf(msg, 1024,
+                     "Unable to spill temp table data to %s: %s",
+                     m_directory.c_str(), strerror(errno));
+            throw SQLException(SQLException::volt_temp_table_memory_overflow,
+                               msg);
+        }
+        written += static_cast<size_t>(result);
+    }
+
+    m_end += static_cast<int64_t>(length);
+    m_liveBytes += static_cast<int64_t>(length);
+    m_bytesSpilled += static_cast<int64_t>(length);
+    return offset;
+}
+
+void
+TempTableSpill::read(int64_t offset, char *data, size_t length)
+{
+    size_t done = 0;
+    while (done < length) {
+        ssize_t result = ::pread(m_fd, data + done, length - done,
+                                 static_cast<off_t>(offset + done));
+        if (result == -1 && errno == EINTR) {
+            continue;
+        }
+        if (result <= 0) {
+            char msg[1024];
+            snprintf(msg, 1024,
+                     "Unable to read spilled temp table data from %s: %s",
+                     m_directory.c_str(),
+                     result == 0 ? "unexpected end of file" : strerror(errno));
+            throw SQLException(SQLException::volt_temp_table_memory_overflow,
+                               msg);
+        }
+        done += static_cast<size_t>(result);
+    }
+}
+
+void
+TempTableSpill::release(size_t length)
+{
+    m_liveBytes -= static_cast<int64_t>(length);
+    if (m_liveBytes <= 0) {
+        // nothing in the file is needed anymore, start over at the
+        // beginning and give the disk space back
+        m_liveBytes = 0;
+        m_end = 0;
+        if (m_fd != -1 && ::ftruncate(m_fd, 0) != 0) {
+            // not fatal, the space is overwritten by the next spill
+            char msg[1024];
+            snprintf(msg, 1024,
+                     "Unable to truncate the temp table spill file in %s: %s",
+                     m_directory.c_str(), strerror(errno));
+            LogManager::getThreadLogger(LOGGERID_SQL)->log(LOGLEVEL_WARN, msg);
+        }
+    }
+}
+
+int64_t
+TempTableSpill::getBytesSpilled() const
+{
+    return m_bytesSpilled;
+}
+
+const std::string&
+TempTableSpill::getDirectory() const
+{
+    return m_directory;
+}
+
+int64_t
+TempTableSpill::getMaxBytes() const
+{
+    return m_maxBytes;
+}
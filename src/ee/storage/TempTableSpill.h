@@ -0,0 +1,88 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef _EE_STORAGE_TEMPTABLESPILL_H_
+#define _EE_STORAGE_TEMPTABLESPILL_H_
+
+#include <cstddef>
+#include <stdint.h>
+#include <string>
+
+namespace voltdb
+{
+    /**
+     * Scratch file of an execution site that the blocks of spillable
+     * temp tables are written to once their plan fragment reaches its
+     * temp table memory limit. Blocks are appended and read back by
+     * offset. The file is unlinked as soon as it is created and is
+     * truncated whenever no spilled block is live anymore, which is at
+     * the latest when the plan fragment that spilled them completes.
+     */
+    class TempTableSpill
+    {
+    public:
+        /**
+         * @param directory Directory the scratch file is created in
+         * @param maxBytes Most bytes the scratch file may hold
+         */
+        TempTableSpill(const std::string &directory, int64_t maxBytes);
+        ~TempTableSpill();
+
+        /**
+         * Append length bytes to the scratch file. Will throw a
+         * SQLException when the scratch file would exceed its size
+         * or can't be written.
+         * @return The offset the bytes were written at
+         */
+        int64_t write(const char *data, size_t length);
+
+        /**
+         * Read back length bytes written at offset. Will throw a
+         * SQLException when the scratch file can't be read.
+         */
+        void read(int64_t offset, char *data, size_t length);
+
+        /**
+         * Give back length bytes of spilled blocks that are no longer needed
+         */
+        void release(size_t length);
+
+        /** Bytes spilled since the site started */
+        int64_t getBytesSpilled() const;
+        const std::string& getDirectory() const;
+        int64_t getMaxBytes() const;
+
+    private:
+        void open();
+
+        // no copies, no assignment
+        TempTableSpill(TempTableSpill const&);
+        TempTableSpill operator=(TempTableSpill const&);
+
+        const std::string m_directory;
+        const int64_t m_maxBytes;
+        // Descriptor of the scratch file, -1 until something spills
+        int m_fd;
+        // Size of the scratch file, blocks are appended at the end
+        int64_t m_end;
+        // Bytes of the scratch file that hold blocks still in use
+        int64_t m_liveBytes;
+        int64_t m_bytesSpilled;
+    };
+}
+
+#endif // _EE_STORAGE_TEMPTABLESPILL_H_
@@ -199,6 +199,17 @@ public:
         m_freeList.clear();
     }
 
+    /**
+     * Mark the first count tuples of the block as used, after they
+     * were read back into it from a temp table spill file
+     */
+    inline void setUsedTuples(uint32_t count) {
+        assert(count <= m_tuplesPerBlock);
+        m_activeTuples = count;
+        m_nextFreeTuple = count;
+        m_freeList.clear();
+    }
+
     inline uint32_t unusedTupleBoundry() {
         return m_nextFreeTuple;
     }
@@ -87,16 +87,19 @@ public:
 private:
     // Get an iterator via table->iterator()
     TableIterator(Table *, TBMapI);
-    TableIterator(Table *, std::vector<TBPtr>::iterator);
+    TableIterator(Table *, std::vector<TBPtr>::iterator, size_t spilledBlocks = 0);
 
 
     bool persistentNext(TableTuple &out);
     bool tempNext(TableTuple &out);
 
     void reset(TBMapI);
-    void reset(std::vector<TBPtr>::iterator);
+    void reset(std::vector<TBPtr>::iterator, size_t spilledBlocks = 0);
     bool continuationPredicate();
 
+    // Next block of a temp table that spilled, defined in temptable.cpp
+    TBPtr nextTempBlock();
+
     /*
      * Configuration parameter that controls whether the table iterator
      * stops when it has found the expected number of tuples or when it has iterated
@@ -120,9 +123,15 @@ private:
     TBPtr m_currentBlock;
     std::vector<TBPtr>::iterator m_tempBlockIterator;
     bool m_tempTableIterator;
+    // Number of blocks of the temp table in its spill file, and the
+    // position and buffer used to read them back when there are any
+    size_t m_spilledBlocks;
+    size_t m_tempBlockIndex;
+    TBPtr m_spillBuffer;
 };
 
-inline TableIterator::TableIterator(Table *parent, std::vector<TBPtr>::iterator start)
+inline TableIterator::TableIterator(Table *parent, std::vector<TBPtr>::iterator start,
+                                    size_t spilledBlocks)
     : m_table(parent),
       m_dataPtr(NULL),
       m_location(0),
@@ -131,7 +140,9 @@ inline TableIterator::TableIterator(Table *parent, std::vector<TBPtr>::iterator
       m_foundTuples(0), m_tupleLength(parent->m_tupleLength),
       m_tuplesPerBlock(parent->m_tuplesPerBlock), m_currentBlock(NULL),
       m_tempBlockIterator(start),
-      m_tempTableIterator(true)
+      m_tempTableIterator(true),
+      m_spilledBlocks(spilledBlocks),
+      m_tempBlockIndex(0)
     {
     }
 
@@ -146,12 +157,18 @@ inline TableIterator::TableIterator(Table *parent, TBMapI start)
       m_activeTuples((int) m_table->m_tupleCount),
       m_foundTuples(0), m_tupleLength(parent->m_tupleLength),
       m_tuplesPerBlock(parent->m_tuplesPerBlock), m_currentBlock(NULL),
-      m_tempTableIterator(false)
+      m_tempTableIterator(false),
+      m_spilledBlocks(0),
+      m_tempBlockIndex(0)
     {
     }
 
-inline void TableIterator::reset(std::vector<TBPtr>::iterator start) {
+inline void TableIterator::reset(std::vector<TBPtr>::iterator start, size_t spilledBlocks) {
     m_tempBlockIterator = start;
+    m_spilledBlocks = spilledBlocks;
+    m_tempBlockIndex = 0;
+    // copies of a reset iterator each read back into a buffer of their own
+    m_spillBuffer = NULL;
     m_dataPtr= NULL;
     m_location = 0;
     m_blockOffset = 0;
@@ -232,10 +249,14 @@ inline bool TableIterator::tempNext(TableTuple &out) {
         if (m_currentBlock == NULL ||
             m_blockOffset >= m_currentBlock->unusedTupleBoundry())
         {
-            m_currentBlock = *m_tempBlockIterator;
+            if (m_spilledBlocks == 0) {
+                m_currentBlock = *m_tempBlockIterator;
+                m_tempBlockIterator++;
+            } else {
+                m_currentBlock = nextTempBlock();
+            }
             m_dataPtr = m_currentBlock->address();
             m_blockOffset = 0;
-            m_tempBlockIterator++;
         } else {
             m_dataPtr += m_tupleLength;
         }
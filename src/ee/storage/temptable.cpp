@@ -49,6 +49,7 @@
 #include "common/serializeio.h"
 #include "common/debuglog.h"
 #include "storage/TableStats.h"
+#include "storage/TempTableSpill.h"
 
 #define TABLE_BLOCKSIZE 131072
 
@@ -57,11 +58,21 @@ namespace voltdb {
 TempTable::TempTable()
   : Table(TABLE_BLOCKSIZE),
     m_iter(this, m_data.begin()),
-    m_limits(NULL)
+    m_limits(NULL),
+    m_spillable(false)
 {
 }
 
-TempTable::~TempTable() {}
+TempTable::~TempTable() {
+    if (!m_spilledBlocks.empty()) {
+        releaseSpilledBlocks();
+    }
+    // the limits outlive the temp tables of their plan fragment once
+    // it initialized, give back what the table was charged for
+    if (m_limits && !m_data.empty()) {
+        m_limits->reduceAllocated(static_cast<int>(m_data.size()) * m_tableAllocationSize);
+    }
+}
 
 // ------------------------------------------------------------------
 // OPERATIONS
@@ -87,4 +98,59 @@ std::string TempTable::tableType() const {
 }
 
 voltdb::TableStats* TempTable::getTableStats() { return NULL; }
+
+void TempTable::spillBlock(TBPtr block) {
+    SpilledBlock spilled;
+    spilled.tupleCount = block->unusedTupleBoundry();
+    spilled.offset = m_limits->getSpill()->write(block->address(),
+                                                 spilled.tupleCount * m_tupleLength);
+    m_spilledBlocks.push_back(spilled);
+    block->reset();
+}
+
+void TempTable::startSpilling() {
+    // give back the memory of all but one block so that the tables
+    // that are still filled have room
+    for (size_t ii = 0; ii < m_data.size(); ii++) {
+        spillBlock(m_data[ii]);
+    }
+    while (m_data.size() > 1) {
+        m_data.pop_back();
+        m_limits->reduceAllocated(m_tableAllocationSize);
+    }
+}
+
+TBPtr TempTable::readSpilledBlock(size_t index, TBPtr buffer) {
+    if (buffer == NULL) {
+        // not counted against the limits, there is one per iterator
+        // reading the table
+        buffer = TBPtr(new (ThreadLocalPool::getExact(sizeof(TupleBlock))->malloc())
+                       TupleBlock(this, TBBucketPtr()));
+    }
+    const SpilledBlock &spilled = m_spilledBlocks[index];
+    m_limits->getSpill()->read(spilled.offset, buffer->address(),
+                               spilled.tupleCount * m_tupleLength);
+    buffer->setUsedTuples(spilled.tupleCount);
+    return buffer;
+}
+
+void TempTable::releaseSpilledBlocks() {
+    size_t bytes = 0;
+    for (size_t ii = 0; ii < m_spilledBlocks.size(); ii++) {
+        bytes += m_spilledBlocks[ii].tupleCount * m_tupleLength;
+    }
+    m_limits->getSpill()->release(bytes);
+    m_spilledBlocks.clear();
+}
+
+TBPtr TableIterator::nextTempBlock() {
+    TempTable *table = static_cast<TempTable*>(m_table);
+    // the spilled blocks come first, then the block appended to since
+    const size_t index = m_tempBlockIndex++;
+    if (index < m_spilledBlocks) {
+        m_spillBuffer = table->readSpilledBlock(index, m_spillBuffer);
+        return m_spillBuffer;
+    }
+    return table->m_data.back();
+}
 }
@@ -83,12 +83,12 @@ class TempTable : public Table {
   public:
     // Return the table iterator by reference
     TableIterator& iterator() {
-        m_iter.reset(m_data.begin());
+        m_iter.reset(m_data.begin(), m_spilledBlocks.size());
         return m_iter;
     }
 
     TableIterator* makeIterator() {
-        return new TableIterator(this, m_data.begin());
+        return new TableIterator(this, m_data.begin(), m_spilledBlocks.size());
     }
 
     virtual ~TempTable();
@@ -130,6 +130,38 @@ class TempTable : public Table {
     void getNextFreeTupleInlined(TableTuple *tuple);
     voltdb::TableStats* getTableStats();
 
+    /**
+     * Let the table write full blocks to the spill file of its limits
+     * instead of exceeding the memory limit.  Iterators read spilled
+     * blocks back into a buffer of their own, so only tables whose
+     * readers don't hold on to tuples of a block once they moved past
+     * it may be made spillable.  Has no effect if the limits have no
+     * spill file.
+     */
+    void setSpillable(bool spillable) {
+        m_spillable = spillable;
+    }
+
+    bool isSpillable() const {
+        return m_spillable && m_limits != NULL && m_limits->getSpill() != NULL;
+    }
+
+    /**
+     * Write the blocks of a spillable table to the spill file to give
+     * back their memory, keeping one to append to.  Has no effect if
+     * the table isn't spillable.
+     */
+    void spill() {
+        if (isSpillable() && m_tupleCount > 0) {
+            startSpilling();
+        }
+    }
+
+    /** Number of blocks of the table that were written to the spill file */
+    size_t spilledBlockCount() const {
+        return m_spilledBlocks.size();
+    }
+
     // ptr to global integer tracking temp table memory allocated per frag
     // should be null for persistent tables
     TempTableLimits* m_limits;
@@ -145,6 +177,14 @@ class TempTable : public Table {
     TBPtr allocateNextBlock();
     void nextFreeTuple(TableTuple *tuple);
 
+    /** Write a full block to the spill file and reuse it */
+    void spillBlock(TBPtr block);
+    /** Write all blocks to the spill file and keep one to append to */
+    void startSpilling();
+    /** Read a spilled block back into buffer, allocated if NULL */
+    TBPtr readSpilledBlock(size_t index, TBPtr buffer);
+    void releaseSpilledBlocks();
+
     virtual void onSetColumns() {
         m_data.clear();
     };
@@ -152,6 +192,18 @@ class TempTable : public Table {
   private:
     // pointers to chunks of data. Specific to table impl. Don't leak this type.
     std::vector<TBPtr> m_data;
+
+    // Location of a block in the spill file
+    struct SpilledBlock {
+        int64_t offset;
+        uint32_t tupleCount;
+    };
+
+    // Blocks written to the spill file, in insertion order. Once a
+    // table spilled the only block left in m_data is the one being
+    // appended to, which follows them.
+    std::vector<SpilledBlock> m_spilledBlocks;
+    bool m_spillable;
 };
 
 inline void TempTable::insertTupleNonVirtualWithDeepCopy(TableTuple &source, Pool *pool) {
@@ -208,13 +260,17 @@ inline void TempTable::deleteAllTuplesNonVirtual(bool freeAllocatedStrings) {
     // Don't call deleteTuple() here.
     const uint16_t uninlinedStringColumnCount = m_schema->getUninlinedObjectColumnCount();
     if (freeAllocatedStrings && uninlinedStringColumnCount > 0) {
-        TableIterator iter(this, m_data.begin());
+        TableIterator iter(this, m_data.begin(), m_spilledBlocks.size());
         while (iter.hasNext()) {
             iter.next(m_tmpTarget1);
             m_tmpTarget1.freeObjectColumns();
         }
     }
 
+    if (!m_spilledBlocks.empty()) {
+        releaseSpilledBlocks();
+    }
+
     m_tupleCount = 0;
     while (m_data.size() > 1) {
         m_data.pop_back();
@@ -234,7 +290,10 @@ inline TBPtr TempTable::allocateNextBlock() {
     m_data.push_back(block);
 
     if (m_limits) {
-        m_limits->increaseAllocated(m_tableAllocationSize);
+        // a spillable table keeps the block it appends to even past
+        // the limit, all blocks it fills after that are spilled
+        m_limits->increaseAllocated(m_tableAllocationSize,
+                                    !(m_data.size() == 1 && isSpillable()));
     }
 
     return block;
@@ -248,7 +307,17 @@ inline void TempTable::nextFreeTuple(TableTuple *tuple) {
 
     TBPtr block = m_data.back();
     if (!block->hasFreeTuples()) {
-        block = allocateNextBlock();
+        // once a table spilled it keeps spilling, its blocks are
+        // read back in the order they were filled
+        if (isSpillable() && !m_spilledBlocks.empty()) {
+            spillBlock(block);
+        } else if (isSpillable() &&
+                   m_limits->wouldExceedLimit(m_tableAllocationSize)) {
+            startSpilling();
+            block = m_data.back();
+        } else {
+            block = allocateNextBlock();
+        }
     }
 
     std::pair<char*, int> pair = block->nextFreeTuple();
@@ -342,6 +342,10 @@ bool VoltDBIPC::execute(struct ipc_command *cmd) {
           threadLocalPoolAllocations();
           result = kErrorCode_None;
           break;
+      case 26:
+          tempTableBytesSpilled();
+          result = kErrorCode_None;
+          break;
       default:
         result = stub(cmd);
     }
@@ -1110,6 +1114,14 @@ void VoltDBIPC::threadLocalPoolAllocations() {
     writeOrDie(m_fd, (unsigned char*)response, 9);
 }
 
+void VoltDBIPC::tempTableBytesSpilled() {
+    int64_t bytesSpilled = m_engine->getTempTableBytesSpilled();
+    char response[9];
+    response[0] = kErrorCode_Success;
+    *reinterpret_cast<int64_t*>(&response[1]) = htonll(bytesSpilled);
+    writeOrDie(m_fd, (unsigned char*)response, 9);
+}
+
 int64_t VoltDBIPC::getQueuedExportBytes(int32_t partitionId, std::string signature) {
     m_reusedResultBuffer[0] = kErrorCode_getQueuedExportBytes;
     *reinterpret_cast<int32_t*>(&m_reusedResultBuffer[1]) = htonl(partitionId);
@@ -125,6 +125,8 @@ private:
 
     void threadLocalPoolAllocations();
 
+    void tempTableBytesSpilled();
+
     void sendException( int8_t errorCode);
 
     int8_t activateTableStream(struct ipc_command *cmd);
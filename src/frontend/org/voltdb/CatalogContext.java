@@ -27,6 +27,7 @@ import org.voltdb.catalog.Database;
 import org.voltdb.catalog.Procedure;
 import org.voltdb.catalog.Site;
 import org.voltdb.catalog.SnapshotSchedule;
+import org.voltdb.compiler.AdHocPlanCache;
 import org.voltdb.dtxn.SiteTracker;
 import org.voltdb.logging.VoltLogger;
 import org.voltdb.utils.InMemoryJarfile;
@@ -57,6 +58,8 @@ public class CatalogContext {
     // PRIVATE
     //private final String m_path;
     private final InMemoryJarfile m_jarfile;
+    // carried over (and emptied) by update() so the counters survive
+    private AdHocPlanCache m_adhocPlanCache;
 
     public CatalogContext(
             long transactionId,
@@ -114,6 +117,8 @@ public class CatalogContext {
         // count partitions
         numberOfPartitions = cluster.getPartitions().size();
         catalogVersion = version;
+
+        m_adhocPlanCache = new AdHocPlanCache(catalogVersion);
     }
 
     public CatalogContext update(
@@ -145,6 +150,9 @@ public class CatalogContext {
                     realDepCRC,
                     catalogVersion + incValue,
                     catalogCRC);
+        // plans made against this catalog are stale from here on
+        m_adhocPlanCache.invalidate(retval.catalogVersion);
+        retval.m_adhocPlanCache = m_adhocPlanCache;
         return retval;
     }
 
@@ -236,4 +244,11 @@ public class CatalogContext {
     public long getCatalogCRC() {
         return catalogCRC;
     }
+
+    /**
+     * Cache of ad hoc plans valid against this catalog.
+     */
+    public AdHocPlanCache getAdHocPlanCache() {
+        return m_adhocPlanCache;
+    }
 }
@@ -24,6 +24,7 @@ import java.security.NoSuchAlgorithmException;
 import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONString;
 import org.json_voltpatches.JSONStringer;
+import org.json_voltpatches.JSONWriter;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.exceptions.SerializableException;
 import org.voltdb.messaging.FastDeserializer;
@@ -255,31 +256,7 @@ public class ClientResponseImpl implements FastSerializable, ClientResponse, JSO
     public String toJSONString() {
         JSONStringer js = new JSONStringer();
         try {
-            js.object();
-
-            js.key(JSON_STATUS_KEY);
-            js.value(status);
-            js.key(JSON_APPSTATUS_KEY);
-            js.value(appStatus);
-            js.key(JSON_STATUSSTRING_KEY);
-            js.value(statusString);
-            js.key(JSON_APPSTATUSSTRING_KEY);
-            js.value(appStatusString);
-            js.key(JSON_EXCEPTION_KEY);
-            if (m_exception != null) {
-                js.value(m_exception);
-            }
-            else {
-                js.value(null);
-            }
-            js.key(JSON_RESULTS_KEY);
-            js.array();
-            for (VoltTable o : results) {
-                js.value(o);
-            }
-            js.endArray();
-
-            js.endObject();
+            writeJSON(js);
         }
         catch (JSONException e) {
             e.printStackTrace();
@@ -288,6 +265,40 @@ public class ClientResponseImpl implements FastSerializable, ClientResponse, JSO
         return js.toString();
     }
 
+    /**
+     * Write the JSON representation of this response to a writer, encoding the
+     * rows of each result table as they are read instead of building strings.
+     * @param js Writer positioned where a value is expected.
+     * @throws JSONException
+     */
+    public void writeJSON(JSONWriter js) throws JSONException {
+        js.object();
+
+        js.key(JSON_STATUS_KEY);
+        js.value(status);
+        js.key(JSON_APPSTATUS_KEY);
+        js.value(appStatus);
+        js.key(JSON_STATUSSTRING_KEY);
+        js.value(statusString);
+        js.key(JSON_APPSTATUSSTRING_KEY);
+        js.value(appStatusString);
+        js.key(JSON_EXCEPTION_KEY);
+        if (m_exception != null) {
+            js.value(m_exception);
+        }
+        else {
+            js.value(null);
+        }
+        js.key(JSON_RESULTS_KEY);
+        js.array();
+        for (VoltTable o : results) {
+            o.writeJSON(js);
+        }
+        js.endArray();
+
+        js.endObject();
+    }
+
     /**
      * @return MD5 hash as int of the tables in the result. Only hashes first bits of big results.
      */
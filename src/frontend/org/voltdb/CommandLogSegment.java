@@ -0,0 +1,304 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.voltdb.logging.VoltLogger;
+import org.voltdb.messaging.FastDeserializer;
+
+/**
+ * <p>On disk format of a command log segment, shared by the writer
+ * (FileCommandLog) and the replay side (FileCommandLogReinitiator).</p>
+ *
+ * <p>A segment is a preallocated, zero filled file. It starts with a header
+ * holding a magic number, the format version, the segment id and the newest
+ * txnId seen across all initiators when the segment was opened. Group commits
+ * follow as batches:</p>
+ *
+ * <pre>
+ * int magic | int payload length | int CRC32 of payload | payload
+ * </pre>
+ *
+ * <p>The payload is a sequence of records, each a type byte and a length
+ * followed by the body. Reading stops at the first batch without the magic
+ * number or with a bad CRC, which is either unwritten preallocated space or
+ * a batch torn by a crash before its fsync completed.</p>
+ */
+class CommandLogSegment {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    static final int SEGMENT_MAGIC = 0x56434c53;
+    static final int BATCH_MAGIC = 0x56434c42;
+    static final int VERSION = 1;
+    static final int SEGMENT_HEADER_SIZE = 4 + 4 + 8 + 8;
+    static final int BATCH_HEADER_SIZE = 4 + 4 + 4;
+
+    static final byte TASK_RECORD = 1;
+    static final byte FAULT_RECORD = 2;
+    // txnId, initiator site, receiving site, partition, single partition flag
+    static final int TASK_RECORD_HEADER_SIZE = 8 + 4 + 4 + 4 + 1;
+
+    private static final String PREFIX = "command_log_";
+    private static final String SUFFIX = ".seg";
+
+    final File m_file;
+    final long m_segmentId;
+    final long m_startTxnId;
+
+    CommandLogSegment(File file, long segmentId, long startTxnId) {
+        m_file = file;
+        m_segmentId = segmentId;
+        m_startTxnId = startTxnId;
+    }
+
+    /**
+     * A logged InitiateTaskMessage
+     */
+    static class Task {
+        final long txnId;
+        final int initiatorSiteId;
+        final int siteId;
+        final int partitionId;
+        final boolean isSinglePartition;
+        final byte invocation[];
+
+        Task(long txnId, int initiatorSiteId, int siteId, int partitionId,
+             boolean isSinglePartition, byte invocation[]) {
+            this.txnId = txnId;
+            this.initiatorSiteId = initiatorSiteId;
+            this.siteId = siteId;
+            this.partitionId = partitionId;
+            this.isSinglePartition = isSinglePartition;
+            this.invocation = invocation;
+        }
+
+        StoredProcedureInvocation getInvocation() throws IOException {
+            FastDeserializer fds = new FastDeserializer(invocation);
+            return fds.readObject(StoredProcedureInvocation.class);
+        }
+    }
+
+    interface RecordHandler {
+        void task(Task task);
+        void fault(long faultSequenceNumber, List<Integer> failedSites, List<Long> faultedTxns);
+    }
+
+    static File fileFor(File dir, long segmentId) {
+        return new File(dir, PREFIX + segmentId + SUFFIX);
+    }
+
+    /**
+     * All segment files in a directory, including preallocated ones that were never opened
+     */
+    static File[] listFiles(File dir) {
+        File files[] = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File f) {
+                return f.isFile() && f.getName().startsWith(PREFIX) && f.getName().endsWith(SUFFIX);
+            }
+        });
+        return files == null ? new File[0] : files;
+    }
+
+    /**
+     * Find the segments in a directory that have a valid header, ordered by segment id.
+     * Preallocated segments that were never opened for writing are ignored.
+     */
+    static List<CommandLogSegment> scan(File dir) throws IOException {
+        ArrayList<CommandLogSegment> segments = new ArrayList<CommandLogSegment>();
+        for (File f : listFiles(dir)) {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            FileInputStream fis = new FileInputStream(f);
+            try {
+                FileChannel fc = fis.getChannel();
+                while (header.hasRemaining() && fc.read(header) > 0) {}
+            } finally {
+                fis.close();
+            }
+            header.flip();
+            if (header.remaining() < SEGMENT_HEADER_SIZE || header.getInt() != SEGMENT_MAGIC) {
+                continue;
+            }
+            final int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Command log segment " + f + " has unsupported version " + version);
+            }
+            segments.add(new CommandLogSegment(f, header.getLong(), header.getLong()));
+        }
+
+        Collections.sort(segments, new Comparator<CommandLogSegment>() {
+            @Override
+            public int compare(CommandLogSegment o1, CommandLogSegment o2) {
+                return o1.m_segmentId < o2.m_segmentId ? -1 : (o1.m_segmentId > o2.m_segmentId ? 1 : 0);
+            }
+        });
+        return segments;
+    }
+
+    /**
+     * Create a zero filled file of the specified size and force it to disk so that
+     * later appends don't have to allocate blocks or update the file length.
+     */
+    static void preallocate(File file, long size) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel fc = raf.getChannel();
+            ByteBuffer zeros = ByteBuffer.allocateDirect(1024 * 1024);
+            long written = 0;
+            while (written < size) {
+                zeros.clear();
+                if (size - written < zeros.capacity()) {
+                    zeros.limit((int)(size - written));
+                }
+                while (zeros.hasRemaining()) {
+                    written += fc.write(zeros, written);
+                }
+            }
+            fc.force(true);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Write the segment header to the start of a preallocated segment
+     */
+    static void writeHeader(FileChannel fc, long segmentId, long startTxnId) throws IOException {
+        ByteBuffer header = ByteBuffer.allocateDirect(SEGMENT_HEADER_SIZE);
+        header.putInt(SEGMENT_MAGIC);
+        header.putInt(VERSION);
+        header.putLong(segmentId);
+        header.putLong(startTxnId);
+        header.flip();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += fc.write(header, position);
+        }
+    }
+
+    /**
+     * Fill in the batch header for a buffer whose payload starts at BATCH_HEADER_SIZE
+     * and ends at the buffer's position. The buffer must be array backed.
+     */
+    static void sealBatch(ByteBuffer batch) {
+        final int payloadLength = batch.position() - BATCH_HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(batch.array(), batch.arrayOffset() + BATCH_HEADER_SIZE, payloadLength);
+        batch.putInt(0, BATCH_MAGIC);
+        batch.putInt(4, payloadLength);
+        batch.putInt(8, (int)crc.getValue());
+    }
+
+    /**
+     * Read every intact batch in the segment and hand its records to the handler
+     */
+    void read(RecordHandler handler) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(m_file, "r");
+        try {
+            FileChannel fc = raf.getChannel();
+            long position = SEGMENT_HEADER_SIZE;
+            final long size = fc.size();
+            ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER_SIZE);
+            while (position + BATCH_HEADER_SIZE <= size) {
+                header.clear();
+                readFully(fc, header, position);
+                header.flip();
+                if (header.getInt() != BATCH_MAGIC) {
+                    break;
+                }
+                final int length = header.getInt();
+                final int expectedCRC = header.getInt();
+                if (length < 0 || position + BATCH_HEADER_SIZE + length > size) {
+                    LOG.warn("Truncated batch at offset " + position + " in command log segment " + m_file);
+                    break;
+                }
+
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(fc, payload, position + BATCH_HEADER_SIZE);
+                CRC32 crc = new CRC32();
+                crc.update(payload.array(), 0, length);
+                if ((int)crc.getValue() != expectedCRC) {
+                    LOG.warn("Bad CRC for batch at offset " + position + " in command log segment " + m_file);
+                    break;
+                }
+                payload.flip();
+                readRecords(payload, handler);
+                position += BATCH_HEADER_SIZE + length;
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void readFully(FileChannel fc, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            final int read = fc.read(buf, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of command log segment");
+            }
+            position += read;
+        }
+    }
+
+    private static void readRecords(ByteBuffer payload, RecordHandler handler) throws IOException {
+        while (payload.hasRemaining()) {
+            final byte type = payload.get();
+            final int length = payload.getInt();
+            final int end = payload.position() + length;
+            if (type == TASK_RECORD) {
+                final long txnId = payload.getLong();
+                final int initiatorSiteId = payload.getInt();
+                final int siteId = payload.getInt();
+                final int partitionId = payload.getInt();
+                final boolean isSinglePartition = payload.get() == 1;
+                final byte invocation[] = new byte[end - payload.position()];
+                payload.get(invocation);
+                handler.task(new Task(txnId, initiatorSiteId, siteId, partitionId,
+                                      isSinglePartition, invocation));
+            } else if (type == FAULT_RECORD) {
+                final long faultSequenceNumber = payload.getLong();
+                final int failedSiteCount = payload.getInt();
+                ArrayList<Integer> failedSites = new ArrayList<Integer>(failedSiteCount);
+                for (int ii = 0; ii < failedSiteCount; ii++) {
+                    failedSites.add(payload.getInt());
+                }
+                final int faultedTxnCount = payload.getInt();
+                ArrayList<Long> faultedTxns = new ArrayList<Long>(faultedTxnCount);
+                for (int ii = 0; ii < faultedTxnCount; ii++) {
+                    faultedTxns.add(payload.getLong());
+                }
+                handler.fault(faultSequenceNumber, failedSites, faultedTxns);
+            } else {
+                throw new IOException("Unknown command log record type " + type);
+            }
+            payload.position(end);
+        }
+    }
+}
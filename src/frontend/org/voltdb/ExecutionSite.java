@@ -93,6 +93,7 @@ import org.voltdb.utils.DBBPool;
 import org.voltdb.utils.Encoder;
 import org.voltdb.utils.EstTime;
 import org.voltdb.utils.LogKeys;
+import org.voltdb.utils.SystemStatsCollector;
 
 /**
  * The main executor of transactional work in the system. Controls running
@@ -606,7 +607,8 @@ implements Runnable, SiteTransactionConnection, SiteProcedureConnection
                                              tupleAllocatedMem,
                                              indexMem,
                                              stringMem,
-                                             ee.getThreadLocalPoolAllocations());
+                                             ee.getThreadLocalPoolAllocations(),
+                                             ee.getTempTableBytesSpilled());
             }
         }
     }
@@ -1009,6 +1011,7 @@ implements Runnable, SiteTransactionConnection, SiteProcedureConnection
         if (getSiteId() < 1000) name += "0";
         name += String.valueOf(getSiteId());
         Thread.currentThread().setName(name);
+        SystemStatsCollector.registerThread(SystemStatsCollector.ThreadType.SITE);
 
         // Commenting this out when making logging more abstrace (is that ok?)
         //NDC.push("ExecutionSite - " + getSiteId() + " index " + siteIndex);
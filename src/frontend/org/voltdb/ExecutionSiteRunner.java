@@ -20,6 +20,7 @@ package org.voltdb;
 import java.util.HashSet;
 
 import org.voltdb.logging.VoltLogger;
+import org.voltdb.messaging.LockFreeSiteMailbox;
 import org.voltdb.messaging.Mailbox;
 
 /**
@@ -58,8 +59,16 @@ public class ExecutionSiteRunner implements Runnable {
 
     @Override
     public void run() {
-        Mailbox mailbox = VoltDB.instance().getMessenger()
-        .createMailbox(m_siteId, VoltDB.DTXN_MAILBOX_ID, true);
+        Mailbox mailbox;
+        if (VoltDB.instance().getConfig().m_lockFreeSiteMailbox) {
+            mailbox = new LockFreeSiteMailbox(VoltDB.instance().getHostMessenger(),
+                                              m_siteId, VoltDB.DTXN_MAILBOX_ID, true);
+            VoltDB.instance().getMessenger()
+            .createMailbox(m_siteId, VoltDB.DTXN_MAILBOX_ID, mailbox);
+        } else {
+            mailbox = VoltDB.instance().getMessenger()
+            .createMailbox(m_siteId, VoltDB.DTXN_MAILBOX_ID, true);
+        }
 
         m_siteObj =
             new ExecutionSite(VoltDB.instance(),
@@ -0,0 +1,556 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.zookeeper_voltpatches.CreateMode;
+import org.apache.zookeeper_voltpatches.KeeperException;
+import org.apache.zookeeper_voltpatches.ZooDefs.Ids;
+import org.apache.zookeeper_voltpatches.ZooKeeper;
+import org.voltdb.dtxn.SiteTracker;
+import org.voltdb.logging.VoltLogger;
+import org.voltdb.messaging.InitiateTaskMessage;
+
+/**
+ * <p>Command log that writes to preallocated segment files in the command log
+ * directory. See CommandLogSegment for the file format.</p>
+ *
+ * <p>log() copies the invocation, with its parameters still serialized as
+ * they arrived, into an in memory batch. A single writer thread commits a
+ * batch once the oldest record in it has waited for the fsync interval, or
+ * earlier when maxtxns records are waiting or a fault has been logged. A
+ * commit is one positional write from a reused direct buffer followed by one
+ * force(), so the cost of the fsync is shared by every transaction in the
+ * window.</p>
+ *
+ * <p>In synchronous mode the durability flag of every logged task is cleared
+ * on log() and set once its batch is on disk, which holds the transaction in
+ * the RestrictedPriorityQueue until then. In asynchronous mode transactions
+ * run immediately and the last fsync interval can be lost.</p>
+ *
+ * <p>When the segments grow past the configured log size a truncation
+ * snapshot is requested, and segments whose transactions are all covered by
+ * a completed truncation snapshot are deleted.</p>
+ */
+public class FileCommandLog implements CommandLog, SnapshotCompletionInterest {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    private static final int INITIAL_BATCH_SIZE = 256 * 1024;
+    // Don't hang on to the occasional huge batch
+    private static final int MAX_RETAINED_BATCH_SIZE = 8 * 1024 * 1024;
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    private static final int SEGMENTS_PER_LOG = 8;
+
+    private static class ClosedSegment {
+        final File m_file;
+        final long m_maxTxnId;
+        final long m_size;
+
+        ClosedSegment(File file, long maxTxnId, long size) {
+            m_file = file;
+            m_maxTxnId = maxTxnId;
+            m_size = size;
+        }
+    }
+
+    private volatile boolean m_initialized = false;
+    private File m_dir;
+    private long m_fsyncIntervalNanos;
+    private int m_maxTxns;
+    private long m_segmentSize;
+    private long m_logSize;
+    private boolean m_synchronous;
+    private String m_truncationSnapshotPath;
+    private SiteTracker m_siteTracker;
+
+    /*
+     * The batch being filled by log() and the state that goes with it, guarded by this
+     */
+    private ByteBuffer m_batch;
+    private ByteBuffer m_spareBatch;
+    private int m_batchTxns;
+    private long m_batchMaxTxnId;
+    private long m_batchStartNanos;
+    private ArrayList<AtomicBoolean> m_batchFlags = new ArrayList<AtomicBoolean>();
+    private ArrayList<AtomicBoolean> m_spareFlags = new ArrayList<AtomicBoolean>();
+    private ArrayList<Semaphore> m_batchFaults = new ArrayList<Semaphore>();
+    private ArrayList<Semaphore> m_spareFaults = new ArrayList<Semaphore>();
+    private long m_maxLastSeenTxnId;
+    private long m_faultSequenceNumber = 0;
+    private boolean m_shutdown;
+
+    /*
+     * Owned by the writer thread
+     */
+    private Thread m_writer;
+    private ByteBuffer m_direct;
+    private RandomAccessFile m_segment;
+    private FileChannel m_channel;
+    private File m_segmentFile;
+    private long m_segmentId;
+    private long m_position;
+    private long m_segmentMaxTxnId;
+    private ExecutorService m_preallocator;
+    private Future<File> m_nextSegment;
+
+    // Segments waiting for a truncation snapshot, guarded by itself
+    private final ArrayDeque<ClosedSegment> m_closedSegments = new ArrayDeque<ClosedSegment>();
+    private long m_closedBytes = 0;
+    private volatile boolean m_truncationRequested = false;
+
+    @Override
+    public void init(CatalogContext context, long txnId) {
+        org.voltdb.catalog.CommandLog config = context.cluster.getLogconfig().get("log");
+        m_siteTracker = context.siteTracker;
+
+        final long logSize = config.getLogsize() * 1024L * 1024L;
+        final File dir = new File(config.getLogpath());
+        final String snapshotPath = config.getInternalsnapshotpath();
+        new File(snapshotPath).mkdirs();
+        try {
+            init(dir, txnId, config.getFsyncinterval(), config.getMaxtxns(),
+                 Math.max(MIN_SEGMENT_SIZE, logSize / SEGMENTS_PER_LOG), logSize,
+                 config.getSynchronous(), snapshotPath);
+        } catch (IOException e) {
+            VoltDB.crashLocalVoltDB("Unable to initialize the command log in " + dir, true, e);
+        }
+        VoltDB.instance().getSnapshotCompletionMonitor().addInterest(this);
+    }
+
+    /**
+     * @param truncationSnapshotPath
+     *            Where to request truncation snapshots, or null to never
+     *            request them
+     */
+    void init(File dir, long txnId, int fsyncIntervalMs, int maxTxns,
+              long segmentSize, long logSize, boolean synchronous,
+              String truncationSnapshotPath) throws IOException {
+        m_dir = dir;
+        m_fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, fsyncIntervalMs));
+        m_maxTxns = maxTxns > 0 ? maxTxns : Integer.MAX_VALUE;
+        m_segmentSize = segmentSize;
+        m_logSize = logSize;
+        m_synchronous = synchronous;
+        m_truncationSnapshotPath = truncationSnapshotPath;
+
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create command log directory " + dir);
+        }
+        /*
+         * By the time the log is initialized the restore agent has either replayed
+         * and truncated the old segments or the start action discarded them
+         */
+        for (File f : CommandLogSegment.listFiles(dir)) {
+            LOG.info("Deleting old command log segment " + f);
+            f.delete();
+        }
+
+        m_batch = ByteBuffer.allocate(INITIAL_BATCH_SIZE);
+        m_batch.position(CommandLogSegment.BATCH_HEADER_SIZE);
+        m_batchTxns = 0;
+        m_batchMaxTxnId = Long.MIN_VALUE;
+        m_maxLastSeenTxnId = txnId;
+        m_shutdown = false;
+        m_direct = ByteBuffer.allocateDirect(INITIAL_BATCH_SIZE);
+
+        m_preallocator = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Command log segment preallocator");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        m_segmentId = 0;
+        File first = CommandLogSegment.fileFor(dir, m_segmentId);
+        CommandLogSegment.preallocate(first, m_segmentSize);
+        openSegment(first);
+
+        m_writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWriter();
+            }
+        }, "Command log writer");
+        m_writer.start();
+        m_initialized = true;
+    }
+
+    @Override
+    public void initForRejoin(CatalogContext context, long txnId,
+                              long faultSequenceNumber, Set<Integer> failedSites) {
+        init(context, txnId);
+        synchronized (this) {
+            m_faultSequenceNumber = faultSequenceNumber;
+        }
+    }
+
+    @Override
+    public boolean needsInitialization() {
+        return !m_initialized;
+    }
+
+    @Override
+    public void log(InitiateTaskMessage message) {
+        if (!m_initialized) {
+            return;
+        }
+
+        // Size the invocation outside the lock so the delivering threads only contend on the copy
+        final StoredProcedureInvocation invocation = message.getStoredProcedureInvocation();
+        final int invocationSize;
+        try {
+            invocationSize = invocation.getSerializedSize();
+        } catch (IOException e) {
+            VoltDB.crashLocalVoltDB("Unable to serialize an invocation for the command log", true, e);
+            return;
+        }
+        final long txnId = message.getTxnId();
+        final int siteId = message.receivedFromSiteId;
+        final int partitionId =
+            (siteId < 0 || m_siteTracker == null) ? -1 : m_siteTracker.getPartitionForSite(siteId);
+        final int length = CommandLogSegment.TASK_RECORD_HEADER_SIZE + invocationSize;
+
+        synchronized (this) {
+            ensureCapacity(1 + 4 + length);
+            m_batch.put(CommandLogSegment.TASK_RECORD);
+            m_batch.putInt(length);
+            m_batch.putLong(txnId);
+            m_batch.putInt(message.getInitiatorSiteId());
+            m_batch.putInt(siteId);
+            m_batch.putInt(partitionId);
+            m_batch.put(message.isSinglePartition() ? (byte)1 : (byte)0);
+            invocation.flattenToBuffer(m_batch);
+
+            m_batchMaxTxnId = Math.max(m_batchMaxTxnId, txnId);
+            m_maxLastSeenTxnId = Math.max(m_maxLastSeenTxnId, txnId);
+            if (m_synchronous) {
+                m_batchFlags.add(message.getDurabilityFlag());
+            }
+            if (m_batchTxns++ == 0) {
+                m_batchStartNanos = System.nanoTime();
+                notify();
+            } else if (m_batchTxns >= m_maxTxns) {
+                notify();
+            }
+        }
+    }
+
+    @Override
+    public void logHeartbeat(final long txnId) {
+        synchronized (this) {
+            if (txnId > m_maxLastSeenTxnId) {
+                m_maxLastSeenTxnId = txnId;
+            }
+        }
+    }
+
+    @Override
+    public Semaphore logFault(Set<Integer> failedSites, Set<Long> faultedTxns) {
+        final Semaphore written = new Semaphore(0);
+        synchronized (this) {
+            final long faultSequenceNumber = m_faultSequenceNumber++;
+            if (!m_initialized || m_shutdown) {
+                written.release();
+                return written;
+            }
+
+            final int length = 8 + 4 + 4 * failedSites.size() + 4 + 8 * faultedTxns.size();
+            ensureCapacity(1 + 4 + length);
+            m_batch.put(CommandLogSegment.FAULT_RECORD);
+            m_batch.putInt(length);
+            m_batch.putLong(faultSequenceNumber);
+            m_batch.putInt(failedSites.size());
+            for (int siteId : failedSites) {
+                m_batch.putInt(siteId);
+            }
+            m_batch.putInt(faultedTxns.size());
+            for (long txnId : faultedTxns) {
+                m_batch.putLong(txnId);
+            }
+            m_batchFaults.add(written);
+            notify();
+        }
+        return written;
+    }
+
+    @Override
+    public synchronized long getFaultSequenceNumber() {
+        return m_faultSequenceNumber;
+    }
+
+    @Override
+    public void shutdown() throws InterruptedException {
+        if (!m_initialized) {
+            return;
+        }
+        m_initialized = false;
+        synchronized (this) {
+            m_shutdown = true;
+            notify();
+        }
+        m_writer.join();
+        m_preallocator.shutdown();
+        if (m_truncationSnapshotPath != null && VoltDB.instance().getSnapshotCompletionMonitor() != null) {
+            VoltDB.instance().getSnapshotCompletionMonitor().removeInterest(this);
+        }
+    }
+
+    /**
+     * Delete the closed segments that only contain transactions preceding the
+     * truncation snapshot
+     */
+    @Override
+    public CountDownLatch snapshotCompleted(String nonce, long txnId, boolean truncationSnapshot) {
+        if (truncationSnapshot) {
+            synchronized (m_closedSegments) {
+                Iterator<ClosedSegment> iter = m_closedSegments.iterator();
+                while (iter.hasNext()) {
+                    ClosedSegment segment = iter.next();
+                    if (segment.m_maxTxnId < txnId) {
+                        LOG.info("Truncating command log segment " + segment.m_file +
+                                 " after truncation snapshot " + nonce);
+                        segment.m_file.delete();
+                        m_closedBytes -= segment.m_size;
+                        iter.remove();
+                    }
+                }
+            }
+            m_truncationRequested = false;
+        }
+        return new CountDownLatch(0);
+    }
+
+    /**
+     * Number of segments that are closed and waiting to be truncated
+     */
+    int getClosedSegmentCount() {
+        synchronized (m_closedSegments) {
+            return m_closedSegments.size();
+        }
+    }
+
+    /*
+     * Grow the current batch so the next record fits. Caller holds the lock.
+     */
+    private void ensureCapacity(int recordSize) {
+        if (m_batch.remaining() >= recordSize) {
+            return;
+        }
+        int capacity = m_batch.capacity() * 2;
+        while (capacity - m_batch.position() < recordSize) {
+            capacity *= 2;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(capacity);
+        m_batch.flip();
+        bigger.put(m_batch);
+        m_batch = bigger;
+    }
+
+    private boolean batchReady() {
+        if (m_batchTxns == 0 && m_batchFaults.isEmpty()) {
+            return false;
+        }
+        return m_batchTxns >= m_maxTxns ||
+               !m_batchFaults.isEmpty() ||
+               System.nanoTime() - m_batchStartNanos >= m_fsyncIntervalNanos;
+    }
+
+    private void runWriter() {
+        try {
+            while (true) {
+                final ByteBuffer batch;
+                final long batchMaxTxnId;
+                final ArrayList<AtomicBoolean> flags;
+                final ArrayList<Semaphore> faults;
+                synchronized (this) {
+                    while (!m_shutdown && !batchReady()) {
+                        if (m_batchTxns == 0) {
+                            wait();
+                        } else {
+                            final long remaining =
+                                m_batchStartNanos + m_fsyncIntervalNanos - System.nanoTime();
+                            if (remaining > 0) {
+                                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                            }
+                        }
+                    }
+                    if (m_batch.position() == CommandLogSegment.BATCH_HEADER_SIZE) {
+                        // Shutting down with nothing left to write
+                        break;
+                    }
+
+                    batch = m_batch;
+                    batchMaxTxnId = m_batchMaxTxnId;
+                    flags = m_batchFlags;
+                    faults = m_batchFaults;
+                    m_batch = m_spareBatch != null ? m_spareBatch : ByteBuffer.allocate(INITIAL_BATCH_SIZE);
+                    m_spareBatch = null;
+                    m_batch.clear();
+                    m_batch.position(CommandLogSegment.BATCH_HEADER_SIZE);
+                    m_batchFlags = m_spareFlags;
+                    m_batchFaults = m_spareFaults;
+                    m_batchTxns = 0;
+                    m_batchMaxTxnId = Long.MIN_VALUE;
+                }
+
+                write(batch, batchMaxTxnId);
+
+                for (AtomicBoolean flag : flags) {
+                    flag.set(true);
+                }
+                for (Semaphore fault : faults) {
+                    fault.release();
+                }
+                flags.clear();
+                faults.clear();
+                synchronized (this) {
+                    m_spareFlags = flags;
+                    m_spareFaults = faults;
+                    if (batch.capacity() <= MAX_RETAINED_BATCH_SIZE) {
+                        m_spareBatch = batch;
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            VoltDB.crashLocalVoltDB("Command log writer failed", true, t);
+        } finally {
+            try {
+                m_channel.close();
+                m_segment.close();
+            } catch (IOException e) {
+                LOG.warn("Unable to close command log segment " + m_segmentFile, e);
+            }
+        }
+    }
+
+    private void write(ByteBuffer batch, long batchMaxTxnId) throws Exception {
+        CommandLogSegment.sealBatch(batch);
+        batch.flip();
+        final int size = batch.remaining();
+
+        if (m_position > CommandLogSegment.SEGMENT_HEADER_SIZE && m_position + size > m_segmentSize) {
+            rollSegment();
+        }
+
+        if (m_direct.capacity() < size) {
+            m_direct = ByteBuffer.allocateDirect(Integer.highestOneBit(size) << 1);
+        }
+        m_direct.clear();
+        m_direct.put(batch);
+        m_direct.flip();
+        while (m_direct.hasRemaining()) {
+            m_position += m_channel.write(m_direct, m_position);
+        }
+        // A batch bigger than a segment extends the file, so the length has to be synced too
+        m_channel.force(m_position > m_segmentSize);
+
+        m_segmentMaxTxnId = Math.max(m_segmentMaxTxnId, batchMaxTxnId);
+
+        final long used;
+        synchronized (m_closedSegments) {
+            used = m_closedBytes + m_position;
+        }
+        if (used >= m_logSize && !m_truncationRequested && m_truncationSnapshotPath != null) {
+            LOG.info("Command log reached " + (m_logSize / (1024 * 1024)) +
+                     " megabytes, requesting a truncation snapshot");
+            requestTruncationSnapshot();
+        }
+    }
+
+    private void openSegment(File file) throws IOException {
+        m_segmentFile = file;
+        m_segment = new RandomAccessFile(file, "rw");
+        m_channel = m_segment.getChannel();
+        final long startTxnId;
+        synchronized (this) {
+            startTxnId = m_maxLastSeenTxnId;
+        }
+        CommandLogSegment.writeHeader(m_channel, m_segmentId, startTxnId);
+        m_position = CommandLogSegment.SEGMENT_HEADER_SIZE;
+        m_segmentMaxTxnId = Long.MIN_VALUE;
+
+        // Get the next segment ready while this one fills up
+        final File next = CommandLogSegment.fileFor(m_dir, m_segmentId + 1);
+        m_nextSegment = m_preallocator.submit(new Callable<File>() {
+            @Override
+            public File call() throws Exception {
+                CommandLogSegment.preallocate(next, m_segmentSize);
+                return next;
+            }
+        });
+    }
+
+    private void rollSegment() throws Exception {
+        m_channel.close();
+        m_segment.close();
+        synchronized (m_closedSegments) {
+            m_closedSegments.offer(new ClosedSegment(m_segmentFile, m_segmentMaxTxnId, m_position));
+            m_closedBytes += m_position;
+        }
+        File next = m_nextSegment.get();
+        m_segmentId++;
+        openSegment(next);
+    }
+
+    /**
+     * Ask the snapshot daemon for a truncation snapshot into the command log
+     * snapshot path. Segments are deleted once it completes.
+     */
+    void requestTruncationSnapshot() {
+        if (m_truncationSnapshotPath == null) {
+            return;
+        }
+        m_truncationRequested = true;
+        try {
+            ZooKeeper zk = VoltDB.instance().getZK();
+            try {
+                zk.create("/truncation_snapshot_path",
+                          m_truncationSnapshotPath.getBytes(),
+                          Ids.OPEN_ACL_UNSAFE,
+                          CreateMode.PERSISTENT);
+            } catch (KeeperException.NodeExistsException e) {}
+            try {
+                zk.create("/request_truncation_snapshot", null,
+                          Ids.OPEN_ACL_UNSAFE,
+                          CreateMode.PERSISTENT);
+            } catch (KeeperException.NodeExistsException e) {}
+        } catch (Exception e) {
+            LOG.error("Unable to request a truncation snapshot, the command log will keep growing", e);
+            m_truncationRequested = false;
+        }
+    }
+}
@@ -0,0 +1,435 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.zookeeper_voltpatches.CreateMode;
+import org.apache.zookeeper_voltpatches.KeeperException;
+import org.apache.zookeeper_voltpatches.ZooDefs.Ids;
+import org.apache.zookeeper_voltpatches.ZooKeeper;
+import org.voltdb.VoltDB.START_ACTION;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.dtxn.SiteTracker;
+import org.voltdb.dtxn.TransactionInitiator;
+import org.voltdb.logging.VoltLogger;
+import org.voltdb.messaging.FastSerializable;
+import org.voltdb.network.Connection;
+import org.voltdb.network.NIOReadStream;
+import org.voltdb.network.WriteStream;
+import org.voltdb.utils.DBBPool.BBContainer;
+import org.voltdb.utils.DeferredSerialization;
+import org.voltdb.utils.EstTime;
+
+/**
+ * <p>Replays the segments written by FileCommandLog.</p>
+ *
+ * <p>Every host reads its local segments, drops the transactions that precede
+ * the restored snapshot or were faulted, and reinitiates the rest in txnId
+ * order with their original txnIds. A transaction is logged by every replica
+ * that received it, so a host only replays the copy received by the lowest
+ * live site of the receiving site's partition. Sysprocs other than ad hoc
+ * SQL and table loads are not replayed.</p>
+ */
+public class FileCommandLogReinitiator implements CommandLogReinitiator {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    // Created by any host that found segments to replay
+    static final String REPLAY_SEGMENTS = "/replay_segments";
+    // Created by any host that reinitiated at least one transaction
+    static final String REPLAY_TXNS = "/replay_txns";
+
+    private static final Set<String> REPLAYED_SYSPROCS = new HashSet<String>(
+            Arrays.asList("@AdHoc", "@AdHocSP",
+                          "@LoadMultipartitionTable", "@LoadSinglepartitionTable"));
+
+    private final START_ACTION m_action;
+    private final ZooKeeper m_zk;
+    private final int[] m_allPartitions;
+    private final Set<Integer> m_liveHosts;
+    private final File m_dir;
+
+    private List<CommandLogSegment> m_segments = Collections.emptyList();
+    private long m_snapshotTxnId;
+    private Callback m_callback;
+    private CatalogContext m_context;
+    private TransactionInitiator m_initiator;
+    private TreeMap<Long, CommandLogSegment.Task> m_plan;
+    private Thread m_replayThread;
+    private volatile boolean m_started = false;
+    private long m_replayedTxns = 0;
+
+    // Responses still to come back from the reinitiated transactions, guarded by the adapter
+    private final ReplayAdapter m_adapter = new ReplayAdapter();
+
+    public FileCommandLogReinitiator(int hostId, START_ACTION action, ZooKeeper zk,
+                                     int partitionCount, String clPath, int[] allPartitions,
+                                     Set<Integer> liveHosts, long minTxnId) {
+        m_action = action;
+        m_zk = zk;
+        m_allPartitions = allPartitions;
+        m_liveHosts = liveHosts;
+        m_dir = clPath == null ? null : new File(clPath);
+        m_snapshotTxnId = minTxnId;
+
+        if (m_dir != null && m_dir.isDirectory() && m_action != START_ACTION.CREATE) {
+            try {
+                m_segments = CommandLogSegment.scan(m_dir);
+            } catch (IOException e) {
+                VoltDB.crashLocalVoltDB("Unable to read command log segments in " + m_dir, false, e);
+            }
+        }
+        if (!m_segments.isEmpty()) {
+            LOG.info("Found " + m_segments.size() + " command log segments to replay in " + m_dir);
+            createZKFlag(REPLAY_SEGMENTS);
+        }
+    }
+
+    @Override
+    public void setSnapshotTxnId(long txnId) {
+        m_snapshotTxnId = txnId;
+    }
+
+    @Override
+    public void setCallback(Callback callback) {
+        m_callback = callback;
+    }
+
+    @Override
+    public void setCatalogContext(CatalogContext context) {
+        m_context = context;
+    }
+
+    @Override
+    public void setInitiator(TransactionInitiator initiator) {
+        m_initiator = initiator;
+    }
+
+    /**
+     * Read all the local segments and keep the transactions this host is
+     * responsible for, ordered by txnId. Filtering against the snapshot txnId
+     * happens at replay time because the snapshot is only known after restore.
+     */
+    @Override
+    public void generateReplayPlan() {
+        final TreeMap<Long, CommandLogSegment.Task> plan = new TreeMap<Long, CommandLogSegment.Task>();
+        if (m_segments.isEmpty()) {
+            m_plan = plan;
+            return;
+        }
+
+        final HashSet<Long> faultedTxns = new HashSet<Long>();
+        final SiteTracker tracker = m_context.siteTracker;
+
+        CommandLogSegment.RecordHandler handler = new CommandLogSegment.RecordHandler() {
+            @Override
+            public void task(CommandLogSegment.Task task) {
+                if (isReplayedLocally(tracker, task)) {
+                    plan.put(task.txnId, task);
+                }
+            }
+
+            @Override
+            public void fault(long faultSequenceNumber, List<Integer> failedSites, List<Long> txns) {
+                faultedTxns.addAll(txns);
+            }
+        };
+
+        try {
+            for (CommandLogSegment segment : m_segments) {
+                segment.read(handler);
+            }
+        } catch (IOException e) {
+            VoltDB.crashLocalVoltDB("Unable to read command log segments in " + m_dir, false, e);
+        }
+        plan.keySet().removeAll(faultedTxns);
+        m_plan = plan;
+        LOG.info("Generated command log replay plan with " + plan.size() + " transactions");
+    }
+
+    /*
+     * Only one replica replays each transaction, the one that was received by
+     * the lowest site id of its partition among the live hosts
+     */
+    private boolean isReplayedLocally(SiteTracker tracker, CommandLogSegment.Task task) {
+        if (task.siteId < 0 || task.partitionId < 0) {
+            return false;
+        }
+        int lowestSite = Integer.MAX_VALUE;
+        for (int siteId : tracker.getAllSitesForPartition(task.partitionId)) {
+            if (m_liveHosts.contains(tracker.getHostForSite(siteId))) {
+                lowestSite = Math.min(lowestSite, siteId);
+            }
+        }
+        return lowestSite == task.siteId;
+    }
+
+    @Override
+    public void replay() {
+        m_replayThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runReplay();
+                } catch (Exception e) {
+                    VoltDB.crashGlobalVoltDB("Command log replay failed", false, e);
+                }
+                if (m_callback != null) {
+                    m_callback.onReplayCompletion();
+                }
+            }
+        }, "Command log replay");
+        m_started = true;
+        m_replayThread.start();
+    }
+
+    private void runReplay() throws Exception {
+        if (m_plan != null) {
+            for (CommandLogSegment.Task task : m_plan.values()) {
+                if (task.txnId <= m_snapshotTxnId) {
+                    continue;
+                }
+                final StoredProcedureInvocation invocation = task.getInvocation();
+                final String procName = invocation.getProcName();
+                final boolean isEverySite;
+                if (procName.startsWith("@")) {
+                    if (!REPLAYED_SYSPROCS.contains(procName)) {
+                        LOG.debug("Skipping replay of " + procName + " txnId " + task.txnId);
+                        continue;
+                    }
+                    isEverySite = SystemProcedureCatalog.listing.get(procName).getEverysite();
+                } else {
+                    Procedure proc = m_context.procedures.get(procName);
+                    if (proc == null) {
+                        LOG.warn("Skipping replay of txnId " + task.txnId +
+                                 ", procedure " + procName + " is not in the catalog");
+                        continue;
+                    }
+                    isEverySite = proc.getEverysite();
+                }
+
+                final int partitions[] = task.isSinglePartition ?
+                        new int[] { task.partitionId } : m_allPartitions;
+                m_adapter.expect();
+                m_initiator.createTransaction(-1, "CommandLog", true, task.txnId, invocation,
+                                              false, task.isSinglePartition, isEverySite,
+                                              partitions, partitions.length, m_adapter, 0,
+                                              EstTime.currentTimeMillis());
+                // Let the sites know nothing older is coming from this initiator
+                m_initiator.sendHeartbeat(task.txnId);
+                m_replayedTxns++;
+            }
+            m_plan = null;
+        }
+
+        /*
+         * Heartbeat past everything that was logged so the other hosts' replayed
+         * transactions can drain from their queues
+         */
+        m_initiator.sendHeartbeat(
+                TransactionIdManager.makeIdFromComponents(System.currentTimeMillis(), 0, 0));
+        m_adapter.awaitResponses();
+
+        if (m_replayedTxns > 0) {
+            LOG.info("Replayed " + m_replayedTxns + " transactions from the command log");
+            createZKFlag(REPLAY_TXNS);
+        }
+    }
+
+    @Override
+    public boolean started() {
+        return m_started;
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        if (m_replayThread != null) {
+            m_replayThread.join();
+        }
+    }
+
+    @Override
+    public boolean hasReplayedSegments() {
+        return zkFlagExists(REPLAY_SEGMENTS);
+    }
+
+    @Override
+    public boolean hasReplayedTxns() {
+        return zkFlagExists(REPLAY_TXNS);
+    }
+
+    @Override
+    public Long getMaxLastSeenTxn() {
+        if (m_segments.isEmpty()) {
+            return null;
+        }
+        return m_segments.get(0).m_startTxnId;
+    }
+
+    /**
+     * The segments are replaced by FileCommandLog when it is initialized
+     * after the truncation snapshot, so there is nothing to give back
+     */
+    @Override
+    public void returnAllSegments() {
+        m_segments = Collections.emptyList();
+        m_plan = null;
+    }
+
+    private void createZKFlag(String path) {
+        if (m_zk == null) {
+            return;
+        }
+        try {
+            m_zk.create(path, null, Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        } catch (KeeperException.NodeExistsException e) {
+        } catch (Exception e) {
+            VoltDB.crashGlobalVoltDB("Unable to create " + path + " in ZK", false, e);
+        }
+    }
+
+    private boolean zkFlagExists(String path) {
+        if (m_zk == null) {
+            return !m_segments.isEmpty();
+        }
+        try {
+            return m_zk.exists(path, false) != null;
+        } catch (Exception e) {
+            VoltDB.crashGlobalVoltDB("Unable to check " + path + " in ZK", false, e);
+        }
+        return false;
+    }
+
+    /**
+     * Collects the responses of the reinitiated transactions
+     */
+    private class ReplayAdapter implements Connection, WriteStream {
+        private int m_outstanding = 0;
+
+        synchronized void expect() {
+            m_outstanding++;
+        }
+
+        synchronized void awaitResponses() throws InterruptedException {
+            while (m_outstanding > 0) {
+                wait();
+            }
+        }
+
+        @Override
+        public boolean hadBackPressure() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean enqueue(BBContainer c) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean enqueue(FastSerializable f) {
+            ClientResponse response = (ClientResponse) f;
+            if (response.getStatus() != ClientResponse.SUCCESS) {
+                LOG.info("Replayed transaction failed with status " + response.getStatus() +
+                         ": " + response.getStatusString());
+            }
+            synchronized (this) {
+                m_outstanding--;
+                notifyAll();
+            }
+            return true;
+        }
+
+        @Override
+        public boolean enqueue(FastSerializable f, int expectedSize) {
+            return enqueue(f);
+        }
+
+        @Override
+        public boolean enqueue(DeferredSerialization ds) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean enqueue(ByteBuffer b) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int calculatePendingWriteDelta(long now) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getOutstandingMessageCount() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public WriteStream writeStream() {
+            return this;
+        }
+
+        @Override
+        public NIOReadStream readStream() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void disableReadSelection() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void enableReadSelection() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getHostnameOrIP() {
+            return "";
+        }
+
+        @Override
+        public long connectionId() {
+            return -1;
+        }
+
+        @Override
+        public void scheduleRunnable(Runnable r) {
+        }
+
+        @Override
+        public void unregister() {
+        }
+    }
+}
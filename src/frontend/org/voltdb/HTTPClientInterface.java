@@ -18,10 +18,13 @@
 package org.voltdb;
 
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.servlet.http.HttpServletResponse;
@@ -29,12 +32,14 @@ import javax.servlet.http.HttpServletResponse;
 import org.eclipse.jetty.continuation.Continuation;
 import org.eclipse.jetty.continuation.ContinuationSupport;
 import org.eclipse.jetty.server.Request;
+import org.json_voltpatches.JSONWriter;
 import org.voltdb.client.AuthenticatedConnectionCache;
 import org.voltdb.client.Client;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcedureCallback;
 import org.voltdb.logging.VoltLogger;
 import org.voltdb.utils.Encoder;
+import org.voltdb.utils.MiscUtils;
 
 public class HTTPClientInterface {
 
@@ -42,44 +47,70 @@ public class HTTPClientInterface {
     MessageDigest m_md = null;
     static final int CACHE_TARGET_SIZE = 10;
     private final AtomicBoolean m_shouldUpdateCatalog = new AtomicBoolean(false);
+    final HTTPStats m_stats = new HTTPStats();
+
+    // Admin connections are closed once their response is written. That happens on the
+    // connection's own callback thread which can't close it, so it's handed off to here.
+    private final ThreadPoolExecutor m_closeExecutor =
+        new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS,
+                               new LinkedBlockingQueue<Runnable>(),
+                               MiscUtils.getThreadFactory("HTTP admin connection closer"));
 
     class JSONProcCallback implements ProcedureCallback {
 
         final Request m_request;
         final Continuation m_continuation;
         final String m_jsonp;
-        final CountDownLatch m_latch = new CountDownLatch(1);
+        final String m_procName;
+        final Client m_adminClient;
 
-        public JSONProcCallback(Request request, Continuation continuation, String jsonp) {
+        /**
+         * @param adminClient Uncached admin connection to close once the response is
+         * written, null for connections from the cache.
+         */
+        public JSONProcCallback(Request request, Continuation continuation, String jsonp,
+                                String procName, Client adminClient) {
             assert(request != null);
             assert(continuation != null);
 
             m_request = request;
             m_continuation = continuation;
             m_jsonp = jsonp;
+            m_procName = procName;
+            m_adminClient = adminClient;
         }
 
         @Override
         public void clientCallback(ClientResponse clientResponse) throws Exception {
-            ClientResponseImpl rimpl = (ClientResponseImpl) clientResponse;
-            String msg = rimpl.toJSONString();
-
-            // handle jsonp pattern
-            // http://en.wikipedia.org/wiki/JSON#The_Basic_Idea:_Retrieving_JSON_via_Script_Tags
-            if (m_jsonp != null)
-                msg = String.format("%s( %s )", m_jsonp, msg);
+            try {
+                ClientResponseImpl rimpl = (ClientResponseImpl) clientResponse;
+                final long start = System.nanoTime();
 
-            // send the response back through jetty
-            HttpServletResponse response = (HttpServletResponse) m_continuation.getServletResponse();
-            response.setStatus(HttpServletResponse.SC_OK);
-            m_request.setHandled(true);
-            response.getWriter().print(msg);
-            m_continuation.complete();
-            m_latch.countDown();
-        }
+                // send the response back through jetty, the JSON is encoded
+                // straight into the response instead of built as a string
+                HttpServletResponse response = (HttpServletResponse) m_continuation.getServletResponse();
+                response.setStatus(HttpServletResponse.SC_OK);
+                m_request.setHandled(true);
+                PrintWriter out = response.getWriter();
 
-        public void waitForResponse() throws InterruptedException {
-            m_latch.await();
+                // handle jsonp pattern
+                // http://en.wikipedia.org/wiki/JSON#The_Basic_Idea:_Retrieving_JSON_via_Script_Tags
+                if (m_jsonp != null) {
+                    out.print(m_jsonp);
+                    out.print("( ");
+                }
+                rimpl.writeJSON(new JSONWriter(out));
+                if (m_jsonp != null) {
+                    out.print(" )");
+                }
+                m_continuation.complete();
+                m_stats.logResponseEncoded(m_procName, (System.nanoTime() - start) / 1000);
+            }
+            finally {
+                if (m_adminClient != null) {
+                    closeAdminClient(m_adminClient);
+                }
+            }
         }
     }
 
@@ -89,6 +120,21 @@ public class HTTPClientInterface {
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException("JVM doesn't support SHA-1 hashing. Please use a supported JVM", e);
         }
+        VoltDB.instance().getStatsAgent().registerStatsSource(SysProcSelector.HTTP, 0, m_stats);
+    }
+
+    private void closeAdminClient(final Client client) {
+        m_closeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    client.close();
+                } catch (InterruptedException e) {
+                    VoltLogger log = new VoltLogger("HOST");
+                    log.warn("JSON interface was interrupted while closing an internal admin client connection.");
+                }
+            }
+        });
     }
 
     public void process(Request request, HttpServletResponse response) {
@@ -96,6 +142,8 @@ public class HTTPClientInterface {
 
         Client client = null;
         boolean adminMode = false;
+        // set once the callback owns closing the admin connection
+        boolean closedByCallback = false;
 
         Continuation continuation = ContinuationSupport.getContinuation(request);
         continuation.suspend(response);
@@ -167,7 +215,8 @@ public class HTTPClientInterface {
             // get a connection to localhost from the pool
             client = m_connections.getClient(username, hashedPasswordBytes, adminMode);
 
-            JSONProcCallback cb = new JSONProcCallback(request, continuation, jsonp);
+            JSONProcCallback cb =
+                new JSONProcCallback(request, continuation, jsonp, procName, adminMode ? client : null);
             boolean success;
 
             if (params != null) {
@@ -195,9 +244,7 @@ public class HTTPClientInterface {
             if (!success) {
                 throw new Exception("Server is not accepting work at this time.");
             }
-            if (adminMode) {
-                cb.waitForResponse();
-            }
+            closedByCallback = adminMode;
         }
         catch (Exception e) {
             msg = e.getMessage();
@@ -215,15 +262,11 @@ public class HTTPClientInterface {
         finally {
             if (client != null) {
                 assert(m_connections != null);
-                // admin connections aren't cached
+                // admin connections aren't cached, once the invocation is queued
+                // the callback closes them after writing the response
                 if (adminMode) {
-                    if (client != null) {
-                        try {
-                            client.close();
-                        } catch (InterruptedException e) {
-                            VoltLogger log = new VoltLogger("HOST");
-                            log.warn("JSON interface was interrupted while closing an internal admin client connection.");
-                        }
+                    if (!closedByCallback) {
+                        closeAdminClient(client);
                     }
                 }
                 // other connections are cached
@@ -0,0 +1,125 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.utils.LatencyHistogram;
+
+/**
+ * Reports how long the HTTP/JSON interface of this host spends encoding the response
+ * of each procedure, as percentiles in microseconds. Responses are encoded on the
+ * client callback threads and recorded without locking, see {@link LatencyHistogram.Recorder}.
+ */
+public class HTTPStats extends StatsSource {
+
+    private final ConcurrentHashMap<String, LatencyHistogram.Recorder> m_recorders =
+        new ConcurrentHashMap<String, LatencyHistogram.Recorder>();
+
+    /**
+     * Snapshots taken the last time interval stats were retrieved, interval stats are the
+     * difference so the recording threads are never reset
+     */
+    private Map<String, LatencyHistogram> m_lastSnapshots = new HashMap<String, LatencyHistogram>();
+
+    public HTTPStats() {
+        super(false);
+    }
+
+    /**
+     * Called once the response to an invocation has been written
+     * @param procName Procedure that was invoked
+     * @param encodeMicros Time spent encoding and writing the response in microseconds
+     */
+    public void logResponseEncoded(String procName, long encodeMicros) {
+        LatencyHistogram.Recorder recorder = m_recorders.get(procName);
+        if (recorder == null) {
+            recorder = new LatencyHistogram.Recorder();
+            LatencyHistogram.Recorder existing = m_recorders.putIfAbsent(procName, recorder);
+            if (existing != null) {
+                recorder = existing;
+            }
+        }
+        recorder.record(encodeMicros);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("PROCEDURE", VoltType.STRING));
+        columns.add(new ColumnInfo("INVOCATIONS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("P50_ENCODE_MICROS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("P99_ENCODE_MICROS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MAX_ENCODE_MICROS", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        @SuppressWarnings("unchecked")
+        final Map.Entry<String, LatencyHistogram> row = (Map.Entry<String, LatencyHistogram>)rowKey;
+        final LatencyHistogram histogram = row.getValue();
+        rowValues[columnNameToIndex.get("PROCEDURE")] = row.getKey();
+        rowValues[columnNameToIndex.get("INVOCATIONS")] = histogram.getCount();
+        rowValues[columnNameToIndex.get("P50_ENCODE_MICROS")] = histogram.getValueAtPercentile(50);
+        rowValues[columnNameToIndex.get("P99_ENCODE_MICROS")] = histogram.getValueAtPercentile(99);
+        rowValues[columnNameToIndex.get("MAX_ENCODE_MICROS")] = histogram.getMax();
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        // one row per procedure, the key is the histogram it is generated from
+        final HashMap<String, LatencyHistogram> snapshots = new HashMap<String, LatencyHistogram>();
+        for (Map.Entry<String, LatencyHistogram.Recorder> e : m_recorders.entrySet()) {
+            snapshots.put(e.getKey(), e.getValue().snapshot());
+        }
+
+        HashMap<String, LatencyHistogram> rows = snapshots;
+        if (interval) {
+            rows = new HashMap<String, LatencyHistogram>();
+            for (Map.Entry<String, LatencyHistogram> e : snapshots.entrySet()) {
+                final LatencyHistogram last = m_lastSnapshots.get(e.getKey());
+                rows.put(e.getKey(), last == null ? e.getValue() : e.getValue().since(last));
+            }
+            m_lastSnapshots = snapshots;
+        }
+
+        final Iterator<Map.Entry<String, LatencyHistogram>> iter = rows.entrySet().iterator();
+        return new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public Object next() {
+                return iter.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -28,6 +28,30 @@ import org.voltdb.utils.Pair;
 public class IOStats extends StatsSource {
     private Map<Long, Pair<String, long[]>> m_ioStats =
         new HashMap<Long, Pair<String,long[]>>();
+    private Map<Long, long[]> m_batchStats = new HashMap<Long, long[]>();
+
+    /**
+     * Average number of messages in the frames written to a connection. Connections to
+     * other hosts batch messages, see HostMessenger.getBatchStats. For the rest every
+     * frame is one message. The GLOBAL row (-1) averages over every connection.
+     */
+    public static double messagesPerFrame(long connectionId, long framesWritten, Map<Long, long[]> batchStats) {
+        if (framesWritten == 0) {
+            return 0.0;
+        }
+        long batchedMessages = 0;
+        if (connectionId == -1) {
+            for (long[] batch : batchStats.values()) {
+                batchedMessages += batch[0] - batch[1];
+            }
+        } else {
+            final long[] batch = batchStats.get(connectionId);
+            if (batch != null) {
+                batchedMessages = batch[0] - batch[1];
+            }
+        }
+        return (framesWritten + batchedMessages) / (double)framesWritten;
+    }
 
     /**
      * A dummy iterator that wraps an Iterator<Long> and provides the
@@ -69,6 +93,9 @@ public class IOStats extends StatsSource {
         columns.add(new ColumnInfo("MESSAGES_READ", VoltType.BIGINT));
         columns.add(new ColumnInfo("BYTES_WRITTEN", VoltType.BIGINT));
         columns.add(new ColumnInfo("MESSAGES_WRITTEN", VoltType.BIGINT));
+        columns.add(new ColumnInfo("WRITE_CALLS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BYTES_PER_WRITE", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MESSAGES_PER_FRAME", VoltType.FLOAT));
 
     }
 
@@ -83,12 +110,20 @@ public class IOStats extends StatsSource {
         rowValues[columnNameToIndex.get("MESSAGES_READ")] = counters[1];
         rowValues[columnNameToIndex.get("BYTES_WRITTEN")] = counters[2];
         rowValues[columnNameToIndex.get("MESSAGES_WRITTEN")] = counters[3];
+        rowValues[columnNameToIndex.get("WRITE_CALLS")] = counters[4];
+        rowValues[columnNameToIndex.get("BYTES_PER_WRITE")] =
+            counters[4] == 0 ? 0 : counters[2] / counters[4];
+        rowValues[columnNameToIndex.get("MESSAGES_PER_FRAME")] =
+            messagesPerFrame((Long)rowKey, counters[3], m_batchStats);
         super.updateStatsRow(rowKey, rowValues);
     }
 
     @Override
     protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
         m_ioStats = VoltDB.instance().getNetwork().getIOStats(interval);
+        if (VoltDB.instance().getHostMessenger() != null) {
+            m_batchStats = VoltDB.instance().getHostMessenger().getBatchStats(interval);
+        }
         return new DummyIterator(m_ioStats.keySet().iterator());
     }
 }
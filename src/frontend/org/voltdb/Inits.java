@@ -386,14 +386,10 @@ public class Inits {
             }
 
             if (logEnabled) {
-                if (!m_config.m_isEnterprise) {
-                    hostLog.warn(
-                            "Command logging requested in deployment file but can't be enabled in Community Edition.");
-                }
-                else {
+                if (m_config.m_isEnterprise) {
                     try {
                         Class<?> loggerClass = MiscUtils.loadProClass("org.voltdb.CommandLogImpl",
-                                                                   "Command logging", false);
+                                                                   "Command logging", true);
                         if (loggerClass != null) {
                             m_rvdb.m_commandLog = (CommandLog)loggerClass.newInstance();
                         }
@@ -405,6 +401,11 @@ public class Inits {
                         VoltDB.crashVoltDB();
                     }
                 }
+                if (m_rvdb.m_commandLog instanceof DummyCommandLog) {
+                    hostLog.info("Using the file command log in " + m_rvdb.m_catalogContext.cluster.
+                                 getLogconfig().get("log").getLogpath());
+                    m_rvdb.m_commandLog = new FileCommandLog();
+                }
             }
         }
     }
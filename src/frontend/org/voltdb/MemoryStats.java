@@ -33,6 +33,7 @@ public class MemoryStats extends StatsSource {
         int indexMem = 0;
         int stringMem = 0;
         long pooledMem = 0;
+        long tempSpilled = 0;
     }
     Map<Integer, PartitionMemRow> m_memoryStats = new TreeMap<Integer, PartitionMemRow>();
 
@@ -79,6 +80,7 @@ public class MemoryStats extends StatsSource {
         columns.add(new VoltTable.ColumnInfo("STRINGMEMORY", VoltType.INTEGER));
         columns.add(new VoltTable.ColumnInfo("TUPLECOUNT", VoltType.BIGINT));
         columns.add(new VoltTable.ColumnInfo("POOLEDMEMORY", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("TEMPSPILLED", VoltType.BIGINT));
     }
 
     @Override
@@ -92,6 +94,7 @@ public class MemoryStats extends StatsSource {
             totals.indexMem += pmr.indexMem;
             totals.stringMem += pmr.stringMem;
             totals.pooledMem += pmr.pooledMem;
+            totals.tempSpilled += pmr.tempSpilled;
         }
 
         // get system statistics
@@ -113,6 +116,7 @@ public class MemoryStats extends StatsSource {
         rowValues[columnNameToIndex.get("STRINGMEMORY")] = totals.stringMem;
         rowValues[columnNameToIndex.get("TUPLECOUNT")] = totals.tupleCount;
         rowValues[columnNameToIndex.get("POOLEDMEMORY")] = totals.pooledMem / 1024;
+        rowValues[columnNameToIndex.get("TEMPSPILLED")] = totals.tempSpilled / 1024;
         super.updateStatsRow(rowKey, rowValues);
     }
 
@@ -122,7 +126,8 @@ public class MemoryStats extends StatsSource {
                                               int tupleAllocatedMem,
                                               int indexMem,
                                               int stringMem,
-                                              long pooledMemory) {
+                                              long pooledMemory,
+                                              long tempSpilled) {
         PartitionMemRow pmr = new PartitionMemRow();
         pmr.tupleCount = tupleCount;
         pmr.tupleDataMem = tupleDataMem;
@@ -130,6 +135,7 @@ public class MemoryStats extends StatsSource {
         pmr.indexMem = indexMem;
         pmr.stringMem = stringMem;
         pmr.pooledMem = pooledMemory;
+        pmr.tempSpilled = tempSpilled;
         m_memoryStats.put(siteId, pmr);
     }
 }
@@ -70,19 +70,22 @@ import org.voltdb.types.VoltDecimalHelper;
         return m_params;
     }
 
+    /**
+     * Decode a single parameter from a serialized parameter set. The parameters
+     * in front of it are skipped over in place instead of being materialized,
+     * and the caller's buffer position is left untouched.
+     */
     static Object getParameterAtIndex(int partitionIndex, ByteBuffer unserializedParams) throws IOException {
-        FastDeserializer in = new FastDeserializer(unserializedParams);
-        int paramLen = in.readShort();
+        final ByteBuffer buf = unserializedParams.duplicate();
+        int paramLen = buf.getShort();
         if (partitionIndex >= paramLen) {
             // error if caller desires out of bounds parameter
             throw new RuntimeException("Invalid partition parameter requested.");
         }
         for (int i = 0; i < partitionIndex; ++i) {
-            readOneParameter(in);
+            skipOneParameter(buf);
         }
-        Object retval = readOneParameter(in);
-        unserializedParams.rewind();
-        return retval;
+        return readOneParameter(new FastDeserializer(buf));
     }
 
     @Override
@@ -372,6 +375,83 @@ import org.voltdb.types.VoltDecimalHelper;
         return value;
     }
 
+    /**
+     * Advance past one serialized parameter without allocating. Array element
+     * types without a length prefix per element are decoded and dropped.
+     */
+    static private void skipOneParameter(ByteBuffer buf) throws IOException {
+        final int start = buf.position();
+        byte nextTypeByte = buf.get();
+        if (nextTypeByte == ARRAY) {
+            VoltType nextType = VoltType.get(buf.get());
+            final int count = nextType == VoltType.TINYINT ? buf.getInt() : buf.getShort();
+            if (count < 0) {
+                throw new IOException("Array length is negative " + count);
+            }
+            switch (nextType) {
+                case TINYINT:
+                case SMALLINT:
+                case INTEGER:
+                case BIGINT:
+                case FLOAT:
+                case TIMESTAMP:
+                case DECIMAL:
+                    skip(buf, count * nextType.getLengthInBytesForFixedTypes());
+                    return;
+                case STRING:
+                case VOLTTABLE:
+                    for (int i = 0; i < count; i++) {
+                        skipLengthPrefixed(buf);
+                    }
+                    return;
+                default:
+                    buf.position(start);
+                    readOneParameter(new FastDeserializer(buf));
+                    return;
+            }
+        }
+
+        VoltType nextType = VoltType.get(nextTypeByte);
+        switch (nextType) {
+            case NULL:
+                return;
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+            case FLOAT:
+            case TIMESTAMP:
+            case DECIMAL:
+                skip(buf, nextType.getLengthInBytesForFixedTypes());
+                return;
+            case STRING:
+            case VARBINARY:
+            case VOLTTABLE:
+            case DECIMAL_STRING:
+                skipLengthPrefixed(buf);
+                return;
+            default:
+                throw new RuntimeException("ParameterSet doesn't support type " + nextType);
+        }
+    }
+
+    private static void skipLengthPrefixed(ByteBuffer buf) throws IOException {
+        final int len = buf.getInt();
+        // -1 is the null string or varbinary
+        if (len > 0) {
+            skip(buf, len);
+        } else if (len < -1) {
+            throw new IOException("Value length is negative " + len);
+        }
+    }
+
+    private static void skip(ByteBuffer buf, int bytes) throws IOException {
+        if (bytes > buf.remaining()) {
+            throw new IOException("Parameter extends past the end of the parameter set");
+        }
+        buf.position(buf.position() + bytes);
+    }
+
     static private Object readOneParameter(FastDeserializer in) throws IOException {
         byte nextTypeByte = in.readByte();
         if (nextTypeByte == ARRAY) {
@@ -66,6 +66,7 @@ import org.json_voltpatches.JSONObject;
 import org.json_voltpatches.JSONStringer;
 
 import org.voltdb.compiler.AsyncCompilerAgent;
+import org.voltdb.compiler.PlannerStats;
 
 import org.voltdb.dtxn.SimpleDtxnInitiator;
 
@@ -96,6 +97,7 @@ import org.voltdb.logging.VoltLogger;
 import org.voltdb.messaging.HostMessenger;
 import org.voltdb.messaging.Messenger;
 import org.voltdb.network.VoltNetwork;
+import org.voltdb.sysprocs.saverestore.RestoreStats;
 import org.voltdb.utils.CatalogUtil;
 import org.voltdb.utils.HTTPAdminListener;
 import org.voltdb.utils.LogKeys;
@@ -493,6 +495,10 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback
             m_memoryStats = new MemoryStats();
             m_statsAgent.registerStatsSource(SysProcSelector.MEMORY,
                                              0, m_memoryStats);
+            m_statsAgent.registerStatsSource(SysProcSelector.PLANNER,
+                                             0, new PlannerStats());
+            m_statsAgent.registerStatsSource(SysProcSelector.RESTORE,
+                                             0, new RestoreStats());
             // Create the statistics manager and register it to JMX registry
             m_statsManager = null;
             try {
@@ -757,7 +763,11 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback
         }
 
         // Prepare the network socket manager for work
-        m_network = new VoltNetwork(m_periodicWorkThread);
+        if (m_config.m_networkSelectorLoops > 0) {
+            m_network = new VoltNetwork(m_config.m_networkSelectorLoops, m_periodicWorkThread);
+        } else {
+            m_network = new VoltNetwork(m_periodicWorkThread);
+        }
 
         String leaderAddress = m_config.m_leader;
         int numberOfNodes = m_deployment.getCluster().getHostcount();
@@ -1719,6 +1729,14 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback
                 try {
                     m_zk.create("/request_truncation_snapshot", null, Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
                 } catch (KeeperException.NodeExistsException e) {}
+            } else if (getCommandLog() instanceof FileCommandLog) {
+                /*
+                 * The file command log starts empty on the rejoined node, so ask for a
+                 * truncation snapshot to cover what came before. Replay doesn't depend on
+                 * it finishing, so recovery is complete right away.
+                 */
+                ((FileCommandLog)getCommandLog()).requestTruncationSnapshot();
+                logRecoveryCompleted = true;
             } else {
                 logRecoveryCompleted = true;
             }
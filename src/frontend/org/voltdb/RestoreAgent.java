@@ -447,6 +447,15 @@ SnapshotCompletionInterest {
                                                                     m_allPartitions,
                                                                     m_liveHosts,
                                                                     RESTORE_TXNID + 1);
+            } else {
+                m_replayAgent = new FileCommandLogReinitiator(m_hostId,
+                                                              m_action,
+                                                              m_zk,
+                                                              m_partitionCount,
+                                                              m_clPath,
+                                                              m_allPartitions,
+                                                              m_liveHosts,
+                                                              RESTORE_TXNID + 1);
             }
         } catch (Exception e) {
             VoltDB.crashGlobalVoltDB("Unable to instantiate command log reinitiator",
@@ -1189,10 +1198,8 @@ SnapshotCompletionInterest {
          * they can be set individually
          */
         List<String> paths = new ArrayList<String>();
-        if (VoltDB.instance().getConfig().m_isEnterprise) {
-            if (m_clSnapshotPath != null) {
-                paths.add(m_clSnapshotPath);
-            }
+        if (m_clSnapshotPath != null) {
+            paths.add(m_clSnapshotPath);
         }
         if (m_snapshotPath != null) {
             paths.add(m_snapshotPath);
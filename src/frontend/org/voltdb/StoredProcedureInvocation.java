@@ -51,11 +51,19 @@ public class StoredProcedureInvocation implements FastSerializable, JSONString {
 
     /*
      * This ByteBuffer is accessed from multiple threads concurrently.
-     * Always duplicate it before reading
+     * Always duplicate it before reading. Volatile because getSerializedSize()
+     * may fill it in while other threads are reading the invocation.
      */
-    ByteBuffer unserializedParams = null;
+    volatile ByteBuffer unserializedParams = null;
 
-    FutureTask<ParameterSet> params;
+    /*
+     * Decodes unserializedParams on first use. Left null by readExternal so that
+     * invocations that are only routed and forwarded never allocate it.
+     */
+    volatile FutureTask<ParameterSet> params;
+
+    // UTF-8 procName, kept from getSerializedSize() for flattenToBuffer()
+    private volatile byte[] procNameBytes = null;
 
     /** A descriptor provided by the client, opaque to the server,
         returned to the client in the ClientResponse */
@@ -69,6 +77,7 @@ public class StoredProcedureInvocation implements FastSerializable, JSONString {
         copy.params = params;
         copy.procName = procName;
         copy.originalTxnId = originalTxnId;
+        copy.procNameBytes = procNameBytes;
         if (unserializedParams != null)
         {
             copy.unserializedParams = unserializedParams.duplicate();
@@ -88,6 +97,7 @@ public class StoredProcedureInvocation implements FastSerializable, JSONString {
 
     public void setProcName(String name) {
         procName = name;
+        procNameBytes = null;
     }
 
     public void setOriginalTxnId(long txnId) {
@@ -121,6 +131,15 @@ public class StoredProcedureInvocation implements FastSerializable, JSONString {
     }
 
     public ParameterSet getParams() {
+        FutureTask<ParameterSet> params = this.params;
+        if (params == null) {
+            synchronized (this) {
+                if (this.params == null) {
+                    this.params = lazyParams(unserializedParams.duplicate());
+                }
+                params = this.params;
+            }
+        }
         params.run();
         try {
             return params.get();
@@ -169,16 +188,65 @@ public class StoredProcedureInvocation implements FastSerializable, JSONString {
         clientHandle = in.readLong();
         // do not deserialize parameters in ClientInterface context
         unserializedParams = in.remainder();
-        final ByteBuffer duplicate = unserializedParams.duplicate();
-        params = new FutureTask<ParameterSet>(new Callable<ParameterSet>() {
+        params = null;
+    }
+
+    private static FutureTask<ParameterSet> lazyParams(final ByteBuffer serializedParams) {
+        return new FutureTask<ParameterSet>(new Callable<ParameterSet>() {
             @Override
             public ParameterSet call() throws Exception {
-                FastDeserializer fds = new FastDeserializer(duplicate);
+                FastDeserializer fds = new FastDeserializer(serializedParams);
                 return fds.readObject(ParameterSet.class);
             }
         });
     }
 
+    /**
+     * Size of this invocation as written by writeExternal. Parameters that were
+     * never serialized are serialized here and kept, like setSerializedParams.
+     * The command log and the messaging threads both size and flatten the same
+     * invocation, so what is kept is only ever set once, under the lock.
+     */
+    public int getSerializedSize() throws IOException {
+        ByteBuffer serializedParams = unserializedParams;
+        byte nameBytes[] = procNameBytes;
+        if (serializedParams == null || nameBytes == null) {
+            synchronized (this) {
+                if (unserializedParams == null) {
+                    FastSerializer fs = new FastSerializer();
+                    fs.writeObject(getParams());
+                    unserializedParams = ByteBuffer.wrap(fs.getBytes());
+                }
+                if (procNameBytes == null) {
+                    procNameBytes = procName.getBytes("UTF-8");
+                }
+                serializedParams = unserializedParams;
+                nameBytes = procNameBytes;
+            }
+        }
+        int size = 1 + 4 + nameBytes.length + 8 + serializedParams.remaining();
+        if (type == ProcedureInvocationType.REPLICATED) {
+            size += 8;
+        }
+        return size;
+    }
+
+    /**
+     * Write the same bytes as writeExternal straight into a buffer, copying the
+     * serialized parameters without decoding them. getSerializedSize() must be
+     * called first and the buffer must have that much room.
+     */
+    public void flattenToBuffer(ByteBuffer buf) {
+        buf.put(type.getValue());
+        if (type == ProcedureInvocationType.REPLICATED) {
+            buf.putLong(originalTxnId);
+        }
+        buf.putInt(procNameBytes.length);
+        buf.put(procNameBytes);
+        buf.putLong(clientHandle);
+        buf.put(unserializedParams.duplicate());
+    }
+
     @Override
     public void writeExternal(FastSerializer out) throws IOException {
         assert(!((params == null) && (unserializedParams == null)));
@@ -247,14 +315,13 @@ public class StoredProcedureInvocation implements FastSerializable, JSONString {
 
     @Override
     public String toJSONString() {
-        params.run();
         JSONStringer js = new JSONStringer();
         try {
             js.object();
             js.key("proc_name");
             js.value(procName);
             js.key("parameters");
-            js.value(params.get());
+            js.value(getParams());
             js.endObject();
         }
         catch (Exception e) {
@@ -23,11 +23,15 @@ public enum SysProcSelector {
     STARVATION,
     INITIATOR,        // invoked as @stat initiator
     LATENCY,          // invoked as @stat latency
+    HTTP,             // JSON response encoding time of the http interface
     PARTITIONCOUNT,
     IOSTATS,
     MEMORY,           // info about node's memory usage
     LIVECLIENTS,      // info about the currently connected clients
+    PLANNER,          // ad hoc plan cache counters
     MANAGEMENT,       //Returns pretty much everything
+    TOPO,             // partition to host mapping and procedure partitioning for clients
+    RESTORE,          // snapshot restore progress of each host
 
     SNAPSHOTSTATUS,
 
@@ -169,6 +169,18 @@ public class VoltDB {
 
         public int m_drAgentPortStart = DEFAULT_DR_PORT;
 
+        /**
+         * Number of network selection loops, each owning a share of the
+         * connections. Zero uses a single selector feeding a thread pool.
+         */
+        public int m_networkSelectorLoops = 0;
+
+        /**
+         * Whether execution sites receive through a lock free mailbox instead
+         * of the monitor based SiteMailbox.
+         */
+        public boolean m_lockFreeSiteMailbox = false;
+
         public Configuration() { }
 
         public Configuration(String args[]) {
@@ -297,6 +309,10 @@ public class VoltDB {
                     m_pathToLicense = args[++i];
                 } else if (arg.equalsIgnoreCase("useWatchdogs")) {
                     m_useWatchdogs = true;
+                } else if (arg.equalsIgnoreCase("networkloops")) {
+                    m_networkSelectorLoops = Integer.parseInt(args[++i]);
+                } else if (arg.equalsIgnoreCase("lockfreemailbox")) {
+                    m_lockFreeSiteMailbox = true;
                 } else if (arg.equalsIgnoreCase("ipcports")) {
                     String portList = args[++i];
                     String ports[] = portList.split(",");
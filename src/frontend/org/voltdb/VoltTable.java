@@ -30,6 +30,7 @@ import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONObject;
 import org.json_voltpatches.JSONString;
 import org.json_voltpatches.JSONStringer;
+import org.json_voltpatches.JSONWriter;
 import org.voltdb.messaging.FastDeserializer;
 import org.voltdb.messaging.FastSerializable;
 import org.voltdb.messaging.FastSerializer;
@@ -140,6 +141,24 @@ public final class VoltTable extends VoltTableRow implements FastSerializable, J
     int m_rowCount = -1;
     int m_colCount = -1;
 
+    /**
+     * Positions of the length prefix of the first count rows. Rows are only appended
+     * so an index stays valid until the row data is cleared or replaced. Tables are
+     * often shared by readers on several threads, so an index is never changed once
+     * published and readers that need more rows publish an extended copy.
+     */
+    private static final class RowIndex {
+        final int[] offsets;
+        final int count;
+
+        RowIndex(int[] offsets, int count) {
+            this.offsets = offsets;
+            this.count = count;
+        }
+    }
+
+    private volatile RowIndex m_rowIndex = null;
+
     // JSON KEYS FOR SERIALIZATION
     static final String JSON_NAME_KEY = "name";
     static final String JSON_TYPE_KEY = "type";
@@ -343,6 +362,7 @@ public final class VoltTable extends VoltTableRow implements FastSerializable, J
         m_buffer.position(m_rowStart);
         m_buffer.putInt(0);
         m_rowCount = 0;
+        m_rowIndex = null;
         assert(verifyTableInvariants());
     }
 
@@ -414,6 +434,11 @@ public final class VoltTable extends VoltTableRow implements FastSerializable, J
             return VoltTable.this.getRowStart();
         }
 
+        @Override
+        protected int getRowPosition(int rowIndex) {
+            return VoltTable.this.getRowPosition(rowIndex);
+        }
+
         @Override
         public VoltTableRow cloneRow() {
             Row retval = new Row(m_position);
@@ -475,10 +500,11 @@ public final class VoltTable extends VoltTableRow implements FastSerializable, J
     }
 
     /**
-     * Return a {@link VoltTableRow} instance with the specified index. This method
-     * is not performant because it has to scan the length prefix of every row preceding
-     * the requested row in order to find the position of the requested row. Use advanceRow
-     * or advanceToRow instead.
+     * Return a {@link VoltTableRow} instance with the specified index. The first fetch
+     * past the rows fetched so far scans the length prefix of the rows in between, the
+     * positions are remembered so fetching the same or an earlier row again doesn't.
+     * Prefer advanceRow or advanceToRow on a single row instance over fetching a new
+     * row for every index.
      * @param index Index of the row
      * @return The requested {@link VoltTableRow Row}.
      * @throws IndexOutOfBoundsException if no row exists at the given index.
@@ -489,14 +515,173 @@ public final class VoltTable extends VoltTableRow implements FastSerializable, J
             throw new IndexOutOfBoundsException("index = " + index + "; rows = " + m_rowCount);
         }
 
+        Row retval = new Row(getRowPosition(index));
+        retval.m_activeRowIndex = index;
+        return retval;
+    }
+
+    @Override
+    protected final int getRowPosition(int rowIndex) {
+        RowIndex index = m_rowIndex;
+        if (index == null || rowIndex >= index.count) {
+            index = indexRows(index, rowIndex + 1);
+        }
+        // add 4 bytes to skip the row length
+        return index.offsets[rowIndex] + 4;
+    }
+
+    /**
+     * Extend an index to cover at least rowCount rows and publish it. Slots past
+     * the end of a published index may be filled in by several readers at once,
+     * they all write the same positions.
+     */
+    private final RowIndex indexRows(RowIndex index, int rowCount) {
+        final int indexed = index == null ? 0 : index.count;
+        int[] offsets = index == null ? null : index.offsets;
+        if (offsets == null || offsets.length < rowCount) {
+            final int length = offsets == null ? 0 : offsets.length * 2;
+            final int[] grown = new int[Math.max(rowCount, Math.max(m_rowCount, length))];
+            if (offsets != null) {
+                System.arraycopy(offsets, 0, grown, 0, indexed);
+            }
+            offsets = grown;
+        }
+        int pos;
+        if (indexed == 0) {
+            pos = m_rowStart + 4;
+        } else {
+            pos = offsets[indexed - 1];
+            // add 4 bytes as the row size is non-inclusive
+            pos += m_buffer.getInt(pos) + 4;
+        }
+        for (int row = indexed; row < rowCount; row++) {
+            offsets[row] = pos;
+            pos += m_buffer.getInt(pos) + 4;
+        }
+        final RowIndex extended = new RowIndex(offsets, rowCount);
+        m_rowIndex = extended;
+        return extended;
+    }
+
+    /**
+     * Position of the given column relative to the start of a row's data, or -1
+     * if it comes after a variable length column and so differs from row to row.
+     */
+    private static int fixedColumnOffset(VoltType[] types, int columnIndex) {
+        int offset = 0;
+        for (int i = 0; i < columnIndex; i++) {
+            final VoltType type = types[i];
+            if ((type == VoltType.STRING) || (type == VoltType.VARBINARY)) {
+                return -1;
+            }
+            offset += type.getLengthInBytesForFixedTypes();
+        }
+        return offset;
+    }
+
+    /**
+     * Position of a column in the row whose data starts at position, skipping
+     * over the values of the columns before it.
+     */
+    private final int columnPosition(int position, VoltType[] types, int columnIndex) {
+        for (int i = 0; i < columnIndex; i++) {
+            final VoltType type = types[i];
+            if ((type == VoltType.STRING) || (type == VoltType.VARBINARY)) {
+                final int len = m_buffer.getInt(position);
+                position += (len == NULL_STRING_INDICATOR ? 0 : len) + STRING_LEN_SIZE;
+            }
+            else {
+                position += type.getLengthInBytesForFixedTypes();
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Copy every value of an integral or timestamp column into an array in row order
+     * without boxing or moving the active row. <tt>null</tt> values are returned as the
+     * null value of the column's type, e.g. {@link VoltType#NULL_INTEGER}.
+     * @param columnIndex Index of the column
+     * @return The values of the column, one per row.
+     */
+    public final long[] getColumnAsLongs(int columnIndex) {
+        assert(verifyTableInvariants());
+        if ((columnIndex < 0) || (columnIndex >= m_colCount)) {
+            throw new IndexOutOfBoundsException("Column index " + columnIndex + " is greater than the number of columns");
+        }
+        final VoltType type = getColumnType(columnIndex);
+        switch (type) {
+        case TINYINT:
+        case SMALLINT:
+        case INTEGER:
+        case BIGINT:
+        case TIMESTAMP:
+            break;
+        default:
+            throw new IllegalArgumentException("Column index " + columnIndex + " is type " + type);
+        }
+
+        final long[] values = new long[m_rowCount];
+        final VoltType[] types = new VoltType[columnIndex];
+        for (int i = 0; i < columnIndex; i++) {
+            types[i] = getColumnType(i);
+        }
+        final int fixedOffset = fixedColumnOffset(types, columnIndex);
         int pos = m_rowStart + 4;
-        for (int i = 0; i < index; i++) {
+        for (int row = 0; row < m_rowCount; row++) {
+            final int rowData = pos + 4;
+            final int offset = fixedOffset >= 0 ? rowData + fixedOffset : columnPosition(rowData, types, columnIndex);
+            switch (type) {
+            case TINYINT:
+                values[row] = m_buffer.get(offset);
+                break;
+            case SMALLINT:
+                values[row] = m_buffer.getShort(offset);
+                break;
+            case INTEGER:
+                values[row] = m_buffer.getInt(offset);
+                break;
+            default:
+                values[row] = m_buffer.getLong(offset);
+                break;
+            }
             // add 4 bytes as the row size is non-inclusive
             pos += m_buffer.getInt(pos) + 4;
         }
-        Row retval = new Row(pos + 4);
-        retval.m_activeRowIndex = index;
-        return retval;
+        return values;
+    }
+
+    /**
+     * Copy every value of a FLOAT column into an array in row order without boxing
+     * or moving the active row. <tt>null</tt> values are returned as {@link VoltType#NULL_FLOAT}.
+     * @param columnIndex Index of the column
+     * @return The values of the column, one per row.
+     */
+    public final double[] getColumnAsDoubles(int columnIndex) {
+        assert(verifyTableInvariants());
+        if ((columnIndex < 0) || (columnIndex >= m_colCount)) {
+            throw new IndexOutOfBoundsException("Column index " + columnIndex + " is greater than the number of columns");
+        }
+        final VoltType type = getColumnType(columnIndex);
+        if (type != VoltType.FLOAT) {
+            throw new IllegalArgumentException("Column index " + columnIndex + " is type " + type);
+        }
+
+        final double[] values = new double[m_rowCount];
+        final VoltType[] types = new VoltType[columnIndex];
+        for (int i = 0; i < columnIndex; i++) {
+            types[i] = getColumnType(i);
+        }
+        final int fixedOffset = fixedColumnOffset(types, columnIndex);
+        int pos = m_rowStart + 4;
+        for (int row = 0; row < m_rowCount; row++) {
+            final int rowData = pos + 4;
+            final int offset = fixedOffset >= 0 ? rowData + fixedOffset : columnPosition(rowData, types, columnIndex);
+            values[row] = m_buffer.getDouble(offset);
+            // add 4 bytes as the row size is non-inclusive
+            pos += m_buffer.getInt(pos) + 4;
+        }
+        return values;
     }
 
     /**
@@ -846,6 +1031,7 @@ public final class VoltTable extends VoltTableRow implements FastSerializable, J
 
         m_colCount = m_buffer.getShort(5);
         m_rowCount = m_buffer.getInt(m_rowStart);
+        m_rowIndex = null;
 
         assert(verifyTableInvariants());
     }
@@ -998,36 +1184,7 @@ public final class VoltTable extends VoltTableRow implements FastSerializable, J
     public String toJSONString() {
         JSONStringer js = new JSONStringer();
         try {
-
-            js.object();
-
-            // status code (1 byte)
-            js.key(JSON_STATUS_KEY).value(getStatusCode());
-
-            // column schema
-            js.key(JSON_SCHEMA_KEY).array();
-            for (int i = 0; i < getColumnCount(); i++) {
-                js.object();
-                js.key(JSON_NAME_KEY).value(getColumnName(i));
-                js.key(JSON_TYPE_KEY).value(getColumnType(i).getValue());
-                js.endObject();
-            }
-            js.endArray();
-
-            // row data
-            js.key(JSON_DATA_KEY).array();
-            VoltTableRow row = cloneRow();
-            row.resetRowPosition();
-            while (row.advanceRow()) {
-                js.array();
-                for (int i = 0; i < getColumnCount(); i++) {
-                    row.putJSONRep(i, js);
-                }
-                js.endArray();
-            }
-            js.endArray();
-
-            js.endObject();
+            writeJSON(js);
         }
         catch (JSONException e) {
             e.printStackTrace();
@@ -1036,6 +1193,46 @@ public final class VoltTable extends VoltTableRow implements FastSerializable, J
         return js.toString();
     }
 
+    /**
+     * Write the JSON representation of this table to a writer one value at a time,
+     * without building it as a string first. The active row is not moved.
+     * @param js Writer positioned where a value is expected.
+     * @throws JSONException
+     */
+    public void writeJSON(JSONWriter js) throws JSONException {
+        js.object();
+
+        // status code (1 byte)
+        js.key(JSON_STATUS_KEY).value(getStatusCode());
+
+        // column schema
+        final VoltType[] types = new VoltType[getColumnCount()];
+        js.key(JSON_SCHEMA_KEY).array();
+        for (int i = 0; i < getColumnCount(); i++) {
+            types[i] = getColumnType(i);
+            js.object();
+            js.key(JSON_NAME_KEY).value(getColumnName(i));
+            js.key(JSON_TYPE_KEY).value(types[i].getValue());
+            js.endObject();
+        }
+        js.endArray();
+
+        // row data
+        js.key(JSON_DATA_KEY).array();
+        VoltTableRow row = cloneRow();
+        row.resetRowPosition();
+        while (row.advanceRow()) {
+            js.array();
+            for (int i = 0; i < types.length; i++) {
+                row.putJSONRep(i, types[i], js);
+            }
+            js.endArray();
+        }
+        js.endArray();
+
+        js.endObject();
+    }
+
     /**
      * Construct a table from a JSON string. Only parses VoltDB VoltTable JSON format.
      *
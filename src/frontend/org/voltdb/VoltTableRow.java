@@ -22,7 +22,7 @@ import java.math.BigDecimal;
 import java.nio.ByteBuffer;
 
 import org.json_voltpatches.JSONException;
-import org.json_voltpatches.JSONStringer;
+import org.json_voltpatches.JSONWriter;
 import org.voltdb.types.TimestampType;
 import org.voltdb.types.VoltDecimalHelper;
 import org.voltdb.utils.Encoder;
@@ -121,6 +121,12 @@ public abstract class VoltTableRow {
 
     protected abstract int getRowStart();
 
+    /**
+     * Return the position of the data of the row at the given index, which
+     * must be at least 0 and less than the row count.
+     */
+    protected abstract int getRowPosition(int rowIndex);
+
     /**
      * Clone a row. The new instance returned will have an independent
      * position from the original instance.
@@ -198,10 +204,18 @@ public abstract class VoltTableRow {
      * {@link #resetRowPosition()} must be called to re-iterate through the
      * rows.
      *
+     * Jumping to anything other than the next row does not scan the rows in
+     * between, the position of each row is only found once per table.
+     *
      * @param rowIndex The row to jump to.
      * @return True if a valid row became active. False otherwise.
      */
     public boolean advanceToRow(int rowIndex) {
+        final int previousRowIndex = m_activeRowIndex;
+        if (rowIndex < 0) {
+            m_activeRowIndex = INVALID_ROW_INDEX;
+            return false;
+        }
         m_activeRowIndex = rowIndex;
         if (m_activeRowIndex >= getRowCount())
             return false;
@@ -212,6 +226,8 @@ public abstract class VoltTableRow {
 
         if (m_activeRowIndex == 0)
             m_position = getRowStart() + ROW_COUNT_SIZE + ROW_HEADER_SIZE;
+        else if (m_activeRowIndex != previousRowIndex + 1)
+            m_position = getRowPosition(m_activeRowIndex);
         else {
             int rowlength = m_buffer.getInt(m_position - ROW_HEADER_SIZE);
             if (rowlength <= 0) {
@@ -445,6 +461,32 @@ public abstract class VoltTableRow {
         return data;
     }
 
+    /**
+     * Retrieve the <tt>string</tt> value stored in the column specified by index as
+     * a read only view of the table's buffer, without copying the bytes. The view is
+     * positioned at the start of the UTF-8 encoded string and stays valid as long as
+     * rows are not added to the table. Looking at the return value is not a reliable
+     * way to check if the value is <tt>null</tt>. Use {@link #wasNull()} instead.
+     * @param columnIndex Index of the column
+     * @return <tt>string</tt> value stored in the specified column as a <tt>ByteBuffer</tt>
+     * @see #wasNull()
+     * @see #getStringAsBytes(int)
+     */
+    public final ByteBuffer getStringAsByteBuffer(int columnIndex) {
+        validateColumnType(columnIndex, VoltType.STRING);
+        final int position = getOffset(columnIndex);
+        final int len = m_buffer.getInt(position);
+        if (len == VoltTable.NULL_STRING_INDICATOR) {
+            m_wasNull = true;
+            return null;
+        }
+        m_wasNull = false;
+        final ByteBuffer view = m_buffer.asReadOnlyBuffer();
+        view.limit(position + STRING_LEN_SIZE + len);
+        view.position(position + STRING_LEN_SIZE);
+        return view.slice();
+    }
+
     /**
      * Retrieve the <tt>string</tt> value stored in the column
      * specified by name as an array of bytes. Assume UTF-8 encoding for all
@@ -608,13 +650,14 @@ public abstract class VoltTableRow {
     /**
      *
      * @param columnIndex
+     * @param type The type of the column, passed in so it is looked up once per table
      * @param js
      * @throws JSONException
      */
-    void putJSONRep(int columnIndex, JSONStringer js) throws JSONException {
+    void putJSONRep(int columnIndex, VoltType type, JSONWriter js) throws JSONException {
         long value; double dvalue;
 
-        switch (getColumnType(columnIndex)) {
+        switch (type) {
         case TINYINT:
             value = getLong(columnIndex);
             if (value == VoltType.NULL_TINYINT)
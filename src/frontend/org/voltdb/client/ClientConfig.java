@@ -53,6 +53,7 @@ public class ClientConfig {
             m_defaultMaxArenaSize//262144
     };
     boolean m_heavyweight = false;
+    boolean m_topologyAware = false;
     int m_maxOutstandingTxns = 3000;
     StatsUploaderSettings m_statsSettings = null;
     long m_procedureCallTimeoutMS = DEFAULT_PROCEDURE_TIMOUT_MS;
@@ -170,6 +171,17 @@ public class ClientConfig {
         m_heavyweight = cores > 4 ? heavyweight : false;
     }
 
+    /**
+     * Send single partition procedure invocations directly to a connection to
+     * a host that owns the partition instead of round robin. The client fetches
+     * the partition to host mapping with @Statistics TOPO when a connection is
+     * created. Invocations that can't be routed, and everything sent before the
+     * mapping arrives, still go round robin.
+     */
+    public void setTopologyAware(boolean topologyAware) {
+        m_topologyAware = topologyAware;
+    }
+
     /**
      * Provide a hint indicating how large messages will be once serialized. Ensures
      * efficient message buffer allocation.
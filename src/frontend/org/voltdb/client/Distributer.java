@@ -33,6 +33,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.voltdb.ClientResponseImpl;
+import org.voltdb.TheHashinator;
 import org.voltdb.VoltTable;
 import org.voltdb.VoltTable.ColumnInfo;
 import org.voltdb.VoltType;
@@ -46,6 +47,7 @@ import org.voltdb.network.VoltNetwork;
 import org.voltdb.network.VoltProtocolHandler;
 import org.voltdb.utils.DBBPool;
 import org.voltdb.utils.DBBPool.BBContainer;
+import org.voltdb.utils.LatencyHistogram;
 import org.voltdb.utils.MiscUtils;
 import org.voltdb.utils.Pair;
 
@@ -58,6 +60,11 @@ import org.voltdb.utils.Pair;
 class Distributer {
 
     static final long PING_HANDLE = Long.MAX_VALUE;
+    static final long TOPOLOGY_HANDLE = Long.MAX_VALUE - 1;
+
+    // how often a topology aware client asks for the topology again so that
+    // routing catches up with hosts that failed or rejoined
+    static final long TOPOLOGY_REFRESH_MS = 10000;
 
     // collection of connections to the cluster
     private final ArrayList<NodeConnection> m_connections = new ArrayList<NodeConnection>();
@@ -67,9 +74,26 @@ class Distributer {
     //Selector and connection handling, does all work in blocking selection thread
     private final VoltNetwork m_network;
 
-    // Temporary until a distribution/affinity algorithm is written
+    // Round robin position for invocations that can't be sent to an owning host
     private int m_nextConnection = 0;
 
+    /*
+     * Topology aware routing. The partition count, partition to host mapping
+     * and partitioning parameters come from @Statistics TOPO and are refreshed
+     * whenever a connection is added or lost, and every TOPOLOGY_REFRESH_MS.
+     * m_partitionConnections is rebuilt from them whenever the set of
+     * connections changes and is null until the first topology arrives, in
+     * which case everything is sent round robin.
+     */
+    private final boolean m_topologyAware;
+    private long m_lastTopologyRequest = 0;
+    private int m_partitionCount = 0;
+    private final HashMap<Integer, ArrayList<Integer>> m_partitionHosts =
+        new HashMap<Integer, ArrayList<Integer>>();
+    private final HashMap<String, Integer> m_procedurePartitionParameters =
+        new HashMap<String, Integer>();
+    private ArrayList<ArrayList<NodeConnection>> m_partitionConnections = null;
+
     private final int m_expectedOutgoingMessageSize;
 
     private final DBBPool m_pool;
@@ -129,11 +153,16 @@ class Distributer {
         private int m_minClusterRoundTripTime = Integer.MAX_VALUE;
         private int m_lastMinClusterRoundTripTime = Integer.MAX_VALUE;
 
+        // client round trip in microseconds, written under the connection lock
+        private final LatencyHistogram m_roundTripHistogram = new LatencyHistogram();
+        private LatencyHistogram m_lastRoundTripHistogram = new LatencyHistogram();
+
         public ProcedureStats(String name) {
             m_name = name;
         }
 
-        public void update(int roundTripTime, int clusterRoundTripTime, boolean abort, boolean error) {
+        public void update(int roundTripTime, long roundTripMicros, int clusterRoundTripTime, boolean abort, boolean error) {
+            m_roundTripHistogram.record(roundTripMicros);
             m_maxRoundTripTime = Math.max(roundTripTime, m_maxRoundTripTime);
             m_lastMaxRoundTripTime = Math.max( roundTripTime, m_lastMaxRoundTripTime);
             m_minRoundTripTime = Math.min( roundTripTime, m_minRoundTripTime);
@@ -182,6 +211,14 @@ class Distributer {
 
             long now = System.currentTimeMillis();
 
+            if (m_topologyAware) {
+                synchronized (Distributer.this) {
+                    if (now - m_lastTopologyRequest > TOPOLOGY_REFRESH_MS) {
+                        requestTopology();
+                    }
+                }
+            }
+
             // for each connection
             for (NodeConnection c : connections) {
                 synchronized(c) {
@@ -237,10 +274,12 @@ class Distributer {
     class CallbackBookeeping {
         public CallbackBookeeping(long timestamp, ProcedureCallback callback, String name) {
             this.timestamp = timestamp;
+            this.nanoTimestamp = System.nanoTime();
             this.callback = callback;
             this.name = name;
         }
         long timestamp;
+        long nanoTimestamp;
         ProcedureCallback callback;
         String name;
     }
@@ -331,6 +370,20 @@ class Distributer {
             m_outstandingPing = true;
         }
 
+        void sendTopologyRequest() {
+            ProcedureInvocation invocation =
+                new ProcedureInvocation(TOPOLOGY_HANDLE, "@Statistics", "TOPO", 0);
+            final FastSerializer fs = new FastSerializer(m_pool, 128);
+            BBContainer c = null;
+            try {
+                c = fs.writeObjectForMessaging(invocation);
+            } catch (IOException e) {
+                fs.getBBContainer().discard();
+                throw new RuntimeException(e);
+            }
+            m_connection.writeStream().enqueue(c);
+        }
+
         /**
          * Update the procedures statistics
          * @param name Name of procedure being updated
@@ -342,6 +395,7 @@ class Distributer {
         private void updateStats(
                 String name,
                 int roundTrip,
+                long roundTripMicros,
                 int clusterRoundTrip,
                 boolean abort,
                 boolean failure) {
@@ -350,12 +404,13 @@ class Distributer {
                 stats = new ProcedureStats(name);
                 m_stats.put( name, stats);
             }
-            stats.update(roundTrip, clusterRoundTrip, abort, failure);
+            stats.update(roundTrip, roundTripMicros, clusterRoundTrip, abort, failure);
         }
 
         @Override
         public void handleMessage(ByteBuffer buf, Connection c) {
             long now = System.currentTimeMillis();
+            long nowNanos = System.nanoTime();
             ClientResponseImpl response = null;
             FastDeserializer fds = new FastDeserializer(buf);
             try {
@@ -375,6 +430,17 @@ class Distributer {
                     m_outstandingPing = false;
                     return;
                 }
+            }
+
+            // topology is applied outside the connection lock, it takes the distributer's
+            if (response.getClientHandle() == TOPOLOGY_HANDLE) {
+                if (response.getStatus() == ClientResponse.SUCCESS) {
+                    updateTopology(response.getResults());
+                }
+                return;
+            }
+
+            synchronized (this) {
 
                 CallbackBookeeping stuff = m_callbacks.remove(response.getClientHandle());
                 // presumably (hopefully) this is a response for a timed-out message
@@ -399,7 +465,8 @@ class Distributer {
                         m_invocationErrors++;
                         error = true;
                     }
-                    updateStats(stuff.name, delta, response.getClusterRoundtrip(), abort, error);
+                    updateStats(stuff.name, delta, (nowNanos - stuff.nanoTimestamp) / 1000,
+                                response.getClusterRoundtrip(), abort, error);
                 }
             }
 
@@ -441,6 +508,11 @@ class Distributer {
                 //Prevent queueing of new work to this connection
                 synchronized (Distributer.this) {
                     m_connections.remove(this);
+                    updatePartitionConnections();
+                    // the lost host's partitions may have moved to other replicas
+                    if (m_topologyAware) {
+                        requestTopology();
+                    }
                     //Notify listeners that a connection has been lost
                     for (ClientStatusListenerExt s : m_listeners) {
                         s.connectionLost(m_hostname, m_port, m_connections.size(), m_closeCause);
@@ -568,6 +640,19 @@ class Distributer {
             StatsUploaderSettings statsSettings,
             long procedureCallTimeoutMS,
             long connectionResponseTimeoutMS) {
+        this(expectedOutgoingMessageSize, arenaSizes, useMultipleThreads, statsSettings,
+                procedureCallTimeoutMS, connectionResponseTimeoutMS, false);
+    }
+
+    Distributer(
+            int expectedOutgoingMessageSize,
+            int arenaSizes[],
+            boolean useMultipleThreads,
+            StatsUploaderSettings statsSettings,
+            long procedureCallTimeoutMS,
+            long connectionResponseTimeoutMS,
+            boolean topologyAware) {
+        m_topologyAware = topologyAware;
         if (statsSettings != null) {
             m_statsLoader = new ClientStatsLoader(statsSettings, this);
         } else {
@@ -660,6 +745,104 @@ class Distributer {
         cxn.m_hostname = c.getHostnameOrIP();
         cxn.m_port = port;
         cxn.m_connection = c;
+        if (m_topologyAware) {
+            updatePartitionConnections();
+            m_lastTopologyRequest = System.currentTimeMillis();
+            cxn.sendTopologyRequest();
+        }
+    }
+
+    /**
+     * Ask one of the connections for the current topology.
+     */
+    private void requestTopology() {
+        if (m_connections.isEmpty()) {
+            return;
+        }
+        m_lastTopologyRequest = System.currentTimeMillis();
+        m_connections.get(Math.abs(++m_nextConnection % m_connections.size())).sendTopologyRequest();
+    }
+
+    /**
+     * Replace the partition count, the partition to host mapping and the
+     * partitioning parameters with the results of @Statistics TOPO.
+     */
+    synchronized void updateTopology(VoltTable results[]) {
+        VoltTable partitionCount = results[2];
+        partitionCount.advanceRow();
+        m_partitionCount = (int)partitionCount.getLong("PARTITION_COUNT");
+        m_partitionHosts.clear();
+        VoltTable partitions = results[0];
+        while (partitions.advanceRow()) {
+            final int partition = (int)partitions.getLong("PARTITION_ID");
+            ArrayList<Integer> hosts = m_partitionHosts.get(partition);
+            if (hosts == null) {
+                hosts = new ArrayList<Integer>();
+                m_partitionHosts.put(partition, hosts);
+            }
+            hosts.add((int)partitions.getLong("HOST_ID"));
+        }
+        m_procedurePartitionParameters.clear();
+        VoltTable procedures = results[1];
+        while (procedures.advanceRow()) {
+            m_procedurePartitionParameters.put(procedures.getString("PROCEDURE_NAME"),
+                                               (int)procedures.getLong("PARTITION_PARAMETER"));
+        }
+        updatePartitionConnections();
+    }
+
+    /**
+     * Map each partition to the connections of the hosts that own it.
+     * Partitions without a live replica get no connections.
+     */
+    private void updatePartitionConnections() {
+        if (m_partitionCount == 0) {
+            m_partitionConnections = null;
+            return;
+        }
+        ArrayList<ArrayList<NodeConnection>> partitionConnections =
+            new ArrayList<ArrayList<NodeConnection>>(m_partitionCount);
+        for (int partition = 0; partition < m_partitionCount; partition++) {
+            ArrayList<NodeConnection> owners = new ArrayList<NodeConnection>();
+            ArrayList<Integer> hosts = m_partitionHosts.get(partition);
+            if (hosts != null) {
+                for (NodeConnection cxn : m_connections) {
+                    if (hosts.contains(cxn.m_hostId)) {
+                        owners.add(cxn);
+                    }
+                }
+            }
+            partitionConnections.add(owners);
+        }
+        m_partitionConnections = partitionConnections;
+    }
+
+    /**
+     * Find a connection to a host that owns the partition the invocation
+     * will run at, or null if it isn't a known single partition procedure or
+     * none of the owning connections can take work.
+     */
+    private NodeConnection getPartitionConnection(ProcedureInvocation invocation, boolean ignoreBackpressure) {
+        if (m_partitionConnections == null) {
+            return null;
+        }
+        final Integer partitionParameter = m_procedurePartitionParameters.get(invocation.getProcName());
+        if (partitionParameter == null) {
+            return null;
+        }
+        // hashed the same way the initiating host will hash it
+        final int partition =
+            TheHashinator.hashToPartition(invocation.getParameterAtIndex(partitionParameter),
+                                          m_partitionConnections.size());
+        final ArrayList<NodeConnection> owners = m_partitionConnections.get(partition);
+        final int totalOwners = owners.size();
+        for (int i = 0; i < totalOwners; ++i) {
+            NodeConnection cxn = owners.get(Math.abs(++m_nextConnection % totalOwners));
+            if (!cxn.hadBackPressure() || ignoreBackpressure) {
+                return cxn;
+            }
+        }
+        return null;
     }
 
 //    private HashMap<String, Long> reportedSizes = new HashMap<String, Long>();
@@ -693,7 +876,12 @@ class Distributer {
                 throw new NoConnectionsException("No connections.");
             }
 
-            for (int i=0; i < totalConnections; ++i) {
+            if (m_topologyAware) {
+                cxn = getPartitionConnection(invocation, ignoreBackpressure);
+                backpressure = cxn == null;
+            }
+
+            for (int i=0; backpressure && i < totalConnections; ++i) {
                 cxn = m_connections.get(Math.abs(++m_nextConnection % totalConnections));
                 if (!cxn.hadBackPressure() || ignoreBackpressure) {
                     // serialize and queue the invocation
@@ -826,6 +1014,9 @@ class Distributer {
             new ColumnInfo( "INVOCATIONS_COMPLETED", VoltType.BIGINT),
             new ColumnInfo( "INVOCATIONS_ABORTED", VoltType.BIGINT),
             new ColumnInfo( "INVOCATIONS_FAILED", VoltType.BIGINT),
+            new ColumnInfo( "ROUNDTRIPTIME_P50_MICROS", VoltType.BIGINT),
+            new ColumnInfo( "ROUNDTRIPTIME_P99_MICROS", VoltType.BIGINT),
+            new ColumnInfo( "ROUNDTRIPTIME_P99_9_MICROS", VoltType.BIGINT),
     };
 
     private final ColumnInfo[] getRTTStatsColumns() {
@@ -920,6 +1111,7 @@ class Distributer {
                         long clusterRoundTripTime = stats.m_clusterRoundTripTime;
                         int clusterMinRoundTripTime = stats.m_minClusterRoundTripTime;
                         int clusterMaxRoundTripTime = stats.m_maxClusterRoundTripTime;
+                        LatencyHistogram histogram = stats.m_roundTripHistogram;
 
                         if (interval) {
                             invocationsCompleted = stats.m_invocationsCompleted - stats.m_lastInvocationsCompleted;
@@ -952,6 +1144,9 @@ class Distributer {
 
                             stats.m_lastMaxClusterRoundTripTime = Integer.MIN_VALUE;
                             stats.m_lastMinClusterRoundTripTime = Integer.MAX_VALUE;
+
+                            histogram = stats.m_roundTripHistogram.since(stats.m_lastRoundTripHistogram);
+                            stats.m_lastRoundTripHistogram = stats.m_roundTripHistogram.copy();
                         }
                         totalInvocations += invocationsCompleted;
                         totalAbortedInvocations += invocationAborts;
@@ -978,7 +1173,10 @@ class Distributer {
                                 clusterMaxRoundTripTime,
                                 invocationsCompleted,
                                 invocationAborts,
-                                invocationErrors
+                                invocationErrors,
+                                histogram.getValueAtPercentile(50),
+                                histogram.getValueAtPercentile(99),
+                                histogram.getValueAtPercentile(99.9)
                                 );
                     }
                 }
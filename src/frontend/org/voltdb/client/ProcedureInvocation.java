@@ -65,6 +65,15 @@ class ProcedureInvocation implements FastSerializable {
         return m_procName;
     }
 
+    /** return the parameter at index, or null if there are not that many */
+    Object getParameterAtIndex(int index) {
+        Object params[] = m_parameters.toArray();
+        if (index < 0 || index >= params.length) {
+            return null;
+        }
+        return params[index];
+    }
+
     /** This default deserializer is never used. */
     public void readExternal(FastDeserializer in) throws IOException {
         throw new UnsupportedOperationException("Not supported yet.");
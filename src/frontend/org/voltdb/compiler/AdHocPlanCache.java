@@ -0,0 +1,129 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.compiler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of ad hoc plans keyed on normalized SQL text. Owned by the
+ * {@link org.voltdb.CatalogContext} and handed from one context to the next
+ * on catalog update, which empties it. Plans are tagged with the catalog
+ * version they were made against so that a plan that raced with an update
+ * is never cached under the new catalog.
+ */
+public class AdHocPlanCache {
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    /**
+     * Cached value recorded for a parameterized statement the planner
+     * couldn't handle, so later lookups go straight to planning the
+     * statement with its literals.
+     */
+    static final PlannerTool.Result UNPARAMETERIZABLE = new PlannerTool.Result();
+
+    private final int m_capacity;
+    private int m_catalogVersion;
+
+    private long m_hits = 0;
+    private long m_misses = 0;
+    private long m_evictions = 0;
+    private long m_invalidations = 0;
+
+    private final LinkedHashMap<String, PlannerTool.Result> m_plans;
+
+    public AdHocPlanCache(int catalogVersion) {
+        this(DEFAULT_CAPACITY, catalogVersion);
+    }
+
+    public AdHocPlanCache(int capacity, int catalogVersion) {
+        assert(capacity > 0);
+        m_capacity = capacity;
+        m_catalogVersion = catalogVersion;
+        m_plans = new LinkedHashMap<String, PlannerTool.Result>(capacity * 2, .75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PlannerTool.Result> eldest) {
+                if (size() > m_capacity) {
+                    m_evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Build the cache key for a normalized statement. Single and multi
+     * partition plans for the same text differ, so the flag is part of it.
+     */
+    static String key(String normalizedSql, boolean parameterized, boolean singlePartition) {
+        StringBuilder sb = new StringBuilder(normalizedSql.length() + 3);
+        sb.append(parameterized ? 'P' : 'L');
+        sb.append(singlePartition ? 'S' : 'M');
+        sb.append(':').append(normalizedSql);
+        return sb.toString();
+    }
+
+    public synchronized PlannerTool.Result get(String key) {
+        PlannerTool.Result plan = m_plans.get(key);
+        if (plan == null) {
+            m_misses++;
+        }
+        else {
+            m_hits++;
+        }
+        return plan;
+    }
+
+    /**
+     * Cache a plan made against the given catalog version. Plans for any
+     * other version than the current one are dropped.
+     */
+    public synchronized void put(String key, PlannerTool.Result plan, int catalogVersion) {
+        if (catalogVersion != m_catalogVersion) {
+            return;
+        }
+        m_plans.put(key, plan);
+    }
+
+    /**
+     * Drop every cached plan. Called when the catalog changes.
+     */
+    public synchronized void invalidate(int newCatalogVersion) {
+        if (!m_plans.isEmpty()) {
+            m_invalidations++;
+        }
+        m_plans.clear();
+        m_catalogVersion = newCatalogVersion;
+    }
+
+    public int getCapacity() {
+        return m_capacity;
+    }
+
+    /**
+     * Snapshot of the counters, in the order entries, hits, misses,
+     * evictions, invalidations.
+     */
+    public synchronized long[] getCounters() {
+        return new long[] { m_plans.size(), m_hits, m_misses, m_evictions, m_invalidations };
+    }
+}
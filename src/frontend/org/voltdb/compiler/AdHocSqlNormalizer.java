@@ -0,0 +1,312 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Turns ad hoc SQL text into a canonical form suitable for use as a plan
+ * cache key. Comments are dropped, runs of whitespace outside of quotes are
+ * collapsed to a single space and, where possible, numeric and string
+ * literals are lifted out of the statement and replaced with '?' so that
+ * statements differing only in their constants share one cached plan.
+ */
+public class AdHocSqlNormalizer {
+
+    /**
+     * A literal lifted out of the statement text. String literals have
+     * their surrounding quotes removed and doubled quotes unescaped.
+     */
+    public static class Literal {
+        public final String value;
+        public final boolean isString;
+
+        Literal(String value, boolean isString) {
+            this.value = value;
+            this.isString = isString;
+        }
+
+        @Override
+        public String toString() {
+            return isString ? "'" + value + "'" : value;
+        }
+    }
+
+    public static class Result {
+        /** Statement with whitespace/comments normalized and literals intact. */
+        public final String normalizedSql;
+        /** Statement with literals replaced by '?'. Equal to normalizedSql if nothing was lifted. */
+        public final String parameterizedSql;
+        /** Lifted literals, in the order of the '?' they were replaced by. */
+        public final List<Literal> literals;
+
+        Result(String normalizedSql, String parameterizedSql, List<Literal> literals) {
+            this.normalizedSql = normalizedSql;
+            this.parameterizedSql = parameterizedSql;
+            this.literals = literals;
+        }
+
+        public boolean hasLiterals() {
+            return !literals.isEmpty();
+        }
+    }
+
+    // keywords that type the string literal following them
+    private static final String[] LITERAL_PREFIXES = {
+        "X", "DATE", "TIME", "TIMESTAMP", "INTERVAL"
+    };
+
+    private static boolean isLiteralPrefix(String identifier) {
+        if (identifier == null) {
+            return false;
+        }
+        for (String prefix : LITERAL_PREFIXES) {
+            if (prefix.equalsIgnoreCase(identifier)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // clauses that end an ORDER BY or GROUP BY list
+    private static final String[] CLAUSE_KEYWORDS = {
+        "LIMIT", "OFFSET", "HAVING", "ORDER", "UNION", "INTERSECT", "EXCEPT"
+    };
+
+    private static boolean isClauseKeyword(String identifier) {
+        for (String keyword : CLAUSE_KEYWORDS) {
+            if (keyword.equalsIgnoreCase(identifier)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    /**
+     * Normalize the given statement. Statements that already contain '?'
+     * are never parameterized since ad hoc SQL has no way to bind them.
+     * Numbers following LIMIT or OFFSET and ORDER BY / GROUP BY column
+     * ordinals are never lifted: the planner turns parameters in the former
+     * into parameter indexes rather than expressions and the latter change
+     * the meaning of the statement if they become expressions.
+     */
+    public static Result normalize(String sql) {
+        final int len = sql.length();
+        final StringBuilder normalized = new StringBuilder(len);
+        final StringBuilder parameterized = new StringBuilder(len);
+        final ArrayList<Literal> literals = new ArrayList<Literal>();
+        boolean canParameterize = true;
+        boolean pendingSpace = false;
+        // the last identifier emitted, used to spot prefixed literals like X'00'
+        String lastIdentifier = null;
+        // the last token emitted, used to spot LIMIT/OFFSET counts and ordinals
+        String lastToken = null;
+        // nesting depth of parentheses and the depth of an open ORDER BY or
+        // GROUP BY list, -1 if there is none
+        int depth = 0;
+        int byListDepth = -1;
+
+        int i = 0;
+        while (i < len) {
+            char c = sql.charAt(i);
+
+            // whitespace collapses to a single space between tokens
+            if (Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+                i++;
+                continue;
+            }
+
+            // line comments are dropped entirely
+            if (c == '-' && i + 1 < len && sql.charAt(i + 1) == '-') {
+                while (i < len && sql.charAt(i) != '\n') {
+                    i++;
+                }
+                pendingSpace = normalized.length() > 0;
+                continue;
+            }
+
+            // block comments too, they may nest
+            if (c == '/' && i + 1 < len && sql.charAt(i + 1) == '*') {
+                int nesting = 0;
+                while (i < len) {
+                    if (sql.startsWith("/*", i)) {
+                        nesting++;
+                        i += 2;
+                    }
+                    else if (sql.startsWith("*/", i)) {
+                        i += 2;
+                        if (--nesting == 0) {
+                            break;
+                        }
+                    }
+                    else {
+                        i++;
+                    }
+                }
+                pendingSpace = normalized.length() > 0;
+                continue;
+            }
+
+            if (pendingSpace) {
+                normalized.append(' ');
+                parameterized.append(' ');
+                pendingSpace = false;
+            }
+
+            if (c == '\'') {
+                // string literal with '' as the escaped quote
+                int start = i;
+                StringBuilder value = new StringBuilder();
+                i++;
+                boolean closed = false;
+                while (i < len) {
+                    char s = sql.charAt(i);
+                    if (s == '\'') {
+                        if (i + 1 < len && sql.charAt(i + 1) == '\'') {
+                            value.append('\'');
+                            i += 2;
+                            continue;
+                        }
+                        i++;
+                        closed = true;
+                        break;
+                    }
+                    value.append(s);
+                    i++;
+                }
+                String text = sql.substring(start, i);
+                normalized.append(text);
+                // typed literals (X'..', TIMESTAMP '..') keep their text so
+                // the prefix still applies; unterminated strings are left
+                // for the planner to complain about
+                if (closed && !isLiteralPrefix(lastIdentifier)) {
+                    parameterized.append('?');
+                    literals.add(new Literal(value.toString(), true));
+                }
+                else {
+                    parameterized.append(text);
+                }
+                lastIdentifier = null;
+                lastToken = text;
+                continue;
+            }
+
+            if (c == '"') {
+                // quoted identifiers are copied verbatim
+                int start = i++;
+                while (i < len && sql.charAt(i) != '"') {
+                    i++;
+                }
+                i = Math.min(i + 1, len);
+                String text = sql.substring(start, i);
+                normalized.append(text);
+                parameterized.append(text);
+                lastIdentifier = text;
+                lastToken = text;
+                continue;
+            }
+
+            if (Character.isDigit(c) ||
+                (c == '.' && i + 1 < len && Character.isDigit(sql.charAt(i + 1)))) {
+                // numeric literal: digits, an optional fraction and exponent
+                int start = i;
+                while (i < len && Character.isDigit(sql.charAt(i))) i++;
+                if (i < len && sql.charAt(i) == '.') {
+                    i++;
+                    while (i < len && Character.isDigit(sql.charAt(i))) i++;
+                }
+                if (i < len && (sql.charAt(i) == 'e' || sql.charAt(i) == 'E')) {
+                    int exp = i + 1;
+                    if (exp < len && (sql.charAt(exp) == '+' || sql.charAt(exp) == '-')) exp++;
+                    if (exp < len && Character.isDigit(sql.charAt(exp))) {
+                        i = exp;
+                        while (i < len && Character.isDigit(sql.charAt(i))) i++;
+                    }
+                }
+                String text = sql.substring(start, i);
+                normalized.append(text);
+                boolean isCount = "LIMIT".equalsIgnoreCase(lastToken) ||
+                                  "OFFSET".equalsIgnoreCase(lastToken);
+                boolean isOrdinal = byListDepth == depth &&
+                                    ("BY".equalsIgnoreCase(lastToken) || ",".equals(lastToken));
+                if (isCount || isOrdinal || (i < len && isIdentifierChar(sql.charAt(i)))) {
+                    // counts and ordinals stay as they are, as does something
+                    // like 1abc which is not a literal we understand
+                    parameterized.append(text);
+                }
+                else {
+                    parameterized.append('?');
+                    literals.add(new Literal(text, false));
+                }
+                lastIdentifier = null;
+                lastToken = text;
+                continue;
+            }
+
+            if (isIdentifierChar(c)) {
+                int start = i;
+                while (i < len && isIdentifierChar(sql.charAt(i))) i++;
+                String text = sql.substring(start, i);
+                normalized.append(text);
+                parameterized.append(text);
+                if ("BY".equalsIgnoreCase(text) &&
+                    ("ORDER".equalsIgnoreCase(lastToken) || "GROUP".equalsIgnoreCase(lastToken))) {
+                    byListDepth = depth;
+                }
+                else if (byListDepth == depth && isClauseKeyword(text)) {
+                    byListDepth = -1;
+                }
+                lastIdentifier = text;
+                lastToken = text;
+                continue;
+            }
+
+            if (c == '?') {
+                canParameterize = false;
+            }
+            else if (c == '(') {
+                depth++;
+            }
+            else if (c == ')') {
+                if (byListDepth == depth) {
+                    // the subquery holding the list is done
+                    byListDepth = -1;
+                }
+                depth--;
+            }
+            normalized.append(c);
+            parameterized.append(c);
+            lastIdentifier = null;
+            lastToken = String.valueOf(c);
+            i++;
+        }
+
+        String normalizedSql = normalized.toString();
+        if (!canParameterize || literals.isEmpty()) {
+            return new Result(normalizedSql, normalizedSql, Collections.<Literal>emptyList());
+        }
+        return new Result(normalizedSql, parameterized.toString(), literals);
+    }
+}
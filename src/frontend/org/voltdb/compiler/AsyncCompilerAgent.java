@@ -19,11 +19,16 @@ package org.voltdb.compiler;
 
 import java.lang.Runnable;
 
+import java.util.ArrayList;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import org.voltdb.CatalogContext;
+import org.voltdb.StatsAgent;
+import org.voltdb.SysProcSelector;
+import org.voltdb.VoltTable;
 import org.voltdb.messaging.HostMessenger;
 import org.voltdb.messaging.LocalMailbox;
 import org.voltdb.messaging.LocalObjectMessage;
@@ -55,6 +60,10 @@ public class AsyncCompilerAgent {
     // wraps the VoltPlanner and does the actual query planning
     private PlannerTool m_ptool = null;
 
+    // how often the planner's estimates are rebuilt from this host's table and index statistics
+    static final long ESTIMATES_REFRESH_INTERVAL = 60 * 1000;
+    private long m_lastEstimatesRefresh = 0;
+
     // intended for integration test use. finish planning what's in
     // the queue and terminate the TPE.
     public void shutdown() throws InterruptedException {
@@ -132,11 +141,18 @@ public class AsyncCompilerAgent {
                 m_ptool.shutdown();
             }
             m_ptool = new PlannerTool(context);
+            m_lastEstimatesRefresh = 0;
+        }
+        final long now = System.currentTimeMillis();
+        if (now - m_lastEstimatesRefresh >= ESTIMATES_REFRESH_INTERVAL) {
+            m_lastEstimatesRefresh = now;
+            refreshEstimates(context, now);
         }
         plannedStmt.catalogVersion = context.catalogVersion;
 
         try {
-            PlannerTool.Result result = m_ptool.planSql(work.sql, work.partitionParam != null);
+            PlannerTool.Result result =
+                planSqlWithCache(context, work.sql, work.partitionParam != null);
             plannedStmt.aggregatorFragment = result.onePlan;
             plannedStmt.collectorFragment = result.allPlan;
             plannedStmt.isReplicatedTableDML = result.replicatedDML;
@@ -150,6 +166,104 @@ public class AsyncCompilerAgent {
         return plannedStmt;
     }
 
+    /**
+     * Rebuild the planner's estimates from the table and index statistics the
+     * local sites last collected. Cached plans were chosen with the previous
+     * estimates so they are dropped if any table changed size noticeably.
+     */
+    private void refreshEstimates(CatalogContext context, long now) {
+        final DatabaseEstimates estimates;
+        try {
+            final ArrayList<Integer> sites =
+                context.siteTracker.getLiveExecutionSitesForHost(VoltDB.instance().getHostMessenger().getHostId());
+            if (sites.isEmpty()) {
+                return;
+            }
+            final StatsAgent statsAgent = VoltDB.instance().getStatsAgent();
+            final VoltTable tableStats = statsAgent.getStats(SysProcSelector.TABLE, sites, false, now);
+            if (tableStats == null) {
+                // the sites haven't collected any yet
+                return;
+            }
+            final VoltTable indexStats = statsAgent.getStats(SysProcSelector.INDEX, sites, false, now);
+            estimates = DatabaseEstimates.fromStatistics(tableStats, indexStats);
+        }
+        catch (Exception e) {
+            ahpLog.debug("Unable to refresh ad hoc planner estimates: " + e.getMessage());
+            return;
+        }
+
+        final boolean changed = tableSizesChanged(m_ptool.getEstimates(), estimates);
+        m_ptool.setEstimates(estimates);
+        if (changed) {
+            context.getAdHocPlanCache().invalidate(context.catalogVersion);
+        }
+    }
+
+    /**
+     * True if a measured table is new or its size changed by at least a factor of two
+     */
+    static boolean tableSizesChanged(DatabaseEstimates before, DatabaseEstimates after) {
+        for (Map.Entry<String, DatabaseEstimates.TableEstimates> e : after.tables.entrySet()) {
+            if (!e.getValue().measured) {
+                continue;
+            }
+            final DatabaseEstimates.TableEstimates previous = before.tables.get(e.getKey());
+            if (previous == null || !previous.measured) {
+                return true;
+            }
+            // an empty table counts as a single row so that growing from nothing is a change
+            final double was = Math.max(1, previous.maxTuples);
+            final double now = Math.max(1, e.getValue().maxTuples);
+            if (Math.max(was, now) / Math.min(was, now) >= 2.0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Look the statement up in the catalog's plan cache before planning it.
+     * Statements are first looked up (and planned) with their literals
+     * lifted into parameters so that statements differing only in constants
+     * share a plan. If that doesn't work out for a statement, it is planned
+     * and cached with its literals in place instead.
+     */
+    private PlannerTool.Result planSqlWithCache(CatalogContext context, String sql,
+                                                boolean singlePartition) {
+        final AdHocPlanCache cache = context.getAdHocPlanCache();
+        final AdHocSqlNormalizer.Result normalized = AdHocSqlNormalizer.normalize(sql);
+
+        if (normalized.hasLiterals()) {
+            final String key = AdHocPlanCache.key(normalized.parameterizedSql, true, singlePartition);
+            PlannerTool.Result template = cache.get(key);
+            if (template == null) {
+                try {
+                    template = m_ptool.planParameterizedSql(normalized.parameterizedSql, singlePartition);
+                }
+                catch (Exception e) {
+                    ahpLog.debug("Unable to plan parameterized ad hoc statement: " + e.getMessage());
+                    template = AdHocPlanCache.UNPARAMETERIZABLE;
+                }
+                cache.put(key, template, context.catalogVersion);
+            }
+            if (template != AdHocPlanCache.UNPARAMETERIZABLE) {
+                PlannerTool.Result bound = template.bind(normalized.literals);
+                if (bound != null) {
+                    return bound;
+                }
+            }
+        }
+
+        final String key = AdHocPlanCache.key(normalized.normalizedSql, false, singlePartition);
+        PlannerTool.Result result = cache.get(key);
+        if (result == null) {
+            result = m_ptool.planSql(sql, singlePartition);
+            cache.put(key, result, context.catalogVersion);
+        }
+        return result;
+    }
+
     private AsyncCompilerResult prepareApplicationCatalogDiff(CatalogChangeWork work) {
         // create the change result and set up all the boiler plate
         CatalogChangeResult retval = new CatalogChangeResult();
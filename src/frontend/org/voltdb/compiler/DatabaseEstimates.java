@@ -17,15 +17,41 @@
 
 package org.voltdb.compiler;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.HashMap;
 
+import org.json_voltpatches.JSONArray;
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.json_voltpatches.JSONTokener;
+import org.voltdb.VoltTable;
+
+/**
+ * Table and index cardinalities the planner costs plans with. Tables nothing is known
+ * about are assumed to hold between 100k and 1M rows. Real numbers come from the
+ * TABLE and INDEX statistics of a running database, see {@link #fromStatistics}.
+ */
 public class DatabaseEstimates {
 
     public static class TableEstimates {
         public long maxTuples = 1000000;
         public long minTuples = 100000;
+        // true if the tuple counts were measured rather than assumed
+        public boolean measured = false;
         public ArrayList<ScalarValueHints> valueHints = new ArrayList<ScalarValueHints>();
+        public HashMap<String, IndexEstimates> indexes = new HashMap<String, IndexEstimates>();
+    }
+
+    public static class IndexEstimates {
+        // largest number of entries in the index at any one partition
+        public long entries = 0;
+        // number of distinct keys, -1 if not known
+        public long distinctKeys = -1;
     }
 
     HashMap<String, TableEstimates> tables = new HashMap<String, TableEstimates>();
@@ -36,4 +62,123 @@ public class DatabaseEstimates {
 
         return tables.get(tableName);
     }
+
+    /**
+     * @return The estimates for the index or null if nothing was measured about it.
+     */
+    public IndexEstimates getEstimatesForIndex(String tableName, String indexName) {
+        TableEstimates table = tables.get(tableName);
+        if (table == null)
+            return null;
+        return table.indexes.get(indexName);
+    }
+
+    /**
+     * Build estimates from the output of @Statistics TABLE and INDEX. Plans run against
+     * one partition at a time so each table and index is estimated with its largest
+     * partition. Either table may be null.
+     */
+    public static DatabaseEstimates fromStatistics(VoltTable tableStats, VoltTable indexStats) {
+        DatabaseEstimates estimates = new DatabaseEstimates();
+        if (tableStats != null) {
+            tableStats.resetRowPosition();
+            while (tableStats.advanceRow()) {
+                String tableName = tableStats.getString("TABLE_NAME");
+                long tuples = tableStats.getLong("TUPLE_COUNT");
+                TableEstimates table = estimates.tables.get(tableName);
+                if (table == null) {
+                    table = new TableEstimates();
+                    table.maxTuples = tuples;
+                    table.minTuples = tuples;
+                    table.measured = true;
+                    estimates.tables.put(tableName, table);
+                }
+                table.maxTuples = Math.max(table.maxTuples, tuples);
+                table.minTuples = Math.min(table.minTuples, tuples);
+            }
+            tableStats.resetRowPosition();
+        }
+        if (indexStats != null) {
+            indexStats.resetRowPosition();
+            while (indexStats.advanceRow()) {
+                String tableName = indexStats.getString("TABLE_NAME");
+                String indexName = indexStats.getString("INDEX_NAME");
+                long entries = indexStats.getLong("ENTRY_COUNT");
+                boolean unique = indexStats.getLong("IS_UNIQUE") != 0;
+                TableEstimates table = estimates.getEstimatesForTable(tableName);
+                IndexEstimates index = table.indexes.get(indexName);
+                if (index == null) {
+                    index = new IndexEstimates();
+                    table.indexes.put(indexName, index);
+                }
+                index.entries = Math.max(index.entries, entries);
+                // the EE only counts entries, which are distinct keys for a unique index
+                if (unique)
+                    index.distinctKeys = index.entries;
+            }
+            indexStats.resetRowPosition();
+        }
+        return estimates;
+    }
+
+    /**
+     * Load estimates from a file holding the JSON of @Statistics TABLE and INDEX results,
+     * either as a list of tables or as saved HTTP/JSON interface responses with a "results"
+     * list. Tables are recognized by their columns, anything else is ignored.
+     */
+    public static DatabaseEstimates fromStatisticsFile(File file) throws IOException {
+        VoltTable tableStats = null;
+        VoltTable indexStats = null;
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            JSONTokener tokener = new JSONTokener(reader);
+            ArrayList<JSONObject> candidates = new ArrayList<JSONObject>();
+            // the file may hold several values, e.g. one response per selector
+            while (tokener.nextClean() != 0) {
+                tokener.back();
+                Object value = tokener.nextValue();
+                if (value instanceof JSONArray) {
+                    JSONArray array = (JSONArray) value;
+                    for (int i = 0; i < array.length(); i++)
+                        candidates.add(array.getJSONObject(i));
+                }
+                else if (value instanceof JSONObject) {
+                    candidates.add((JSONObject) value);
+                }
+            }
+            for (JSONObject json : candidates) {
+                ArrayList<JSONObject> jsonTables = new ArrayList<JSONObject>();
+                if (json.has("results")) {
+                    JSONArray results = json.getJSONArray("results");
+                    for (int i = 0; i < results.length(); i++)
+                        jsonTables.add(results.getJSONObject(i));
+                }
+                else {
+                    jsonTables.add(json);
+                }
+                for (JSONObject jsonTable : jsonTables) {
+                    VoltTable table = VoltTable.fromJSONObject(jsonTable);
+                    if (hasColumn(table, "TUPLE_COUNT"))
+                        tableStats = table;
+                    else if (hasColumn(table, "ENTRY_COUNT"))
+                        indexStats = table;
+                }
+            }
+        }
+        catch (JSONException e) {
+            throw new IOException("Unable to read statistics from " + file + ": " + e.getMessage());
+        }
+        finally {
+            reader.close();
+        }
+        return fromStatistics(tableStats, indexStats);
+    }
+
+    private static boolean hasColumn(VoltTable table, String name) {
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            if (table.getColumnName(i).equalsIgnoreCase(name))
+                return true;
+        }
+        return false;
+    }
 }
@@ -0,0 +1,101 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.compiler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.voltdb.StatsSource;
+import org.voltdb.VoltDB;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Reports the ad hoc plan cache counters of this host.
+ */
+public class PlannerStats extends StatsSource {
+
+    // counters as of the last interval poll, same order as AdHocPlanCache.getCounters()
+    private long[] m_lastCounters = new long[5];
+    private long[] m_counters = new long[5];
+
+    public PlannerStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("CACHE_ENTRIES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("CACHE_CAPACITY", VoltType.INTEGER));
+        columns.add(new ColumnInfo("CACHE_HITS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("CACHE_MISSES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("CACHE_EVICTIONS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("CACHE_INVALIDATIONS", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        AdHocPlanCache cache = (AdHocPlanCache) rowKey;
+        rowValues[columnNameToIndex.get("CACHE_ENTRIES")] = (int) m_counters[0];
+        rowValues[columnNameToIndex.get("CACHE_CAPACITY")] = cache.getCapacity();
+        rowValues[columnNameToIndex.get("CACHE_HITS")] = m_counters[1];
+        rowValues[columnNameToIndex.get("CACHE_MISSES")] = m_counters[2];
+        rowValues[columnNameToIndex.get("CACHE_EVICTIONS")] = m_counters[3];
+        rowValues[columnNameToIndex.get("CACHE_INVALIDATIONS")] = m_counters[4];
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        final AdHocPlanCache cache = VoltDB.instance().getCatalogContext().getAdHocPlanCache();
+        long[] counters = cache.getCounters();
+        m_counters = counters.clone();
+        if (interval) {
+            // entries is a gauge, everything else is reported as a delta
+            for (int i = 1; i < counters.length; i++) {
+                m_counters[i] = counters[i] - m_lastCounters[i];
+            }
+            m_lastCounters = counters;
+        }
+
+        return new Iterator<Object>() {
+            boolean returnRow = true;
+
+            @Override
+            public boolean hasNext() {
+                return returnRow;
+            }
+
+            @Override
+            public Object next() {
+                if (returnRow) {
+                    returnRow = false;
+                    return cache;
+                } else {
+                    return null;
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -17,15 +17,30 @@
 
 package org.voltdb.compiler;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 import org.hsqldb_voltpatches.HSQLInterface;
 import org.hsqldb_voltpatches.HSQLInterface.HSQLParseException;
+import org.json_voltpatches.JSONArray;
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
 import org.voltdb.CatalogContext;
+import org.voltdb.VoltType;
+import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.expressions.ConstantValueExpression;
+import org.voltdb.expressions.ParameterValueExpression;
 import org.voltdb.logging.VoltLogger;
 import org.voltdb.planner.CompiledPlan;
 import org.voltdb.planner.CompiledPlan.Fragment;
+import org.voltdb.planner.ParameterInfo;
 import org.voltdb.planner.QueryPlanner;
-import org.voltdb.planner.TrivialCostModel;
+import org.voltdb.planner.StatisticsCostModel;
+import org.voltdb.plannodes.LimitPlanNode;
 import org.voltdb.plannodes.PlanNodeList;
+import org.voltdb.types.ExpressionType;
 import org.voltdb.utils.Encoder;
 
 /**
@@ -39,12 +54,178 @@ public class PlannerTool {
     final CatalogContext m_context;
     final HSQLInterface m_hsql;
 
-    public static final int AD_HOC_JOINED_TABLE_LIMIT = 5;
+    // cardinalities the planner costs plans with, replaced as statistics are collected
+    private volatile DatabaseEstimates m_estimates = new DatabaseEstimates();
+
+    public static final int AD_HOC_JOINED_TABLE_LIMIT = 12;
 
     public static class Result {
         String onePlan = null;
         String allPlan = null;
         boolean replicatedDML = false;
+        // types of the '?' in a plan produced by planParameterizedSql,
+        // empty for plans that are ready to run as they are
+        VoltType[] paramTypes = new VoltType[0];
+
+        /**
+         * Produce a runnable copy of this plan with each parameter replaced
+         * by the corresponding literal. Returns null if a literal can't be
+         * represented as the type the planner inferred for its parameter,
+         * or if the plan refers to a parameter by index rather than by
+         * expression (a LIMIT or OFFSET), in which case the statement must
+         * be planned with its literals.
+         */
+        Result bind(List<AdHocSqlNormalizer.Literal> literals) {
+            if (paramTypes.length == 0) {
+                return this;
+            }
+            if (literals.size() != paramTypes.length) {
+                return null;
+            }
+            Result retval = new Result();
+            retval.replicatedDML = replicatedDML;
+            try {
+                retval.onePlan = bindPlan(onePlan, literals);
+                retval.allPlan = bindPlan(allPlan, literals);
+            }
+            catch (JSONException e) {
+                return null;
+            }
+            catch (IllegalArgumentException e) {
+                return null;
+            }
+            return retval;
+        }
+
+        private String bindPlan(String plan, List<AdHocSqlNormalizer.Literal> literals)
+        throws JSONException {
+            if (plan == null) {
+                return null;
+            }
+            JSONObject json = new JSONObject(plan);
+            bindObject(json, literals);
+            return json.toString();
+        }
+
+        private void bindObject(JSONObject obj, List<AdHocSqlNormalizer.Literal> literals)
+        throws JSONException {
+            // collect first, the map can't be modified while iterating
+            ArrayList<String> keyList = new ArrayList<String>();
+            Iterator<?> keys = obj.keys();
+            while (keys.hasNext()) {
+                keyList.add((String) keys.next());
+            }
+            for (String key : keyList) {
+                Object value = obj.get(key);
+                if ((LimitPlanNode.Members.LIMIT_PARAM_IDX.name().equals(key) ||
+                     LimitPlanNode.Members.OFFSET_PARAM_IDX.name().equals(key)) &&
+                    obj.getLong(key) >= 0) {
+                    // the EE would read it from a parameter that won't exist
+                    throw new IllegalArgumentException();
+                }
+                if (value instanceof JSONObject) {
+                    JSONObject child = (JSONObject) value;
+                    if (isParameter(child)) {
+                        obj.put(key, constantFor(child, literals));
+                    }
+                    else {
+                        bindObject(child, literals);
+                    }
+                }
+                else if (value instanceof JSONArray) {
+                    bindArray((JSONArray) value, literals);
+                }
+            }
+        }
+
+        private void bindArray(JSONArray array, List<AdHocSqlNormalizer.Literal> literals)
+        throws JSONException {
+            for (int i = 0; i < array.length(); i++) {
+                Object value = array.get(i);
+                if (value instanceof JSONObject) {
+                    JSONObject child = (JSONObject) value;
+                    if (isParameter(child)) {
+                        array.put(i, constantFor(child, literals));
+                    }
+                    else {
+                        bindObject(child, literals);
+                    }
+                }
+                else if (value instanceof JSONArray) {
+                    bindArray((JSONArray) value, literals);
+                }
+            }
+        }
+
+        private static boolean isParameter(JSONObject obj) {
+            return ExpressionType.VALUE_PARAMETER.toString().equals(
+                    obj.optString(AbstractExpression.Members.TYPE.name(), null));
+        }
+
+        private JSONObject constantFor(JSONObject param, List<AdHocSqlNormalizer.Literal> literals)
+        throws JSONException {
+            int index = param.getInt(ParameterValueExpression.Members.PARAM_IDX.name());
+            AdHocSqlNormalizer.Literal literal = literals.get(index);
+            VoltType type = paramTypes[index];
+
+            JSONObject constant = new JSONObject();
+            constant.put(AbstractExpression.Members.TYPE.name(),
+                         ExpressionType.VALUE_CONSTANT.toString());
+            constant.put(AbstractExpression.Members.VALUE_TYPE.name(), type.name());
+            constant.put(ConstantValueExpression.Members.ISNULL.name(), false);
+            switch (type) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                if (literal.isString) {
+                    throw new IllegalArgumentException();
+                }
+                long longValue = Long.parseLong(literal.value);
+                if (type != VoltType.BIGINT &&
+                    (longValue > maxValue(type) || longValue < -maxValue(type))) {
+                    throw new IllegalArgumentException();
+                }
+                constant.put(AbstractExpression.Members.VALUE_SIZE.name(), type.getLengthInBytesForFixedTypes());
+                constant.put(ConstantValueExpression.Members.VALUE.name(), longValue);
+                break;
+            case FLOAT:
+                if (literal.isString) {
+                    throw new IllegalArgumentException();
+                }
+                constant.put(AbstractExpression.Members.VALUE_SIZE.name(), type.getLengthInBytesForFixedTypes());
+                constant.put(ConstantValueExpression.Members.VALUE.name(), Double.valueOf(literal.value));
+                break;
+            case DECIMAL:
+                if (literal.isString) {
+                    throw new IllegalArgumentException();
+                }
+                constant.put(AbstractExpression.Members.VALUE_SIZE.name(), type.getLengthInBytesForFixedTypes());
+                constant.put(ConstantValueExpression.Members.VALUE.name(),
+                             new BigDecimal(literal.value).toPlainString());
+                break;
+            case STRING:
+                if (!literal.isString) {
+                    throw new IllegalArgumentException();
+                }
+                constant.put(AbstractExpression.Members.VALUE_SIZE.name(), literal.value.length());
+                constant.put(ConstantValueExpression.Members.VALUE.name(), literal.value);
+                break;
+            default:
+                // timestamps, varbinary and friends have literal forms that
+                // need the planner's conversion rules
+                throw new IllegalArgumentException();
+            }
+            return constant;
+        }
+
+        private static long maxValue(VoltType type) {
+            switch (type) {
+            case TINYINT: return Byte.MAX_VALUE;
+            case SMALLINT: return Short.MAX_VALUE;
+            default: return Integer.MAX_VALUE;
+            }
+        }
 
         @Override
         public String toString() {
@@ -90,9 +271,55 @@ public class PlannerTool {
         m_hsql.close();
     }
 
+    /**
+     * Plan subsequent statements with these estimates, usually built from
+     * the measured table and index statistics with
+     * {@link DatabaseEstimates#fromStatistics}.
+     */
+    public void setEstimates(DatabaseEstimates estimates) {
+        assert(estimates != null);
+        m_estimates = estimates;
+    }
+
+    public DatabaseEstimates getEstimates() {
+        return m_estimates;
+    }
+
+    /**
+     * Plan a statement and describe the chosen plan along with the number of
+     * rows each node is estimated to produce.
+     */
+    public String explainSql(String sql, boolean singlePartition) {
+        return compileSql(sql, singlePartition).explainedPlan;
+    }
+
     public Result planSql(String sql, boolean singlePartition) {
-        Result retval = new Result();
+        CompiledPlan plan = compileSql(sql, singlePartition);
+        if (plan.parameters.size() > 0) {
+            throw new RuntimeException("ERROR: PARAMETERIZATION IN AD HOC QUERY");
+        }
+        return buildResult(plan);
+    }
+
+    /**
+     * Plan a statement produced by {@link AdHocSqlNormalizer} whose literals
+     * have been replaced by '?'. The result must be bound to the literals
+     * with {@link Result#bind(List)} before it can be run.
+     */
+    public Result planParameterizedSql(String sql, boolean singlePartition) {
+        CompiledPlan plan = compileSql(sql, singlePartition);
+        Result retval = buildResult(plan);
+        retval.paramTypes = new VoltType[plan.parameters.size()];
+        for (ParameterInfo param : plan.parameters) {
+            if (param.type == null || param.type == VoltType.INVALID) {
+                throw new RuntimeException("ERROR: UNTYPED PARAMETER IN AD HOC QUERY");
+            }
+            retval.paramTypes[param.index] = param.type;
+        }
+        return retval;
+    }
 
+    private CompiledPlan compileSql(String sql, boolean singlePartition) {
         if ((sql == null) || (sql.length() == 0)) {
             throw new RuntimeException("Can't plan empty or null SQL.");
         }
@@ -105,9 +332,9 @@ public class PlannerTool {
         // PLAN THE STMT
         //////////////////////
 
-        TrivialCostModel costModel = new TrivialCostModel();
+        StatisticsCostModel costModel = new StatisticsCostModel();
         QueryPlanner planner = new QueryPlanner(
-                m_context.cluster, m_context.database, m_hsql, new DatabaseEstimates(), false, true);
+                m_context.cluster, m_context.database, m_hsql, m_estimates, false, true);
         CompiledPlan plan = null;
         try {
             plan = planner.compilePlan(
@@ -125,9 +352,11 @@ public class PlannerTool {
                 throw new RuntimeException("ERROR: UNKNOWN PLANNING ERROR\n");
             }
         }
-        if (plan.parameters.size() > 0) {
-            throw new RuntimeException("ERROR: PARAMETERIZATION IN AD HOC QUERY");
-        }
+        return plan;
+    }
+
+    private Result buildResult(CompiledPlan plan) {
+        Result retval = new Result();
 
         //log("finished planning stmt:");
         //log("SQL: " + plan.sql);
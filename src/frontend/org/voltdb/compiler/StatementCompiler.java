@@ -33,7 +33,7 @@ import org.voltdb.messaging.FastSerializer;
 import org.voltdb.planner.CompiledPlan;
 import org.voltdb.planner.ParameterInfo;
 import org.voltdb.planner.QueryPlanner;
-import org.voltdb.planner.TrivialCostModel;
+import org.voltdb.planner.StatisticsCostModel;
 import org.voltdb.plannodes.AbstractPlanNode;
 import org.voltdb.plannodes.AbstractScanPlanNode;
 import org.voltdb.plannodes.DeletePlanNode;
@@ -52,7 +52,7 @@ import org.voltdb.utils.Encoder;
  */
 public abstract class StatementCompiler {
 
-    public static final int DEFAULT_MAX_JOIN_TABLES = 5;
+    public static final int DEFAULT_MAX_JOIN_TABLES = 12;
 
     static void compile(VoltCompiler compiler, HSQLInterface hsql,
             Catalog catalog, Database db, DatabaseEstimates estimates,
@@ -98,7 +98,7 @@ public abstract class StatementCompiler {
 
         String name = catalogStmt.getParent().getTypeName() + "-" + catalogStmt.getTypeName();
         PlanNodeList node_list = null;
-        TrivialCostModel costModel = new TrivialCostModel();
+        StatisticsCostModel costModel = new StatisticsCostModel();
 
         QueryPlanner planner = new QueryPlanner(
                 catalog.getClusters().get("cluster"), db, hsql, estimates, true,
@@ -463,6 +463,16 @@ public class VoltCompiler {
         return m_procInfoOverrides.get(procName);
     }
 
+    /**
+     * Plan the statements of the project with these cardinalities instead of
+     * the defaults, usually measured on a running database, see
+     * {@link DatabaseEstimates#fromStatisticsFile}.
+     */
+    public void setDatabaseEstimates(final DatabaseEstimates estimates) {
+        assert(estimates != null);
+        m_estimates = estimates;
+    }
+
     public Catalog getCatalog() {
         return m_catalog;
     }
@@ -1204,9 +1214,9 @@ public class VoltCompiler {
 
     public static void main(final String[] args) {
         // Parse arguments
-        if (args.length != 2) {
-            System.err.println("USAGE (1): voltcompiler [classpath] [project file] [output JAR]");
-            System.err.println("USAGE (2): java -cp $CLASSPATH org.voltdb.compiler.VoltCompiler [project file] [output JAR]");
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("USAGE (1): voltcompiler [classpath] [project file] [output JAR] {statistics JSON}");
+            System.err.println("USAGE (2): java -cp $CLASSPATH org.voltdb.compiler.VoltCompiler [project file] [output JAR] {statistics JSON}");
             System.exit(1);
         }
         final String projectPath = args[0];
@@ -1214,6 +1224,16 @@ public class VoltCompiler {
 
         // Compile and exit with error code if we failed
         final VoltCompiler compiler = new VoltCompiler();
+        if (args.length == 3) {
+            // @Statistics TABLE and INDEX results saved from a running database
+            try {
+                compiler.setDatabaseEstimates(DatabaseEstimates.fromStatisticsFile(new File(args[2])));
+            }
+            catch (IOException e) {
+                System.err.println("Unable to read statistics from " + args[2] + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
         final boolean success = compiler.compile(projectPath, outputJar, System.out, null);
         if (!success) {
             compiler.summarizeErrors();
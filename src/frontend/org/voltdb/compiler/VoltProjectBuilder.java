@@ -239,6 +239,8 @@ public class VoltProjectBuilder {
 
     private Integer m_maxTempTableMemory = 100;
 
+    private Integer m_tempTableSpillSize = null;
+
     public void configureLogging(String internalSnapshotPath, String commandLogPath, Boolean commandLogSync,
             Boolean commandLogEnabled, Integer fsyncInterval, Integer maxTxnsBeforeFsync, Integer logSize) {
         m_internalSnapshotPath = internalSnapshotPath;
@@ -454,6 +456,11 @@ public class VoltProjectBuilder {
         m_maxTempTableMemory = max;
     }
 
+    public void setTempTableSpillSize(int max)
+    {
+        m_tempTableSpillSize = max;
+    }
+
     /**
      * Override the procedure annotation with the specified values for a
      * specified procedure.
@@ -940,6 +947,9 @@ public class VoltProjectBuilder {
         SystemSettingsType systemSettingType = factory.createSystemSettingsType();
         Temptables temptables = factory.createSystemSettingsTypeTemptables();
         temptables.setMaxsize(m_maxTempTableMemory);
+        if (m_tempTableSpillSize != null) {
+            temptables.setSpillsize(m_tempTableSpillSize);
+        }
         systemSettingType.setTemptables(temptables);
         if (m_snapshotPriority != null) {
             SystemSettingsType.Snapshot snapshot = factory.createSystemSettingsTypeSnapshot();
@@ -35,6 +35,7 @@ import javax.xml.bind.annotation.XmlType;
  *         &lt;/element>
  *         &lt;element name="snapshots" type="{}pathEntry" minOccurs="0"/>
  *         &lt;element name="exportoverflow" type="{}pathEntry" minOccurs="0"/>
+ *         &lt;element name="tempspill" type="{}pathEntry" minOccurs="0"/>
  *         &lt;element name="commandlog" type="{}pathEntry" minOccurs="0"/>
  *         &lt;element name="commandlogsnapshot" type="{}pathEntry" minOccurs="0"/>
  *       &lt;/all>
@@ -54,6 +55,7 @@ public class PathsType {
     protected PathsType.Voltdbroot voltdbroot;
     protected PathEntry snapshots;
     protected PathEntry exportoverflow;
+    protected PathEntry tempspill;
     protected PathEntry commandlog;
     protected PathEntry commandlogsnapshot;
 
@@ -129,6 +131,30 @@ public class PathsType {
         this.exportoverflow = value;
     }
 
+    /**
+     * Gets the value of the tempspill property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link PathEntry }
+     *     
+     */
+    public PathEntry getTempspill() {
+        return tempspill;
+    }
+
+    /**
+     * Sets the value of the tempspill property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link PathEntry }
+     *     
+     */
+    public void setTempspill(PathEntry value) {
+        this.tempspill = value;
+    }
+
     /**
      * Gets the value of the commandlog property.
      * 
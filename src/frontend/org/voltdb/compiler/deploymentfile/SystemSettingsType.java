@@ -29,6 +29,7 @@ import javax.xml.bind.annotation.XmlType;
  *             &lt;complexContent>
  *               &lt;restriction base="{http://www.w3.org/2001/XMLSchema}anyType">
  *                 &lt;attribute name="maxsize" type="{}memorySizeType" default="100" />
+ *                 &lt;attribute name="spillsize" type="{}spillSizeType" default="0" />
  *               &lt;/restriction>
  *             &lt;/complexContent>
  *           &lt;/complexType>
@@ -173,6 +174,7 @@ public class SystemSettingsType {
      *   &lt;complexContent>
      *     &lt;restriction base="{http://www.w3.org/2001/XMLSchema}anyType">
      *       &lt;attribute name="maxsize" type="{}memorySizeType" default="100" />
+ *       &lt;attribute name="spillsize" type="{}spillSizeType" default="0" />
      *     &lt;/restriction>
      *   &lt;/complexContent>
      * &lt;/complexType>
@@ -186,6 +188,8 @@ public class SystemSettingsType {
 
         @XmlAttribute
         protected Integer maxsize;
+        @XmlAttribute
+        protected Integer spillsize;
 
         /**
          * Gets the value of the maxsize property.
@@ -215,6 +219,34 @@ public class SystemSettingsType {
             this.maxsize = value;
         }
 
+        /**
+         * Gets the value of the spillsize property.
+         * 
+         * @return
+         *     possible object is
+         *     {@link Integer }
+         *     
+         */
+        public int getSpillsize() {
+            if (spillsize == null) {
+                return  0;
+            } else {
+                return spillsize;
+            }
+        }
+
+        /**
+         * Sets the value of the spillsize property.
+         * 
+         * @param value
+         *     allowed object is
+         *     {@link Integer }
+         *     
+         */
+        public void setSpillsize(Integer value) {
+            this.spillsize = value;
+        }
+
     }
 
 }
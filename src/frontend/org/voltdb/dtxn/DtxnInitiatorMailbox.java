@@ -180,14 +180,16 @@ public class DtxnInitiatorMailbox implements Mailbox
         assert(c != null) : "NULL connection in connection state client data.";
         final long now = System.currentTimeMillis();
         final int delta = (int)(now - state.initiateTime);
+        final long deltaMicros = (System.nanoTime() - state.initiateNanos) / 1000;
         response.setClusterRoundtrip(delta);
         m_stats.logTransactionCompleted(
                 state.connectionId,
                 state.connectionHostname,
                 state.invocation,
                 delta,
+                deltaMicros,
                 response.getStatus());
-        m_latencies.logTransactionCompleted(delta);
+        m_latencies.logTransactionCompleted(deltaMicros);
         c.writeStream().enqueue(response);
     }
 
@@ -59,6 +59,7 @@ public class InFlightTxnState implements Serializable {
         this.otherSiteIds = otherSiteIds;
         this.messageSize = messageSize;
         this.initiateTime = initiateTime;
+        this.initiateNanos = System.nanoTime();
         this.connectionId = connectionId;
         this.connectionHostname = connectionHostname;
         this.isAdmin = isAdmin;
@@ -235,6 +236,8 @@ public class InFlightTxnState implements Serializable {
     transient public final Object clientData;
     public final int messageSize;
     public final long initiateTime;
+    // for latencies finer then a millisecond, only meaningful on the initiating host
+    public final long initiateNanos;
     public final long connectionId;
     public final String connectionHostname;
     public final boolean isAdmin;
@@ -21,7 +21,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.voltdb.SiteStatsSource;
 import org.voltdb.StoredProcedureInvocation;
@@ -30,6 +32,7 @@ import org.voltdb.VoltDB;
 import org.voltdb.VoltTable.ColumnInfo;
 import org.voltdb.VoltType;
 import org.voltdb.client.ClientResponse;
+import org.voltdb.utils.LatencyHistogram;
 
 /**
  * Class that provides storage for statistical information generated by an Initiator
@@ -39,9 +42,29 @@ public class InitiatorStats extends SiteStatsSource {
 
     /**
      * Map from the combined key of ConnectionId and ProcedureName to statistical information related to the specific procedure.
+     * Each InvocationInfo is updated and read while holding its own monitor.
      */
-    private final HashMap<String, InvocationInfo> m_connectionStats =
-                new HashMap<String, InvocationInfo>();
+    private final ConcurrentHashMap<String, InvocationInfo> m_connectionStats =
+                new ConcurrentHashMap<String, InvocationInfo>();
+
+    /**
+     * Distribution of execution times in microseconds of each procedure over all connections.
+     * Recorded without locking, see {@link LatencyHistogram.Recorder}.
+     */
+    private final ConcurrentHashMap<String, LatencyHistogram.Recorder> m_procedureLatencies =
+                new ConcurrentHashMap<String, LatencyHistogram.Recorder>();
+
+    /**
+     * Snapshot of each procedure's histogram taken the last time interval stats were retrieved
+     */
+    private final HashMap<String, LatencyHistogram> m_lastProcedureLatencies =
+                new HashMap<String, LatencyHistogram>();
+
+    /**
+     * Histograms reported for each procedure by the rows currently being retrieved
+     */
+    private final HashMap<String, LatencyHistogram> m_reportedLatencies =
+                new HashMap<String, LatencyHistogram>();
 
     private boolean m_interval = false;
 
@@ -95,7 +118,7 @@ public class InitiatorStats extends SiteStatsSource {
             connectionHostname = hostname;
         }
 
-        private void processInvocation(int delta, byte status) {
+        private synchronized void processInvocation(int delta, byte status) {
             totalExecutionTime += delta;
             minExecutionTime = Math.min( delta, minExecutionTime);
             maxExecutionTime = Math.max(  delta, maxExecutionTime);
@@ -116,22 +139,38 @@ public class InitiatorStats extends SiteStatsSource {
      * @param connectionId Id of the connection that the invocation orginated from
      * @param invocation Procedure executed
      * @param delta Time the procedure took to round trip intra cluster
+     * @param deltaMicros The same time in microseconds
      */
-    public synchronized void logTransactionCompleted(
+    public void logTransactionCompleted(
             long connectionId,
             String connectionHostname,
             StoredProcedureInvocation invocation,
             int delta,
+            long deltaMicros,
             byte status) {
+        final String procName = invocation.getProcName();
         final StringBuilder key = new StringBuilder(2048);
-        key.append(invocation.getProcName()).append('$').append(connectionId);
+        key.append(procName).append('$').append(connectionId);
         final String keyString = key.toString();
         InvocationInfo info = m_connectionStats.get(keyString);
         if (info == null) {
             info = new InvocationInfo(connectionHostname);
-            m_connectionStats.put(keyString, info);
+            final InvocationInfo existing = m_connectionStats.putIfAbsent(keyString, info);
+            if (existing != null) {
+                info = existing;
+            }
         }
         info.processInvocation(delta, status);
+
+        LatencyHistogram.Recorder recorder = m_procedureLatencies.get(procName);
+        if (recorder == null) {
+            recorder = new LatencyHistogram.Recorder();
+            final LatencyHistogram.Recorder existing = m_procedureLatencies.putIfAbsent(procName, recorder);
+            if (existing != null) {
+                recorder = existing;
+            }
+        }
+        recorder.record(deltaMicros);
     }
 
     /**
@@ -167,6 +206,10 @@ public class InitiatorStats extends SiteStatsSource {
         columns.add(new ColumnInfo("MAX_EXECUTION_TIME", VoltType.INTEGER));
         columns.add(new ColumnInfo("ABORTS", VoltType.BIGINT));
         columns.add(new ColumnInfo("FAILURES", VoltType.BIGINT));
+        // percentiles are of the procedure over all connections
+        columns.add(new ColumnInfo("P50_EXECUTION_MICROS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("P99_EXECUTION_MICROS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("P99_9_EXECUTION_MICROS", VoltType.BIGINT));
     }
 
     @Override
@@ -177,41 +220,52 @@ public class InitiatorStats extends SiteStatsSource {
         final String procName = statsKeySplit[0];
         final String connectionId = statsKeySplit[1];
 
-        long invocationCount = info.invocationCount;
-        long totalExecutionTime = info.totalExecutionTime;
-        int minExecutionTime = info.minExecutionTime;
-        int maxExecutionTime = info.maxExecutionTime;
-        long abortCount = info.abortCount;
-        long failureCount = info.failureCount;
+        synchronized (info) {
+            long invocationCount = info.invocationCount;
+            long totalExecutionTime = info.totalExecutionTime;
+            int minExecutionTime = info.minExecutionTime;
+            int maxExecutionTime = info.maxExecutionTime;
+            long abortCount = info.abortCount;
+            long failureCount = info.failureCount;
 
-        if (m_interval) {
-            invocationCount = info.invocationCount - info.lastInvocationCount;
-            info.lastInvocationCount = info.invocationCount;
+            if (m_interval) {
+                invocationCount = info.invocationCount - info.lastInvocationCount;
+                info.lastInvocationCount = info.invocationCount;
 
-            totalExecutionTime = info.totalExecutionTime - info.lastTotalExecutionTime;
-            info.lastTotalExecutionTime = info.totalExecutionTime;
+                totalExecutionTime = info.totalExecutionTime - info.lastTotalExecutionTime;
+                info.lastTotalExecutionTime = info.totalExecutionTime;
 
-            minExecutionTime = info.lastMinExecutionTime;
-            maxExecutionTime = info.lastMaxExecutionTime;
-            info.lastMinExecutionTime = Integer.MAX_VALUE;
-            info.lastMaxExecutionTime = Integer.MIN_VALUE;
+                minExecutionTime = info.lastMinExecutionTime;
+                maxExecutionTime = info.lastMaxExecutionTime;
+                info.lastMinExecutionTime = Integer.MAX_VALUE;
+                info.lastMaxExecutionTime = Integer.MIN_VALUE;
 
-            abortCount = info.abortCount - info.lastAbortCount;
-            info.lastAbortCount = info.abortCount;
+                abortCount = info.abortCount - info.lastAbortCount;
+                info.lastAbortCount = info.abortCount;
+
+                failureCount = info.failureCount - info.lastFailureCount;
+                info.lastFailureCount = info.failureCount;
+            }
 
-            failureCount = info.failureCount - info.lastFailureCount;
-            info.lastFailureCount = info.failureCount;
+            rowValues[columnNameToIndex.get("CONNECTION_ID")] = new Integer(connectionId);
+            rowValues[columnNameToIndex.get("CONNECTION_HOSTNAME")] = info.connectionHostname;
+            rowValues[columnNameToIndex.get("PROCEDURE_NAME")] = procName;
+            rowValues[columnNameToIndex.get("INVOCATIONS")] = invocationCount;
+            rowValues[columnNameToIndex.get("AVG_EXECUTION_TIME")] = (int)(totalExecutionTime / invocationCount);
+            rowValues[columnNameToIndex.get("MIN_EXECUTION_TIME")] = minExecutionTime;
+            rowValues[columnNameToIndex.get("MAX_EXECUTION_TIME")] = maxExecutionTime;
+            rowValues[columnNameToIndex.get("ABORTS")] = abortCount;
+            rowValues[columnNameToIndex.get("FAILURES")] = failureCount;
         }
 
-        rowValues[columnNameToIndex.get("CONNECTION_ID")] = new Integer(connectionId);
-        rowValues[columnNameToIndex.get("CONNECTION_HOSTNAME")] = info.connectionHostname;
-        rowValues[columnNameToIndex.get("PROCEDURE_NAME")] = procName;
-        rowValues[columnNameToIndex.get("INVOCATIONS")] = invocationCount;
-        rowValues[columnNameToIndex.get("AVG_EXECUTION_TIME")] = (int)(totalExecutionTime / invocationCount);
-        rowValues[columnNameToIndex.get("MIN_EXECUTION_TIME")] = minExecutionTime;
-        rowValues[columnNameToIndex.get("MAX_EXECUTION_TIME")] = maxExecutionTime;
-        rowValues[columnNameToIndex.get("ABORTS")] = abortCount;
-        rowValues[columnNameToIndex.get("FAILURES")] = failureCount;
+        LatencyHistogram histogram = m_reportedLatencies.get(procName);
+        if (histogram == null) {
+            // first invoked after the histograms were collected for this retrieval
+            histogram = new LatencyHistogram();
+        }
+        rowValues[columnNameToIndex.get("P50_EXECUTION_MICROS")] = histogram.getValueAtPercentile(50);
+        rowValues[columnNameToIndex.get("P99_EXECUTION_MICROS")] = histogram.getValueAtPercentile(99);
+        rowValues[columnNameToIndex.get("P99_9_EXECUTION_MICROS")] = histogram.getValueAtPercentile(99.9);
         super.updateStatsRow(rowKey, rowValues);
     }
 
@@ -238,10 +292,12 @@ public class InitiatorStats extends SiteStatsSource {
                 while (next == null && i.hasNext()) {
                     String potential = i.next();
                     InvocationInfo info = m_connectionStats.get(potential);
-                    if (info.invocationCount - info.lastInvocationCount == 0) {
-                        continue;
-                    } else {
-                        next = potential;
+                    synchronized (info) {
+                        if (info.invocationCount - info.lastInvocationCount == 0) {
+                            continue;
+                        } else {
+                            next = potential;
+                        }
                     }
                 }
                 if (next == null) {
@@ -273,6 +329,19 @@ public class InitiatorStats extends SiteStatsSource {
     @Override
     protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
         m_interval = interval;
+        m_reportedLatencies.clear();
+        for (Map.Entry<String, LatencyHistogram.Recorder> e : m_procedureLatencies.entrySet()) {
+            final LatencyHistogram snapshot = e.getValue().snapshot();
+            LatencyHistogram histogram = snapshot;
+            if (interval) {
+                final LatencyHistogram last = m_lastProcedureLatencies.get(e.getKey());
+                if (last != null) {
+                    histogram = snapshot.since(last);
+                }
+                m_lastProcedureLatencies.put(e.getKey(), snapshot);
+            }
+            m_reportedLatencies.put(e.getKey(), histogram);
+        }
         return new DummyIterator(m_connectionStats.keySet().iterator());
     }
 }
@@ -18,6 +18,7 @@
 package org.voltdb.dtxn;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 
 import org.voltdb.SiteStatsSource;
@@ -25,54 +26,21 @@ import org.voltdb.SysProcSelector;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltTable.ColumnInfo;
 import org.voltdb.VoltType;
+import org.voltdb.utils.LatencyHistogram;
 
 /**
- * Class that provides latency information in buckets. Each bucket contains the
- * number of procedures with latencies in the range.
+ * Class that provides the distribution of intra cluster round trip latencies seen by an initiator
+ * as percentiles in microseconds. Completed transactions are recorded without locking into
+ * a histogram per recording thread, see {@link LatencyHistogram.Recorder}.
  */
 public class LatencyStats extends SiteStatsSource {
-    /**
-     * A dummy iterator that wraps an integer and provides the
-     * Iterator<Object> necessary for getStatsRowKeyIterator()
-     *
-     */
-    private static class BucketIterator implements Iterator<Object> {
-        private final int max;
-        private int current = -1;
-
-        private BucketIterator(int max) {
-            this.max = max - 1; // minus one so that it's easier to compare later
-        }
-
-        @Override
-        public boolean hasNext() {
-            if (current == max) {
-                return false;
-            }
-            return true;
-        }
-
-        @Override
-        public Object next() {
-            return ++current;
-        }
-
-        @Override
-        public void remove() {
-
-        }
-    }
+    private final LatencyHistogram.Recorder m_recorder = new LatencyHistogram.Recorder();
 
     /**
-     * Latency buckets to store overall latency distribution. It's divided into
-     * 26 buckets, each stores 10ms latency range invocation info. The last
-     * bucket covers invocations with latencies larger than 250ms.
+     * Snapshot taken the last time interval stats were retrieved, interval stats are the
+     * difference so the recording threads are never reset
      */
-    private final long[] m_latencyBuckets = {0l, 0l, 0l, 0l, 0l, 0l, 0l, 0l, 0l, 0l,
-                                             0l, 0l, 0l, 0l, 0l, 0l, 0l, 0l, 0l, 0l,
-                                             0l, 0l, 0l, 0l, 0l, 0l};
-    private long m_max = (m_latencyBuckets.length - 1) * BUCKET_RANGE;
-    private static final long BUCKET_RANGE = 10; // 10ms
+    private LatencyHistogram m_lastSnapshot = new LatencyHistogram();
 
     public LatencyStats(int siteId) {
         super(siteId, false);
@@ -81,44 +49,44 @@ public class LatencyStats extends SiteStatsSource {
 
     /**
      * Called by the Initiator every time a transaction is completed
-     * @param delta Time the procedure took to round trip intra cluster
+     * @param deltaMicros Time the procedure took to round trip intra cluster in microseconds
      */
-    public synchronized void logTransactionCompleted(int delta) {
-        int bucketIndex = Math.min((int) (delta / BUCKET_RANGE), m_latencyBuckets.length - 1);
-
-        // if the host's clock moves backwards, bucketIndex can be negative
-        // this next line of code is a lie, but a beautiful one that keeps your server up
-        if (bucketIndex < 0) bucketIndex = 0;
-
-        m_max = Math.max(delta, m_max);
-        m_latencyBuckets[bucketIndex]++;
+    public void logTransactionCompleted(long deltaMicros) {
+        m_recorder.record(deltaMicros);
     }
 
     @Override
     protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
-        return new BucketIterator(m_latencyBuckets.length);
+        //A single row, the key is the histogram it is generated from
+        final LatencyHistogram snapshot = m_recorder.snapshot();
+        LatencyHistogram histogram = snapshot;
+        if (interval) {
+            histogram = snapshot.since(m_lastSnapshot);
+            m_lastSnapshot = snapshot;
+        }
+        return Collections.<Object>singletonList(histogram).iterator();
     }
 
     @Override
     protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
         super.populateColumnSchema(columns);
-        columns.add(new ColumnInfo("BUCKET_MIN", VoltType.INTEGER));
-        columns.add(new ColumnInfo("BUCKET_MAX", VoltType.INTEGER));
         columns.add(new ColumnInfo("INVOCATIONS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("P50", VoltType.BIGINT));
+        columns.add(new ColumnInfo("P95", VoltType.BIGINT));
+        columns.add(new ColumnInfo("P99", VoltType.BIGINT));
+        columns.add(new ColumnInfo("P99_9", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MAX", VoltType.BIGINT));
     }
 
     @Override
     protected void updateStatsRow(Object rowKey, Object[] rowValues) {
-        final int bucket = (Integer) rowKey;
-
-        rowValues[columnNameToIndex.get("BUCKET_MIN")] = bucket * BUCKET_RANGE;
-        if (bucket < m_latencyBuckets.length - 1) {
-            rowValues[columnNameToIndex.get("BUCKET_MAX")] = (bucket + 1) * BUCKET_RANGE;
-        } else {
-            // max for the last bucket is the max of the largest latency
-            rowValues[columnNameToIndex.get("BUCKET_MAX")] = m_max;
-        }
-        rowValues[columnNameToIndex.get("INVOCATIONS")] = m_latencyBuckets[bucket];
+        final LatencyHistogram histogram = (LatencyHistogram)rowKey;
+        rowValues[columnNameToIndex.get("INVOCATIONS")] = histogram.getCount();
+        rowValues[columnNameToIndex.get("P50")] = histogram.getValueAtPercentile(50);
+        rowValues[columnNameToIndex.get("P95")] = histogram.getValueAtPercentile(95);
+        rowValues[columnNameToIndex.get("P99")] = histogram.getValueAtPercentile(99);
+        rowValues[columnNameToIndex.get("P99_9")] = histogram.getValueAtPercentile(99.9);
+        rowValues[columnNameToIndex.get("MAX")] = histogram.getMax();
         super.updateStatsRow(rowKey, rowValues);
     }
 }
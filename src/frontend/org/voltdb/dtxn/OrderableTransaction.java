@@ -20,6 +20,9 @@ public abstract class OrderableTransaction implements Comparable<OrderableTransa
     public final long txnId;
     public final int initiatorSiteId;
 
+    /** Position in the TransactionHeap holding this transaction, -1 if none */
+    int m_heapIndex = -1;
+
     public OrderableTransaction(final long txnId, final int initiatorSiteId) {
         this.txnId = txnId;
         this.initiatorSiteId = initiatorSiteId;
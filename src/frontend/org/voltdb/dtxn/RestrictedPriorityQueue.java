@@ -17,10 +17,11 @@
 
 package org.voltdb.dtxn;
 
+import java.util.AbstractQueue;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
-import java.util.PriorityQueue;
 
 import org.voltdb.logging.VoltLogger;
 import org.voltdb.messaging.HeartbeatResponseMessage;
@@ -29,9 +30,10 @@ import org.voltdb.messaging.MessagingException;
 import org.voltdb.messaging.VoltMessage;
 
 /**
- * <p>Extends a PriorityQueue such that is only stores transaction state
- * objects, and it only releases them (to a poll() call) if they are
- * ready to be processed.</p>
+ * <p>A priority queue that only stores transaction state objects,
+ * and it only releases them (to a poll() call) if they are
+ * ready to be processed. Transactions are held in a TransactionHeap
+ * ordered by txnId.</p>
  *
  * <p>In this case, ready to be processed is determined by storing the
  * most recent transaction id from each initiator. The smallest transaction
@@ -40,9 +42,8 @@ import org.voltdb.messaging.VoltMessage;
  *
  * <p>This class manages all that state.</p>
  */
-public class RestrictedPriorityQueue extends PriorityQueue<OrderableTransaction> {
+public class RestrictedPriorityQueue extends AbstractQueue<OrderableTransaction> {
     private static final VoltLogger hostLog = new VoltLogger("HOST");
-    private static final long serialVersionUID = 1L;
     private VoltLogger m_recoveryLog = new VoltLogger("RECOVERY");
 
     public enum QueueState {
@@ -63,6 +64,7 @@ public class RestrictedPriorityQueue extends PriorityQueue<OrderableTransaction>
         long m_lastSafeTxnId;
     }
 
+    private final TransactionHeap m_heap = new TransactionHeap();
     final LinkedHashMap<Integer, LastInitiatorData> m_initiatorData = new LinkedHashMap<Integer, LastInitiatorData>();
     final LinkedList<RoadBlock> m_roadblocks = new LinkedList<RoadBlock>();
 
@@ -144,11 +146,11 @@ public class RestrictedPriorityQueue extends PriorityQueue<OrderableTransaction>
         OrderableTransaction retval = null;
         updateQueueState();
         if (m_state == QueueState.UNBLOCKED) {
-            retval = super.peek();
+            retval = m_heap.peek();
             if (!retval.isDurable()) {
                 return null;
             }
-            super.poll();
+            m_heap.poll();
             m_txnsPopped++;
             // not BLOCKED_EMPTY
             assert(retval != null);
@@ -164,7 +166,7 @@ public class RestrictedPriorityQueue extends PriorityQueue<OrderableTransaction>
         OrderableTransaction retval = null;
         updateQueueState();
         if (m_state == QueueState.UNBLOCKED) {
-            retval = super.peek();
+            retval = m_heap.peek();
             if (!retval.isDurable()) {
                 return null;
             }
@@ -182,19 +184,49 @@ public class RestrictedPriorityQueue extends PriorityQueue<OrderableTransaction>
         if (m_initiatorData.containsKey(txnState.initiatorSiteId) == false) {
             return false;
         }
-        boolean retval = super.add(txnState);
+        m_heap.add(txnState);
         // update the queue state
-        if (retval) updateQueueState();
-        return retval;
+        updateQueueState();
+        return true;
+    }
+
+    @Override
+    public boolean offer(OrderableTransaction txnState) {
+        return add(txnState);
     }
 
     @Override
     public boolean remove(Object txnState) {
-        boolean retval = super.remove(txnState);
+        boolean retval = m_heap.remove(txnState);
         updateQueueState();
         return retval;
     }
 
+    @Override
+    public boolean contains(Object txnState) {
+        return m_heap.contains(txnState);
+    }
+
+    @Override
+    public void clear() {
+        m_heap.clear();
+        updateQueueState();
+    }
+
+    @Override
+    public int size() {
+        return m_heap.size();
+    }
+
+    /**
+     * Iterates over all queued transactions, ready or not, in no particular order.
+     * Removing through the iterator does not update the queue state.
+     */
+    @Override
+    public Iterator<OrderableTransaction> iterator() {
+        return m_heap.iterator();
+    }
+
     /**
      * Update the information stored about the latest transaction
      * seen from each initiator. Compute the newest safe transaction id.
@@ -323,7 +355,7 @@ public class RestrictedPriorityQueue extends PriorityQueue<OrderableTransaction>
 
     QueueState updateQueueState() {
         QueueState newState = QueueState.UNBLOCKED;
-        OrderableTransaction ts = super.peek();
+        OrderableTransaction ts = m_heap.peek();
         LastInitiatorData lid = null;
 
         // Terminal states (currently only BLOCKED_CLOSED)
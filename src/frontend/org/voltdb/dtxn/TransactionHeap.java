@@ -0,0 +1,190 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.dtxn;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Binary min heap of transactions ordered by txnId.</p>
+ *
+ * <p>The txnIds are kept in a primitive array alongside the transactions so sifting
+ * compares longs directly instead of calling compareTo through the generic
+ * Comparable interface. Each transaction records its own slot in the heap,
+ * which makes removing an arbitrary transaction O(log n) instead of the
+ * linear scan PriorityQueue does.</p>
+ *
+ * <p>A transaction can be in at most one heap at a time. Not thread safe.</p>
+ */
+class TransactionHeap implements Iterable<OrderableTransaction> {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long m_txnIds[] = new long[INITIAL_CAPACITY];
+    private OrderableTransaction m_txns[] = new OrderableTransaction[INITIAL_CAPACITY];
+    private int m_size = 0;
+
+    public int size() {
+        return m_size;
+    }
+
+    public boolean isEmpty() {
+        return m_size == 0;
+    }
+
+    public void add(OrderableTransaction txn) {
+        assert(txn.m_heapIndex == -1);
+        if (m_size == m_txns.length) {
+            final int newCapacity = m_size * 2;
+            m_txnIds = Arrays.copyOf(m_txnIds, newCapacity);
+            m_txns = Arrays.copyOf(m_txns, newCapacity);
+        }
+        siftUp(m_size++, txn.txnId, txn);
+    }
+
+    public OrderableTransaction peek() {
+        return m_size == 0 ? null : m_txns[0];
+    }
+
+    public OrderableTransaction poll() {
+        if (m_size == 0) {
+            return null;
+        }
+        final OrderableTransaction retval = m_txns[0];
+        removeAt(0);
+        return retval;
+    }
+
+    /**
+     * Remove the specified transaction if it is in this heap
+     * @return true if the transaction was found and removed
+     */
+    public boolean remove(Object o) {
+        if (!(o instanceof OrderableTransaction)) {
+            return false;
+        }
+        final int index = ((OrderableTransaction)o).m_heapIndex;
+        if (index < 0 || index >= m_size || m_txns[index] != o) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    public boolean contains(Object o) {
+        if (!(o instanceof OrderableTransaction)) {
+            return false;
+        }
+        final int index = ((OrderableTransaction)o).m_heapIndex;
+        return index >= 0 && index < m_size && m_txns[index] == o;
+    }
+
+    public void clear() {
+        for (int ii = 0; ii < m_size; ii++) {
+            m_txns[ii].m_heapIndex = -1;
+            m_txns[ii] = null;
+        }
+        m_size = 0;
+    }
+
+    /**
+     * Iterates over a snapshot of the heap in no particular order. Removal through
+     * the iterator removes the transaction from the heap.
+     */
+    @Override
+    public Iterator<OrderableTransaction> iterator() {
+        final OrderableTransaction snapshot[] = Arrays.copyOf(m_txns, m_size);
+        return new Iterator<OrderableTransaction>() {
+            private int m_next = 0;
+            private OrderableTransaction m_last = null;
+
+            @Override
+            public boolean hasNext() {
+                return m_next < snapshot.length;
+            }
+
+            @Override
+            public OrderableTransaction next() {
+                if (m_next >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                m_last = snapshot[m_next++];
+                return m_last;
+            }
+
+            @Override
+            public void remove() {
+                if (m_last == null) {
+                    throw new IllegalStateException();
+                }
+                TransactionHeap.this.remove(m_last);
+                m_last = null;
+            }
+        };
+    }
+
+    private void removeAt(int index) {
+        m_txns[index].m_heapIndex = -1;
+        final int last = --m_size;
+        final OrderableTransaction moved = m_txns[last];
+        final long movedId = m_txnIds[last];
+        m_txns[last] = null;
+        if (index == last) {
+            return;
+        }
+        siftDown(index, movedId, moved);
+        if (m_txns[index] == moved) {
+            siftUp(index, movedId, moved);
+        }
+    }
+
+    private void siftUp(int index, long txnId, OrderableTransaction txn) {
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (m_txnIds[parent] <= txnId) {
+                break;
+            }
+            place(index, m_txnIds[parent], m_txns[parent]);
+            index = parent;
+        }
+        place(index, txnId, txn);
+    }
+
+    private void siftDown(int index, long txnId, OrderableTransaction txn) {
+        final int half = m_size >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            final int right = child + 1;
+            if (right < m_size && m_txnIds[right] < m_txnIds[child]) {
+                child = right;
+            }
+            if (txnId <= m_txnIds[child]) {
+                break;
+            }
+            place(index, m_txnIds[child], m_txns[child]);
+            index = child;
+        }
+        place(index, txnId, txn);
+    }
+
+    private void place(int index, long txnId, OrderableTransaction txn) {
+        m_txnIds[index] = txnId;
+        m_txns[index] = txn;
+        txn.m_heapIndex = index;
+    }
+}
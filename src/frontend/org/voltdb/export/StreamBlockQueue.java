@@ -57,7 +57,7 @@ public class StreamBlockQueue {
     private final String m_nonce;
 
     public StreamBlockQueue(String path, String nonce) throws java.io.IOException {
-        m_persistentDeque = new PersistentBinaryDeque( nonce, new VoltFile(path));
+        m_persistentDeque = new PersistentBinaryDeque( nonce, new VoltFile(path), true);
         m_nonce = nonce;
     }
 
@@ -20,9 +20,12 @@ package org.voltdb.export.processors;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Set;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -45,6 +48,7 @@ import org.voltdb.network.VoltProtocolHandler;
 import org.voltdb.utils.DBBPool;
 import org.voltdb.utils.DBBPool.BBContainer;
 import org.voltdb.utils.DeferredSerialization;
+import org.voltdb.utils.MiscUtils;
 import org.voltdb.utils.NotImplementedException;
 
 /**
@@ -64,11 +68,23 @@ public class RawProcessor implements ExportDataProcessor {
     VoltLogger m_logger;
 
     /**
-     * Work messages are queued and polled from this mailbox. All work
-     * done by the processor thread is serialized through this mailbox.
+     * Runs work queued by the export manager, in order. Protocol messages
+     * are handled on the network thread of their connection and never go
+     * through here. The thread only exists while there is work.
      */
-    private final LinkedBlockingDeque<Runnable> m_mailbox =
-        new LinkedBlockingDeque<Runnable>();
+    private final ThreadPoolExecutor m_workExecutor =
+        new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS,
+                               new LinkedBlockingQueue<Runnable>(),
+                               MiscUtils.getThreadFactory("Raw export processor"));
+
+    /**
+     * Held while queued work runs and while a network thread hands a
+     * protocol message or a closed connection to the data sources. The
+     * generation switch shuts this processor down and then closes and deletes
+     * the data sources, so a message can't reach a source in the middle of
+     * that. Messages arriving after the shutdown are dropped.
+     */
+    private final Object m_generationLock = new Object();
 
     private ExportGeneration m_generation = null;
 
@@ -77,49 +93,27 @@ public class RawProcessor implements ExportDataProcessor {
 
     /**
      * As long as m_shouldContinue is true, the service will listen for new
-     * TCP/IP connections on LISTENER_PORT. At the moment, multiple client
-     * connections do not maintain separate poll/ack state. Meaning, if client-1
-     * acks data not yet read by client-2, that data will not be visible to
-     * client-2. Using multiple clients is heavily advised against.
+     * TCP/IP connections on LISTENER_PORT. Each connection keeps track of the
+     * data sources it polled and only resets those when it closes, so clients
+     * draining different partitions don't disturb each other. Clients
+     * polling the same data source still share its poll/ack state. Meaning,
+     * if client-1 acks data not yet read by client-2, that data will not be
+     * visible to client-2.
      */
     final AtomicBoolean m_shouldContinue = new AtomicBoolean(true);
 
-    private volatile Connection m_currentConnection = null;
-
-    // this run loop can almost be eliminated.  the InputHandler can
-    // call the sb.event() function directly. event() never blocks.
-    // just need a way for execution sites to respond with poll
-    // responses. Would be really great if we had an interface to
-    // schedule a non-network event against an input handler.
-    private final Runnable m_runLoop = new Runnable() {
-        @Override
-        public void run() {
-            Runnable r;
-            while (m_shouldContinue.get() == true) {
-                try {
-                    r = m_mailbox.poll(5000, TimeUnit.MILLISECONDS);
-                    if (r != null) {
-                        r.run();
-                    }
-                }
-                catch (InterruptedException e) {
-                    // acceptable. just re-loop.
-                }
-            }
-        }
-    };
-
-    private Thread m_thread = null;
+    private final Set<Connection> m_connections =
+        Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
 
     public interface ExportStateBlock {
         public void event(ExportProtoMessage message);
     }
 
     /**
-     * State for an individual Export protocol connection. This could probably be
-     * integrated with the PollingProtocolHandler but that object is pretty
-     * exclusively called by the network threadpool. Separating this makes it
-     * easier to think about concurrency.
+     * State for an individual Export protocol connection. Client messages are
+     * handled on the network thread reading the connection. Poll responses come
+     * back from the data source on whatever thread ran the poll and go
+     * straight to the connection's write stream, which is thread safe.
      */
     public class ProtoStateBlock implements ExportStateBlock {
         ProtoStateBlock(Connection c, boolean isAdmin) {
@@ -134,7 +128,7 @@ public class RawProcessor implements ExportDataProcessor {
          */
         void closeConnection() {
             m_state = RawProcessor.CLOSED;
-            for (ExportDataSource ds : m_sourcesArray) {
+            for (ExportDataSource ds : m_polledSources) {
                 ExportProtoMessage m =
                     new ExportProtoMessage( ds.getGeneration(), ds.getPartitionId(), ds.getSignature()).close();
                 try {
@@ -144,6 +138,7 @@ public class RawProcessor implements ExportDataProcessor {
                     throw new RuntimeException(e);
                 }
             }
+            m_polledSources.clear();
         }
 
         /**
@@ -280,6 +275,7 @@ public class RawProcessor implements ExportDataProcessor {
                     return;
                 }
                 try {
+                    m_polledSources.add(source);
                     source.exportAction(new ExportInternalMessage(this, m));
                     return;
                 } catch (MessagingException e) {
@@ -316,12 +312,15 @@ public class RawProcessor implements ExportDataProcessor {
 
         final Connection m_c;
         final boolean m_isAdmin;
-        int m_state;
+        volatile int m_state;
+        // sources to reset when this connection closes
+        final Set<ExportDataSource> m_polledSources =
+            Collections.newSetFromMap(new ConcurrentHashMap<ExportDataSource, Boolean>());
     }
 
     /**
      * Silly pair to couple a protostate block with a message for the
-     * m_mailbox queue. Make this a VoltMessage, though it is sort of
+     * data source. Make this a VoltMessage, though it is sort of
      * meaningless, to satisfy ExecutionSite mailbox requirements.
      */
     public static class ExportInternalMessage extends VoltMessage {
@@ -349,7 +348,8 @@ public class RawProcessor implements ExportDataProcessor {
      * Must extend VoltPrococolHandler as NIOReadStream has only
      * package private methods. The handler is very simple; it uses
      * the base class to read length prefixed messages from the network
-     * and pushes those messages into the processor's mailbox queue.
+     * and hands them to the connection's state block on the network thread,
+     * holding the generation lock.
      */
     private class ExportInputHandler extends VoltProtocolHandler
     {
@@ -365,7 +365,7 @@ public class RawProcessor implements ExportDataProcessor {
          */
         @Override
         public void starting(Connection c) {
-            m_currentConnection = c;
+            m_connections.add(c);
             m_sb = new ProtoStateBlock(c, m_isAdminPort);
         }
 
@@ -381,13 +381,13 @@ public class RawProcessor implements ExportDataProcessor {
          */
         @Override
         public void stopping(Connection c) {
-            m_mailbox.add(new Runnable() {
-                @Override
-                public void run() {
-                    m_currentConnection = null;
+            m_connections.remove(c);
+            synchronized (m_generationLock) {
+                // after a shutdown the sources may already be closed and deleted
+                if (m_shouldContinue.get()) {
                     m_sb.closeConnection();
                 }
-            });
+            }
         }
 
         @Override
@@ -407,12 +407,12 @@ public class RawProcessor implements ExportDataProcessor {
             try {
                 FastDeserializer fds = new FastDeserializer(message);
                 final ExportProtoMessage m = ExportProtoMessage.readExternal(fds);
-                m_mailbox.add(new Runnable() {
-                    @Override
-                    public void run() {
+                synchronized (m_generationLock) {
+                    // the connection is being booted, it gets nothing more
+                    if (m_shouldContinue.get()) {
                         m_sb.event(m);
                     }
-                });
+                }
             }
             catch (IOException e) {
                 throw new RuntimeException(e);
@@ -467,8 +467,6 @@ public class RawProcessor implements ExportDataProcessor {
 
     @Override
     public void readyForData() {
-        m_thread = new Thread(m_runLoop, "Raw export processor");
-        m_thread.start();
         m_logger.info("Processor ready for data.");
     }
 
@@ -478,8 +476,15 @@ public class RawProcessor implements ExportDataProcessor {
     }
 
     @Override
-    public void queueWork(Runnable r) {
-        m_mailbox.add(r);
+    public void queueWork(final Runnable r) {
+        m_workExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (m_generationLock) {
+                    r.run();
+                }
+            }
+        });
     }
 
     @Override
@@ -494,20 +499,10 @@ public class RawProcessor implements ExportDataProcessor {
     @Override
     public void shutdown() {
         m_shouldContinue.set(false);
-        if (m_thread != null) {
-            //Don't interrupt me while I'm talking
-            if (m_thread != Thread.currentThread()) {
-                m_thread.interrupt();
-                try {
-                    m_thread.join();
-                }
-                catch (InterruptedException e) {
-                    m_logger.error("Interruption not expected", e);
-                }
-            }
-        }
-        if (m_currentConnection != null) {
-            m_currentConnection.unregister();
+        // may be running on the work thread, queued work is allowed to finish
+        m_workExecutor.shutdown();
+        for (Connection c : m_connections) {
+            c.unregister();
         }
     }
 
@@ -531,8 +526,7 @@ public class RawProcessor implements ExportDataProcessor {
 
     @Override
     public void bootClient() {
-        final Connection c = m_currentConnection;
-        if (c != null) {
+        for (Connection c : m_connections) {
             m_logger.info("There was an export connection to boot.");
             c.unregister();
         }
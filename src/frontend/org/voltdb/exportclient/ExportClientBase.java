@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.json_voltpatches.JSONArray;
@@ -68,6 +69,10 @@ public abstract class ExportClientBase {
 
     final BandwidthMonitor m_bandwidthMonitor;
 
+    // subclasses whose decoders can handle blocks concurrently set this
+    // to decode blocks off the work() thread, see ExportDataSink
+    protected ExecutorService m_blockExecutor = null;
+
     // credentials
     protected String m_username = "", m_password = "";
 
@@ -180,7 +185,8 @@ public abstract class ExportClientBase {
                                       source.partitionId,
                                       source.signature,
                                       source.tableName,
-                                      decoder);
+                                      decoder,
+                                      m_blockExecutor);
                 part_map.put(part_id, sink);
             }
             else {
@@ -429,6 +435,7 @@ public abstract class ExportClientBase {
      */
     public int work() throws ExportClientException {
         int offeredMsgs = 0;
+        int pendingBlocks = 0;
 
         preWorkHook();
 
@@ -448,6 +455,9 @@ public abstract class ExportClientBase {
                 for (HashMap<Integer, ExportDataSink> part_map : gen_map.values()) {
                     for (ExportDataSink sink : part_map.values()) {
                         sink.work();
+                        if (sink.isBlockPending()) {
+                            pendingBlocks++;
+                        }
                     }
                 }
             }
@@ -472,8 +482,9 @@ public abstract class ExportClientBase {
             m_atomicWorkLock.unlock();
         }
 
-        // return the amount of work effectively done
-        return offeredMsgs;
+        // return the amount of work effectively done, blocks still being
+        // decoded count so the caller doesn't back off before acking them
+        return offeredMsgs + pendingBlocks;
     }
 
     protected long getNextPollDuration(long currentDuration,
@@ -17,12 +17,16 @@
 
 package org.voltdb.exportclient;
 
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.voltdb.export.ExportProtoMessage;
 import org.voltdb.export.ExportProtoMessage.AdvertisedDataSource;
@@ -54,8 +58,19 @@ public class ExportDataSink {
 
     boolean m_started = false;
 
+    // when not null blocks are decoded here instead of on the work() thread
+    private final ExecutorService m_blockExecutor;
+    // the block being decoded, it is acked and the next one polled once it is done
+    private Future<?> m_pendingBlock = null;
+    private ExportProtoMessage m_pendingMessage = null;
+
     public ExportDataSink(long generation, int partitionId, String tableSignature,
             String tableName, ExportDecoderBase decoder) {
+        this(generation, partitionId, tableSignature, tableName, decoder, null);
+    }
+
+    public ExportDataSink(long generation, int partitionId, String tableSignature,
+            String tableName, ExportDecoderBase decoder, ExecutorService blockExecutor) {
         m_generation = generation;
         m_tableSignature = tableSignature;
         this.partitionId = partitionId;
@@ -63,6 +78,7 @@ public class ExportDataSink {
         m_decoder = decoder;
         m_rxQueues = new HashMap<String, LinkedList<ExportProtoMessage>>();
         m_txQueues = new HashMap<String, LinkedList<ExportProtoMessage>>();
+        m_blockExecutor = blockExecutor;
     }
 
     void addExportConnection(String connectionName, long connectionTimestamp) {
@@ -80,6 +96,13 @@ public class ExportDataSink {
     }
 
     public void work() {
+        // only one block per partition is in flight so blocks are acked in order
+        if (m_pendingBlock != null) {
+            if (!m_pendingBlock.isDone()) {
+                return;
+            }
+            completePendingBlock();
+        }
         if (!m_started) {
             if (!m_knownConnections.containsKey(m_activeConnection)) {
                 Map.Entry<String, Long> oldestEntry = null;
@@ -162,17 +185,20 @@ public class ExportDataSink {
                 return;
             }
 
-            m_decoder.onBlockStart();
-            // run the verifier until m.getData() is consumed
-            while (m.getData().hasRemaining()) {
-                int length = m.getData().getInt();
-                byte[] rowdata = new byte[length];
-                m.getData().get(rowdata, 0, length);
-                m_decoder.processRow(length, rowdata);
+            if (m_blockExecutor != null) {
+                // the worker gets its own view so the order can be reset below
+                final ByteBuffer data = m.getData().slice().order(ByteOrder.LITTLE_ENDIAN);
+                m_pendingMessage = m;
+                m_pendingBlock = m_blockExecutor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        m_decoder.processBlock(data);
+                    }
+                });
+                return;
             }
 
-            // Perform completion work on the decoder
-            m_decoder.onBlockCompletion();
+            m_decoder.processBlock(m.getData());
 
             // ack the old block and poll the next
             pollAndAck(m);
@@ -181,6 +207,40 @@ public class ExportDataSink {
         }
     }
 
+    /**
+     * True while a block handed to the block executor has not been acked
+     */
+    boolean isBlockPending() {
+        return m_pendingBlock != null;
+    }
+
+    /**
+     * Wait for the block handed to the executor, rethrowing anything the
+     * decoder threw, then ack it and poll for the next one.
+     */
+    private void completePendingBlock() {
+        ExportProtoMessage m = m_pendingMessage;
+        try {
+            m_pendingBlock.get();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            m_pendingBlock = null;
+            m_pendingMessage = null;
+        }
+        if (m_started) {
+            pollAndAck(m);
+        } else {
+            // the connection went away while decoding, the next poll carries the ack
+            m_lastAckOffset = m.getAckOffset();
+        }
+    }
+
     public void connectionClosed() {
         m_started = false;
         m_knownConnections.clear();
@@ -195,6 +255,9 @@ public class ExportDataSink {
         /*
          * Process all remaining incoming messages
          */
+        if (m_pendingBlock != null) {
+            completePendingBlock();
+        }
         for (Entry<String, LinkedList<ExportProtoMessage>> rx_conn : m_rxQueues.entrySet()) {
             while (!rx_conn.getValue().isEmpty()) {
                 ExportProtoMessage m = rx_conn.getValue().poll();
@@ -203,6 +266,9 @@ public class ExportDataSink {
                     assert(m_activeConnection == rx_conn.getKey());
                     //m_activeConnection = rx_conn.getKey();
                     handlePollResponse(m);
+                    if (m_pendingBlock != null) {
+                        completePendingBlock();
+                    }
                 }
             }
         }
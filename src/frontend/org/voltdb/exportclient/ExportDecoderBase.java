@@ -19,6 +19,7 @@ package org.voltdb.exportclient;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 
@@ -70,6 +71,26 @@ public abstract class ExportDecoderBase {
 
     }
 
+    /**
+     * Process a block of length prefixed rows. The default brackets
+     * processRow for each row with onBlockStart and onBlockCompletion.
+     * When the client has a block executor this runs on one of its threads
+     * and blocks from other partitions of the same table can be in here at
+     * the same time.
+     *
+     * @param data little endian row data positioned at the first row
+     */
+    public void processBlock(ByteBuffer data) {
+        onBlockStart();
+        while (data.hasRemaining()) {
+            int length = data.getInt();
+            byte[] rowdata = new byte[length];
+            data.get(rowdata, 0, length);
+            processRow(length, rowdata);
+        }
+        onBlockCompletion();
+    }
+
     /**
      * Called when the protocol handler received no data in response to a poll.
      * Default behavior is to do nothing, but can be overridden if the decoder
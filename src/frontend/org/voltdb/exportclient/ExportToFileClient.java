@@ -18,10 +18,16 @@
 package org.voltdb.exportclient;
 
 import java.io.BufferedWriter;
+import java.io.CharArrayWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -36,6 +42,8 @@ import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.json_voltpatches.JSONObject;
@@ -45,6 +53,7 @@ import org.voltdb.export.ExportProtoMessage.AdvertisedDataSource;
 import org.voltdb.logging.VoltLogger;
 import org.voltdb.types.TimestampType;
 import org.voltdb.utils.Encoder;
+import org.voltdb.utils.MiscUtils;
 
 import au.com.bytecode.opencsv_voltpatches.CSVWriter;
 
@@ -98,9 +107,21 @@ public class ExportToFileClient extends ExportClientBase {
 
     protected final boolean m_batched;
     protected final boolean m_withSchema;
+    // threads decoding blocks, 0 decodes on the thread running work()
+    protected final int m_decodeThreads;
 
     protected final Object m_batchLock = new Object();
 
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // blocks formatted by decoder threads are built up here
+    private final ThreadLocal<CharArrayWriter> m_blockChars = new ThreadLocal<CharArrayWriter>() {
+        @Override
+        protected CharArrayWriter initialValue() {
+            return new CharArrayWriter(1024 * 1024);
+        }
+    };
+
     /**
     *
     */
@@ -109,10 +130,13 @@ public class ExportToFileClient extends ExportClientBase {
     class PeriodicExportContext {
         final File m_dirContainingFiles;
         final Map<FileHandle, CSVWriter> m_writers = new TreeMap<FileHandle, CSVWriter>();
+        // used instead of m_writers when blocks are decoded by m_blockExecutor
+        final Map<FileHandle, FileChannel> m_channels = new TreeMap<FileHandle, FileChannel>();
         boolean m_hasClosed = false;
         protected final Date start;
         protected Date end = null;
-        protected HashSet<ExportToFileDecoder> m_decoders = new HashSet<ExportToFileDecoder>();
+        // decoders, or blocks being written when decoding in parallel, holding the batch
+        protected HashSet<Object> m_decoders = new HashSet<Object>();
         protected final Set<String> m_batchSchemasWritten = new HashSet<String>();
 
         class FileHandle implements Comparable<FileHandle> {
@@ -207,9 +231,9 @@ public class ExportToFileClient extends ExportClientBase {
          * and the roll time has passed, the batch can move out
          * of the active state.
          */
-        void decref(ExportToFileDecoder decoder) {
+        void decref(Object holder) {
             synchronized (m_batchLock) {
-                m_decoders.remove(decoder);
+                m_decoders.remove(holder);
                 if ((end != null) && (m_decoders.size() == 0)) {
                     closeAllWriters();
                 }
@@ -243,6 +267,13 @@ public class ExportToFileClient extends ExportClientBase {
                     e.printStackTrace();
                 }
             }
+            for (FileChannel channel : m_channels.values()) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    m_logger.error("Failed to close export file", e);
+                }
+            }
 
             if (m_batched)
                 closeBatch();
@@ -251,6 +282,7 @@ public class ExportToFileClient extends ExportClientBase {
 
             // empty the writer set (probably not needed)
             m_writers.clear();
+            m_channels.clear();
 
             // note that we're closed now
             m_hasClosed = true;
@@ -279,14 +311,16 @@ public class ExportToFileClient extends ExportClientBase {
         }
 
         void closeFiles() {
-            File[] notifySet = new File[m_writers.size()];
+            Set<FileHandle> handles = new TreeSet<FileHandle>(m_writers.keySet());
+            handles.addAll(m_channels.keySet());
+            File[] notifySet = new File[handles.size()];
 
             int i = 0;
             // Sort the open files by TXN ID so that we can close and rename
             // them in the order in which they were created.  This allows
             // apps interested in the files to know that whenever a new file
             // is closed, it will be the next file temporally in the export stream
-            FileHandle[] keys = m_writers.keySet().toArray(new FileHandle[] {});
+            FileHandle[] keys = handles.toArray(new FileHandle[] {});
             Arrays.sort(keys, new Comparator<FileHandle>(){
                 public int compare(FileHandle f1, FileHandle f2)
                 {
@@ -335,26 +369,10 @@ public class ExportToFileClient extends ExportClientBase {
                 return writer;
 
             String path = handle.getPath(ACTIVE_PREFIX);
-            File newFile = new File(path);
-            if (newFile.exists()) {
-                m_logger.error("Error: Output file for next period already exists at path: " + newFile.getPath());
-                m_logger.error("Consider using a more specific timestamp in your filename or cleaning up your export data directory.");
-                m_logger.error("ExportToFileClient will stop to prevent data loss.");
-                throw new RuntimeException();
-            }
+            File newFile = newActiveFile(path);
             try {
                 OutputStreamWriter osw = new OutputStreamWriter(new FileOutputStream(newFile, false), "UTF-8");
-                if (m_fullDelimiters != null) {
-                    writer = new CSVWriter(new BufferedWriter(osw, 1048576),
-                            m_fullDelimiters[0], m_fullDelimiters[1], m_fullDelimiters[2], String.valueOf(m_fullDelimiters[3]));
-                }
-                else if (m_delimiter == ',')
-                    // CSV
-                    writer = new CSVWriter(new BufferedWriter(osw, 1048576), m_delimiter);
-                else {
-                    // TSV
-                    writer = CSVWriter.getStrictTSVWriter(new BufferedWriter(osw, 1048576));
-                }
+                writer = newCSVWriter(new BufferedWriter(osw, 1048576));
             }
             catch (Exception e) {
                 m_logger.error(e.getMessage());
@@ -365,6 +383,41 @@ public class ExportToFileClient extends ExportClientBase {
             return writer;
         }
 
+        /**
+         * Get the file for a table when blocks are formatted by the decoder
+         * threads. Writers must synchronize on the channel.
+         */
+        FileChannel getChannel(String tableName, long generation) {
+            FileHandle handle = new FileHandle(tableName, generation);
+            FileChannel channel = m_channels.get(handle);
+            if (channel != null)
+                return channel;
+
+            String path = handle.getPath(ACTIVE_PREFIX);
+            File newFile = newActiveFile(path);
+            try {
+                channel = new FileOutputStream(newFile, false).getChannel();
+            }
+            catch (Exception e) {
+                m_logger.error(e.getMessage());
+                m_logger.error("Error: Failed to create output file: " + path);
+                throw new RuntimeException();
+            }
+            m_channels.put(handle, channel);
+            return channel;
+        }
+
+        private File newActiveFile(String path) {
+            File newFile = new File(path);
+            if (newFile.exists()) {
+                m_logger.error("Error: Output file for next period already exists at path: " + newFile.getPath());
+                m_logger.error("Consider using a more specific timestamp in your filename or cleaning up your export data directory.");
+                m_logger.error("ExportToFileClient will stop to prevent data loss.");
+                throw new RuntimeException();
+            }
+            return newFile;
+        }
+
         void writeSchema(String tableName, long generation, String schema) {
             // if no schema's enabled pretend like this worked
             if (!m_withSchema) return;
@@ -474,13 +527,32 @@ public class ExportToFileClient extends ExportClientBase {
 
         @Override
         public boolean processRow(int rowSize, byte[] rowData) {
+            String[] fields = formatRow(rowData);
+            if (fields == null) {
+                return false;
+            }
+            try {
+                m_writer.writeNext(fields);
+            }
+            catch (Exception x) {
+                x.printStackTrace();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Decode a row and format its fields as strings.
+         * @return the fields or null if the row couldn't be decoded
+         */
+        String[] formatRow(byte[] rowData) {
             // Grab the data row
             Object[] row = null;
             try {
                 row = decodeRow(rowData);
             } catch (IOException e) {
                 m_logger.error("Unable to decode row for table: " + m_source.tableName);
-                return false;
+                return null;
             }
 
             try {
@@ -500,13 +572,68 @@ public class ExportToFileClient extends ExportClientBase {
                         fields[i - m_firstfield] = row[i].toString();
                     }
                 }
-                m_writer.writeNext(fields);
+                return fields;
             }
             catch (Exception x) {
                 x.printStackTrace();
-                return false;
+                return null;
+            }
+        }
+
+        /**
+         * With decoder threads the whole block is formatted into a buffer
+         * local to the thread and appended to the table's file with one
+         * write, so nothing here is shared with blocks of other partitions
+         * until the write. The batch is held for just that write, a roll
+         * in the meantime closes the old batch once it is done.
+         */
+        @Override
+        public void processBlock(ByteBuffer data) {
+            if (m_decodeThreads == 0) {
+                super.processBlock(data);
+                return;
+            }
+
+            CharArrayWriter chars = m_blockChars.get();
+            chars.reset();
+            CSVWriter csv = newCSVWriter(chars);
+            while (data.hasRemaining()) {
+                int length = data.getInt();
+                byte[] rowdata = new byte[length];
+                data.get(rowdata, 0, length);
+                String[] fields = formatRow(rowdata);
+                if (fields != null) {
+                    csv.writeNext(fields);
+                }
+            }
+            ByteBuffer bytes;
+            try {
+                csv.flush();
+                bytes = UTF8.encode(CharBuffer.wrap(chars.toCharArray()));
+            } catch (IOException e) {
+                m_logger.error(e.getMessage());
+                throw new RuntimeException(e);
+            }
+
+            final Object hold = new Object();
+            PeriodicExportContext context = getCurrentContextAndAddref(hold);
+            try {
+                FileChannel channel;
+                synchronized (m_batchLock) {
+                    channel = context.getChannel(m_tableName, m_generation);
+                    context.writeSchema(m_tableName, m_generation, m_schemaString);
+                }
+                synchronized (channel) {
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                }
+            } catch (IOException e) {
+                m_logger.error(e.getMessage());
+                throw new RuntimeException(e);
+            } finally {
+                context.decref(hold);
             }
-            return true;
         }
 
         /**
@@ -629,6 +756,28 @@ public class ExportToFileClient extends ExportClientBase {
                               boolean withSchema,
                               int throughputMonitorPeriod,
                               boolean autodiscoverTopolgy) {
+        this(delimiter, nonce, outdir, period, dateformatString, fullDelimiters,
+                firstfield, useAdminPorts, batched, withSchema, throughputMonitorPeriod,
+                autodiscoverTopolgy, 0);
+    }
+
+    /**
+     * @param decodeThreads Number of threads decoding and formatting blocks.
+     * With 0 everything happens on the thread calling work().
+     */
+    public ExportToFileClient(char delimiter,
+                              String nonce,
+                              File outdir,
+                              int period,
+                              String dateformatString,
+                              String fullDelimiters,
+                              int firstfield,
+                              boolean useAdminPorts,
+                              boolean batched,
+                              boolean withSchema,
+                              int throughputMonitorPeriod,
+                              boolean autodiscoverTopolgy,
+                              int decodeThreads) {
         super(useAdminPorts, throughputMonitorPeriod, autodiscoverTopolgy);
         m_delimiter = delimiter;
         m_extension = (delimiter == ',') ? ".csv" : ".tsv";
@@ -654,6 +803,11 @@ public class ExportToFileClient extends ExportClientBase {
         m_firstfield = firstfield;
         m_batched = batched;
         m_withSchema = withSchema;
+        m_decodeThreads = decodeThreads;
+        if (decodeThreads > 0) {
+            m_blockExecutor = Executors.newFixedThreadPool(decodeThreads,
+                    MiscUtils.getThreadFactory("Export Decoder"));
+        }
 
         if (fullDelimiters != null) {
             fullDelimiters = StringEscapeUtils.unescapeHtml4(fullDelimiters);
@@ -681,13 +835,28 @@ public class ExportToFileClient extends ExportClientBase {
         m_timer.scheduleAtFixedRate(rotateTask, 1000 * 60 * m_period, 1000 * 60 * m_period);
     }
 
-    PeriodicExportContext getCurrentContextAndAddref(ExportToFileDecoder decoder) {
+    PeriodicExportContext getCurrentContextAndAddref(Object holder) {
         synchronized(m_batchLock) {
-            m_current.m_decoders.add(decoder);
+            m_current.m_decoders.add(holder);
             return m_current;
         }
     }
 
+    CSVWriter newCSVWriter(Writer out) {
+        if (m_fullDelimiters != null) {
+            return new CSVWriter(out,
+                    m_fullDelimiters[0], m_fullDelimiters[1], m_fullDelimiters[2], String.valueOf(m_fullDelimiters[3]));
+        }
+        else if (m_delimiter == ',') {
+            // CSV
+            return new CSVWriter(out, m_delimiter);
+        }
+        else {
+            // TSV
+            return CSVWriter.getStrictTSVWriter(out);
+        }
+    }
+
     @Override
     public ExportToFileDecoder constructExportDecoder(AdvertisedDataSource source) {
         // For every source that provides part of a table, use the same
@@ -751,6 +920,10 @@ public class ExportToFileClient extends ExportClientBase {
                 m_period, m_period == 1 ? "" : "s"));
         m_logger.info(String.format("Writing export files to dir: %s",
                 m_outDir));
+        if (m_decodeThreads > 0) {
+            m_logger.info(String.format("Decoding export data on %d thread%s",
+                    m_decodeThreads, m_decodeThreads == 1 ? "" : "s"));
+        }
         if (m_firstfield == 0) {
             m_logger.info("Including VoltDB export metadata");
         }
@@ -774,6 +947,7 @@ public class ExportToFileClient extends ExportClientBase {
                         + "[--outdir target_directory] "
                         + "[--skipinternals] "
                         + "[--delimiters html-escaped delimiter set (4 chars)] "
+                        + "[--decode-threads number_of_decoding_threads] "
                         + "[--user export_username] "
                         + "[--password export_password]");
         System.out.println("Note that server hostnames may be appended with a specific port:");
@@ -798,6 +972,7 @@ public class ExportToFileClient extends ExportClientBase {
         String fullDelimiters = null;
         int throughputMonitorPeriod = 0;
         boolean autodiscoverTopolgy = true;
+        int decodeThreads = 0;
 
         for (int ii = 0; ii < args.length; ii++) {
             String arg = args[ii];
@@ -956,6 +1131,18 @@ public class ExportToFileClient extends ExportClientBase {
                 throughputMonitorPeriod = Integer.parseInt(args[ii + 1].trim());
                 ii++;
             }
+            else if (arg.equals("--decode-threads")) {
+                if (args.length < ii + 1) {
+                    System.err.println("Error: Not enough args following --decode-threads");
+                    printHelpAndQuit(-1);
+                }
+                decodeThreads = Integer.parseInt(args[ii + 1].trim());
+                if (decodeThreads < 0) {
+                    System.err.println("Error: Specified value for --decode-threads must be >= 0.");
+                    printHelpAndQuit(-1);
+                }
+                ii++;
+            }
             else {
                 System.err.println("Unrecognized parameter " + arg);
                 System.exit(-1);
@@ -1001,7 +1188,8 @@ public class ExportToFileClient extends ExportClientBase {
                                                            batched,
                                                            withSchema,
                                                            throughputMonitorPeriod,
-                                                           autodiscoverTopolgy);
+                                                           autodiscoverTopolgy,
+                                                           decodeThreads);
 
         // add all of the servers specified
         for (String server : volt_servers) {
@@ -69,6 +69,7 @@ public class Driver implements java.sql.Driver
                     String password = "";
                     boolean heavyweight = false;
                     int maxoutstandingtxns = 0;
+                    boolean pipelinebatches = false;
                     for (Enumeration e = info.propertyNames(); e.hasMoreElements();)
                     {
                         String key = (String) e.nextElement();
@@ -81,11 +82,13 @@ public class Driver implements java.sql.Driver
                             heavyweight = (value.toLowerCase().equals("true") || value.toLowerCase().equals("yes") || value.toLowerCase().equals("1"));
                         else if (key.toLowerCase().equals("maxoutstandingtxns"))
                             maxoutstandingtxns = Integer.parseInt(value);
+                        else if (key.toLowerCase().equals("pipelinebatches"))
+                            pipelinebatches = (value.toLowerCase().equals("true") || value.toLowerCase().equals("yes") || value.toLowerCase().equals("1"));
                         // else - unknown; ignore
                     }
 
                     // Return JDBC connection wrapper for the client
-                    return new JDBC4Connection(ClientConnectionPool.get(servers,port,user,password,heavyweight,maxoutstandingtxns), user);
+                    return new JDBC4Connection(ClientConnectionPool.get(servers,port,user,password,heavyweight,maxoutstandingtxns), user, pipelinebatches);
                 }
             }
             catch(Exception x)
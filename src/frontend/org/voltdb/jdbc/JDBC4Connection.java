@@ -45,12 +45,20 @@ public class JDBC4Connection implements java.sql.Connection, IVoltDBConnection
 {
     protected final ClientConnection NativeConnection;
     protected final String User;
+    // Whether executeBatch may have several batched statements in flight at once, see JDBC4Statement.executeBatch
+    protected final boolean PipelineBatches;
     private boolean isClosed = false;
 
     public JDBC4Connection(ClientConnection connection, String user)
+    {
+        this(connection, user, false);
+    }
+
+    public JDBC4Connection(ClientConnection connection, String user, boolean pipelineBatches)
     {
         this.NativeConnection = connection;
         this.User = user;
+        this.PipelineBatches = pipelineBatches;
     }
 
     private void checkClosed() throws SQLException
@@ -316,7 +316,7 @@ public class JDBC4ResultSet implements java.sql.ResultSet
         // TODO: Tempting to apply a != 0 operation on numbers and .equals("true") on strings, but... hacky
         try
         {
-            return (new Long(table.getLong(columnIndex-1))).intValue() == 1;
+            return table.getLong(columnIndex-1) == 1;
         }
         catch(Exception x)
         {
@@ -338,7 +338,7 @@ public class JDBC4ResultSet implements java.sql.ResultSet
         checkColumnBounds(columnIndex);
         try
         {
-            return (new Long(table.getLong(columnIndex-1))).byteValue();
+            return (byte)table.getLong(columnIndex-1);
         }
         catch(Exception x)
         {
@@ -528,7 +528,7 @@ public class JDBC4ResultSet implements java.sql.ResultSet
         checkColumnBounds(columnIndex);
         try
         {
-            return (new Double(table.getDouble(columnIndex-1))).floatValue();
+            return (float)table.getDouble(columnIndex-1);
         }
         catch(Exception x)
         {
@@ -557,7 +557,7 @@ public class JDBC4ResultSet implements java.sql.ResultSet
         checkColumnBounds(columnIndex);
         try
         {
-            return (new Long(table.getLong(columnIndex-1))).intValue();
+            return (int)table.getLong(columnIndex-1);
         }
         catch(Exception x)
         {
@@ -765,7 +765,7 @@ public class JDBC4ResultSet implements java.sql.ResultSet
         checkColumnBounds(columnIndex);
         try
         {
-            return (new Long(table.getLong(columnIndex-1))).shortValue();
+            return (short)table.getLong(columnIndex-1);
         }
         catch(Exception x)
         {
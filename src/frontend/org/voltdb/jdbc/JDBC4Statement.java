@@ -30,11 +30,14 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.Semaphore;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.voltdb.VoltTable;
 import org.voltdb.VoltType;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
 import org.voltdb.client.exampleutils.ClientConnection;
 
 public class JDBC4Statement implements java.sql.Statement
@@ -105,6 +108,21 @@ public class JDBC4Statement implements java.sql.Statement
             }
         }
 
+        protected boolean executeAsync(ClientConnection connection, ProcedureCallback callback) throws SQLException
+        {
+            try
+            {
+                if (this.type == TYPE_EXEC)
+                    return connection.executeAsync(callback, this.sql[0], this.parameters);
+                else
+                    return connection.executeAsync(callback, "@AdHoc", this.sql[0]);
+            }
+            catch(Exception x)
+            {
+                throw SQLError.get(x, SQLError.GENERAL_ERROR);
+            }
+        }
+
         public static boolean isUpdateResult(VoltTable table)
         {
             return ((table.getColumnName(0).length() == 0 || table.getColumnName(0).equals("modified_tuples"))&& table.getRowCount() == 1 && table.getColumnCount() == 1 && table.getColumnType(0) == VoltType.BIGINT);
@@ -270,6 +288,67 @@ public class JDBC4Statement implements java.sql.Statement
         }
     }
 
+    // Maximum number of batched statements waiting for a response at any time
+    static final int BATCH_WINDOW = 1000;
+    // Ad hoc statements are planned first and a host only queues 250 of those
+    // for its planner, so a batch with any of them keeps well below that
+    static final int ADHOC_BATCH_WINDOW = 100;
+
+    /**
+     * Collects the update counts of a batch executed asynchronously. The window
+     * semaphore limits the statements in flight and the batch is complete once
+     * all of its permits can be taken back.
+     */
+    private static class BatchExecution
+    {
+        private final int[] updateCounts;
+        private final SQLException[] failures;
+        private final int windowSize;
+        private final Semaphore window;
+        private volatile boolean failed = false;
+
+        BatchExecution(int size, int windowSize)
+        {
+            this.updateCounts = new int[size];
+            this.failures = new SQLException[size];
+            this.windowSize = windowSize;
+            this.window = new Semaphore(windowSize);
+        }
+
+        ProcedureCallback callback(final int index)
+        {
+            return new ProcedureCallback()
+            {
+                @Override
+                public void clientCallback(ClientResponse response)
+                {
+                    try
+                    {
+                        if (response.getStatus() != ClientResponse.SUCCESS)
+                            fail(index, new SQLException(response.getStatusString(), SQLError.GENERAL_ERROR));
+                        else
+                            updateCounts[index] = (int)response.getResults()[0].fetchRow(0).getLong(0);
+                    }
+                    catch(Exception x)
+                    {
+                        fail(index, SQLError.get(x, SQLError.GENERAL_ERROR));
+                    }
+                    finally
+                    {
+                        window.release();
+                    }
+                }
+            };
+        }
+
+        void fail(int index, SQLException cause)
+        {
+            updateCounts[index] = EXECUTE_FAILED;
+            failures[index] = cause;
+            failed = true;
+        }
+    }
+
     private ArrayList<VoltSQL> batch = null;
     private ArrayList<String> warnings = null;
     protected boolean isClosed = false;
@@ -444,6 +523,7 @@ public class JDBC4Statement implements java.sql.Statement
     }
 
     // Submits a batch of commands to the database for execution and if all commands execute successfully, returns an array of update counts.
+    // The commands are executed one after the other unless the connection was opened with pipelinebatches, see executeBatchPipelined.
     @Override
     public int[] executeBatch() throws SQLException
     {
@@ -451,6 +531,8 @@ public class JDBC4Statement implements java.sql.Statement
         closeCurrentResult();
         if (batch == null || batch.size() == 0)
             return new int[0];
+        if (sourceConnection.PipelineBatches)
+            return executeBatchPipelined();
         int[] updateCounts = new int[batch.size()];
         for(int i=0;i<batch.size();i++)
         {
@@ -468,6 +550,58 @@ public class JDBC4Statement implements java.sql.Statement
         return updateCounts;
     }
 
+    // Up to BATCH_WINDOW commands (ADHOC_BATCH_WINDOW if any are ad hoc) are sent before waiting for responses. Commands in
+    // flight may be routed to different hosts and partitions and run in any order, so this is only suitable for batches of
+    // independent commands. Once a command fails no more are sent, the exception holds the counts of every command that was
+    // sent with EXECUTE_FAILED for the ones that failed.
+    private int[] executeBatchPipelined() throws SQLException
+    {
+        int windowSize = BATCH_WINDOW;
+        for(VoltSQL query : batch)
+            if (!query.isOfType(VoltSQL.TYPE_EXEC))
+                windowSize = ADHOC_BATCH_WINDOW;
+        final BatchExecution execution = new BatchExecution(batch.size(), windowSize);
+        int submitted = 0;
+        try
+        {
+            while(submitted < batch.size() && !execution.failed)
+            {
+                execution.window.acquire();
+                boolean queued = false;
+                try
+                {
+                    queued = batch.get(submitted).executeAsync(sourceConnection.NativeConnection, execution.callback(submitted));
+                }
+                catch(SQLException x)
+                {
+                    execution.fail(submitted, x);
+                }
+                if (!queued)
+                {
+                    if (execution.failures[submitted] == null)
+                        execution.fail(submitted, SQLError.get(SQLError.CONNECTION_FAILURE));
+                    execution.window.release();
+                }
+                submitted++;
+            }
+            // wait for everything in flight
+            execution.window.acquire(execution.windowSize);
+        }
+        catch(InterruptedException x)
+        {
+            throw SQLError.get(x, SQLError.GENERAL_ERROR);
+        }
+
+        if (execution.failed)
+        {
+            for(int i=0;i<submitted;i++)
+                if (execution.failures[i] != null)
+                    throw new BatchUpdateException(Arrays.copyOf(execution.updateCounts, submitted), execution.failures[i]);
+        }
+        setCurrentResult(null, execution.updateCounts[submitted-1]);
+        return execution.updateCounts;
+    }
+
     protected ResultSet executeQuery(VoltSQL query) throws SQLException
     {
         try
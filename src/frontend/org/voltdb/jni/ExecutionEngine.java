@@ -297,6 +297,11 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
 
     abstract public long getThreadLocalPoolAllocations();
 
+    /**
+     * @return Total bytes of temp table data this site spilled to disk
+     */
+    abstract public long getTempTableBytesSpilled();
+
     abstract public void loadTable(
         int tableId, VoltTable table, long txnId,
         long lastCommittedTxnId, long undoToken) throws EEException;
@@ -563,6 +568,13 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
      */
     protected static native long nativeGetThreadLocalPoolAllocations();
 
+    /**
+     * Retrieve the total bytes of temp table data the EE spilled to disk
+     * @param pointer the VoltDBEngine pointer
+     * @return
+     */
+    protected native long nativeGetTempTableBytesSpilled(long pointer);
+
     /**
      * @param nextUndoToken The undo token to associate with future work
      * @return true for success false for failure
@@ -116,7 +116,8 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         TableHashCode(22),
         Hashinate(23),
         GetPoolAllocations(24),
-        GetUSOs(25);
+        GetUSOs(25),
+        GetTempTableBytesSpilled(26);
         Commands(final int id) {
             m_id = id;
         }
@@ -1372,4 +1373,28 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             throw new RuntimeException(e);
         }
     }
+
+    @Override
+    public long getTempTableBytesSpilled() {
+        m_data.clear();
+        m_data.putInt(Commands.GetTempTableBytesSpilled.m_id);
+        try {
+            m_data.flip();
+            m_connection.write();
+
+            m_connection.readStatusByte();
+            ByteBuffer spilled = ByteBuffer.allocate(8);
+            while (spilled.hasRemaining()) {
+                int read = m_connection.m_socketChannel.read(spilled);
+                if (read <= 0) {
+                    throw new EOFException();
+                }
+            }
+            spilled.flip();
+            return spilled.getLong();
+        } catch (final Exception e) {
+            System.out.println("Exception: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
 }
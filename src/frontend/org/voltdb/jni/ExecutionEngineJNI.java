@@ -74,9 +74,10 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         new FastDeserializer(deserializerBufferOrigin.b);
 
     /*
-     * For large result sets the EE will allocate new memory for the results
-     * and invoke a callback to set the allocated memory here.
+     * For large result sets the EE asks for a larger buffer from this pool
+     * and the one it switched to is set here until the results are read.
      */
+    private final ResultBufferPool resultBuffers = new ResultBufferPool();
     private ByteBuffer fallbackBuffer = null;
 
     private final BBContainer exceptionBufferOrigin = org.voltdb.utils.DBBPool.allocateDirect(1024 * 1024 * 20);
@@ -169,6 +170,7 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         }
         deserializer = null;
         deserializerBufferOrigin.discard();
+        resultBuffers.release();
         exceptionBuffer = null;
         exceptionBufferOrigin.discard();
         LOG.trace("Released Execution Engine.");
@@ -358,27 +360,25 @@ public class ExecutionEngineJNI extends ExecutionEngine {
             // get a copy of the result buffers and make the tables
             // use the copy
             try {
-                // read the complete size of the buffer used
-                final int totalSize = fds.readInt();
+                // read the complete size of the buffer used (ignored here)
+                fds.readInt();
                 // check if anything was changed
                 final boolean dirty = fds.readBoolean();
                 if (dirty)
                     m_dirty = true;
-                // get a copy of the buffer
-                final ByteBuffer fullBacking = fds.readBuffer(totalSize);
+                // copy each table out on its own so a large batch doesn't need
+                // one allocation the size of all of the results
                 final VoltTable[] results = new VoltTable[batchSize];
                 for (int i = 0; i < batchSize; ++i) {
-                    final int numdeps = fullBacking.getInt(); // number of dependencies for this frag
+                    final int numdeps = fds.readInt(); // number of dependencies for this frag
                     assert(numdeps == 1);
                     @SuppressWarnings("unused")
                     final
-                    int depid = fullBacking.getInt(); // ignore the dependency id
-                    final int tableSize = fullBacking.getInt();
+                    int depid = fds.readInt(); // ignore the dependency id
+                    final int tableSize = fds.readInt();
                     // reasonableness check
                     assert(tableSize < 50000000);
-                    final ByteBuffer tableBacking = fullBacking.slice();
-                    fullBacking.position(fullBacking.position() + tableSize);
-                    tableBacking.limit(tableSize);
+                    final ByteBuffer tableBacking = fds.readBuffer(tableSize);
 
                     results[i] = PrivateVoltTableFactory.createVoltTableFromBuffer(tableBacking, true);
                 }
@@ -438,6 +438,7 @@ public class ExecutionEngineJNI extends ExecutionEngine {
     @Override
     public void tick(final long time, final long lastCommittedTxnId) {
         nativeTick(pointer, time, lastCommittedTxnId);
+        resultBuffers.trim(time);
     }
 
     @Override
@@ -575,13 +576,23 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         return nativeGetThreadLocalPoolAllocations();
     }
 
+    @Override
+    public long getTempTableBytesSpilled() {
+        return nativeGetTempTableBytesSpilled(pointer);
+    }
+
     /*
-     * Instead of using the reusable output buffer to get results for the next batch,
-     * use this buffer allocated by the EE. This is for one time use.
+     * Called by the EE when the results don't fit in the buffer it is using. Returns a
+     * pooled buffer of at least minimumCapacity bytes that the EE copies the results so
+     * far into and continues with, or null if that is more then the largest result allowed.
+     * The results of the current call are read from the returned buffer.
      */
-    public void fallbackToEEAllocatedBuffer(ByteBuffer buffer) {
-        assert(buffer != null);
-        assert(fallbackBuffer == null);
-        fallbackBuffer = buffer;
+    public ByteBuffer nextResultBuffer(int minimumCapacity) {
+        final BBContainer c = resultBuffers.get(minimumCapacity, System.currentTimeMillis());
+        if (c == null) {
+            return null;
+        }
+        fallbackBuffer = c.b;
+        return fallbackBuffer;
     }
 }
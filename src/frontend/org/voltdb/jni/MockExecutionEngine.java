@@ -232,4 +232,9 @@ public class MockExecutionEngine extends ExecutionEngine {
         // TODO Auto-generated method stub
         return 0L;
     }
+
+    @Override
+    public long getTempTableBytesSpilled() {
+        return 0L;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.voltdb.jni;
+
+import org.voltdb.utils.DBBPool;
+import org.voltdb.utils.DBBPool.BBContainer;
+
+/**
+ * Direct buffers larger then the engine's regular result buffer that the EE
+ * switches to when results don't fit. Each tier is allocated the first time a
+ * result needs it and then kept, so an occasional large result doesn't allocate
+ * and free tens of megabytes every time. Tiers that go unused for a while are
+ * released by trim(). Not thread safe, each engine has its own pool.
+ */
+class ResultBufferPool {
+    /*
+     * The largest tier leaves some space for message headers and such,
+     * almost 50 megabytes
+     */
+    static final int TIER_SIZES[] = new int[] {
+        1024 * 1024 * 25,
+        (1024 * 1024 * 50) - (1024 * 32)
+    };
+
+    static final long IDLE_TIMEOUT = 5 * 60 * 1000;
+
+    private final BBContainer m_tiers[] = new BBContainer[TIER_SIZES.length];
+    private final long m_lastUsed[] = new long[TIER_SIZES.length];
+
+    /**
+     * Get the smallest buffer with at least minimumCapacity bytes, cleared.
+     * @return null if minimumCapacity is larger then the largest tier
+     */
+    BBContainer get(int minimumCapacity, long now) {
+        for (int ii = 0; ii < TIER_SIZES.length; ii++) {
+            if (TIER_SIZES[ii] < minimumCapacity) {
+                continue;
+            }
+            if (m_tiers[ii] == null) {
+                m_tiers[ii] = DBBPool.allocateDirect(TIER_SIZES[ii]);
+            }
+            m_lastUsed[ii] = now;
+            m_tiers[ii].b.clear();
+            return m_tiers[ii];
+        }
+        return null;
+    }
+
+    /**
+     * Release the tiers that haven't been used for IDLE_TIMEOUT
+     */
+    void trim(long now) {
+        for (int ii = 0; ii < TIER_SIZES.length; ii++) {
+            if (m_tiers[ii] != null && now - m_lastUsed[ii] > IDLE_TIMEOUT) {
+                m_tiers[ii].discard();
+                m_tiers[ii] = null;
+            }
+        }
+    }
+
+    /**
+     * @return The number of bytes currently allocated for tiers
+     */
+    long allocatedBytes() {
+        long total = 0;
+        for (int ii = 0; ii < TIER_SIZES.length; ii++) {
+            if (m_tiers[ii] != null) {
+                total += TIER_SIZES[ii];
+            }
+        }
+        return total;
+    }
+
+    void release() {
+        trim(Long.MAX_VALUE);
+    }
+}
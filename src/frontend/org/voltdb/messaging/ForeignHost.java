@@ -23,6 +23,7 @@ import java.net.InetAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.Set;
 
 import org.voltdb.VoltDB;
@@ -46,6 +47,14 @@ public class ForeignHost {
     public static final int READY_SIGNAL = -1;
     public static final int CATALOG_SIGNAL = -2;
     public static final int POISON_SIGNAL = -3;
+    // a frame holding several messages, each framed as if it was sent on its own
+    public static final int BATCH_SIGNAL = -4;
+
+    /**
+     * Messages sent while a batch is queued are framed together until the frame
+     * reaches this size. A bigger message goes in a frame of its own.
+     */
+    static final int MAX_BATCH_BYTES = 1024 * 1024;
 
     private final Connection m_connection;
     final FHInputHandler m_handler;
@@ -65,6 +74,87 @@ public class ForeignHost {
     private final long m_deadHostTimeout;
     private long m_lastMessageMillis;
 
+    /**
+     * A message waiting for the network thread to serialize the batch it is in.
+     * Signals to the magic mailbox ids are queued already framed in raw.
+     */
+    private static class QueuedMessage {
+        final int mailboxId;
+        final int destinations[];
+        final int destinationCount;
+        final DeferredSerialization message;
+        final boolean shared;
+        final ByteBuffer raw;
+
+        QueuedMessage(int mailboxId, int destinations[], int destinationCount,
+                DeferredSerialization message, boolean shared) {
+            this.mailboxId = mailboxId;
+            this.destinations = destinations;
+            this.destinationCount = destinationCount;
+            this.message = message;
+            this.shared = shared;
+            this.raw = null;
+        }
+
+        QueuedMessage(ByteBuffer raw) {
+            this.mailboxId = raw.getInt(4);
+            this.destinations = null;
+            this.destinationCount = 0;
+            this.message = null;
+            this.shared = false;
+            this.raw = raw;
+        }
+    }
+
+    /*
+     * Messages sent since the network thread last serialized this host's batch.
+     * The batch is in the connection's write stream whenever this is not empty.
+     * Swapped with m_serializingBatch by the network thread. Guarded by m_batchLock
+     * along with the counters.
+     */
+    private final Object m_batchLock = new Object();
+    private ArrayList<QueuedMessage> m_batch = new ArrayList<QueuedMessage>();
+    private ArrayList<QueuedMessage> m_serializingBatch = new ArrayList<QueuedMessage>();
+    private long m_messagesSent = 0;
+    private long m_framesSent = 0;
+    private long m_lastMessagesSent = 0;
+    private long m_lastFramesSent = 0;
+
+    /**
+     * Serializes every message sent to this host since the last time it ran
+     * into as few frames as possible. The receiver splits them in handleRead.
+     */
+    private final DeferredSerialization m_batchSerialization = new DeferredSerialization() {
+        @Override
+        public BBContainer serialize(DBBPool pool) throws IOException {
+            final ArrayList<QueuedMessage> batch;
+            synchronized (m_batchLock) {
+                batch = m_batch;
+                m_batch = m_serializingBatch;
+                m_serializingBatch = batch;
+            }
+            try {
+                return serializeBatch(pool, batch);
+            } finally {
+                batch.clear();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            final ArrayList<QueuedMessage> batch;
+            synchronized (m_batchLock) {
+                batch = m_batch;
+                m_batch = new ArrayList<QueuedMessage>();
+            }
+            for (QueuedMessage m : batch) {
+                if (m.message != null) {
+                    m.message.cancel();
+                }
+            }
+        }
+    };
+
     private class FHFaultHandler implements FaultHandler
     {
         @Override
@@ -218,11 +308,174 @@ public class ForeignHost {
         return m_isUp;
     }
 
+    /**
+     * Return how many messages and frames were sent to this host,
+     * either in total or since the last time interval was true.
+     * @return {messages, frames}
+     */
+    long[] getBatchStats(boolean interval) {
+        synchronized (m_batchLock) {
+            if (interval) {
+                final long messages = m_messagesSent - m_lastMessagesSent;
+                final long frames = m_framesSent - m_lastFramesSent;
+                m_lastMessagesSent = m_messagesSent;
+                m_lastFramesSent = m_framesSent;
+                return new long[] { messages, frames };
+            }
+            return new long[] { m_messagesSent, m_framesSent };
+        }
+    }
+
+    private BBContainer serializeBatch(DBBPool pool, ArrayList<QueuedMessage> batch) throws IOException {
+        final ArrayList<BBContainer> out = new ArrayList<BBContainer>(batch.size() + 1);
+        final ArrayList<BBContainer> frame = new ArrayList<BBContainer>(batch.size());
+        int frameBytes = 0;
+        int frameMessages = 0;
+        int frames = 0;
+        for (QueuedMessage m : batch) {
+            final BBContainer c = serializeMessage(pool, m);
+            final BBContainer parts[] = c instanceof DBBPool.GatheredContainer ?
+                    ((DBBPool.GatheredContainer)c).m_parts : new BBContainer[] { c };
+            int bytes = 0;
+            for (BBContainer part : parts) {
+                bytes += part.b.remaining();
+            }
+            if (frameMessages > 0 && frameBytes + bytes > MAX_BATCH_BYTES) {
+                closeFrame(pool, out, frame, frameBytes, frameMessages);
+                frames++;
+                frameBytes = 0;
+                frameMessages = 0;
+            }
+            for (BBContainer part : parts) {
+                frame.add(part);
+            }
+            frameBytes += bytes;
+            frameMessages++;
+        }
+        if (frameMessages > 0) {
+            closeFrame(pool, out, frame, frameBytes, frameMessages);
+            frames++;
+        }
+        synchronized (m_batchLock) {
+            m_messagesSent += batch.size();
+            m_framesSent += frames;
+        }
+
+        if (out.size() == 1) {
+            return out.get(0);
+        }
+        return new DBBPool.GatheredContainer(out.toArray(new BBContainer[out.size()]));
+    }
+
+    /**
+     * Move the messages of a frame to out, behind a batch header if there is more than one
+     */
+    private static void closeFrame(DBBPool pool, ArrayList<BBContainer> out,
+            ArrayList<BBContainer> frame, int frameBytes, int frameMessages) {
+        if (frameMessages > 1) {
+            final BBContainer header = pool.acquire(12);
+            header.b.putInt(8 + frameBytes);
+            header.b.putInt(BATCH_SIGNAL);
+            header.b.putInt(frameMessages);
+            header.b.flip();
+            out.add(header);
+        }
+        out.addAll(frame);
+        frame.clear();
+    }
+
+    /**
+     * Serialize one message with its length prefix, mailbox id and destinations
+     */
+    private static BBContainer serializeMessage(DBBPool pool, QueuedMessage m) throws IOException {
+        if (m.raw != null) {
+            return DBBPool.wrapBB(m.raw);
+        }
+        if (m.shared) {
+            return serializeShared(pool, m.mailboxId, m.destinations, m.destinationCount, m.message);
+        }
+        final BBContainer outContainer = m.message.serialize(pool);
+        ByteBuffer out = outContainer.b;
+        int len = out.limit() - VoltMessage.HEADER_SIZE;
+
+        int headerlen = 4                       /* mailboxId */
+                      + 4                       /* destinationCount */
+                      + 4 * m.destinationCount; /* destination list */
+
+        out.position(VoltMessage.HEADER_SIZE - headerlen - 4);
+        out.mark();
+        out.putInt(headerlen + len);
+        out.putInt(m.mailboxId);
+        out.putInt(m.destinationCount);
+        for (int i = 0; i < m.destinationCount; i++) {
+            out.putInt(m.destinations[i]);
+        }
+        out.reset();
+        return outContainer;
+    }
+
+    private static BBContainer serializeShared(
+            final DBBPool pool,
+            final int mailboxId,
+            final int destinations[],
+            final int destinationCount,
+            final DeferredSerialization message) throws IOException {
+        final BBContainer body = message.serialize(pool);
+        int len = body.b.remaining();
+
+        int headerlen = 4                     /* mailboxId */
+                      + 4                     /* destinationCount */
+                      + 4 * destinationCount; /* destination list */
+
+        final BBContainer header = pool.acquire(4 + headerlen);
+        ByteBuffer out = header.b;
+        out.putInt(headerlen + len);
+        out.putInt(mailboxId);
+        out.putInt(destinationCount);
+        for (int i = 0; i < destinationCount; i++) {
+            out.putInt(destinations[i]);
+        }
+        out.flip();
+        return new DBBPool.GatheredContainer(header, body);
+    }
+
+    /**
+     * Add a message to the batch, enqueueing the batch on the connection
+     * if it was empty. Everything sent to this host goes through here so
+     * that messages reach it in the order they were sent.
+     */
+    private void enqueue(QueuedMessage m) {
+        final boolean queueBatch;
+        synchronized (m_batchLock) {
+            queueBatch = m_batch.isEmpty();
+            m_batch.add(m);
+        }
+        if (queueBatch) {
+            m_connection.writeStream().enqueue(m_batchSerialization);
+        }
+    }
+
     /** Send a message to the network. This public method is re-entrant. */
     void send(final int mailboxId,
             final int destinations[],
             final int destinationCount,
             final DeferredSerialization message)
+    {
+        send(mailboxId, destinations, destinationCount, message, false);
+    }
+
+    /**
+     * Send a message to the network. If shared is true the message serializes to a reference
+     * to a buffer that is also being written to other hosts and that holds only the message
+     * body, without the space reserved for the header. The header for this host is put in a
+     * buffer of its own in front of it. Messages sent before the network thread gets to the
+     * connection are batched into one frame. This public method is re-entrant.
+     */
+    void send(final int mailboxId,
+            final int destinations[],
+            final int destinationCount,
+            final DeferredSerialization message,
+            final boolean shared)
     {
         assert(destinationCount > 0);
         assert(destinationCount <= destinations.length);
@@ -232,35 +485,7 @@ public class ForeignHost {
             return;
         }
 
-        m_connection.writeStream().enqueue(
-            new DeferredSerialization() {
-                @Override
-                public final BBContainer serialize(final DBBPool pool) throws IOException{
-                    final BBContainer outContainer = message.serialize(pool);
-                    ByteBuffer out = outContainer.b;
-                    int len = out.limit() - VoltMessage.HEADER_SIZE;
-
-                    int headerlen = 4                     /* mailboxId */
-                                  + 4                     /* destinationCount */
-                                  + 4 * destinationCount; /* destination list */
-
-                    out.position(VoltMessage.HEADER_SIZE - headerlen - 4);
-                    out.mark();
-                    out.putInt(headerlen + len);
-                    out.putInt(mailboxId);
-                    out.putInt(destinationCount);
-                    for (int i = 0; i < destinationCount; i++) {
-                        out.putInt(destinations[i]);
-                    }
-                    out.reset();
-                    return outContainer;
-                }
-
-                @Override
-                public final void cancel() {
-                    message.cancel();
-                }
-            });
+        enqueue(new QueuedMessage(mailboxId, destinations, destinationCount, message, shared));
 
         long current_time = EstTime.currentTimeMillis();
         long current_delta = current_time - m_lastMessageMillis;
@@ -319,7 +544,7 @@ public class ForeignHost {
         out.putInt(m_hostMessenger.getHostId());
         out.put(hostnameBytes);
         out.rewind();
-        m_connection.writeStream().enqueue(out);
+        enqueue(new QueuedMessage(out));
     }
 
     /**
@@ -335,13 +560,17 @@ public class ForeignHost {
         // byte data itself
         out.put(bytes);
         out.rewind();
-        m_connection.writeStream().enqueue(out);
+        enqueue(new QueuedMessage(out));
     }
 
     String hostname() {
         return m_remoteHostname;
     }
 
+    long connectionId() {
+        return m_connection.connectionId();
+    }
+
     String inetAddrString() {
         return m_ipAddress.toString();
     }
@@ -400,6 +629,19 @@ public class ForeignHost {
             return;
         }
 
+        // split a batch and handle each message in it
+        if (mailboxId == BATCH_SIGNAL) {
+            final int count = in.getInt();
+            for (int ii = 0; ii < count; ii++) {
+                final int length = in.getInt();
+                final ByteBuffer message = in.slice();
+                message.limit(length);
+                in.position(in.position() + length);
+                handleRead(message, c);
+            }
+            return;
+        }
+
         // handle a request to crash the node
         if (mailboxId == POISON_SIGNAL) {
             byte messageBytes[] = new byte[in.remaining()];
@@ -30,9 +30,6 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.voltdb.VoltDB;
@@ -354,6 +351,44 @@ public class HostMessenger implements Messenger {
      * Will always allocate non pooled heap byte buffers
      */
     private final DBBPool heapPool = new DBBPool(true, false);
+
+    /**
+     * A message multicast to several hosts. The first network thread to serialize it
+     * copies the body once into a buffer from its pool and every host writes a reference
+     * to that buffer. Each host either takes a reference or releases one if its write is cancelled.
+     */
+    private class SharedMessage {
+        private final VoltMessage m_message;
+        //Hosts that haven't been cancelled, only meaningful until the buffer exists
+        private int m_hosts;
+        private DBBPool.RefCountedContainer m_body = null;
+
+        SharedMessage(VoltMessage message, int hosts) {
+            m_message = message;
+            m_hosts = hosts;
+        }
+
+        synchronized BBContainer reference(DBBPool pool) throws IOException {
+            if (m_body == null) {
+                ByteBuffer view = m_message.getBufferForMessaging(heapPool).b.duplicate();
+                view.position(VoltMessage.HEADER_SIZE);
+                BBContainer copy = pool.acquire(view.remaining());
+                copy.b.put(view);
+                copy.b.flip();
+                m_body = new DBBPool.RefCountedContainer(copy, m_hosts);
+            }
+            return m_body.reference();
+        }
+
+        synchronized void release() {
+            if (m_body == null) {
+                m_hosts--;
+            } else {
+                m_body.release();
+            }
+        }
+    }
+
     public void send(int[] siteIds, int mailboxId, final VoltMessage message)
             throws MessagingException {
 
@@ -375,62 +410,20 @@ public class HostMessenger implements Messenger {
 
         if (foreignHosts.size() == 0) return;
 
-        /*
-         * Defer the serialization of the message to a FutureTask
-         * that can be invoked later in the DeferredSerialization.
-         * Safe to invoke multiple times and the computation is only
-         * done once.
-         */
-        final FutureTask<ByteBuffer> buildMessageTask = new FutureTask<ByteBuffer>(
-                new Callable<ByteBuffer>() {
-                    @Override
-                    public final ByteBuffer call() throws IOException {
-                        return message.getBufferForMessaging(heapPool).b;
-                    }
-                });
-
+        final SharedMessage sharedMessage = new SharedMessage(message, foreignHosts.size());
         for (Entry<ForeignHost, ForeignHostBundle> e : foreignHosts.entrySet()) {
                 e.getKey().send(mailboxId, e.getValue().siteIds, e.getValue().count,
                         new DeferredSerialization() {
                     @Override
                     public final BBContainer serialize(DBBPool pool) throws IOException {
-                        ByteBuffer messageBytes = null;
-                        /*
-                         * FutureTask will ensure that the task is only run once.
-                         */
-                        try {
-                            buildMessageTask.run();
-                            messageBytes = buildMessageTask.get();
-                        } catch (InterruptedException e) {
-                            m_logger.fatal("Should not be interrupted while serializing messages", e);
-                            throw new IOException(e);
-                        } catch (ExecutionException e) {
-                            if (e.getCause() instanceof IOException) {
-                                throw (IOException)e.getCause();
-                            } else {
-                                m_logger.fatal("Error while serializing message", e);
-                                throw new IOException(e);
-                            }
-                        }
-
-                        /*
-                         * Since messageBytes is shared a duplicate view must be made before manipulating the
-                         * position, limit, etc. It would be good to only do this copy once and then reference count,
-                         * but this isn't the fast path anyways.
-                         */
-                        ByteBuffer view = messageBytes.duplicate();
-                        view.position(0);
-                        BBContainer stupidCopy = pool.acquire(view.remaining());
-                        stupidCopy.b.put(view);
-                        stupidCopy.b.flip();
-                        return stupidCopy;
+                        return sharedMessage.reference(pool);
                     }
 
                     @Override
                     public final void cancel() {
-
+                        sharedMessage.release();
                     }
-                });
+                }, true);
         }
         foreignHosts.clear();
     }
@@ -613,6 +606,24 @@ public class HostMessenger implements Messenger {
         return retval;
     }
 
+    /**
+     * Messages and frames sent to each foreign host keyed by connection id,
+     * either in total or since the last time interval was true.
+     * @return {messages, frames} for each connection
+     */
+    public Map<Long, long[]> getBatchStats(boolean interval) {
+        final HashMap<Long, long[]> retval = new HashMap<Long, long[]>();
+        if (m_foreignHosts == null) {
+            return retval;
+        }
+        for (ForeignHost host : m_foreignHosts) {
+            if (host != null) {
+                retval.put(host.connectionId(), host.getBatchStats(interval));
+            }
+        }
+        return retval;
+    }
+
     /**
      * Kill a foreign host socket by id.
      * @param hostId The id of the foreign host to kill.
@@ -104,19 +104,19 @@ public class InitiateTaskMessage extends TransactionInfoBaseMessage {
 
     @Override
     protected void flattenToBuffer(final DBBPool pool) {
-        // stupid lame flattening of the proc invocation
-        FastSerializer fs = new FastSerializer();
+        // the invocation copies its serialized params straight into the message
+        final int invocationSize;
         try {
-            fs.writeObject(m_invocation);
+            invocationSize = m_invocation.getSerializedSize();
         } catch (IOException e) {
             e.printStackTrace();
             assert(false);
+            return;
         }
-        ByteBuffer invocationBytes = fs.getBuffer();
 
         // size of MembershipNotice
         int msgsize = super.getMessageByteCount();
-        msgsize += 1 + 8 + invocationBytes.remaining();
+        msgsize += 1 + 8 + invocationSize;
 
         if (m_buffer == null) {
             m_container = pool.acquire(msgsize + 1 + HEADER_SIZE);
@@ -132,7 +132,7 @@ public class InitiateTaskMessage extends TransactionInfoBaseMessage {
         m_buffer.putLong(m_lastSafeTxnID);
 
         m_buffer.put(m_isSinglePartition ? (byte) 1 : (byte) 0);
-        m_buffer.put(invocationBytes);
+        m_invocation.flattenToBuffer(m_buffer);
         m_buffer.limit(m_buffer.position());
     }
 
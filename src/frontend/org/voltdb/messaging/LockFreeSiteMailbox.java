@@ -0,0 +1,148 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.messaging;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A site mailbox that many network threads can deliver to without
+ * contending on a monitor. Each subject has a lock free queue that producers
+ * append to. Only a single thread, the execution site, may receive from
+ * the mailbox or call deliverFront.
+ *
+ * Messages delivered to the front are kept in a per subject deque that
+ * only the receiving thread touches and are always drained before the
+ * shared queue for that subject.
+ *
+ * A receiver with nothing to do publishes itself in m_waiter and parks.
+ * Producers unpark it after enqueueing, so a message delivered between the
+ * receiver's last check and its park still wakes it up.
+ */
+public class LockFreeSiteMailbox extends SiteMailbox {
+
+    private final ConcurrentLinkedQueue<VoltMessage> m_queues[];
+    private final ArrayDeque<VoltMessage> m_fronts[];
+    private volatile Thread m_waiter = null;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public LockFreeSiteMailbox(HostMessenger hostMessenger, int siteId, int mailboxId, final boolean log) {
+        super(hostMessenger, siteId, mailboxId, log);
+        final int subjects = Subject.values().length;
+        m_queues = new ConcurrentLinkedQueue[subjects];
+        m_fronts = new ArrayDeque[subjects];
+        for (Subject s : Subject.values()) {
+            m_queues[s.getId()] = new ConcurrentLinkedQueue<VoltMessage>();
+            m_fronts[s.getId()] = new ArrayDeque<VoltMessage>();
+        }
+    }
+
+    @Override
+    public void deliver(VoltMessage message, final boolean toFront) {
+        assert(message != null);
+        logDelivery(message);
+
+        if (toFront) {
+            // Only the receiving thread delivers to the front, no need to wake anyone
+            m_fronts[message.getSubject()].offerFirst(message);
+            return;
+        }
+
+        m_queues[message.getSubject()].offer(message);
+        final Thread waiter = m_waiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    @Override
+    public VoltMessage recv(Subject subjects[]) {
+        for (Subject s : subjects) {
+            final VoltMessage m = poll(s.getId());
+            if (m != null) {
+                return m;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public VoltMessage recvBlocking(Subject subjects[]) {
+        VoltMessage message = recv(subjects);
+        if (message != null) {
+            return message;
+        }
+        m_waiter = Thread.currentThread();
+        try {
+            while ((message = recv(subjects)) == null) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    return null;
+                }
+            }
+        } finally {
+            m_waiter = null;
+        }
+        return message;
+    }
+
+    @Override
+    public VoltMessage recvBlocking(Subject subjects[], long timeout) {
+        VoltMessage message = recv(subjects);
+        if (message != null) {
+            return message;
+        }
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        m_waiter = Thread.currentThread();
+        try {
+            while ((message = recv(subjects)) == null) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    return null;
+                }
+            }
+        } finally {
+            m_waiter = null;
+        }
+        return message;
+    }
+
+    /**
+     * Get the number of messages waiting to be delivered for this mailbox.
+     * This walks the shared queue so it is only suitable for tests and monitoring.
+     */
+    @Override
+    public int getWaitingCount() {
+        final int id = Subject.DEFAULT.getId();
+        return m_fronts[id].size() + m_queues[id].size();
+    }
+
+    private VoltMessage poll(int subjectId) {
+        final VoltMessage m = m_fronts[subjectId].poll();
+        if (m != null) {
+            return m;
+        }
+        return m_queues[subjectId].poll();
+    }
+}
@@ -57,7 +57,24 @@ public class SiteMailbox implements Mailbox {
 
     public void deliver(VoltMessage message, final boolean toFront) {
         assert(message != null);
+        logDelivery(message);
 
+        final Deque<VoltMessage> dq = m_messages.get(message.getSubject());
+        synchronized (this) {
+            if (toFront) {
+                dq.offerFirst(message);
+            } else {
+                dq.offer(message);
+            }
+            this.notify();
+        }
+    }
+
+    /**
+     * Tag the message with this mailbox's site and hand it to the command log
+     * if logging is enabled. Called on the delivering thread.
+     */
+    void logDelivery(VoltMessage message) {
         // tag what mailbox this message was delivered to, command log uses this
         message.receivedFromSiteId = m_siteId;
 
@@ -76,16 +93,6 @@ public class SiteMailbox implements Mailbox {
                 m_log.logHeartbeat(msg.getTxnId());
             }
         }
-
-        final Deque<VoltMessage> dq = m_messages.get(message.getSubject());
-        synchronized (this) {
-            if (toFront) {
-                dq.offerFirst(message);
-            } else {
-                dq.offer(message);
-            }
-            this.notify();
-        }
     }
 
     @Override
@@ -93,6 +93,8 @@ public abstract class VoltMessage {
             ownedBuffer = ByteBuffer.allocate(buffer.capacity());
             ownedBuffer.position(HEADER_SIZE);
             ownedBuffer.put(buffer);
+            // don't let the copy expose the unused tail past the message
+            ownedBuffer.limit(ownedBuffer.position());
         }
 
         // instantiate a new message instance according to the id
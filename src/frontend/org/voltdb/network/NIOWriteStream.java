@@ -22,6 +22,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SelectionKey;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 
 import org.voltdb.logging.VoltLogger;
 import org.voltdb.messaging.FastSerializable;
@@ -83,6 +84,7 @@ public class NIOWriteStream implements WriteStream {
 
     private long m_bytesWritten = 0;
     private long m_messagesWritten = 0;
+    private long m_writeCalls = 0;
 
     /*
      * Used to provide incremental reads of the amount of
@@ -93,7 +95,12 @@ public class NIOWriteStream implements WriteStream {
     private final Object m_statsLock = new Object();
     private long m_lastBytesWritten = 0;
     private long m_lastMessagesWritten = 0;
+    private long m_lastWriteCalls = 0;
 
+    /**
+     * Returns bytes written, messages written and the number of write calls made to the channel.
+     * Bytes written divided by write calls is the average amount moved per syscall.
+     */
     long[] getBytesAndMessagesWritten(boolean interval) {
         synchronized (m_statsLock) {
             if (interval) {
@@ -102,9 +109,12 @@ public class NIOWriteStream implements WriteStream {
 
                 final long messagesWrittenThisTime = m_messagesWritten - m_lastMessagesWritten;
                 m_lastMessagesWritten = m_messagesWritten;
-                return new long[] { bytesWrittenThisTime, messagesWrittenThisTime };
+
+                final long writeCallsThisTime = m_writeCalls - m_lastWriteCalls;
+                m_lastWriteCalls = m_writeCalls;
+                return new long[] { bytesWrittenThisTime, messagesWrittenThisTime, writeCallsThisTime };
             } else {
-                return new long[] {m_bytesWritten, m_messagesWritten};
+                return new long[] {m_bytesWritten, m_messagesWritten, m_writeCalls};
             }
         }
     }
@@ -198,6 +208,17 @@ public class NIOWriteStream implements WriteStream {
      */
     static final int MAX_GATHERING_WRITE = 262144;
 
+    /**
+     * The maximum number of buffers handed to a single gathering write. Stays well under
+     * IOV_MAX so the JDK can pass the whole array to writev in one call.
+     */
+    static final int MAX_GATHERING_BUFFERS = 256;
+
+    /**
+     * Reused for every gathering write so that draining doesn't allocate
+     */
+    private final ByteBuffer m_gatherBuffers[] = new ByteBuffer[MAX_GATHERING_BUFFERS];
+
     /**
      * Does the work of queueing addititional buffers that have been serialized
      * and choosing between gathering and regular writes to the channel. Also splits up very large
@@ -221,10 +242,12 @@ public class NIOWriteStream implements WriteStream {
         }
 
         int bytesWritten = 0;
+        int writeCalls = 0;
         long rc = 0;
+        boolean channelFull = false;
         do {
-            //For gathering write (many small writes) store the list of buffers here
-            ByteBuffer buffers[] = null;
+            //For gathering write (many small writes) the buffers are stored in m_gatherBuffers
+            int gatherCount = 0;
             //For regular writes store the buffer to write here
             ByteBuffer buffer = null;
 
@@ -237,7 +260,7 @@ public class NIOWriteStream implements WriteStream {
                 }
                 m_lastPendingWriteTime = -1;
                 updateQueued(-bytesWritten, false);
-                m_bytesWritten += bytesWritten;
+                updateWriteStats(bytesWritten, writeCalls);
                 return bytesWritten;
             }
 
@@ -246,7 +269,6 @@ public class NIOWriteStream implements WriteStream {
              * If it is to large to use as part of a gathering write then branch and just focus on
              * writing the one
              */
-            final int queuedForWrite = 0;
             final BBContainer peekedBuffer = m_queuedBuffers.peek();
             if (peekedBuffer.b.remaining() > MAX_GATHERING_WRITE) {
 
@@ -292,13 +314,15 @@ public class NIOWriteStream implements WriteStream {
                 }
             } else {
                 /*
-                 * Iterate over the queued buffers until we have 10, there are none left, or
+                 * Collect as many of the queued buffers as fit in one gathering write:
+                 * stop when the array is full, there are none left, or
                  * adding another would make the write too big
                  */
-                final int queuedBuffersSize = m_queuedBuffers.size();
-                buffers = new ByteBuffer[queuedBuffersSize < 10 ? queuedBuffersSize : 10];
-                int ii = 0;
+                int queuedForWrite = 0;
                 for (final BBContainer c : m_queuedBuffers) {
+                    if (gatherCount == MAX_GATHERING_BUFFERS) {
+                        break;
+                    }
 
                     /*
                      * Don't queue insanely large gathering writes. It does bad things
@@ -309,13 +333,6 @@ public class NIOWriteStream implements WriteStream {
                      */
                     final int potentialQueuedForWrite = queuedForWrite + c.b.remaining();
                     if (potentialQueuedForWrite > MAX_GATHERING_WRITE) {
-                        //Create a new correctly sized array
-                        //to pass in for the gathering write
-                        final ByteBuffer oldArray[] = buffers;
-                        buffers = new ByteBuffer[ii];
-                        for(int zz = 0; zz < ii; zz++) {
-                            buffers[zz] = oldArray[zz];
-                        }
                         break;
                     }
 
@@ -328,57 +345,54 @@ public class NIOWriteStream implements WriteStream {
                      * more direct buffers. Probably more complex then it is worth.
                      */
                     if (!c.b.isDirect()) {
-                        if (ii == 0) {
-                            buffers = null;
+                        if (gatherCount == 0) {
                             buffer = c.b;
-                            break;
-                        } else {
-                            final ByteBuffer oldArray[] = buffers;
-                            buffers = new ByteBuffer[ii];
-                            for(int zz = 0; zz < ii; zz++) {
-                                buffers[zz] = oldArray[zz];
-                            }
-                            break;
                         }
+                        break;
                     }
 
                     /*
                      * The regular case where there is nothing wrong
                      * and the buffer can be added to the list for the gathering write
                      */
-                    buffers[ii++] = c.b;
-                    if (ii == 10) {
-                        break;
-                    }
+                    m_gatherBuffers[gatherCount++] = c.b;
+                    queuedForWrite = potentialQueuedForWrite;
                 }
             }
 
             /*
              * Choose between a gathering write vs. a single buffer write based
-             * on the presence of the buffers array
+             * on whether any buffers were gathered
              */
             rc = 0;
-            if (buffers != null) {
-                assert(checkAllDirect(buffers));
-                rc = channel.write (buffers);
+            if (buffer == null) {
+                assert(checkAllDirect(m_gatherBuffers, gatherCount));
+                rc = channel.write(m_gatherBuffers, 0, gatherCount);
+                writeCalls++;
 
                 //Discard the buffer back to a pool if no data remains
-                for (final ByteBuffer b : buffers) {
-                    if (!b.hasRemaining()) {
+                for (int ii = 0; ii < gatherCount; ii++) {
+                    if (!m_gatherBuffers[ii].hasRemaining()) {
                         m_queuedBuffers.poll().discard();
                         m_messagesWritten++;
                     } else {
+                        //The socket buffer is full, don't bother trying again
+                        channelFull = true;
                         if (!m_hadBackPressure) {
                             backpressureStarted();
                         }
                         break;
                     }
                 }
+                //Don't hold on to buffers that may go back to the pool
+                Arrays.fill(m_gatherBuffers, 0, gatherCount, null);
             } else {
                 rc = channel.write(buffer);
+                writeCalls++;
 
                 //Discard the buffer back to a pool if no data remains
                 if (buffer.hasRemaining()) {
+                    channelFull = true;
                     if (!m_hadBackPressure) {
                         backpressureStarted();
                     }
@@ -389,7 +403,7 @@ public class NIOWriteStream implements WriteStream {
             }
             bytesWritten += rc;
 
-        } while (rc > 0);
+        } while (rc > 0 && !channelFull);
 
         //This extra check is necessary because sometimes a buffer with nothing remaining
         //has to be queued in the above loop resulting in rc == 0. Since rc == 0
@@ -407,18 +421,25 @@ public class NIOWriteStream implements WriteStream {
             m_lastPendingWriteTime = -1;
         }
         updateQueued(-bytesWritten, false);
-        m_bytesWritten += bytesWritten;
+        updateWriteStats(bytesWritten, writeCalls);
         return bytesWritten;
     }
 
+    private void updateWriteStats(int bytesWritten, int writeCalls) {
+        synchronized (m_statsLock) {
+            m_bytesWritten += bytesWritten;
+            m_writeCalls += writeCalls;
+        }
+    }
+
     /**
      * Used for assertions. Returns false if one of the buffers is not direct
      * @param buffers
      * @return
      */
-    private final boolean checkAllDirect(final ByteBuffer buffers[]) {
-        for (final ByteBuffer b : buffers ) {
-           if (!b.isDirect()) {
+    private final boolean checkAllDirect(final ByteBuffer buffers[], final int count) {
+        for (int ii = 0; ii < count; ii++) {
+           if (!buffers[ii].isDirect()) {
                return false;
            }
         }
@@ -605,16 +626,30 @@ public class NIOWriteStream implements WriteStream {
                 }
             }
         }
-        final BBContainer results[] = new BBContainer[oldlist.size()];
+        BBContainer results[] = new BBContainer[oldlist.size()];
         int ii = 0;
         DeferredSerialization ds = null;
         int bytesQueued = 0;
         while ((ds = oldlist.poll()) != null) {
-            results[ii] = ds.serialize(pool);
-            bytesQueued += results[ii].b.remaining();
-            assert(results[ii] != null);
-            assert(results[ii].b != null);
-            ii++;
+            final BBContainer c = ds.serialize(pool);
+            assert(c != null);
+            assert(c.b != null);
+            if (c instanceof DBBPool.GatheredContainer) {
+                /*
+                 * Queue the parts individually so they are written back to back
+                 * without copying them together. It is still one message.
+                 */
+                final BBContainer parts[] = ((DBBPool.GatheredContainer)c).m_parts;
+                results = Arrays.copyOf(results, results.length + parts.length - 1);
+                for (final BBContainer part : parts) {
+                    results[ii++] = part;
+                    bytesQueued += part.b.remaining();
+                }
+                m_messagesWritten -= parts.length - 1;//corrects message count
+            } else {
+                results[ii++] = c;
+                bytesQueued += c.b.remaining();
+            }
         }
         updateQueued(bytesQueued, true);
         return results;
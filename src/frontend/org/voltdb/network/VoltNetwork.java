@@ -82,6 +82,7 @@ import org.voltdb.logging.VoltLogger;
 import org.voltdb.utils.DBBPool;
 import org.voltdb.utils.EstTimeUpdater;
 import org.voltdb.utils.Pair;
+import org.voltdb.utils.SystemStatsCollector;
 
 /** Produces work for registered ports that are selected for read, write */
 public class VoltNetwork implements Runnable
@@ -103,6 +104,14 @@ public class VoltNetwork implements Runnable
     private final ArrayList<DBBPool> m_poolsToClearOnShutdown = new ArrayList<DBBPool>();
     public final int threadPoolSize;
 
+    /*
+     * When running with more than one selection loop this network does no
+     * selection of its own. Each registered channel is assigned to one of
+     * these networks by connection id and all of its reads, writes and
+     * scheduled runnables are handled by that network's thread.
+     */
+    private final VoltNetwork m_selectorLoops[];
+
     /*
      * Thread pool used for the reverse DNS lookup triggers. If not provided, it
      * will trigger the lookup immediately. Otherwise, it delays for 5 seconds.
@@ -118,6 +127,12 @@ public class VoltNetwork implements Runnable
      * Start this VoltNetwork's thread;
      */
     public void start() {
+        if (m_selectorLoops != null) {
+            for (VoltNetwork loop : m_selectorLoops) {
+                loop.start();
+            }
+            return;
+        }
         m_thread.start();
     }
 
@@ -129,6 +144,7 @@ public class VoltNetwork implements Runnable
         m_useExecutorService = false;
         threadPoolSize = 1;
         m_es = null;
+        m_selectorLoops = null;
     }
 
     public VoltNetwork() {
@@ -145,6 +161,32 @@ public class VoltNetwork implements Runnable
         this(true, true, null, es);
     }
 
+    /**
+     * Create a network that runs <code>selectorLoops</code> selection loops,
+     * each with its own selector and thread. A registered channel stays on
+     * the loop picked by its connection id and its reads and writes are
+     * handled on that loop's thread instead of being handed off to an
+     * executor service.
+     *
+     * @param selectorLoops Number of selection loops, usually one per core
+     * set aside for networking
+     * @param es Thread pool for the reverse DNS lookup triggers
+     */
+    public VoltNetwork(int selectorLoops, ScheduledExecutorService es) {
+        assert(selectorLoops > 0);
+        m_thread = null;
+        m_selector = null;
+        m_useBlockingSelect = true;
+        m_useExecutorService = false;
+        threadPoolSize = selectorLoops;
+        m_es = es;
+        m_selectorLoops = new VoltNetwork[selectorLoops];
+        for (int ii = 0; ii < selectorLoops; ii++) {
+            m_selectorLoops[ii] =
+                new VoltNetwork(false, true, null, es, "Volt Network - " + ii);
+        }
+    }
+
     /**
      * Initialize a m_selector and become ready to perform real work
      * If the network is not going to provide any threads provideOwnThread should be false
@@ -152,10 +194,16 @@ public class VoltNetwork implements Runnable
      **/
     public VoltNetwork(boolean useExecutorService, boolean blockingSelect, Integer threads,
                        ScheduledExecutorService es) {
-        m_thread = new Thread(this, "Volt Network");
+        this(useExecutorService, blockingSelect, threads, es, "Volt Network");
+    }
+
+    private VoltNetwork(boolean useExecutorService, boolean blockingSelect, Integer threads,
+                        ScheduledExecutorService es, String threadName) {
+        m_thread = new Thread(this, threadName);
         m_thread.setDaemon(true);
         m_useBlockingSelect = blockingSelect;
         m_es = es;
+        m_selectorLoops = null;
 
         try {
             m_selector = Selector.open();
@@ -196,6 +244,7 @@ public class VoltNetwork implements Runnable
                 final Thread t = new Thread(group, run, "Network Thread - " + threadIndex++) {
                     @Override
                     public void run() {
+                        SystemStatsCollector.registerThread(SystemStatsCollector.ThreadType.NETWORK);
                         try {
                             run.run();
                         } finally {
@@ -310,6 +359,12 @@ public class VoltNetwork implements Runnable
 
     /** Instruct the network to stop after the current loop */
     public void shutdown() throws InterruptedException {
+        if (m_selectorLoops != null) {
+            for (VoltNetwork loop : m_selectorLoops) {
+                loop.shutdown();
+            }
+            return;
+        }
         if (m_thread != null) {
             synchronized (this) {
                 m_shouldStop = true;
@@ -336,6 +391,9 @@ public class VoltNetwork implements Runnable
             SocketChannel channel,
             InputHandler handler,
             int interestOps) throws IOException {
+        if (m_selectorLoops != null) {
+            return selectorLoopFor(handler.connectionId()).registerChannel(channel, handler, interestOps);
+        }
         channel.configureBlocking (false);
         channel.socket().setKeepAlive(true);
 
@@ -392,6 +450,18 @@ public class VoltNetwork implements Runnable
         }
     }
 
+    /**
+     * Pick the selection loop that owns a connection. Connection ids are
+     * handed out sequentially so this spreads connections evenly.
+     */
+    private VoltNetwork selectorLoopFor(long connectionId) {
+        int index = (int)(connectionId % m_selectorLoops.length);
+        if (index < 0) {
+            index += m_selectorLoops.length;
+        }
+        return m_selectorLoops[index];
+    }
+
     /**
      * Unregister a channel. The connections streams are not drained before finishing.
      * @param c
@@ -437,6 +507,7 @@ public class VoltNetwork implements Runnable
 
     @Override
     public void run() {
+        SystemStatsCollector.registerThread(SystemStatsCollector.ThreadType.NETWORK);
         try {
             while (m_shouldStop == false) {
                 try {
@@ -660,7 +731,8 @@ public class VoltNetwork implements Runnable
         long totalMessagesRead = 0;
         long totalWritten = 0;
         long totalMessagesWritten = 0;
-        for (VoltPort p : m_ports) {
+        long totalWriteCalls = 0;
+        for (VoltPort p : getPorts()) {
             final long read = p.readStream().getBytesRead(interval);
             final long writeInfo[] = p.writeStream().getBytesAndMessagesWritten(interval);
             final long messagesRead = p.getMessagesRead(interval);
@@ -668,6 +740,7 @@ public class VoltNetwork implements Runnable
             totalMessagesRead += messagesRead;
             totalWritten += writeInfo[0];
             totalMessagesWritten += writeInfo[1];
+            totalWriteCalls += writeInfo[2];
             retval.put(
                     p.connectionId(),
                     Pair.of(
@@ -676,7 +749,8 @@ public class VoltNetwork implements Runnable
                                     read,
                                     messagesRead,
                                     writeInfo[0],
-                                    writeInfo[1] }));
+                                    writeInfo[1],
+                                    writeInfo[2] }));
         }
         retval.put(
                 -1L,
@@ -686,12 +760,31 @@ public class VoltNetwork implements Runnable
                                 totalRead,
                                 totalMessagesRead,
                                 totalWritten,
-                                totalMessagesWritten }));
+                                totalMessagesWritten,
+                                totalWriteCalls }));
         return retval;
     }
 
+    /**
+     * All ports registered with this network or any of its selection loops
+     */
+    private ArrayList<VoltPort> getPorts() {
+        ArrayList<VoltPort> ports = new ArrayList<VoltPort>(m_ports);
+        if (m_selectorLoops != null) {
+            for (VoltNetwork loop : m_selectorLoops) {
+                ports.addAll(loop.m_ports);
+            }
+        }
+        return ports;
+    }
+
     public ArrayList<Long> getThreadIds() {
         ArrayList<Long> ids = new ArrayList<Long>();
+        if (m_selectorLoops != null) {
+            for (VoltNetwork loop : m_selectorLoops) {
+                ids.addAll(loop.getThreadIds());
+            }
+        }
         if (m_thread != null) {
             ids.add(m_thread.getId());
         }
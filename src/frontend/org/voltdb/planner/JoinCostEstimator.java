@@ -0,0 +1,61 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.planner;
+
+import org.voltdb.catalog.Cluster;
+import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.ScalarValueHints;
+import org.voltdb.plannodes.AbstractPlanNode;
+
+/**
+ * Costs the partial plans built while a join order is searched for, with the
+ * same cost model and estimates the finished plans are compared with.
+ */
+class JoinCostEstimator {
+
+    final Cluster m_cluster;
+    final Database m_db;
+    final AbstractCostModel m_costModel;
+    final DatabaseEstimates m_estimates;
+    final ScalarValueHints[] m_paramHints;
+
+    JoinCostEstimator(Cluster cluster, Database db, AbstractCostModel costModel,
+                      DatabaseEstimates estimates, ScalarValueHints[] paramHints) {
+        assert(cluster != null);
+        assert(db != null);
+        assert(costModel != null);
+        assert(estimates != null);
+        m_cluster = cluster;
+        m_db = db;
+        m_costModel = costModel;
+        m_estimates = estimates;
+        m_paramHints = paramHints;
+    }
+
+    /**
+     * @param plan A plan graph collecting tuples from some of the statement's tables
+     * @return The cost of the plan according to the cost model
+     */
+    double getPlanCost(AbstractPlanNode plan) {
+        PlanStatistics stats = new PlanStatistics();
+        boolean result = plan.computeEstimatesRecursively(stats, m_cluster, m_db, m_estimates, m_paramHints);
+        assert(result);
+        return m_costModel.getPlanCost(stats);
+    }
+}
@@ -30,6 +30,8 @@ import org.voltdb.catalog.ConnectorTableInfo;
 import org.voltdb.catalog.Database;
 import org.voltdb.catalog.Index;
 import org.voltdb.catalog.Table;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.ScalarValueHints;
 import org.voltdb.expressions.AbstractExpression;
 import org.voltdb.expressions.AggregateExpression;
 import org.voltdb.expressions.ConstantValueExpression;
@@ -191,8 +193,16 @@ public class PlanAssembler {
      *            Is the SQL statement read only.
      * @param singlePartition
      *            Does the SQL statement use only a single partition?
+     * @param costModel
+     *            Cost model large joins are ordered with.
+     * @param estimates
+     *            Cardinalities the cost model is given.
+     * @param paramHints
+     *            Hints about the statement's parameters, may be null.
      */
-    void setupForNewPlans(AbstractParsedStmt parsedStmt, boolean singlePartition)
+    void setupForNewPlans(AbstractParsedStmt parsedStmt, boolean singlePartition,
+                          AbstractCostModel costModel, DatabaseEstimates estimates,
+                          ScalarValueHints[] paramHints)
     {
         m_singlePartition = singlePartition;
 
@@ -205,7 +215,9 @@ public class PlanAssembler {
             subAssembler =
                 new SelectSubPlanAssembler(m_catalogDb,
                                            parsedStmt, singlePartition,
-                                           m_partitionCount);
+                                           m_partitionCount,
+                                           new JoinCostEstimator(m_catalogCluster, m_catalogDb,
+                                                                 costModel, estimates, paramHints));
         } else {
             // check that no modification happens to views
             if (tableListIncludesView(parsedStmt.tableList)) {
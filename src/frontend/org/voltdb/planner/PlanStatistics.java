@@ -37,16 +37,16 @@ public class PlanStatistics {
     final int MAX_LEVELS = 20;
 
     int m_levelCount;
-    ArrayList<HashMap<StatsField, Long>> m_levels;
+    ArrayList<HashMap<StatsField, Double>> m_levels;
 
     /**
      * Initialize an empty map for each possible level.
      */
     PlanStatistics() {
         m_levelCount = 0;
-        m_levels = new ArrayList<HashMap<StatsField, Long>>();
+        m_levels = new ArrayList<HashMap<StatsField, Double>>();
         for (int i = 0; i < MAX_LEVELS; i++)
-            m_levels.add(new HashMap<StatsField, Long>());
+            m_levels.add(new HashMap<StatsField, Double>());
     }
 
     /**
@@ -59,17 +59,17 @@ public class PlanStatistics {
      * @param field The name of the statistic in question.
      * @param incrementValue The value to increment the statistic by.
      */
-    public void incrementStatistic(int level, StatsField field, long incrementValue) {
+    public void incrementStatistic(int level, StatsField field, double incrementValue) {
         if (level >= MAX_LEVELS)
             throw new RuntimeException("Plan containts too many levels");
 
         // get the existing value
-        Long existing = m_levels.get(level).get(field);
+        Double existing = m_levels.get(level).get(field);
         if (existing == null)
-            existing = 0L;
+            existing = 0.0;
 
         // increment the existing value
-        existing = existing.longValue() + incrementValue;
+        existing = existing.doubleValue() + incrementValue;
 
         // set the new value
         m_levels.get(level).put(field, existing);
@@ -98,11 +98,11 @@ public class PlanStatistics {
      * @param field The name of the statistic in question.
      * @return The value of the statistic, or -1 if not set.
      */
-    public long getStatistic(int level, StatsField field) {
-        if (level >= m_levelCount) return -1L;
-        Long stat = m_levels.get(level).get(field);
-        if (stat != null) return stat.longValue();
-        else return -1L;
+    public double getStatistic(int level, StatsField field) {
+        if (level >= m_levelCount) return -1.0;
+        Double stat = m_levels.get(level).get(field);
+        if (stat != null) return stat.doubleValue();
+        else return -1.0;
     }
 
     /**
@@ -111,7 +111,7 @@ public class PlanStatistics {
      * @param level The number of network hops from the root plannonde.
      * @return The map of field names to values for a particular level.
      */
-    public HashMap<StatsField, Long> getStatisticsForLevel(int level) {
+    public HashMap<StatsField, Double> getStatisticsForLevel(int level) {
         if (level >= m_levelCount) return null;
         return m_levels.get(level);
     }
@@ -130,8 +130,8 @@ public class PlanStatistics {
         StringBuilder sb = new StringBuilder();
         for (int level = 0; level < m_levels.size(); level++) {
             sb.append("LEVEL ").append(level).append(":\n");
-            HashMap<StatsField, Long> levelMap = m_levels.get(level);
-            for (Entry<StatsField, Long> entry : levelMap.entrySet()) {
+            HashMap<StatsField, Double> levelMap = m_levels.get(level);
+            for (Entry<StatsField, Double> entry : levelMap.entrySet()) {
                 sb.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
             }
         }
@@ -141,7 +141,8 @@ public class QueryPlanner {
             return null;
         }
         if ((initialParsedStmt.tableList.size() > maxTablesPerJoin) && (initialParsedStmt.joinOrder == null)) {
-            m_recentErrorMsg = "Failed to parse SQL statement: " + sql + " because a join of > 5 tables was requested"
+            m_recentErrorMsg = "Failed to parse SQL statement: " + sql + " because a join of > " + maxTablesPerJoin +
+                               " tables was requested"
                                + " without specifying a join order. See documentation for instructions on manually" +
                                  " specifying a join order";
             return null;
@@ -170,7 +171,7 @@ public class QueryPlanner {
         for (AbstractParsedStmt parsedStmt : ExpressionEquivalenceProcessor.getEquivalentStmts(initialParsedStmt)) {
 
             // set up the plan assembler for this particular plan
-            m_assembler.setupForNewPlans(parsedStmt, singlePartition);
+            m_assembler.setupForNewPlans(parsedStmt, singlePartition, costModel, m_estimates, paramHints);
 
             // loop over all possible plans
             while (true) {
@@ -334,6 +335,11 @@ public class QueryPlanner {
             }
         }
 
+        // the explained plan shows the estimates, so explain before the plan is split
+        if (bestPlan.explainedPlan == null) {
+            bestPlan.explainedPlan = bestPlan.fragments.get(0).planGraph.toExplainPlanString();
+        }
+
         // split up the plan everywhere we see send/recieve into multiple plan fragments
         bestPlan = Fragmentizer.fragmentize(bestPlan, m_db);
 
@@ -23,15 +23,19 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 
+import org.voltdb.VoltType;
 import org.voltdb.catalog.Database;
 import org.voltdb.catalog.Table;
 import org.voltdb.expressions.AbstractExpression;
 import org.voltdb.expressions.ExpressionUtil;
+import org.voltdb.planner.AbstractParsedStmt.TablePair;
 import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.NestLoopIndexPlanNode;
 import org.voltdb.plannodes.NestLoopPlanNode;
 import org.voltdb.plannodes.ReceivePlanNode;
+import org.voltdb.types.ExpressionType;
 import org.voltdb.types.JoinType;
 
 /**
@@ -51,16 +55,50 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
     /** The list of all possible join orders, assembled by queueAllJoinOrders */
     ArrayDeque<Table[]> m_joinOrders = new ArrayDeque<Table[]>();
 
+    /**
+     * Joins of up to this many tables have every join order planned. Larger joins
+     * are ordered by searching for the cheapest join of each subset of their tables.
+     */
+    static final int MAX_EXHAUSTIVE_JOIN_TABLES = 5;
+
+    /**
+     * Joins of more tables than this are ordered greedily, the subset search
+     * would have to cost too many partial plans.
+     */
+    static final int MAX_DYNAMIC_PROGRAMMING_JOIN_TABLES = 10;
+
+    /** Costs partial plans while searching for a join order */
+    final JoinCostEstimator m_costEstimator;
+
+    /**
+     * The cheapest join found for a set of tables. The tables and their access paths
+     * are ordered as getSelectSubPlanForAccessPath takes them, innermost first.
+     */
+    private static class JoinCandidate {
+        final Table[] joinOrder;
+        final AccessPath[] accessPath;
+        final double cost;
+
+        JoinCandidate(Table[] joinOrder, AccessPath[] accessPath, double cost) {
+            this.joinOrder = joinOrder;
+            this.accessPath = accessPath;
+            this.cost = cost;
+        }
+    }
+
     /**
      *
      * @param db The catalog's Database object.
      * @param parsedStmt The parsed and dissected statement object describing the sql to execute.
      * @param singlePartition Does this statement access one or multiple partitions?
+     * @param costEstimator Costs partial plans when ordering a large join.
      */
     SelectSubPlanAssembler(Database db, AbstractParsedStmt parsedStmt,
-                           boolean singlePartition, int partitionCount)
+                           boolean singlePartition, int partitionCount,
+                           JoinCostEstimator costEstimator)
     {
         super(db, parsedStmt, singlePartition, partitionCount);
+        m_costEstimator = costEstimator;
         //If a join order was provided
         if (parsedStmt.joinOrder != null) {
             //Extract the table names from the , separated list
@@ -115,9 +153,144 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
                 throw new RuntimeException(sb.toString());
             }
             m_joinOrders.add(tables);
-        } else {
+        } else if (parsedStmt.tableList.size() <= MAX_EXHAUSTIVE_JOIN_TABLES) {
             queueAllJoinOrders();
+        } else {
+            queueCheapestJoin();
+        }
+    }
+
+    /**
+     * Find a cheap left-deep join of the involved tables without trying every join
+     * order and queue its plan. Each set of tables is joined the cheapest way found
+     * for it, and extended one table at a time preferring tables with a join
+     * predicate against the set, as System R does.
+     */
+    private void queueCheapestJoin() {
+        // only selects can have more than one table
+        assert(m_parsedStmt instanceof ParsedSelectStmt);
+        assert(m_parsedStmt.multiTableSelectionList.size() == 0);
+        assert(m_parsedStmt.noTableSelectionList.size() == 0);
+
+        Table[] tables = m_parsedStmt.tableList.toArray(new Table[0]);
+
+        // tables with a join predicate against each table, as bit masks
+        int[] joined = new int[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            for (int j = 0; j < tables.length; j++) {
+                TablePair pair = new TablePair();
+                pair.t1 = tables[i];
+                pair.t2 = tables[j];
+                if ((i != j) && m_parsedStmt.joinSelectionList.containsKey(pair))
+                    joined[i] |= 1 << j;
+            }
+        }
+
+        JoinCandidate best;
+        if (tables.length <= MAX_DYNAMIC_PROGRAMMING_JOIN_TABLES)
+            best = findCheapestJoin(tables, joined);
+        else
+            best = findGreedyJoin(tables, joined);
+        m_plans.add(getSelectSubPlanForAccessPath(best.joinOrder, best.accessPath));
+    }
+
+    /**
+     * Tables that may be joined to a set next: those with a join predicate
+     * against the set, or any remaining table if there are none.
+     */
+    private static int nextTableCandidates(int set, int[] joined) {
+        final int all = (1 << joined.length) - 1;
+        int candidates = 0;
+        for (int i = 0; i < joined.length; i++) {
+            if ((set & (1 << i)) != 0)
+                candidates |= joined[i];
         }
+        candidates &= ~set;
+        return (candidates != 0) ? candidates : (all & ~set);
+    }
+
+    /**
+     * Selinger style dynamic programming. Every set of tables is visited after all its
+     * subsets, so the cheapest join of a set is known before it is extended.
+     */
+    private JoinCandidate findCheapestJoin(Table[] tables, int[] joined) {
+        final int all = (1 << tables.length) - 1;
+        JoinCandidate[] cheapest = new JoinCandidate[all + 1];
+
+        for (int i = 0; i < tables.length; i++)
+            cheapest[1 << i] = getCheapestExtension(null, tables[i]);
+
+        for (int set = 1; set < all; set++) {
+            if (cheapest[set] == null)
+                continue;
+            int candidates = nextTableCandidates(set, joined);
+            for (int i = 0; i < tables.length; i++) {
+                if ((candidates & (1 << i)) == 0)
+                    continue;
+                JoinCandidate extension = getCheapestExtension(cheapest[set], tables[i]);
+                int extended = set | (1 << i);
+                if ((cheapest[extended] == null) || (extension.cost < cheapest[extended].cost))
+                    cheapest[extended] = extension;
+            }
+        }
+
+        return cheapest[all];
+    }
+
+    /**
+     * Start with the cheapest table to scan and keep adding the table that is
+     * cheapest to join next. Costs O(n^2) partial plans.
+     */
+    private JoinCandidate findGreedyJoin(Table[] tables, int[] joined) {
+        final int all = (1 << tables.length) - 1;
+        JoinCandidate current = null;
+        int set = 0;
+
+        while (set != all) {
+            int candidates = (set == 0) ? all : nextTableCandidates(set, joined);
+            JoinCandidate next = null;
+            int nextTable = -1;
+            for (int i = 0; i < tables.length; i++) {
+                if ((candidates & (1 << i)) == 0)
+                    continue;
+                JoinCandidate extension = getCheapestExtension(current, tables[i]);
+                if ((next == null) || (extension.cost < next.cost)) {
+                    next = extension;
+                    nextTable = i;
+                }
+            }
+            current = next;
+            set |= 1 << nextTable;
+        }
+
+        return current;
+    }
+
+    /**
+     * Join a table as the new inner table of a join, trying each of its access paths.
+     *
+     * @param outer The join of the tables already joined, null if there are none.
+     * @param table The table to add.
+     * @return The cheapest join of the outer tables with the table.
+     */
+    private JoinCandidate getCheapestExtension(JoinCandidate outer, Table table) {
+        Table[] outerTables = (outer == null) ? new Table[0] : outer.joinOrder;
+        Table[] joinOrder = new Table[outerTables.length + 1];
+        joinOrder[0] = table;
+        System.arraycopy(outerTables, 0, joinOrder, 1, outerTables.length);
+
+        JoinCandidate cheapest = null;
+        for (AccessPath path : getRelevantAccessPathsForTable(table, outerTables)) {
+            AccessPath[] accessPath = new AccessPath[joinOrder.length];
+            accessPath[0] = path;
+            if (outer != null)
+                System.arraycopy(outer.accessPath, 0, accessPath, 1, outer.accessPath.length);
+
+            double cost = m_costEstimator.getPlanCost(getSelectSubPlanForAccessPath(joinOrder, accessPath));
+            if ((cheapest == null) || (cost < cheapest.cost))
+                cheapest = new JoinCandidate(joinOrder, accessPath, cost);
+        }
+        return cheapest;
     }
 
     /**
@@ -284,6 +457,7 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
         }
 
         AbstractPlanNode retval = null;
+        HashJoinPlanNode hashJoinNode = null;
         if (nljAccessPlan instanceof IndexScanPlanNode) {
             NestLoopIndexPlanNode nlijNode = new NestLoopIndexPlanNode();
 
@@ -301,6 +475,16 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
 
             retval = nlijNode;
         }
+        else if ((hashJoinNode = getHashJoinForClauses(joinOrder, joinClauses)) != null) {
+            // the new table is hashed or probed like the nest loop's outer table
+            hashJoinNode.addAndLinkChild(nljAccessPlan);
+
+            hashJoinNode.addAndLinkChild(subPlan);
+            // now generate the output schema for this join
+            hashJoinNode.generateOutputSchema(m_db);
+
+            retval = hashJoinNode;
+        }
         else {
             NestLoopPlanNode nljNode = new NestLoopPlanNode();
             if ((joinClauses != null) && (joinClauses.size() > 0))
@@ -329,6 +513,72 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
         return retval;
     }
 
+    /**
+     * Build a hash join for the clauses joining the first table of the join order
+     * to the rest of it, if any of them equates an expression over the first table
+     * with an expression over the others. The remaining clauses become its predicate.
+     *
+     * @param joinOrder The tables being joined, the first one is joined to the rest.
+     * @param joinClauses The clauses that join them, may be null.
+     * @return The childless hash join node or null if no clause can be used as its key.
+     */
+    private HashJoinPlanNode getHashJoinForClauses(Table[] joinOrder, ArrayList<AbstractExpression> joinClauses) {
+        if (joinClauses == null)
+            return null;
+
+        HashSet<Table> innerTables = new HashSet<Table>(Arrays.asList(joinOrder).subList(1, joinOrder.length));
+        HashJoinPlanNode hashJoinNode = new HashJoinPlanNode();
+        ArrayList<AbstractExpression> remainingClauses = new ArrayList<AbstractExpression>();
+
+        for (AbstractExpression clause : joinClauses) {
+            if (clause.getExpressionType() != ExpressionType.COMPARE_EQUAL) {
+                remainingClauses.add(clause);
+                continue;
+            }
+            AbstractExpression left = clause.getLeft();
+            AbstractExpression right = clause.getRight();
+
+            // the EE hashes both keys as the same type, integers are widened
+            VoltType leftType = left.getValueType();
+            VoltType rightType = right.getValueType();
+            if ((leftType != rightType) && !(leftType.isInteger() && rightType.isInteger())) {
+                remainingClauses.add(clause);
+                continue;
+            }
+
+            HashSet<Table> leftTables = new HashSet<Table>();
+            m_parsedStmt.getTablesForExpression(m_db, left, leftTables);
+            HashSet<Table> rightTables = new HashSet<Table>();
+            m_parsedStmt.getTablesForExpression(m_db, right, rightTables);
+
+            if (isOnlyTable(leftTables, joinOrder[0]) && isSubsetOf(rightTables, innerTables)) {
+                hashJoinNode.addKey(left, right);
+            }
+            else if (isOnlyTable(rightTables, joinOrder[0]) && isSubsetOf(leftTables, innerTables)) {
+                hashJoinNode.addKey(right, left);
+            }
+            else {
+                remainingClauses.add(clause);
+            }
+        }
+
+        if (hashJoinNode.getOuterKeys().isEmpty())
+            return null;
+
+        hashJoinNode.setJoinType(JoinType.INNER);
+        if (remainingClauses.size() > 0)
+            hashJoinNode.setPredicate(ExpressionUtil.combine(remainingClauses));
+        return hashJoinNode;
+    }
+
+    private static boolean isOnlyTable(HashSet<Table> tables, Table table) {
+        return (tables.size() == 1) && tables.contains(table);
+    }
+
+    private static boolean isSubsetOf(HashSet<Table> tables, HashSet<Table> of) {
+        return !tables.isEmpty() && of.containsAll(tables);
+    }
+
     /**
      * For each table in the list, compute the set of all valid access paths that will get
      * tuples that match the right predicate (assuming there is a predicate).
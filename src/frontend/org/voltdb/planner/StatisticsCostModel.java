@@ -0,0 +1,139 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.planner;
+
+import java.util.HashMap;
+
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.expressions.AbstractExpression;
+
+/**
+ * Costs a plan as the tuples it reads plus the index levels it traverses, with
+ * the counts estimated from measured table and index cardinalities where the
+ * {@link DatabaseEstimates} have them. The static helpers are used by the plan
+ * nodes to estimate how many tuples each of them reads and produces.
+ */
+public class StatisticsCostModel extends AbstractCostModel {
+
+    /**
+     * Keys per distinct value assumed for a non-unique index when its
+     * number of distinct keys wasn't measured
+     */
+    public static final long DEFAULT_ENTRIES_PER_KEY = 10;
+
+    /**
+     * Fraction of the matching entries a range scan is assumed to read
+     */
+    public static final double RANGE_SELECTIVITY = 1.0 / 3.0;
+
+    @Override
+    public double getPlanCost(PlanStatistics stats) {
+        double cost = 0;
+
+        for (int i = 0; i < stats.getLevelCount(); i++) {
+            HashMap<StatsField, Double> level = stats.getStatisticsForLevel(i);
+            Double tuplesRead = level.get(StatsField.TUPLES_READ);
+            Double indexLevels = level.get(StatsField.TREE_INDEX_LEVELS_TRAVERSED);
+            cost += (tuplesRead == null) ? 0 : tuplesRead.doubleValue();
+            cost += (indexLevels == null) ? 0 : indexLevels.doubleValue();
+        }
+
+        return cost;
+    }
+
+    /**
+     * Estimate the fraction of the pairs of outer and inner tuples that
+     * satisfy a join predicate. Each equality assumes the join columns of the
+     * smaller side are mostly distinct, as with a key joined to a foreign key,
+     * so each of them matches about one tuple of the smaller side. Each range
+     * comparison keeps {@link #RANGE_SELECTIVITY} of the pairs and other
+     * conjuncts are assumed to keep them all.
+     *
+     * @param predicate The join predicate, may be null
+     * @param outer Estimated outer tuples
+     * @param inner Estimated inner tuples
+     */
+    public static double joinSelectivity(AbstractExpression predicate, double outer, double inner) {
+        if (predicate == null) {
+            return 1.0;
+        }
+        switch (predicate.getExpressionType()) {
+        case CONJUNCTION_AND:
+            return joinSelectivity(predicate.getLeft(), outer, inner) *
+                   joinSelectivity(predicate.getRight(), outer, inner);
+        case COMPARE_EQUAL:
+            return 1.0 / Math.max(1.0, Math.min(outer, inner));
+        case COMPARE_LESSTHAN:
+        case COMPARE_GREATERTHAN:
+        case COMPARE_LESSTHANOREQUALTO:
+        case COMPARE_GREATERTHANOREQUALTO:
+            return RANGE_SELECTIVITY;
+        default:
+            return 1.0;
+        }
+    }
+
+    /**
+     * Number of levels of a tree index over the given number of tuples
+     */
+    public static long indexLevels(long tuples) {
+        return 64 - Long.numberOfLeadingZeros(Math.max(1, tuples));
+    }
+
+    /**
+     * Estimate how many tuples of a measured table an index lookup reads.
+     *
+     * @param table Measured estimates of the indexed table
+     * @param index Measured estimates of the index, may be null
+     * @param unique Is the index unique
+     * @param indexColumns Number of columns in the index
+     * @param keyColumns Number of index columns the search key covers
+     * @param equality Is it an equality lookup, range scan otherwise
+     * @return Tuples read per lookup, at least 1
+     */
+    public static long estimateIndexScanTuples(DatabaseEstimates.TableEstimates table,
+                                               DatabaseEstimates.IndexEstimates index,
+                                               boolean unique,
+                                               int indexColumns,
+                                               int keyColumns,
+                                               boolean equality) {
+        final long tuples = Math.max(1, table.maxTuples);
+        if (keyColumns == 0) {
+            // scanned for its order only
+            return tuples;
+        }
+
+        long distinctKeys;
+        if (unique) {
+            distinctKeys = tuples;
+        } else if (index != null && index.distinctKeys > 0) {
+            distinctKeys = index.distinctKeys;
+        } else {
+            distinctKeys = Math.max(1, tuples / DEFAULT_ENTRIES_PER_KEY);
+        }
+
+        // the last key column of a range scan only narrows the lookup by the range selectivity
+        final int equalityColumns = equality ? keyColumns : keyColumns - 1;
+        // assume the distinct keys spread evenly over the index columns
+        double matching = tuples / Math.pow(distinctKeys, (double) equalityColumns / indexColumns);
+        if (!equality) {
+            matching *= RANGE_SELECTIVITY;
+        }
+        return Math.min(tuples, Math.max(1, (long) Math.ceil(matching)));
+    }
+}
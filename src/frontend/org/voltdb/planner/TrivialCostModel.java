@@ -32,9 +32,9 @@ public class TrivialCostModel extends AbstractCostModel {
 
         // just add up the total tuples read for the plan
         for (int i = 0; i < stats.getLevelCount(); i++) {
-            HashMap<StatsField, Long> level = stats.getStatisticsForLevel(i);
-            Long levelValueObj = level.get(StatsField.TUPLES_READ);
-            long levelValue = (levelValueObj == null) ? 0 : levelValueObj.longValue();
+            HashMap<StatsField, Double> level = stats.getStatisticsForLevel(i);
+            Double levelValueObj = level.get(StatsField.TUPLES_READ);
+            double levelValue = (levelValueObj == null) ? 0 : levelValueObj.doubleValue();
             cost += levelValue;
         }
 
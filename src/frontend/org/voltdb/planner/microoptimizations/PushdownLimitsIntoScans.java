@@ -44,6 +44,14 @@ public class PushdownLimitsIntoScans implements MicroOptimization {
         //     where that child is an AbstractScanPlanNode
         //     disconnect the LimitPlanNode
         //     and inline the LimitPlanNode in to the AbstractScanPlanNode
+        //
+        //     or where that child is an OrderByPlanNode, possibly below
+        //     a projection that doesn't change the number of rows,
+        //     and inline the LimitPlanNode in to the OrderByPlanNode
+        //     so the EE only keeps the top limit + offset tuples while
+        //     sorting. A distributed ORDER BY ... LIMIT has a limit on
+        //     each side of the send/receive pair, so the partitions and
+        //     the coordinator each get their own top-N sort.
 
         ArrayList<AbstractPlanNode> children = new ArrayList<AbstractPlanNode>();
         for (int i = 0; i < plan.getChildCount(); i++)
@@ -64,6 +72,12 @@ public class PushdownLimitsIntoScans implements MicroOptimization {
             return plan;
 
         AbstractPlanNode child = plan.getChild(0);
+        if (child instanceof OrderByPlanNode)
+            return inlineIntoOrderBy(plan, child, child);
+        if ((child instanceof ProjectionPlanNode) &&
+            (child.getChildCount() == 1) &&
+            (child.getChild(0) instanceof OrderByPlanNode))
+            return inlineIntoOrderBy(plan, child, child.getChild(0));
         if ((child instanceof AbstractScanPlanNode) == false)
             return plan;
 
@@ -74,4 +88,21 @@ public class PushdownLimitsIntoScans implements MicroOptimization {
         return child;
     }
 
+    /**
+     * Inline the limit in to the order by and return what replaces the
+     * limit in the plan, the order by itself or the projection above it.
+     */
+    AbstractPlanNode inlineIntoOrderBy(AbstractPlanNode limit,
+                                       AbstractPlanNode child,
+                                       AbstractPlanNode orderBy) {
+        if (orderBy.getInlinePlanNode(limit.getPlanNodeType()) != null)
+            return limit;
+
+        limit.clearChildren();
+        child.clearParents();
+        orderBy.addInlinePlanNode(limit);
+
+        return child;
+    }
+
 }
@@ -83,7 +83,9 @@ public abstract class AbstractPlanNode implements JSONString, Comparable<Abstrac
 
     // TODO: planner accesses this data directly. Should be protected.
     protected List<ScalarValueHints> m_outputColumnHints = new ArrayList<ScalarValueHints>();
-    protected long m_estimatedOutputTupleCount = 0;
+    protected double m_estimatedOutputTupleCount = 0;
+    // true if the estimate comes from measured cardinalities rather than defaults
+    protected boolean m_estimateMeasured = false;
 
     // The output schema for this node
     protected NodeSchema m_outputSchema;
@@ -116,6 +118,7 @@ public abstract class AbstractPlanNode implements JSONString, Comparable<Abstrac
         copy.m_outputSchema = m_outputSchema;
         copy.m_outputColumnHints = m_outputColumnHints;
         copy.m_estimatedOutputTupleCount = m_estimatedOutputTupleCount;
+        copy.m_estimateMeasured = m_estimateMeasured;
         copy.m_outputSchema = m_outputSchema;
 
         // clone is not yet implemented for every node.
@@ -213,6 +216,7 @@ public abstract class AbstractPlanNode implements JSONString, Comparable<Abstrac
 
         m_outputColumnHints.clear();
         m_estimatedOutputTupleCount = 0;
+        m_estimateMeasured = !m_children.isEmpty();
 
         // recursively compute and collect stats from children
         for (AbstractPlanNode child : m_children) {
@@ -220,6 +224,7 @@ public abstract class AbstractPlanNode implements JSONString, Comparable<Abstrac
             assert(result);
             m_outputColumnHints.addAll(child.m_outputColumnHints);
             m_estimatedOutputTupleCount += child.m_estimatedOutputTupleCount;
+            m_estimateMeasured &= child.m_estimateMeasured;
 
             stats.incrementStatistic(0, StatsField.TUPLES_READ, m_estimatedOutputTupleCount);
         }
@@ -585,7 +590,13 @@ public abstract class AbstractPlanNode implements JSONString, Comparable<Abstrac
         }
         else {
             String nodePlan = explainPlanForNode(indent);
-            sb.append(indent + nodePlan + "\n");
+            sb.append(indent + nodePlan);
+            // estimated by computeEstimatesRecursively, only worth showing
+            // when it comes from measured cardinalities
+            if (m_estimateMeasured) {
+                sb.append(" (est. " + Math.round(m_estimatedOutputTupleCount) + " rows)");
+            }
+            sb.append("\n");
         }
 
         for (AbstractPlanNode inlineNode : m_inlineNodes.values()) {
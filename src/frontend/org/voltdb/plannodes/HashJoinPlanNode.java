@@ -0,0 +1,191 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.plannodes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONString;
+import org.json_voltpatches.JSONStringer;
+import org.voltdb.catalog.Cluster;
+import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.ScalarValueHints;
+import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.expressions.ExpressionUtil;
+import org.voltdb.expressions.TupleValueExpression;
+import org.voltdb.planner.PlanStatistics;
+import org.voltdb.planner.StatisticsCostModel;
+import org.voltdb.planner.StatsField;
+import org.voltdb.types.PlanNodeType;
+
+/**
+ * Equi-join of two children. The EE hashes the smaller child on its key
+ * expressions and probes the hash with each tuple of the other one, any
+ * join clauses that aren't key equalities are left in the predicate.
+ * The output is ordered like a nest loop join, outer columns then inner.
+ */
+public class HashJoinPlanNode extends AbstractJoinPlanNode {
+
+    public enum Members {
+        OUTER_KEYS,
+        INNER_KEYS;
+    }
+
+    // key expressions evaluated against the tuples of child 0
+    protected List<AbstractExpression> m_outerKeys = new ArrayList<AbstractExpression>();
+    // key expressions evaluated against the tuples of child 1, paired by position
+    protected List<AbstractExpression> m_innerKeys = new ArrayList<AbstractExpression>();
+
+    public HashJoinPlanNode() {
+        super();
+    }
+
+    @Override
+    public PlanNodeType getPlanNodeType() {
+        return PlanNodeType.HASHJOIN;
+    }
+
+    @Override
+    public void validate() throws Exception {
+        super.validate();
+
+        if (m_outerKeys.isEmpty()) {
+            throw new Exception("ERROR: There were no key expressions defined for " + this);
+        }
+        if (m_outerKeys.size() != m_innerKeys.size()) {
+            throw new Exception("ERROR: The outer and inner key expressions of " + this + " don't pair up");
+        }
+        for (AbstractExpression exp : m_outerKeys) {
+            exp.validate();
+        }
+        for (AbstractExpression exp : m_innerKeys) {
+            exp.validate();
+        }
+    }
+
+    /**
+     * Add a pair of expressions whose values must be equal for an outer
+     * and an inner tuple to join
+     * @param outerKey Expression over the columns of child 0
+     * @param innerKey Expression over the columns of child 1
+     */
+    public void addKey(AbstractExpression outerKey, AbstractExpression innerKey)
+    {
+        assert(outerKey != null && innerKey != null);
+        // PlanNodes all need private deep copies of expressions
+        // so that the resolveColumnIndexes results
+        // don't get bashed by other nodes or subsequent planner runs
+        try
+        {
+            m_outerKeys.add((AbstractExpression) outerKey.clone());
+            m_innerKeys.add((AbstractExpression) innerKey.clone());
+        }
+        catch (CloneNotSupportedException e)
+        {
+            // This shouldn't ever happen
+            e.printStackTrace();
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    public List<AbstractExpression> getOuterKeys() {
+        return Collections.unmodifiableList(m_outerKeys);
+    }
+
+    public List<AbstractExpression> getInnerKeys() {
+        return Collections.unmodifiableList(m_innerKeys);
+    }
+
+    @Override
+    public void resolveColumnIndexes()
+    {
+        super.resolveColumnIndexes();
+
+        // the keys are evaluated against a single child's tuples each
+        resolveKeyColumnIndexes(m_outerKeys, m_children.get(0).getOutputSchema());
+        resolveKeyColumnIndexes(m_innerKeys, m_children.get(1).getOutputSchema());
+    }
+
+    private static void resolveKeyColumnIndexes(List<AbstractExpression> keys, NodeSchema schema)
+    {
+        for (AbstractExpression key : keys)
+        {
+            for (TupleValueExpression tve : ExpressionUtil.getTupleValueExpressions(key))
+            {
+                int index = schema.getIndexOfTve(tve);
+                if (index == -1)
+                {
+                    throw new RuntimeException("Unable to find index for hash join key TVE: " +
+                                               tve.toString());
+                }
+                tve.setColumnIndex(index);
+            }
+        }
+    }
+
+    @Override
+    public boolean computeEstimatesRecursively(PlanStatistics stats, Cluster cluster, Database db, DatabaseEstimates estimates, ScalarValueHints[] paramHints) {
+        assert(m_children.size() == 2);
+        m_outputColumnHints.clear();
+
+        for (AbstractPlanNode child : m_children) {
+            boolean result = child.computeEstimatesRecursively(stats, cluster, db, estimates, paramHints);
+            assert(result);
+            m_outputColumnHints.addAll(child.m_outputColumnHints);
+        }
+
+        // each child is read once, to build the hash or to probe it
+        final double outer = m_children.get(0).m_estimatedOutputTupleCount;
+        final double inner = m_children.get(1).m_estimatedOutputTupleCount;
+        stats.incrementStatistic(0, StatsField.TUPLES_READ, outer + inner);
+        // assume the keys of the smaller side are mostly distinct, any
+        // remaining predicate filters the matches further
+        m_estimatedOutputTupleCount = Math.max(outer, inner) *
+            StatisticsCostModel.joinSelectivity(m_predicate, outer, inner);
+        m_estimateMeasured = m_children.get(0).m_estimateMeasured && m_children.get(1).m_estimateMeasured;
+
+        return true;
+    }
+
+    @Override
+    public void toJSONString(JSONStringer stringer) throws JSONException {
+        super.toJSONString(stringer);
+
+        stringer.key(Members.OUTER_KEYS.name()).array();
+        for (AbstractExpression ae : m_outerKeys) {
+            assert (ae instanceof JSONString);
+            stringer.value(ae);
+        }
+        stringer.endArray();
+
+        stringer.key(Members.INNER_KEYS.name()).array();
+        for (AbstractExpression ae : m_innerKeys) {
+            assert (ae instanceof JSONString);
+            stringer.value(ae);
+        }
+        stringer.endArray();
+    }
+
+    @Override
+    protected String explainPlanForNode(String indent) {
+        return "HASH JOIN";
+    }
+}
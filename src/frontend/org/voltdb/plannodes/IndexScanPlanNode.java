@@ -34,6 +34,7 @@ import org.voltdb.expressions.AbstractExpression;
 import org.voltdb.expressions.ExpressionUtil;
 import org.voltdb.expressions.TupleValueExpression;
 import org.voltdb.planner.PlanStatistics;
+import org.voltdb.planner.StatisticsCostModel;
 import org.voltdb.planner.StatsField;
 import org.voltdb.types.IndexLookupType;
 import org.voltdb.types.IndexType;
@@ -279,13 +280,28 @@ public class IndexScanPlanNode extends AbstractScanPlanNode {
         Table target = db.getTables().getIgnoreCase(m_targetTableName);
         assert(target != null);
         DatabaseEstimates.TableEstimates tableEstimates = estimates.getEstimatesForTable(target.getTypeName());
-        stats.incrementStatistic(0, StatsField.TREE_INDEX_LEVELS_TRAVERSED, (long)(Math.log(tableEstimates.maxTuples)));
 
         // get the width of the index and number of columns used
         int colCount = m_catalogIndex.getColumns().size();
         int keyWidth = m_searchkeyExpressions.size();
         assert(keyWidth <= colCount);
 
+        // with measured cardinalities estimate the tuples the lookup reads
+        if (tableEstimates.measured) {
+            DatabaseEstimates.IndexEstimates indexEstimates =
+                estimates.getEstimatesForIndex(target.getTypeName(), m_catalogIndex.getTypeName());
+            long tuples = StatisticsCostModel.estimateIndexScanTuples(
+                    tableEstimates, indexEstimates, m_catalogIndex.getUnique(),
+                    colCount, keyWidth, m_lookupType == IndexLookupType.EQ);
+            stats.incrementStatistic(0, StatsField.TREE_INDEX_LEVELS_TRAVERSED,
+                                     StatisticsCostModel.indexLevels(tableEstimates.maxTuples));
+            stats.incrementStatistic(0, StatsField.TUPLES_READ, tuples);
+            m_estimatedOutputTupleCount = tuples;
+            m_estimateMeasured = true;
+            return true;
+        }
+        stats.incrementStatistic(0, StatsField.TREE_INDEX_LEVELS_TRAVERSED, (long)(Math.log(tableEstimates.maxTuples)));
+
         // need a double for math
         double keyWidthFl = keyWidth;
         // count a scan as a half cover
@@ -319,6 +335,7 @@ public class IndexScanPlanNode extends AbstractScanPlanNode {
 
         stats.incrementStatistic(0, StatsField.TUPLES_READ, tuplesToRead);
         m_estimatedOutputTupleCount = tuplesToRead;
+        m_estimateMeasured = false;
 
         return true;
     }
@@ -21,10 +21,15 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.TreeMap;
 
+import org.voltdb.catalog.Cluster;
 import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.ScalarValueHints;
 import org.voltdb.expressions.AbstractExpression;
 import org.voltdb.expressions.ExpressionUtil;
 import org.voltdb.expressions.TupleValueExpression;
+import org.voltdb.planner.PlanStatistics;
+import org.voltdb.planner.StatsField;
 import org.voltdb.types.PlanNodeType;
 
 public class NestLoopIndexPlanNode extends AbstractJoinPlanNode {
@@ -179,6 +184,34 @@ public class NestLoopIndexPlanNode extends AbstractJoinPlanNode {
         }
     }
 
+    @Override
+    public boolean computeEstimatesRecursively(PlanStatistics stats, Cluster cluster, Database db, DatabaseEstimates estimates, ScalarValueHints[] paramHints) {
+        assert(m_children.size() == 1);
+        AbstractPlanNode outer = m_children.get(0);
+        boolean result = outer.computeEstimatesRecursively(stats, cluster, db, estimates, paramHints);
+        assert(result);
+        m_outputColumnHints.clear();
+        m_outputColumnHints.addAll(outer.m_outputColumnHints);
+
+        // the inlined scan adds what one lookup costs, it runs once per outer tuple
+        IndexScanPlanNode inlineScan =
+            (IndexScanPlanNode) m_inlineNodes.get(PlanNodeType.INDEXSCAN);
+        assert(inlineScan != null);
+        final double readsBefore = Math.max(0, stats.getStatistic(0, StatsField.TUPLES_READ));
+        final double levelsBefore = Math.max(0, stats.getStatistic(0, StatsField.TREE_INDEX_LEVELS_TRAVERSED));
+        result = inlineScan.computeEstimatesRecursively(stats, cluster, db, estimates, paramHints);
+        assert(result);
+        final double lookupReads = Math.max(0, stats.getStatistic(0, StatsField.TUPLES_READ)) - readsBefore;
+        final double lookupLevels = Math.max(0, stats.getStatistic(0, StatsField.TREE_INDEX_LEVELS_TRAVERSED)) - levelsBefore;
+        final double lookups = outer.m_estimatedOutputTupleCount;
+        stats.incrementStatistic(0, StatsField.TUPLES_READ, lookupReads * lookups - lookupReads);
+        stats.incrementStatistic(0, StatsField.TREE_INDEX_LEVELS_TRAVERSED, lookupLevels * lookups - lookupLevels);
+
+        m_estimatedOutputTupleCount = lookups * inlineScan.m_estimatedOutputTupleCount;
+        m_estimateMeasured = outer.m_estimateMeasured && inlineScan.m_estimateMeasured;
+        return true;
+    }
+
     @Override
     protected String explainPlanForNode(String indent) {
         return "NESTLOOP INDEX JOIN";
@@ -17,6 +17,13 @@
 
 package org.voltdb.plannodes;
 
+import org.voltdb.catalog.Cluster;
+import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.ScalarValueHints;
+import org.voltdb.planner.PlanStatistics;
+import org.voltdb.planner.StatisticsCostModel;
+import org.voltdb.planner.StatsField;
 import org.voltdb.types.PlanNodeType;
 
 public class NestLoopPlanNode extends AbstractJoinPlanNode {
@@ -30,6 +37,29 @@ public class NestLoopPlanNode extends AbstractJoinPlanNode {
         return PlanNodeType.NESTLOOP;
     }
 
+    @Override
+    public boolean computeEstimatesRecursively(PlanStatistics stats, Cluster cluster, Database db, DatabaseEstimates estimates, ScalarValueHints[] paramHints) {
+        assert(m_children.size() == 2);
+        m_outputColumnHints.clear();
+
+        for (AbstractPlanNode child : m_children) {
+            boolean result = child.computeEstimatesRecursively(stats, cluster, db, estimates, paramHints);
+            assert(result);
+            m_outputColumnHints.addAll(child.m_outputColumnHints);
+        }
+
+        // every outer tuple is compared with every inner tuple
+        final double outer = m_children.get(0).m_estimatedOutputTupleCount;
+        final double inner = m_children.get(1).m_estimatedOutputTupleCount;
+        final double comparisons = outer * inner;
+        stats.incrementStatistic(0, StatsField.TUPLES_READ, comparisons);
+        m_estimatedOutputTupleCount =
+            comparisons * StatisticsCostModel.joinSelectivity(m_predicate, outer, inner);
+        m_estimateMeasured = m_children.get(0).m_estimateMeasured && m_children.get(1).m_estimateMeasured;
+
+        return true;
+    }
+
     @Override
     protected String explainPlanForNode(String indent) {
         return "NEST LOOP JOIN";
@@ -44,6 +44,7 @@ public class SeqScanPlanNode extends AbstractScanPlanNode {
         DatabaseEstimates.TableEstimates tableEstimates = estimates.getEstimatesForTable(target.getTypeName());
         stats.incrementStatistic(0, StatsField.TUPLES_READ, tableEstimates.maxTuples);
         m_estimatedOutputTupleCount = tableEstimates.maxTuples;
+        m_estimateMeasured = tableEstimates.measured;
         return true;
     }
 
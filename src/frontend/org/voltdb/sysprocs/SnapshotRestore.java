@@ -33,6 +33,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.io.*;
 
@@ -61,6 +65,7 @@ import org.voltdb.dtxn.DtxnConstants;
 import org.voltdb.export.ExportManager;
 import org.voltdb.logging.VoltLogger;
 import org.voltdb.sysprocs.saverestore.ClusterSaveFileState;
+import org.voltdb.sysprocs.saverestore.RestoreStats;
 import org.voltdb.sysprocs.saverestore.SavedTableConverter;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil;
 import org.voltdb.sysprocs.saverestore.TableSaveFile;
@@ -68,6 +73,7 @@ import org.voltdb.sysprocs.saverestore.TableSaveFileState;
 import org.voltdb.utils.DBBPool.BBContainer;
 import org.voltdb.utils.CatalogUtil;
 import org.voltdb.utils.CompressionService;
+import org.voltdb.utils.MiscUtils;
 import org.voltdb.utils.VoltFile;
 import org.json_voltpatches.*;
 import org.voltdb.utils.Pair;
@@ -113,6 +119,14 @@ public class SnapshotRestore extends VoltSystemProcedure
 
     public static volatile boolean m_haveDoneRestore = false;
 
+    /*
+     * Converts, partitions and compresses the next chunk of the table being
+     * distributed while the previous one is sent to the sites, so reading
+     * the files overlaps with loading the data.
+     */
+    private static final ExecutorService m_chunkPreparer =
+            Executors.newSingleThreadExecutor(MiscUtils.getThreadFactory("Restore Chunk Preparer"));
+
     private static synchronized void initializeTableSaveFiles(
             String filePath,
             String fileNonce,
@@ -144,14 +158,20 @@ public class SnapshotRestore extends VoltSystemProcedure
             relevantPartitionSet.add(part_id);
         }
 
+        // All the files are read ahead at the same time, split the chunks
+        // that used to be read ahead for one file between them
+        final int readAheadChunks =
+                Math.max(2, org.voltdb.VoltDB.instance().getLocalSites().size() * 4 / originalHostIds.length);
         for (int originalHostId : originalHostIds) {
             final File f = getSaveFileForPartitionedTable(filePath, fileNonce,
                     tableName,
                     originalHostId);
             TableSaveFile savefile = getTableSaveFile(
                     f,
-                    org.voltdb.VoltDB.instance().getLocalSites().size() * 4,
+                    readAheadChunks,
                     relevantPartitionSet.toArray(new Integer[relevantPartitionSet.size()]));
+            savefile.startReadAhead();
+            RestoreStats.fileOpened();
 
             m_saveFiles.offer(savefile);
             for (int part_id : savefile.getPartitionIds())
@@ -183,6 +203,14 @@ public class SnapshotRestore extends VoltSystemProcedure
     }
 
     private static synchronized BBContainer getNextChunk() throws IOException {
+        // Take a chunk from whichever file has one ready before waiting on
+        // the first file, so a slow file doesn't hold up the others
+        for (TableSaveFile f : m_saveFiles) {
+            BBContainer c = f.pollNextChunk();
+            if (c != null) {
+                return c;
+            }
+        }
         BBContainer c = null;
         while (c == null && m_saveFiles.peek() != null) {
             TableSaveFile f = m_saveFiles.peek();
@@ -428,6 +456,7 @@ public class SnapshotRestore extends VoltSystemProcedure
                 // can't be attempting to set and clear this HashSet simultaneously
                 m_initializedTableSaveFileNames.clear();
                 m_saveFiles.clear();//Tests will reused a VoltDB process that fails a restore
+                RestoreStats.restoreStarted();
 
                 m_filePath = (String) params.toArray()[0];
                 m_fileNonce = (String) params.toArray()[1];
@@ -531,6 +560,7 @@ public class SnapshotRestore extends VoltSystemProcedure
                 savefile =
                         getTableSaveFile(getSaveFileForReplicatedTable(table_name), 3, null);
                 assert(savefile.getCompleted());
+                RestoreStats.fileOpened();
             }
             catch (IOException e)
             {
@@ -553,6 +583,7 @@ public class SnapshotRestore extends VoltSystemProcedure
                     if (c == null) {
                         continue;//Should be equivalent to break
                     }
+                    RestoreStats.chunkRead(c.b.remaining());
 
                     if (needsConversion == null) {
                         VoltTable old_table =
@@ -1292,6 +1323,7 @@ public class SnapshotRestore extends VoltSystemProcedure
             savefile =
                     getTableSaveFile(getSaveFileForReplicatedTable(tableName), 3, null);
             assert(savefile.getCompleted());
+            RestoreStats.fileOpened();
         }
         catch (IOException e)
         {
@@ -1306,33 +1338,14 @@ public class SnapshotRestore extends VoltSystemProcedure
         results[0].addRow(m_hostId, hostname, m_siteId, tableName, -1,
                 "SUCCESS", "NO DATA TO DISTRIBUTE");
         final Table new_catalog_table = getCatalogTable(tableName);
-        Boolean needsConversion = null;
 
         try {
-            while (savefile.hasMoreChunks())
+            Future<byte[]> nextChunk = prepareReplicatedChunk(savefile, new_catalog_table);
+            byte compressedTable[];
+            while ((compressedTable = nextChunk.get()) != null)
             {
-                final org.voltdb.utils.DBBPool.BBContainer c = savefile.getNextChunk();
-                if (c == null) {
-                    continue;//Should be equivalent to break
-                }
-
-                if (needsConversion == null) {
-                    VoltTable old_table =
-                            PrivateVoltTableFactory.createVoltTableFromBuffer(c.b.duplicate(), true);
-                    needsConversion = SavedTableConverter.needsConversion(old_table, new_catalog_table);
-                }
-
-                byte compressedTable[];
-                if (needsConversion.booleanValue()) {
-                    VoltTable old_table =
-                            PrivateVoltTableFactory.createVoltTableFromBuffer(c.b , true);
-                    VoltTable new_table = SavedTableConverter.convertTable(old_table,
-                            new_catalog_table);
-                    compressedTable = new_table.getCompressedBytes();
-                } else {
-                    compressedTable = CompressionService.compressBuffer(c.b);
-                }
-                c.discard();
+                // start on the next chunk while this one is sent
+                nextChunk = prepareReplicatedChunk(savefile, new_catalog_table);
 
                 SynthesizedPlanFragment[] pfs = new SynthesizedPlanFragment[2];
 
@@ -1362,19 +1375,17 @@ public class SnapshotRestore extends VoltSystemProcedure
                 results =
                         executeSysProcPlanFragments(pfs, final_dependency_id);
             }
-        } catch (IOException e) {
-            VoltTable result = PrivateVoltTableFactory.createUninitializedVoltTable();
-            result = constructResultsTable();
-            result.addRow(m_hostId, hostname, m_siteId, tableName, -1, "FAILURE",
-                    "Unable to load table: " + tableName +
-                    " error: " + e.getMessage());
-            return result;
-        } catch (VoltTypeException e) {
+        } catch (Exception e) {
+            // the preparer thread's failure may be an Error, not an Exception
+            Throwable cause = e;
+            if (e instanceof ExecutionException && e.getCause() != null) {
+                cause = e.getCause();
+            }
             VoltTable result = PrivateVoltTableFactory.createUninitializedVoltTable();
             result = constructResultsTable();
             result.addRow(m_hostId, hostname, m_siteId, tableName, -1, "FAILURE",
                     "Unable to load table: " + tableName +
-                    " error: " + e.getMessage());
+                    " error: " + cause.getMessage());
             return result;
         }
         return results[0];
@@ -1421,38 +1432,13 @@ public class SnapshotRestore extends VoltSystemProcedure
         results[0].addRow(m_hostId, hostname, m_siteId, tableName, 0,
                 "SUCCESS", "NO DATA TO DISTRIBUTE");
         final Table new_catalog_table = getCatalogTable(tableName);
-        Boolean needsConversion = null;
-        org.voltdb.utils.DBBPool.BBContainer c = null;
         try {
-            while (hasMoreChunks())
+            Future<byte[][]> nextChunk = preparePartitionedChunk(tableName, new_catalog_table);
+            byte[][] partitioned_tables;
+            while ((partitioned_tables = nextChunk.get()) != null)
             {
-                VoltTable table = null;
-
-                c = null;
-                c = getNextChunk();
-                if (c == null) {
-                    continue;//Should be equivalent to break
-                }
-
-                if (needsConversion == null) {
-                    VoltTable old_table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b.duplicate(), true);
-                    needsConversion = SavedTableConverter.needsConversion(old_table, new_catalog_table);
-                }
-
-                final VoltTable old_table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b, true);
-                if (needsConversion) {
-                    table = SavedTableConverter.convertTable(old_table,
-                            new_catalog_table);
-                } else {
-                    table = old_table;
-                }
-
-
-                byte[][] partitioned_tables =
-                        createPartitionedTables(tableName, table);
-                if (c != null) {
-                    c.discard();
-                }
+                // start on the next chunk while this one is sent
+                nextChunk = preparePartitionedChunk(tableName, new_catalog_table);
 
                 int[] dependencyIds = new int[sites_to_partitions.size()];
                 SynthesizedPlanFragment[] pfs =
@@ -1491,17 +1477,84 @@ public class SnapshotRestore extends VoltSystemProcedure
                         executeSysProcPlanFragments(pfs, result_dependency_id);
             }
         } catch (Exception e) {
+            // the preparer thread's failure may be an Error, not an Exception
+            Throwable cause = e;
+            if (e instanceof ExecutionException && e.getCause() != null) {
+                cause = e.getCause();
+            }
             VoltTable result = PrivateVoltTableFactory.createUninitializedVoltTable();
             result = constructResultsTable();
             result.addRow(m_hostId, hostname, m_siteId, tableName, relevantPartitionIds[0],
                     "FAILURE", "Unable to load table: " + tableName +
-                    " error: " + e.getMessage());
+                    " error: " + cause.getMessage());
             return result;
         }
 
         return results[0];
     }
 
+    /**
+     * Read the next chunk of a partitioned table from the save files on the
+     * preparer thread, convert it to the catalog schema if needed and split
+     * it into a compressed table for each partition.
+     * The future returns null once the files are exhausted.
+     */
+    private Future<byte[][]> preparePartitionedChunk(final String tableName, final Table catalogTable) {
+        return m_chunkPreparer.submit(new Callable<byte[][]>() {
+            @Override
+            public byte[][] call() throws Exception {
+                BBContainer c = null;
+                while (c == null && hasMoreChunks()) {
+                    c = getNextChunk();
+                }
+                if (c == null) {
+                    return null;
+                }
+                try {
+                    RestoreStats.chunkRead(c.b.remaining());
+                    VoltTable table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b, true);
+                    if (SavedTableConverter.needsConversion(table, catalogTable)) {
+                        table = SavedTableConverter.convertTable(table, catalogTable);
+                    }
+                    return createPartitionedTables(tableName, table);
+                } finally {
+                    c.discard();
+                }
+            }
+        });
+    }
+
+    /**
+     * Read the next chunk of a replicated table on the preparer thread,
+     * convert it to the catalog schema if needed and compress it.
+     * The future returns null once the file is exhausted.
+     */
+    private Future<byte[]> prepareReplicatedChunk(final TableSaveFile savefile, final Table catalogTable) {
+        return m_chunkPreparer.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                BBContainer c = null;
+                while (c == null && savefile.hasMoreChunks()) {
+                    c = savefile.getNextChunk();
+                }
+                if (c == null) {
+                    return null;
+                }
+                try {
+                    RestoreStats.chunkRead(c.b.remaining());
+                    VoltTable old_table =
+                            PrivateVoltTableFactory.createVoltTableFromBuffer(c.b.duplicate(), true);
+                    if (SavedTableConverter.needsConversion(old_table, catalogTable)) {
+                        return SavedTableConverter.convertTable(old_table, catalogTable).getCompressedBytes();
+                    }
+                    return CompressionService.compressBuffer(c.b);
+                } finally {
+                    c.discard();
+                }
+            }
+        });
+    }
+
     private byte[][] createPartitionedTables(String tableName,
             VoltTable loadedTable) throws Exception
             {
@@ -23,11 +23,13 @@ import java.util.List;
 import java.util.Map;
 
 import org.voltdb.BackendTarget;
+import org.voltdb.CatalogContext;
 import org.voltdb.DependencyPair;
 import org.voltdb.ExecutionSite;
 import org.voltdb.ExecutionSite.SystemProcedureExecutionContext;
 import org.voltdb.ClientInterface;
 import org.voltdb.HsqlBackend;
+import org.voltdb.IOStats;
 import org.voltdb.LiveClientStats;
 import org.voltdb.ParameterSet;
 import org.voltdb.ProcInfo;
@@ -47,7 +49,7 @@ import org.voltdb.logging.VoltLogger;
 import org.voltdb.utils.Pair;
 
 /**
- * Access the TABLE, PRCOEDURE, INITIATOR, IOSTATS, or PARTITIONCOUNT statistics.
+ * Access the TABLE, PRCOEDURE, INITIATOR, IOSTATS, PLANNER or PARTITIONCOUNT statistics.
  */
 @ProcInfo(
     // partitionInfo = "TABLE.ATTR: 0",
@@ -95,6 +97,26 @@ public class Statistics extends VoltSystemProcedure {
     static final int DEP_liveClientDataAggregator = (int)
         SysProcFragmentId.PF_liveClientDataAggregator;
 
+    static final int DEP_plannerData = (int)
+        SysProcFragmentId.PF_plannerData | DtxnConstants.MULTIPARTITION_DEPENDENCY;
+    static final int DEP_plannerDataAggregator = (int)
+        SysProcFragmentId.PF_plannerDataAggregator;
+
+    static final int DEP_restoreData = (int)
+        SysProcFragmentId.PF_restoreData | DtxnConstants.MULTIPARTITION_DEPENDENCY;
+    static final int DEP_restoreDataAggregator = (int)
+        SysProcFragmentId.PF_restoreDataAggregator;
+
+    static final int DEP_latencyData = (int)
+        SysProcFragmentId.PF_latencyData | DtxnConstants.MULTIPARTITION_DEPENDENCY;
+    static final int DEP_latencyDataAggregator = (int)
+        SysProcFragmentId.PF_latencyDataAggregator;
+
+    static final int DEP_httpData = (int)
+        SysProcFragmentId.PF_httpData | DtxnConstants.MULTIPARTITION_DEPENDENCY;
+    static final int DEP_httpDataAggregator = (int)
+        SysProcFragmentId.PF_httpDataAggregator;
+
     static final int DEP_partitionCount = (int)
         SysProcFragmentId.PF_partitionCount;
 //    static final int DEP_initiatorAggregator = (int)
@@ -123,6 +145,14 @@ public class Statistics extends VoltSystemProcedure {
         site.registerPlanFragment(SysProcFragmentId.PF_starvationDataAggregator, this);
         site.registerPlanFragment(SysProcFragmentId.PF_liveClientData, this);
         site.registerPlanFragment(SysProcFragmentId.PF_liveClientDataAggregator, this);
+        site.registerPlanFragment(SysProcFragmentId.PF_plannerData, this);
+        site.registerPlanFragment(SysProcFragmentId.PF_plannerDataAggregator, this);
+        site.registerPlanFragment(SysProcFragmentId.PF_restoreData, this);
+        site.registerPlanFragment(SysProcFragmentId.PF_restoreDataAggregator, this);
+        site.registerPlanFragment(SysProcFragmentId.PF_latencyData, this);
+        site.registerPlanFragment(SysProcFragmentId.PF_latencyDataAggregator, this);
+        site.registerPlanFragment(SysProcFragmentId.PF_httpData, this);
+        site.registerPlanFragment(SysProcFragmentId.PF_httpDataAggregator, this);
     }
 
     @Override
@@ -318,6 +348,8 @@ public class Statistics extends VoltSystemProcedure {
                 final Long now = (Long)params.toArray()[1];
                 final Map<Long, Pair<String,long[]>> stats =
                     VoltDB.instance().getNetwork().getIOStats(interval);
+                final Map<Long, long[]> batchStats =
+                    VoltDB.instance().getHostMessenger().getBatchStats(interval);
 
                 final Integer hostId = VoltDB.instance().getHostMessenger().getHostId();
                 final String hostname = VoltDB.instance().getHostMessenger().getHostname();
@@ -334,7 +366,10 @@ public class Statistics extends VoltSystemProcedure {
                                   counters[0],
                                   counters[1],
                                   counters[2],
-                                  counters[3]);
+                                  counters[3],
+                                  counters[4],
+                                  counters[4] == 0 ? 0 : counters[2] / counters[4],
+                                  IOStats.messagesPerFrame(connectionId, counters[3], batchStats));
                 }
             }
             return new DependencyPair(DEP_ioData, result);
@@ -389,6 +424,122 @@ public class Statistics extends VoltSystemProcedure {
             VoltTable result = unionTables(dependencies.get(DEP_liveClientData));
             return new DependencyPair(DEP_liveClientDataAggregator, result);
         }
+        else if (fragmentId == SysProcFragmentId.PF_plannerData) {
+            assert(params.toArray().length == 2);
+            final boolean interval =
+                ((Byte)params.toArray()[0]).byteValue() == 0 ? false : true;
+            final Long now = (Long)params.toArray()[1];
+            ArrayList<Integer> catalogIds = new ArrayList<Integer>();
+            catalogIds.add(0);
+            VoltTable result =
+                VoltDB.instance().getStatsAgent().getStats(SysProcSelector.PLANNER,
+                                                           catalogIds,
+                                                           interval,
+                                                           now);
+
+            // The plan cache is per host; choose the lowest site ID on this
+            // host to report it. All other sites return empty tables.
+            int hostId = context.getExecutionSite().getCorrespondingHostId();
+            Integer lowestSiteId =
+                VoltDB.instance().getCatalogContext().siteTracker.
+                getLowestLiveExecSiteIdForHost(hostId);
+            if (context.getExecutionSite().getSiteId() != lowestSiteId) {
+                // Hacky way to generate an empty table with the correct schema
+                result.clearRowData();
+            }
+            return new DependencyPair(DEP_plannerData, result);
+        }
+        else if (fragmentId == SysProcFragmentId.PF_plannerDataAggregator) {
+            VoltTable result = unionTables(dependencies.get(DEP_plannerData));
+            return new DependencyPair(DEP_plannerDataAggregator, result);
+        }
+        else if (fragmentId == SysProcFragmentId.PF_restoreData) {
+            assert(params.toArray().length == 2);
+            final boolean interval =
+                ((Byte)params.toArray()[0]).byteValue() == 0 ? false : true;
+            final Long now = (Long)params.toArray()[1];
+            ArrayList<Integer> catalogIds = new ArrayList<Integer>();
+            catalogIds.add(0);
+            VoltTable result =
+                VoltDB.instance().getStatsAgent().getStats(SysProcSelector.RESTORE,
+                                                           catalogIds,
+                                                           interval,
+                                                           now);
+
+            // Restore progress is per host; choose the lowest site ID on this
+            // host to report it. All other sites return empty tables.
+            int hostId = context.getExecutionSite().getCorrespondingHostId();
+            Integer lowestSiteId =
+                VoltDB.instance().getCatalogContext().siteTracker.
+                getLowestLiveExecSiteIdForHost(hostId);
+            if (context.getExecutionSite().getSiteId() != lowestSiteId) {
+                // Hacky way to generate an empty table with the correct schema
+                result.clearRowData();
+            }
+            return new DependencyPair(DEP_restoreData, result);
+        }
+        else if (fragmentId == SysProcFragmentId.PF_restoreDataAggregator) {
+            VoltTable result = unionTables(dependencies.get(DEP_restoreData));
+            return new DependencyPair(DEP_restoreDataAggregator, result);
+        }
+        else if (fragmentId == SysProcFragmentId.PF_latencyData) {
+            assert(params.toArray().length == 2);
+            final boolean interval =
+                ((Byte)params.toArray()[0]).byteValue() == 0 ? false : true;
+            final Long now = (Long)params.toArray()[1];
+            ArrayList<Integer> catalogIds = new ArrayList<Integer>();
+            catalogIds.add(0);
+            VoltTable result =
+                VoltDB.instance().getStatsAgent().getStats(SysProcSelector.LATENCY,
+                                                           catalogIds,
+                                                           interval,
+                                                           now);
+
+            // Initiators are per host, choose the lowest site ID on this host
+            // to report them. All other sites return empty tables.
+            int hostId = context.getExecutionSite().getCorrespondingHostId();
+            Integer lowestSiteId =
+                VoltDB.instance().getCatalogContext().siteTracker.
+                getLowestLiveExecSiteIdForHost(hostId);
+            if (context.getExecutionSite().getSiteId() != lowestSiteId) {
+                // Hacky way to generate an empty table with the correct schema
+                result.clearRowData();
+            }
+            return new DependencyPair(DEP_latencyData, result);
+        }
+        else if (fragmentId == SysProcFragmentId.PF_latencyDataAggregator) {
+            VoltTable result = unionTables(dependencies.get(DEP_latencyData));
+            return new DependencyPair(DEP_latencyDataAggregator, result);
+        }
+        else if (fragmentId == SysProcFragmentId.PF_httpData) {
+            assert(params.toArray().length == 2);
+            final boolean interval =
+                ((Byte)params.toArray()[0]).byteValue() == 0 ? false : true;
+            final Long now = (Long)params.toArray()[1];
+            ArrayList<Integer> catalogIds = new ArrayList<Integer>();
+            catalogIds.add(0);
+            VoltTable result =
+                VoltDB.instance().getStatsAgent().getStats(SysProcSelector.HTTP,
+                                                           catalogIds,
+                                                           interval,
+                                                           now);
+
+            // The http interface is per host; choose the lowest site ID on this
+            // host to report it. All other sites return empty tables.
+            int hostId = context.getExecutionSite().getCorrespondingHostId();
+            Integer lowestSiteId =
+                VoltDB.instance().getCatalogContext().siteTracker.
+                getLowestLiveExecSiteIdForHost(hostId);
+            if (context.getExecutionSite().getSiteId() != lowestSiteId) {
+                // Hacky way to generate an empty table with the correct schema
+                result.clearRowData();
+            }
+            return new DependencyPair(DEP_httpData, result);
+        }
+        else if (fragmentId == SysProcFragmentId.PF_httpDataAggregator) {
+            VoltTable result = unionTables(dependencies.get(DEP_httpData));
+            return new DependencyPair(DEP_httpDataAggregator, result);
+        }
         assert (false);
         return null;
     }
@@ -402,7 +553,10 @@ public class Statistics extends VoltSystemProcedure {
         new ColumnInfo( "BYTES_READ", VoltType.BIGINT),
         new ColumnInfo( "MESSAGES_READ", VoltType.BIGINT),
         new ColumnInfo( "BYTES_WRITTEN", VoltType.BIGINT),
-        new ColumnInfo( "MESSAGES_WRITTEN", VoltType.BIGINT)
+        new ColumnInfo( "MESSAGES_WRITTEN", VoltType.BIGINT),
+        new ColumnInfo( "WRITE_CALLS", VoltType.BIGINT),
+        new ColumnInfo( "BYTES_PER_WRITE", VoltType.BIGINT),
+        new ColumnInfo( "MESSAGES_PER_FRAME", VoltType.FLOAT)
     };
 
 
@@ -411,7 +565,8 @@ public class Statistics extends VoltSystemProcedure {
      * requested.
      * @param ctx          Internal. Not exposed to the end-user.
      * @param selector     Selector requested TABLE, PROCEDURE, INITIATOR,
-     *                     PARTITIONCOUNT, IOSTATS, MANAGEMENT, INDEX
+     *                     PARTITIONCOUNT, IOSTATS, MANAGEMENT, INDEX, PLANNER,
+     *                     TOPO, RESTORE, LATENCY, HTTP
      * @param interval     1 for interval statistics. 0 for full statistics.
      * @return             The returned schema is specific to the selector.
      * @throws VoltAbortException
@@ -441,6 +596,9 @@ public class Statistics extends VoltSystemProcedure {
         else if (selector.toUpperCase().equals(SysProcSelector.PARTITIONCOUNT.name())) {
             results = getPartitionCountData();
         }
+        else if (selector.toUpperCase().equals(SysProcSelector.TOPO.name())) {
+            results = getTopologyData();
+        }
         else if (selector.toUpperCase().equals(SysProcSelector.IOSTATS.name())) {
             results = getIOStatsData(interval, now);
         }
@@ -450,6 +608,18 @@ public class Statistics extends VoltSystemProcedure {
         else if (selector.toUpperCase().equals(SysProcSelector.LIVECLIENTS.name())) {
             results = getLiveClientData(interval, now);
         }
+        else if (selector.toUpperCase().equals(SysProcSelector.PLANNER.name())) {
+            results = getPlannerData(interval, now);
+        }
+        else if (selector.toUpperCase().equals(SysProcSelector.RESTORE.name())) {
+            results = getRestoreData(interval, now);
+        }
+        else if (selector.toUpperCase().equals(SysProcSelector.LATENCY.name())) {
+            results = getLatencyData(interval, now);
+        }
+        else if (selector.toUpperCase().equals(SysProcSelector.HTTP.name())) {
+            results = getHTTPData(interval, now);
+        }
         else if (selector.toUpperCase().equals(SysProcSelector.MANAGEMENT.name())) {
             VoltTable[] memoryResults = getMemoryData(interval, now);
             VoltTable[] tableResults = getTableData(interval, now);
@@ -521,6 +691,39 @@ public class Statistics extends VoltSystemProcedure {
         return results;
     }
 
+    /**
+     * Built from the catalog context of the coordinator, there is nothing
+     * to gather from the other sites. The first table maps each partition to
+     * the hosts with a live replica of it, the second lists the partitioning
+     * parameter of each single partition procedure and the third holds the
+     * partition count to hash with. Clients use them to send an invocation
+     * straight to a host that owns its partition.
+     */
+    private VoltTable[] getTopologyData() {
+        CatalogContext context = VoltDB.instance().getCatalogContext();
+        VoltTable partitions = new VoltTable(
+                new ColumnInfo("PARTITION_ID", VoltType.INTEGER),
+                new ColumnInfo("HOST_ID", VoltType.INTEGER));
+        for (int siteId : context.siteTracker.getExecutionSiteIds()) {
+            if (context.siteTracker.getAllLiveSites().contains(siteId)) {
+                partitions.addRow(context.siteTracker.getPartitionForSite(siteId),
+                                  context.siteTracker.getHostForSite(siteId));
+            }
+        }
+        VoltTable procedures = new VoltTable(
+                new ColumnInfo("PROCEDURE_NAME", VoltType.STRING),
+                new ColumnInfo("PARTITION_PARAMETER", VoltType.INTEGER));
+        for (Procedure proc : context.procedures) {
+            if (proc.getSinglepartition()) {
+                procedures.addRow(proc.getTypeName(), proc.getPartitionparameter());
+            }
+        }
+        VoltTable partitionCount = new VoltTable(
+                new ColumnInfo("PARTITION_COUNT", VoltType.INTEGER));
+        partitionCount.addRow(context.numberOfPartitions);
+        return new VoltTable[] { partitions, procedures, partitionCount };
+    }
+
     private VoltTable[] getInitiatorData(long interval, final long now) {
         VoltTable[] results;
         SynthesizedPlanFragment pfs[] = new SynthesizedPlanFragment[2];
@@ -577,6 +780,114 @@ public class Statistics extends VoltSystemProcedure {
         return results;
     }
 
+    private VoltTable[] getPlannerData(long interval, final long now) {
+        VoltTable[] results;
+        SynthesizedPlanFragment pfs[] = new SynthesizedPlanFragment[2];
+        // create a work fragment to gather ad hoc planner data from each of the nodes
+        pfs[1] = new SynthesizedPlanFragment();
+        pfs[1].fragmentId = SysProcFragmentId.PF_plannerData;
+        pfs[1].outputDepId = DEP_plannerData;
+        pfs[1].inputDepIds = new int[]{};
+        pfs[1].multipartition = true;
+        pfs[1].parameters = new ParameterSet();
+        pfs[1].parameters.setParameters((byte)interval, now);
+
+        // create a work fragment to aggregate the results.
+        pfs[0] = new SynthesizedPlanFragment();
+        pfs[0].fragmentId = SysProcFragmentId.PF_plannerDataAggregator;
+        pfs[0].outputDepId = DEP_plannerDataAggregator;
+        pfs[0].inputDepIds = new int[]{DEP_plannerData};
+        pfs[0].multipartition = false;
+        pfs[0].parameters = new ParameterSet();
+
+        // distribute and execute these fragments providing pfs and id of the
+        // aggregator's output dependency table.
+        results =
+            executeSysProcPlanFragments(pfs, DEP_plannerDataAggregator);
+        return results;
+    }
+
+    private VoltTable[] getRestoreData(long interval, final long now) {
+        VoltTable[] results;
+        SynthesizedPlanFragment pfs[] = new SynthesizedPlanFragment[2];
+        // create a work fragment to gather restore progress from each of the nodes
+        pfs[1] = new SynthesizedPlanFragment();
+        pfs[1].fragmentId = SysProcFragmentId.PF_restoreData;
+        pfs[1].outputDepId = DEP_restoreData;
+        pfs[1].inputDepIds = new int[]{};
+        pfs[1].multipartition = true;
+        pfs[1].parameters = new ParameterSet();
+        pfs[1].parameters.setParameters((byte)interval, now);
+
+        // create a work fragment to aggregate the results.
+        pfs[0] = new SynthesizedPlanFragment();
+        pfs[0].fragmentId = SysProcFragmentId.PF_restoreDataAggregator;
+        pfs[0].outputDepId = DEP_restoreDataAggregator;
+        pfs[0].inputDepIds = new int[]{DEP_restoreData};
+        pfs[0].multipartition = false;
+        pfs[0].parameters = new ParameterSet();
+
+        // distribute and execute these fragments providing pfs and id of the
+        // aggregator's output dependency table.
+        results =
+            executeSysProcPlanFragments(pfs, DEP_restoreDataAggregator);
+        return results;
+    }
+
+    private VoltTable[] getLatencyData(long interval, final long now) {
+        VoltTable[] results;
+        SynthesizedPlanFragment pfs[] = new SynthesizedPlanFragment[2];
+        // create a work fragment to gather initiator latencies from each of the nodes
+        pfs[1] = new SynthesizedPlanFragment();
+        pfs[1].fragmentId = SysProcFragmentId.PF_latencyData;
+        pfs[1].outputDepId = DEP_latencyData;
+        pfs[1].inputDepIds = new int[]{};
+        pfs[1].multipartition = true;
+        pfs[1].parameters = new ParameterSet();
+        pfs[1].parameters.setParameters((byte)interval, now);
+
+        // create a work fragment to aggregate the results.
+        pfs[0] = new SynthesizedPlanFragment();
+        pfs[0].fragmentId = SysProcFragmentId.PF_latencyDataAggregator;
+        pfs[0].outputDepId = DEP_latencyDataAggregator;
+        pfs[0].inputDepIds = new int[]{DEP_latencyData};
+        pfs[0].multipartition = false;
+        pfs[0].parameters = new ParameterSet();
+
+        // distribute and execute these fragments providing pfs and id of the
+        // aggregator's output dependency table.
+        results =
+            executeSysProcPlanFragments(pfs, DEP_latencyDataAggregator);
+        return results;
+    }
+
+    private VoltTable[] getHTTPData(long interval, final long now) {
+        VoltTable[] results;
+        SynthesizedPlanFragment pfs[] = new SynthesizedPlanFragment[2];
+        // create a work fragment to gather http encode times from each of the nodes
+        pfs[1] = new SynthesizedPlanFragment();
+        pfs[1].fragmentId = SysProcFragmentId.PF_httpData;
+        pfs[1].outputDepId = DEP_httpData;
+        pfs[1].inputDepIds = new int[]{};
+        pfs[1].multipartition = true;
+        pfs[1].parameters = new ParameterSet();
+        pfs[1].parameters.setParameters((byte)interval, now);
+
+        // create a work fragment to aggregate the results.
+        pfs[0] = new SynthesizedPlanFragment();
+        pfs[0].fragmentId = SysProcFragmentId.PF_httpDataAggregator;
+        pfs[0].outputDepId = DEP_httpDataAggregator;
+        pfs[0].inputDepIds = new int[]{DEP_httpData};
+        pfs[0].multipartition = false;
+        pfs[0].parameters = new ParameterSet();
+
+        // distribute and execute these fragments providing pfs and id of the
+        // aggregator's output dependency table.
+        results =
+            executeSysProcPlanFragments(pfs, DEP_httpDataAggregator);
+        return results;
+    }
+
     private VoltTable[] getProcedureData(long interval, final long now) {
         VoltTable[] results;
         SynthesizedPlanFragment pfs[] = new SynthesizedPlanFragment[2];
@@ -44,6 +44,14 @@ public class SysProcFragmentId
     public static final long PF_ioDataAggregator = 19;
     public static final long PF_liveClientData = 20;
     public static final long PF_liveClientDataAggregator = 21;
+    public static final long PF_plannerData = 22;
+    public static final long PF_plannerDataAggregator = 23;
+    public static final long PF_restoreData = 24;
+    public static final long PF_restoreDataAggregator = 25;
+    public static final long PF_latencyData = 26;
+    public static final long PF_latencyDataAggregator = 27;
+    public static final long PF_httpData = 32;
+    public static final long PF_httpDataAggregator = 33;
 
     // @Shutdown
     public static final long PF_shutdownCommand = 28;
@@ -0,0 +1,126 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.voltdb.StatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Reports how much table data this host has read from snapshot files and
+ * loaded or distributed during the most recent restore. @SnapshotRestore
+ * holds the whole cluster while it runs so the numbers are normally seen
+ * once it has finished, the rate is over the time spent restoring.
+ */
+public class RestoreStats extends StatsSource {
+
+    // guarded by RestoreStats.class
+    private static long m_startTime = 0;
+    private static long m_lastChunkTime = 0;
+    private static long m_files = 0;
+    private static long m_chunks = 0;
+    private static long m_bytes = 0;
+
+    /**
+     * Reset the counters, called when a restore scans this host's files.
+     */
+    public static synchronized void restoreStarted() {
+        m_startTime = System.currentTimeMillis();
+        m_lastChunkTime = m_startTime;
+        m_files = 0;
+        m_chunks = 0;
+        m_bytes = 0;
+    }
+
+    public static synchronized void fileOpened() {
+        m_files++;
+    }
+
+    /**
+     * Count a chunk of table data read from a save file
+     * @param bytes Uncompressed size of the chunk
+     */
+    public static synchronized void chunkRead(int bytes) {
+        m_chunks++;
+        m_bytes += bytes;
+        m_lastChunkTime = System.currentTimeMillis();
+    }
+
+    private long m_counters[] = new long[4];
+
+    public RestoreStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("FILES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("CHUNKS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BYTES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("ELAPSED_MILLIS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MB_PER_SEC", VoltType.FLOAT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final long elapsed = m_counters[3];
+        rowValues[columnNameToIndex.get("FILES")] = m_counters[0];
+        rowValues[columnNameToIndex.get("CHUNKS")] = m_counters[1];
+        rowValues[columnNameToIndex.get("BYTES")] = m_counters[2];
+        rowValues[columnNameToIndex.get("ELAPSED_MILLIS")] = elapsed;
+        rowValues[columnNameToIndex.get("MB_PER_SEC")] =
+            elapsed == 0 ? 0.0 : (m_counters[2] / (1024.0 * 1024.0)) / (elapsed / 1000.0);
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        // a restore is a one off, interval polls report the same totals
+        synchronized (RestoreStats.class) {
+            m_counters = new long[] { m_files, m_chunks, m_bytes, m_lastChunkTime - m_startTime };
+        }
+
+        return new Iterator<Object>() {
+            boolean returnRow = true;
+
+            @Override
+            public boolean hasNext() {
+                return returnRow;
+            }
+
+            @Override
+            public Object next() {
+                if (returnRow) {
+                    returnRow = false;
+                    return RestoreStats.this;
+                } else {
+                    return null;
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
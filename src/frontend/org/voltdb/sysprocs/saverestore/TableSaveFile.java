@@ -382,11 +382,7 @@ public class TableSaveFile
             return m_availableChunks.poll();
         }
 
-        if (m_chunkReader == null) {
-            m_chunkReader = new ChunkReader();
-            m_chunkReaderThread = new Thread(m_chunkReader, "ChunkReader");
-            m_chunkReaderThread.start();
-        }
+        startReadAhead();
 
         Container c = null;
         while (c == null && (m_hasMoreChunks || !m_availableChunks.isEmpty())) {
@@ -408,6 +404,36 @@ public class TableSaveFile
         return c;
     }
 
+    /**
+     * Start reading and decompressing chunks in the background. getNextChunk
+     * does this on first use, calling it early lets several files be read
+     * ahead at the same time.
+     */
+    public synchronized void startReadAhead()
+    {
+        if (m_chunkReader == null && m_hasMoreChunks) {
+            m_chunkReader = new ChunkReader();
+            m_chunkReaderThread = new Thread(m_chunkReader, "ChunkReader");
+            m_chunkReaderThread.start();
+        }
+    }
+
+    /**
+     * Return a chunk that has already been read if there is one, without
+     * waiting for the reader.
+     */
+    public synchronized BBContainer pollNextChunk() throws IOException
+    {
+        if (m_chunkReaderException != null) {
+            throw m_chunkReaderException;
+        }
+        Container c = m_availableChunks.poll();
+        if (c != null) {
+            m_chunkReads.release();
+        }
+        return c;
+    }
+
     public synchronized boolean hasMoreChunks() throws IOException
     {
         if (m_chunkReaderException != null) {
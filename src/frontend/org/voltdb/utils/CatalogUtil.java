@@ -867,6 +867,7 @@ public abstract class CatalogUtil {
         Systemsettings syssettings =
             catDeployment.getSystemsettings().add("systemsettings");
         int maxtemptablesize = 100;
+        int tempspillsize = 0;
         int snapshotpriority = 6;
         if (deployment.getSystemsettings() != null)
         {
@@ -874,6 +875,7 @@ public abstract class CatalogUtil {
             if (temptables != null)
             {
                 maxtemptablesize = temptables.getMaxsize();
+                tempspillsize = temptables.getSpillsize();
             }
             SystemSettingsType.Snapshot snapshot = deployment.getSystemsettings().getSnapshot();
             if (snapshot != null) {
@@ -881,6 +883,7 @@ public abstract class CatalogUtil {
             }
         }
         syssettings.setMaxtemptablesize(maxtemptablesize);
+        syssettings.setTempspillsize(tempspillsize);
         syssettings.setSnapshotpriority(snapshotpriority);
     }
 
@@ -1090,6 +1093,16 @@ public abstract class CatalogUtil {
                            "export_overflow");
         validateDirectory("export overflow", exportOverflowPath, crashOnFailedValidation);
 
+        path_entry = null;
+        if (paths != null)
+        {
+            path_entry = paths.getTempspill();
+        }
+        File tempSpillPath =
+            getFeaturePath(paths, path_entry, voltDbRoot, "temp table spill",
+                           "temp_spill");
+        validateDirectory("temp table spill", tempSpillPath, crashOnFailedValidation);
+
         // only use these directories in the enterprise version
         File commandLogPath = null;
         File commandLogSnapshotPath = null;
@@ -1143,6 +1156,9 @@ public abstract class CatalogUtil {
         //Also set the export overflow directory
         cluster.setExportoverflow(exportOverflowPath.getPath());
 
+        //And the directory temp tables spill to
+        cluster.setTempspill(tempSpillPath.getPath());
+
         //Set the command log paths, also creates the command log entry in the catalog
         final org.voltdb.catalog.CommandLog commandLogConfig = cluster.getLogconfig().add("log");
         commandLogConfig.setInternalsnapshotpath(commandLogSnapshotPath.getPath());
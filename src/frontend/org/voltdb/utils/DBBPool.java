@@ -21,6 +21,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.voltdb.VoltDB;
@@ -440,6 +441,77 @@ public final class DBBPool {
         }
     }
 
+    /**
+     * Container for a buffer that is written to more then one stream, like a message multicast
+     * to several hosts. Each stream takes a reference with its own position and limit and the
+     * underlying container is discarded when the last reference is. The underlying container
+     * can come from any pool, pools synchronize releases so the last reference can be
+     * discarded from a different thread then the one that acquired it.
+     */
+    public static final class RefCountedContainer {
+        private final BBContainer m_container;
+        private final AtomicInteger m_references;
+
+        /**
+         * @param container Container to share
+         * @param references Number of references that will be taken or released
+         */
+        public RefCountedContainer(BBContainer container, int references) {
+            assert(references > 0);
+            m_container = container;
+            m_references = new AtomicInteger(references);
+        }
+
+        /**
+         * Take one of the references. Discarding the returned container releases it.
+         */
+        public BBContainer reference() {
+            return new BBContainer(m_container.b.duplicate(), m_container.address) {
+                private boolean m_discarded = false;
+
+                @Override
+                public void discard() {
+                    if (!m_discarded) {
+                        m_discarded = true;
+                        release();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Release one of the references without taking it
+         */
+        public void release() {
+            final int remaining = m_references.decrementAndGet();
+            assert(remaining >= 0);
+            if (remaining == 0) {
+                m_container.discard();
+            }
+        }
+    }
+
+    /**
+     * Several containers that have to be written back to back, like a small per stream header
+     * in front of a reference to a shared buffer. A write stream queues the parts separately
+     * so they never need to be copied into one buffer. b is the buffer of the first part.
+     */
+    public static final class GatheredContainer extends BBContainer {
+        public final BBContainer m_parts[];
+
+        public GatheredContainer(BBContainer... parts) {
+            super(parts[0].b, parts[0].address);
+            m_parts = parts;
+        }
+
+        @Override
+        public void discard() {
+            for (BBContainer c : m_parts) {
+                c.discard();
+            }
+        }
+    }
+
     /**
      * Number of bytes allocated globally by DBBPools
      */
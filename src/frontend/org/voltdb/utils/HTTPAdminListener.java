@@ -38,10 +38,10 @@ import org.eclipse.jetty.server.AsyncContinuation;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Server;
-import org.eclipse.jetty.server.bio.SocketConnector;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
 import org.voltdb.CatalogContext;
 import org.voltdb.HTTPClientInterface;
 import org.voltdb.VoltDB;
@@ -324,9 +324,9 @@ public class HTTPAdminListener {
 
         // NOW START JETTY SERVER
         try {
-            // The socket channel connector seems to be faster for our use
-            //SelectChannelConnector connector = new SelectChannelConnector();
-            SocketConnector connector = new SocketConnector();
+            // The select channel connector lets suspended JSON requests give
+            // their thread back until the response arrives
+            SelectChannelConnector connector = new SelectChannelConnector();
 
             connector.setPort(port);
             connector.setName("VoltDB-HTTPD");
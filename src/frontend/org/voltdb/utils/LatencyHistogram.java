@@ -0,0 +1,190 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * VoltDB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * VoltDB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb.utils;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Log-linear histogram of latencies in microseconds. Values below 32 get a bucket each,
+ * above that every power of 2 is split into 16 linear buckets so a value is never off
+ * by more then 1/16th. Values are capped at 2^32 - 1 microseconds (a bit over an hour)
+ * which keeps it at 464 buckets no matter how much is recorded.
+ *
+ * A histogram has a single writer. Readers on other threads can copy it at any time without
+ * locking, the count is volatile and written last so a copy sees every bucket increment
+ * that came before the count it read. Use a {@link Recorder} to record from many threads.
+ */
+public class LatencyHistogram {
+    private static final int LINEAR_BUCKETS = 32;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    public static final long MAX_VALUE = (1L << 32) - 1;
+    static final int BUCKETS = bucketIndex(MAX_VALUE) + 1;
+
+    private final long m_buckets[] = new long[BUCKETS];
+    private long m_max = 0;
+    private volatile long m_count = 0;
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int)value;
+        }
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int)(value >>> (magnitude - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (magnitude - 5) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Smallest value that lands in the bucket
+     */
+    static long bucketLowValue(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        final int magnitude = ((index - LINEAR_BUCKETS) >> SUB_BUCKET_BITS) + 5;
+        final long subBucket = ((index - LINEAR_BUCKETS) & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        return subBucket << (magnitude - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Largest value that lands in the bucket
+     */
+    static long bucketHighValue(int index) {
+        if (index == BUCKETS - 1) {
+            return MAX_VALUE;
+        }
+        return bucketLowValue(index + 1) - 1;
+    }
+
+    /**
+     * Record a latency. Negative values (clocks going backwards) count as 0.
+     */
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        } else if (micros > MAX_VALUE) {
+            micros = MAX_VALUE;
+        }
+        m_buckets[bucketIndex(micros)]++;
+        if (micros > m_max) {
+            m_max = micros;
+        }
+        m_count = m_count + 1;
+    }
+
+    public long getCount() {
+        return m_count;
+    }
+
+    public long getMax() {
+        return m_max;
+    }
+
+    /**
+     * Add the contents of another histogram to this one
+     */
+    public void add(LatencyHistogram other) {
+        final long count = other.m_count;
+        for (int ii = 0; ii < BUCKETS; ii++) {
+            m_buckets[ii] += other.m_buckets[ii];
+        }
+        m_max = Math.max(m_max, other.m_max);
+        m_count = m_count + count;
+    }
+
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.add(this);
+        return copy;
+    }
+
+    /**
+     * Return what was recorded after previous was copied from this histogram. The max of the
+     * difference is the top of the highest bucket that changed, limited to the max of this histogram.
+     */
+    public LatencyHistogram since(LatencyHistogram previous) {
+        LatencyHistogram delta = new LatencyHistogram();
+        long count = 0;
+        for (int ii = 0; ii < BUCKETS; ii++) {
+            final long bucket = m_buckets[ii] - previous.m_buckets[ii];
+            if (bucket > 0) {
+                delta.m_buckets[ii] = bucket;
+                delta.m_max = Math.min(bucketHighValue(ii), m_max);
+                count += bucket;
+            }
+        }
+        delta.m_count = count;
+        return delta;
+    }
+
+    /**
+     * Value at or below which the specified percentage of the recorded latencies fall, reported
+     * as the top of the bucket it is in but never more then the max. 0 if nothing was recorded.
+     * @param percentile Between 0 and 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        final long count = m_count;
+        if (count == 0) {
+            return 0;
+        }
+        final long target = Math.max(1, (long)Math.ceil(count * (percentile / 100.0)));
+        long seen = 0;
+        for (int ii = 0; ii < BUCKETS; ii++) {
+            seen += m_buckets[ii];
+            if (seen >= target) {
+                return Math.min(bucketHighValue(ii), m_max);
+            }
+        }
+        return m_max;
+    }
+
+    /**
+     * Records from any number of threads without locking. Each thread records into
+     * a histogram of its own and readers merge them. Memory is one histogram per
+     * recording thread.
+     */
+    public static class Recorder {
+        private final CopyOnWriteArrayList<LatencyHistogram> m_histograms =
+            new CopyOnWriteArrayList<LatencyHistogram>();
+
+        private final ThreadLocal<LatencyHistogram> m_threadHistogram =
+            new ThreadLocal<LatencyHistogram>() {
+            @Override
+            protected LatencyHistogram initialValue() {
+                LatencyHistogram histogram = new LatencyHistogram();
+                m_histograms.add(histogram);
+                return histogram;
+            }
+        };
+
+        public void record(long micros) {
+            m_threadHistogram.get().record(micros);
+        }
+
+        /**
+         * Merge the histograms of every thread that has recorded. Recording carries on while
+         * this runs, the result includes some point in time of each thread's histogram.
+         */
+        public LatencyHistogram snapshot() {
+            LatencyHistogram merged = new LatencyHistogram();
+            for (LatencyHistogram histogram : m_histograms) {
+                merged.add(histogram);
+            }
+            return merged;
+        }
+    }
+}
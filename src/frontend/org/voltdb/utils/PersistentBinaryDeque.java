@@ -24,6 +24,7 @@ import java.io.PrintWriter;
 import java.io.RandomAccessFile;
 import java.io.StringWriter;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayDeque;
 import java.util.Map;
@@ -43,6 +44,11 @@ import org.voltdb.utils.DBBPool.BBContainer;
  * once all objects from the segment have been polled and all the containers returned by poll have been discarded.
  * Push is implemented by creating new segments at the head of the queue containing the objects to be pushed.
  *
+ * Optionally segments can be memory mapped. A mapped segment is preallocated to the full 64 megabytes
+ * when the first object is offered to it, appends are copies into the mapping, and poll returns slices of the mapping instead
+ * of copying each object onto the heap. Once every object in a mapped segment has been discarded the
+ * file is kept as a spare and renamed to become the next write segment so the preallocation is not repeated.
+ *
  */
 public class PersistentBinaryDeque implements BinaryDeque {
 
@@ -55,6 +61,14 @@ public class PersistentBinaryDeque implements BinaryDeque {
     private final String m_nonce;
     private java.util.concurrent.atomic.AtomicLong m_sizeInBytes =
         new java.util.concurrent.atomic.AtomicLong(0);
+    private final boolean m_useMmap;
+
+    //A fully discarded mapped segment waiting to be reused as the next write segment
+    private File m_spareSegment = null;
+    private static final String SPARE_SUFFIX = ".pbd.spare";
+
+    //Source of zeroes for preallocating mapped segments, duplicated by each user
+    private static final ByteBuffer m_zeroes = ByteBuffer.allocateDirect(1024 * 1024);
 
     /**
      * Objects placed in the deque are stored in file segments that are up to 64 megabytes.
@@ -69,6 +83,14 @@ public class PersistentBinaryDeque implements BinaryDeque {
         private final File m_file;
         private RandomAccessFile m_ras;
         private FileChannel m_fc;
+        //Only set for mapped segments, the position is the read or write offset
+        private MappedByteBuffer m_buf;
+
+        //Kept in memory once the segment is opened so it isn't read back from disk on every call
+        private int m_numEntries = 0;
+
+        //Bytes of objects and their length prefixes, the file length says nothing for a mapped segment
+        private long m_size = 0;
 
         //Index of the next object to read, not an offset into the file
         //The offset is maintained by the ByteBuffer. Used to determine if there is another object
@@ -93,32 +115,13 @@ public class PersistentBinaryDeque implements BinaryDeque {
             if (m_fc == null) {
                 open();
             }
-            if (m_fc.size() > 0) {
-                m_bufferForNumEntries.clear();
-                while (m_bufferForNumEntries.hasRemaining()) {
-                    int read = m_fc.read(m_bufferForNumEntries, 0);
-                    if (read == -1) {
-                        throw new EOFException();
-                    }
-                }
-                m_bufferForNumEntries.flip();
-                return m_bufferForNumEntries.getInt();
-            } else {
-                return 0;
-            }
+            return m_numEntries;
         }
 
-        private void initNumEntries() throws IOException {
-            m_bufferForNumEntries.clear();
-            m_bufferForNumEntries.putInt(0).flip();
-            while (m_bufferForNumEntries.hasRemaining()) {
-                m_fc.write(m_bufferForNumEntries, 0);
+        private int readNumEntries() throws IOException {
+            if (m_buf != null) {
+                return m_buf.getInt(0);
             }
-            m_syncedSinceLastEdit = false;
-        }
-
-        private void incrementNumEntries() throws IOException {
-            //First read the existing amount
             m_bufferForNumEntries.clear();
             while (m_bufferForNumEntries.hasRemaining()) {
                 int read = m_fc.read(m_bufferForNumEntries, 0);
@@ -127,15 +130,30 @@ public class PersistentBinaryDeque implements BinaryDeque {
                 }
             }
             m_bufferForNumEntries.flip();
+            return m_bufferForNumEntries.getInt();
+        }
 
-            //Then write the incremented value
-            int numEntries = m_bufferForNumEntries.getInt();
-            m_bufferForNumEntries.flip();
-            m_bufferForNumEntries.putInt(++numEntries).flip();
-            while (m_bufferForNumEntries.hasRemaining()) {
-                m_fc.write(m_bufferForNumEntries, 0);
+        private void writeNumEntries() throws IOException {
+            if (m_buf != null) {
+                m_buf.putInt(0, m_numEntries);
+            } else {
+                m_bufferForNumEntries.clear();
+                m_bufferForNumEntries.putInt(m_numEntries).flip();
+                while (m_bufferForNumEntries.hasRemaining()) {
+                    m_fc.write(m_bufferForNumEntries, 0);
+                }
             }
             m_syncedSinceLastEdit = false;
+        }
+
+        private void initNumEntries() throws IOException {
+            m_numEntries = 0;
+            writeNumEntries();
+        }
+
+        private void incrementNumEntries() throws IOException {
+            m_numEntries++;
+            writeNumEntries();
 
             //For when this buffer is eventually finished and starts being polled
             //Stored on disk and in memory
@@ -148,7 +166,39 @@ public class PersistentBinaryDeque implements BinaryDeque {
          */
         private int remaining() throws IOException {
             //Subtract 4 for the length prefix
-            return (int)(m_chunkSize - m_fc.position()) - 4;
+            return (int)(m_chunkSize - position()) - 4;
+        }
+
+        private long position() throws IOException {
+            return m_buf != null ? m_buf.position() : m_fc.position();
+        }
+
+        /**
+         * Move back to the first object once the segment is finished so that it can be polled
+         */
+        private void resetForRead() throws IOException {
+            if (m_buf != null) {
+                m_buf.position(4);
+            } else {
+                m_fc.position(4);
+            }
+        }
+
+        /**
+         * Fill the file out to the full segment size with real zeroes rather than a sparse extension
+         * so that running out of disk shows up here as an IOException instead of a fault
+         * when a page of the mapping is first written.
+         */
+        private void preallocate() throws IOException {
+            ByteBuffer zeroes = m_zeroes.duplicate();
+            long position = m_fc.size();
+            while (position < m_chunkSize) {
+                zeroes.clear();
+                zeroes.limit((int)Math.min(zeroes.capacity(), m_chunkSize - position));
+                while (zeroes.hasRemaining()) {
+                    position += m_fc.write(zeroes, position);
+                }
+            }
         }
 
         private void open() throws IOException {
@@ -160,29 +210,79 @@ public class PersistentBinaryDeque implements BinaryDeque {
             }
             m_ras = new RandomAccessFile( m_file, "rw");
             m_fc = m_ras.getChannel();
-            m_fc.position(4);
+            //A recycled spare is already full size, anything shorter is only
+            //preallocated and mapped once something is offered to it
+            if (m_useMmap && m_fc.size() >= m_chunkSize) {
+                m_buf = m_fc.map(FileChannel.MapMode.READ_WRITE, 0, m_chunkSize);
+            }
+            resetForRead();
             if (m_fc.size() >= 4) {
-                m_discardsUntilDeletion = getNumEntries();
+                m_numEntries = readNumEntries();
+                m_discardsUntilDeletion = m_numEntries;
             }
         }
 
+        /**
+         * Switch a segment that is being written through the channel over to a mapping,
+         * preallocating the file first. Done on the first offer so that a deque that never
+         * overflows doesn't pay for zero filling a segment.
+         */
+        private void map() throws IOException {
+            final long position = m_fc.position();
+            preallocate();
+            m_buf = m_fc.map(FileChannel.MapMode.READ_WRITE, 0, m_chunkSize);
+            m_buf.position((int)position);
+        }
+
         private void closeAndDelete() throws IOException {
             close();
             m_sizeInBytes.addAndGet(-sizeInBytes());
             m_file.delete();
         }
 
+        /**
+         * Called once every polled object has been discarded. A mapped segment is kept as the spare
+         * if there isn't one already, otherwise the segment is deleted.
+         */
+        private void closeAndRecycle() throws IOException {
+            synchronized (PersistentBinaryDeque.this) {
+                if (m_buf == null || m_spareSegment != null || m_closed) {
+                    closeAndDelete();
+                    return;
+                }
+                //Make the zero count durable before the rename so that a crash
+                //can't bring the old objects back under the name of a new segment
+                m_buf.putInt(0, 0);
+                m_buf.force();
+                close();
+                m_sizeInBytes.addAndGet(-sizeInBytes());
+                File spare = new VoltFile(m_path, m_nonce + SPARE_SUFFIX);
+                if (m_file.renameTo(spare)) {
+                    m_spareSegment = spare;
+                } else {
+                    m_file.delete();
+                }
+            }
+        }
+
         private void close() throws IOException {
             if (m_fc != null) {
                 m_fc.close();
                 m_ras = null;
                 m_fc = null;
+                //The mapping itself stays valid until the last slice handed out by poll is collected
+                m_buf = null;
             }
         }
 
         private void sync() throws IOException {
             if (!m_syncedSinceLastEdit) {
-                m_fc.force(true);
+                if (m_buf != null) {
+                    //msync only writes back the dirty pages of the mapping
+                    m_buf.force();
+                } else {
+                    m_fc.force(true);
+                }
             }
             m_syncedSinceLastEdit = true;
         }
@@ -206,6 +306,10 @@ public class PersistentBinaryDeque implements BinaryDeque {
                 m_currentPollSegmentIndex++;
             }
 
+            if (m_buf != null) {
+                return wrapPolled(pollMapped());
+            }
+
             //Get the length prefix and then read the object
             m_bufferForNumEntries.clear();
             while (m_bufferForNumEntries.hasRemaining()) {
@@ -229,6 +333,24 @@ public class PersistentBinaryDeque implements BinaryDeque {
             }
             resultBuffer.flip();
 
+            return wrapPolled(resultBuffer);
+        }
+
+        /**
+         * Return a slice of the mapping for the next object without copying it
+         */
+        private ByteBuffer pollMapped() throws IOException {
+            int length = m_buf.getInt();
+            if (length < 1 || length > m_buf.remaining()) {
+                throw new IOException("Read an invalid length");
+            }
+            ByteBuffer view = m_buf.duplicate();
+            view.limit(view.position() + length);
+            m_buf.position(m_buf.position() + length);
+            return view.slice();
+        }
+
+        private BBContainer wrapPolled(ByteBuffer resultBuffer) {
             return new BBContainer( resultBuffer, 0L) {
                 private boolean discarded = false;
 
@@ -241,7 +363,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
                         if (m_discardsUntilDeletion == 0) {
                             m_finishedSegments.remove(m_index);
                             try {
-                                closeAndDelete();
+                                closeAndRecycle();
                             } catch (IOException e) {
                                 exportLog.error(e);
                             }
@@ -275,18 +397,30 @@ public class PersistentBinaryDeque implements BinaryDeque {
                 throw new IOException(m_file + " has insufficient space");
             }
 
-            m_bufferForNumEntries.clear();
-            m_bufferForNumEntries.putInt(length).flip();
-            while (m_bufferForNumEntries.hasRemaining()) {
-                m_fc.write(m_bufferForNumEntries);
+            if (m_useMmap && m_buf == null) {
+                map();
+            }
+
+            if (m_buf != null) {
+                m_buf.putInt(length);
+            } else {
+                m_bufferForNumEntries.clear();
+                m_bufferForNumEntries.putInt(length).flip();
+                while (m_bufferForNumEntries.hasRemaining()) {
+                    m_fc.write(m_bufferForNumEntries);
+                }
             }
 
             int objectIndex = 0;
             for (BBContainer obj : objects ) {
                 boolean success = false;
                 try {
-                    while (obj.b.hasRemaining()) {
-                        m_fc.write(obj.b);
+                    if (m_buf != null) {
+                        m_buf.put(obj.b);
+                    } else {
+                        while (obj.b.hasRemaining()) {
+                            m_fc.write(obj.b);
+                        }
                     }
                     obj.discard();
                     success = true;
@@ -299,6 +433,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
                     }
                 }
             }
+            m_size += 4 + length;
             m_sizeInBytes.addAndGet(4 + length);
             incrementNumEntries();
         }
@@ -306,7 +441,37 @@ public class PersistentBinaryDeque implements BinaryDeque {
         //A white lie, don't include the object count prefix
         //so that the size is 0 when there is no user data
         private long sizeInBytes() {
-            return m_file.length() - 4;
+            return m_size;
+        }
+
+        /**
+         * Walk the length prefixes of an existing file to find how many bytes of objects it holds.
+         * A torn object at the end of the file is not counted.
+         */
+        private void scanSizeInBytes() throws IOException {
+            RandomAccessFile ras = new RandomAccessFile(m_file, "r");
+            try {
+                m_size = 0;
+                if (ras.length() < 4) {
+                    return;
+                }
+                final int numEntries = ras.readInt();
+                long position = 4;
+                for (int ii = 0; ii < numEntries; ii++) {
+                    if (position + 4 > ras.length()) {
+                        break;
+                    }
+                    ras.seek(position);
+                    final int length = ras.readInt();
+                    if (length < 1 || position + 4 + length > ras.length()) {
+                        break;
+                    }
+                    position += 4 + length;
+                }
+                m_size = position - 4;
+            } finally {
+                ras.close();
+            }
         }
     }
 
@@ -330,8 +495,20 @@ public class PersistentBinaryDeque implements BinaryDeque {
      * @throws IOException
      */
     public PersistentBinaryDeque(final String nonce, final File path) throws IOException {
+        this(nonce, path, false);
+    }
+
+    /**
+     * Create a persistent binary deque with the specified nonce and storage back at the specified path.
+     * @param nonce
+     * @param path
+     * @param useMmap Memory map segments instead of reading and writing them through a FileChannel
+     * @throws IOException
+     */
+    public PersistentBinaryDeque(final String nonce, final File path, boolean useMmap) throws IOException {
         m_path = path;
         m_nonce = nonce;
+        m_useMmap = useMmap;
 
         if (!path.exists() || !path.canRead() || !path.canWrite() || !path.canExecute() || !path.isDirectory()) {
             throw new IOException(path + " is not usable ( !exists || !readable " +
@@ -340,26 +517,33 @@ public class PersistentBinaryDeque implements BinaryDeque {
 
         //Parse the files in the directory by name to find files
         //that are part of this deque
-        path.listFiles(new FileFilter() {
+        File segmentFiles[] = path.listFiles(new FileFilter() {
 
             @Override
             public boolean accept(File pathname) {
                 String name = pathname.getName();
-                if (name.startsWith(nonce) && name.endsWith(".pbd")) {
-                    if (pathname.length() == 4) {
-                        //Doesn't have any objects, just the object count
-                        pathname.delete();
-                        return false;
-                    }
-                    Long index = Long.valueOf(name.substring( nonce.length() + 1, name.length() - 4));
-                    DequeSegment ds = new DequeSegment( index, pathname);
-                    m_finishedSegments.put( index, ds);
-                    m_sizeInBytes.addAndGet(ds.sizeInBytes());
+                if (name.equals(nonce + SPARE_SUFFIX)) {
+                    //Left behind by the last instance, it holds nothing
+                    pathname.delete();
+                    return false;
                 }
-                return false;
+                return name.startsWith(nonce) && name.endsWith(".pbd");
             }
 
         });
+        for (File pathname : segmentFiles) {
+            String name = pathname.getName();
+            Long index = Long.valueOf(name.substring( nonce.length() + 1, name.length() - 4));
+            DequeSegment ds = new DequeSegment( index, pathname);
+            ds.scanSizeInBytes();
+            if (ds.sizeInBytes() == 0) {
+                //Doesn't have any objects, just the object count (and maybe preallocated space)
+                pathname.delete();
+                continue;
+            }
+            m_finishedSegments.put( index, ds);
+            m_sizeInBytes.addAndGet(ds.sizeInBytes());
+        }
 
         Long lastKey = null;
         for (Long key : m_finishedSegments.keySet()) {
@@ -381,12 +565,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
             writeSegmentIndex = m_finishedSegments.lastKey() + 1;
         } catch (NoSuchElementException e) {}
 
-        m_writeSegment =
-            new DequeSegment(
-                    writeSegmentIndex,
-                    new VoltFile(m_path, m_nonce + "." + writeSegmentIndex + ".pbd"));
-        m_writeSegment.open();
-        m_writeSegment.initNumEntries();
+        m_writeSegment = createSegment(writeSegmentIndex);
     }
 
     @Override
@@ -457,20 +636,15 @@ public class PersistentBinaryDeque implements BinaryDeque {
 
         while (segments.peek() != null) {
             ArrayDeque<BBContainer[]> currentSegmentContents = segments.poll();
-            DequeSegment writeSegment =
-                new DequeSegment(
-                        nextIndex,
-                        new VoltFile(m_path, m_nonce + "." + nextIndex + ".pbd"));
+            DequeSegment writeSegment = createSegment(nextIndex);
             m_currentPollSegmentIndex = nextIndex;
-            writeSegment.open();
-            writeSegment.initNumEntries();
             nextIndex--;
 
             while (currentSegmentContents.peek() != null) {
                 writeSegment.offer(currentSegmentContents.pollFirst());
             }
 
-            writeSegment.m_fc.position(4);
+            writeSegment.resetForRead();
             m_finishedSegments.put(writeSegment.m_index, writeSegment);
         }
     }
@@ -479,15 +653,33 @@ public class PersistentBinaryDeque implements BinaryDeque {
         if (m_writeSegment == null) {
             throw new IOException("Closed");
         }
-        m_writeSegment.m_fc.position(4);
+        m_writeSegment.resetForRead();
         m_finishedSegments.put(m_writeSegment.m_index, m_writeSegment);
-        Long nextIndex = m_writeSegment.m_index + 1;
-        m_writeSegment =
-            new DequeSegment(
-                    nextIndex,
-                    new VoltFile(m_path, m_nonce + "." + nextIndex + ".pbd"));
-        m_writeSegment.open();
-        m_writeSegment.initNumEntries();
+        m_writeSegment = createSegment(m_writeSegment.m_index + 1);
+    }
+
+    /**
+     * Open a new empty segment with the specified index, reusing the spare mapped segment if there is one
+     */
+    private DequeSegment createSegment(Long index) throws IOException {
+        File file = new VoltFile(m_path, m_nonce + "." + index + ".pbd");
+        if (m_spareSegment != null) {
+            if (!m_spareSegment.renameTo(file)) {
+                m_spareSegment.delete();
+            }
+            m_spareSegment = null;
+        }
+        DequeSegment segment = new DequeSegment(index, file);
+        segment.open();
+        segment.initNumEntries();
+        return segment;
+    }
+
+    private void deleteSpareSegment() {
+        if (m_spareSegment != null) {
+            m_spareSegment.delete();
+            m_spareSegment = null;
+        }
     }
 
     @Override
@@ -534,6 +726,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
         for (DequeSegment segment : m_finishedSegments.values()) {
             segment.close();
         }
+        deleteSpareSegment();
         m_closed = true;
     }
 
@@ -566,6 +759,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
         for (DequeSegment ds : m_finishedSegments.values()) {
             ds.closeAndDelete();
         }
+        deleteSpareSegment();
     }
 
     @Override
@@ -624,7 +818,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
                         //Nothing to do, leave the object alone and move to the next
                         continue;
                     } else {
-                        long startSize = fc.size();
+                        long newSize = segment.sizeInBytes();
                         //If the returned bytebuffer is empty, remove the object and truncate the file
                         if (retval.remaining() == 0) {
                             if (ii == 0) {
@@ -644,6 +838,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
                                     fc.write(numObjectsBuffer);
                                 }
                                 fc.truncate(readBuffer.position() - (nextObjectLength + 4));
+                                newSize = readBuffer.position() - (nextObjectLength + 4) - 4;
                             }
 
                         } else {
@@ -659,12 +854,14 @@ public class PersistentBinaryDeque implements BinaryDeque {
                             fc.position(0);
                             fc.truncate(0);
 
+                            newSize = readBuffer.limit() - 4;
                             while (readBuffer.hasRemaining()) {
                                 fc.write(readBuffer);
                             }
                         }
-                        long endSize = fc.size();
-                        m_sizeInBytes.addAndGet(endSize - startSize);
+                        //Sizes come from the contents, a mapped segment's file length is always the full 64 megabytes
+                        m_sizeInBytes.addAndGet(newSize - segment.sizeInBytes());
+                        segment.m_size = newSize;
                         //Set last segment and break the loop over this segment
                         if (lastSegmentIndex == null) {
                             lastSegmentIndex = segmentIndex;
@@ -717,12 +914,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
             writeSegmentIndex = m_finishedSegments.lastKey() + 1;
         } catch (NoSuchElementException e) {}
 
-        m_writeSegment =
-            new DequeSegment(
-                    writeSegmentIndex,
-                    new VoltFile(m_path, m_nonce + "." + writeSegmentIndex + ".pbd"));
-        m_writeSegment.open();
-        m_writeSegment.initNumEntries();
+        m_writeSegment = createSegment(writeSegmentIndex);
         if (m_finishedSegments.isEmpty()) {
             assert(m_writeSegment.m_index.equals(m_currentPollSegmentIndex));
         }
@@ -17,15 +17,17 @@
 
 package org.voltdb.utils;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
 import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 
 import org.voltdb.jni.ExecutionEngine;
 import org.voltdb.logging.VoltLogger;
@@ -43,6 +45,11 @@ public class SystemStatsCollector {
 
     private enum GetRSSMode { MACOSX_NATIVE, PROCFS, PS }
 
+    /**
+     * Kinds of threads whose cpu time is tracked separately when procfs is available
+     */
+    public enum ThreadType { NETWORK, SITE }
+
     static long starttime = System.currentTimeMillis();
     static final long javamaxheapmem = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
     static long memorysize = 256;
@@ -50,6 +57,8 @@ public class SystemStatsCollector {
     static boolean initialized = false;
     static GetRSSMode mode = GetRSSMode.PS;
     static Thread thread = null;
+    static ProcFSScraper procfs = null;
+    final static ArrayList<RegisteredThread> registeredThreads = new ArrayList<RegisteredThread>();
 
     final static ArrayDeque<Datum> historyL = new ArrayDeque<Datum>(); // every hour
     final static ArrayDeque<Datum> historyM = new ArrayDeque<Datum>(); // every minute
@@ -158,6 +167,178 @@ public class SystemStatsCollector {
         }
     }
 
+    /**
+     * Reads memory and cpu stats for this process straight out of Linux procfs.
+     * The files are kept open and re-read from the start into a reused buffer
+     * and parsed in place, so taking a sample neither forks nor allocates.
+     */
+    static class ProcFSScraper {
+        static final long PAGE_SIZE = 4 * 1024;
+        // USER_HZ, the unit procfs reports cpu times in
+        static final long CLOCK_TICKS_PER_SECOND = 100;
+
+        private static final byte VMHWM[] = "VmHWM:".getBytes();
+        private static final byte VMSWAP[] = "VmSwap:".getBytes();
+
+        private final byte m_buf[] = new byte[4096];
+        private final RandomAccessFile m_stat;
+        private final RandomAccessFile m_statm;
+        private final RandomAccessFile m_status;
+
+        // results of the last call to sample()
+        long rss;
+        long hwm;
+        long swap;
+        long cpuMillis;
+
+        /**
+         * @param dir The procfs directory of the process, normally /proc/self
+         */
+        ProcFSScraper(File dir) throws IOException {
+            m_stat = new RandomAccessFile(new File(dir, "stat"), "r");
+            try {
+                m_statm = new RandomAccessFile(new File(dir, "statm"), "r");
+                try {
+                    m_status = new RandomAccessFile(new File(dir, "status"), "r");
+                } catch (IOException e) {
+                    m_statm.close();
+                    throw e;
+                }
+            } catch (IOException e) {
+                m_stat.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Re-read all of the files. Fields that are missing (no swap on older kernels) are -1.
+         * @return false if procfs couldn't be read
+         */
+        boolean sample() {
+            try {
+                cpuMillis = readCPUMillis(m_stat);
+                int length = read(m_statm);
+                rss = parseField(m_buf, 0, length, 1) * PAGE_SIZE;
+                length = read(m_status);
+                hwm = parseStatusValue(m_buf, length, VMHWM);
+                swap = parseStatusValue(m_buf, length, VMSWAP);
+                // status reports kB
+                hwm = hwm < 0 ? -1 : hwm * 1024;
+                swap = swap < 0 ? -1 : swap * 1024;
+                return cpuMillis >= 0 && rss > 0;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Parse user plus system cpu time out of a process or task stat file
+         * @return The cpu time in milliseconds or -1 if the file couldn't be parsed
+         */
+        long readCPUMillis(RandomAccessFile stat) throws IOException {
+            final int length = read(stat);
+            // the command name can contain spaces, fields are counted from the last ')'
+            int start = length - 1;
+            while (start >= 0 && m_buf[start] != ')') {
+                start--;
+            }
+            if (start < 0) {
+                return -1;
+            }
+            // utime and stime are fields 14 and 15, the state after the ')' is field 3
+            final long utime = parseField(m_buf, start + 1, length, 14 - 3);
+            final long stime = parseField(m_buf, start + 1, length, 15 - 3);
+            if (utime < 0 || stime < 0) {
+                return -1;
+            }
+            return (utime + stime) * 1000 / CLOCK_TICKS_PER_SECOND;
+        }
+
+        private int read(RandomAccessFile file) throws IOException {
+            file.seek(0);
+            int length = 0;
+            int read;
+            while (length < m_buf.length &&
+                   (read = file.read(m_buf, length, m_buf.length - length)) > 0) {
+                length += read;
+            }
+            return length;
+        }
+
+        void close() {
+            try {
+                m_stat.close();
+                m_statm.close();
+                m_status.close();
+            } catch (IOException e) {}
+        }
+
+        /**
+         * Parse the whitespace separated numeric field at index (counting from 0) that
+         * follows offset. Returns -1 if there aren't that many fields or it isn't a number.
+         */
+        static long parseField(byte buf[], int offset, int length, int index) {
+            int ii = offset;
+            for (int field = 0; field <= index; field++) {
+                while (ii < length && Character.isWhitespace(buf[ii])) {
+                    ii++;
+                }
+                if (field == index) {
+                    break;
+                }
+                while (ii < length && !Character.isWhitespace(buf[ii])) {
+                    ii++;
+                }
+            }
+            return parseLong(buf, ii, length);
+        }
+
+        /**
+         * Find the line in a status file that starts with key and parse the number after it
+         */
+        static long parseStatusValue(byte buf[], int length, byte key[]) {
+            int lineStart = 0;
+            while (lineStart < length) {
+                boolean matches = lineStart + key.length <= length;
+                for (int ii = 0; matches && ii < key.length; ii++) {
+                    matches = buf[lineStart + ii] == key[ii];
+                }
+                if (matches) {
+                    return parseField(buf, lineStart + key.length, length, 0);
+                }
+                while (lineStart < length && buf[lineStart] != '\n') {
+                    lineStart++;
+                }
+                lineStart++;
+            }
+            return -1;
+        }
+
+        private static long parseLong(byte buf[], int offset, int length) {
+            long value = 0;
+            int ii = offset;
+            while (ii < length && buf[ii] >= '0' && buf[ii] <= '9') {
+                value = value * 10 + (buf[ii] - '0');
+                ii++;
+            }
+            return ii == offset ? -1 : value;
+        }
+    }
+
+    /**
+     * A network or site thread that registered itself so its cpu time can be read
+     * out of /proc/self/task/[tid]/stat.
+     */
+    static class RegisteredThread {
+        final ThreadType type;
+        final long threadId;
+
+        RegisteredThread(ThreadType type, long threadId) {
+            this.type = type;
+            this.threadId = threadId;
+        }
+    }
+
     /**
      * Datum class is one sample of memory usage.
      */
@@ -168,6 +349,13 @@ public class SystemStatsCollector {
         public final long javausedheapmem;
         public final long javatotalsysmem;
         public final long javausedsysmem;
+        // -1 for any of these that couldn't be collected
+        public final long rsspeak;
+        public final long swap;
+        // cumulative cpu time in milliseconds
+        public final long cpumillis;
+        public final long networkcpumillis;
+        public final long sitecpumillis;
 
         /**
          * Constructor accepts some system values and generates some Java values.
@@ -175,6 +363,23 @@ public class SystemStatsCollector {
          * @param rss Resident set size.
          */
         Datum(long rss) {
+            this(rss, -1, -1, -1, -1, -1);
+        }
+
+        /**
+         * @param rss Resident set size.
+         * @param rsspeak Highest resident set size so far.
+         * @param swap Size swapped out.
+         * @param cpumillis Cpu time used by the process.
+         * @param networkcpumillis Cpu time used by the registered network threads.
+         * @param sitecpumillis Cpu time used by the registered site threads.
+         */
+        Datum(long rss, long rsspeak, long swap, long cpumillis, long networkcpumillis, long sitecpumillis) {
+            this.rsspeak = rsspeak;
+            this.swap = swap;
+            this.cpumillis = cpumillis;
+            this.networkcpumillis = networkcpumillis;
+            this.sitecpumillis = sitecpumillis;
             MemoryMXBean mmxb = ManagementFactory.getMemoryMXBean();
             MemoryUsage muheap = mmxb.getHeapMemoryUsage();
             MemoryUsage musys = mmxb.getNonHeapMemoryUsage();
@@ -197,6 +402,15 @@ public class SystemStatsCollector {
             sb.append(String.format("  SYS: %dM RSS, %dM Total\n",
                     rss / 1024 /1024,
                     memorysize));
+            if (rsspeak >= 0) {
+                sb.append(String.format("  SYS: %dM peak RSS, %dM swapped\n",
+                        rsspeak / 1024 / 1024,
+                        Math.max(swap, 0) / 1024 / 1024));
+            }
+            if (cpumillis >= 0) {
+                sb.append(String.format("  CPU: %dms (network %dms, sites %dms)\n",
+                        cpumillis, networkcpumillis, sitecpumillis));
+            }
             sb.append(String.format("  JAVA: HEAP(%d/%d/%dM) SYS(%d/%dM)\n",
                     javausedheapmem / 1024 / 1024,
                     javatotalheapmem / 1024 / 1024,
@@ -280,6 +494,21 @@ public class SystemStatsCollector {
         return historyS.getLast();
     }
 
+    /**
+     * Called by a network or site thread on itself so that its cpu time is
+     * tracked separately. Does nothing where the JVM can't measure the cpu
+     * time of a thread.
+     */
+    public static void registerThread(ThreadType type) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadCpuTimeSupported() || !threads.isThreadCpuTimeEnabled()) {
+            return;
+        }
+        synchronized (SystemStatsCollector.class) {
+            registeredThreads.add(new RegisteredThread(type, Thread.currentThread().getId()));
+        }
+    }
+
     /**
      * Get the process id, the total memory size and determine the
      * best way to get the RSS on an ongoing basis.
@@ -292,28 +521,29 @@ public class SystemStatsCollector {
         pid = Integer.valueOf(pidString);
         initialized = true;
 
-        // get the RSS and other stats from scraping "ps" from the command line
-        PSScraper.PSData psdata = PSScraper.getPSData(pid);
-        assert(psdata.rss > 0);
-
         // figure out how much memory this thing has
         memorysize = pp.ramInMegabytes;
         assert(memorysize > 0);
 
-        // now try to figure out the best way to get the rss size
-        long rss = -1;
+        // try procfs, it has everything and is cheap to read
+        try {
+            procfs = new ProcFSScraper(new File("/proc/self"));
+            if (procfs.sample()) {
+                mode = GetRSSMode.PROCFS;
+                return;
+            }
+            procfs.close();
+        } catch (IOException e) {}
+        procfs = null;
 
         // try the mac method
+        long rss = -1;
         try {
             rss = ExecutionEngine.nativeGetRSS();
         }
-        catch (Exception e) {}
+        catch (Throwable t) {}
         if (rss > 0) mode = GetRSSMode.MACOSX_NATIVE;
 
-        // try procfs
-        rss = getRSSFromProcFS();
-        if (rss > 0) mode = GetRSSMode.PROCFS;
-
         // notify users if stats collection might be slow
         if (mode == GetRSSMode.PS) {
             VoltLogger logger = new VoltLogger("HOST");
@@ -324,25 +554,27 @@ public class SystemStatsCollector {
     }
 
     /**
-     * Get the RSS using the procfs. If procfs is not
-     * around, this will return -1;
+     * Sum the cpu time of the registered threads of a type. Threads that have
+     * exited are dropped.
      */
-    private static long getRSSFromProcFS() {
-        try {
-            File statFile = new File(String.format("/proc/%d/stat", pid));
-            FileInputStream fis = new FileInputStream(statFile);
-            try {
-                BufferedReader r = new BufferedReader(new InputStreamReader(fis));
-                String stats = r.readLine();
-                String[] parts = stats.split(" ");
-                return Long.parseLong(parts[23]) * 4 * 1024;
-            } finally {
-                fis.close();
+    private static long getThreadCPUMillis(ThreadType type) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long total = 0;
+        Iterator<RegisteredThread> iter = registeredThreads.iterator();
+        while (iter.hasNext()) {
+            RegisteredThread thread = iter.next();
+            if (thread.type != type) {
+                continue;
             }
+            // -1 once the thread has exited
+            final long cpuNanos = threads.getThreadCpuTime(thread.threadId);
+            if (cpuNanos < 0) {
+                iter.remove();
+                continue;
+            }
+            total += cpuNanos / 1000000;
         }
-        catch (Exception e) {
-            return -1;
-        }
+        return total;
     }
 
     /**
@@ -359,11 +591,23 @@ public class SystemStatsCollector {
             rss = ExecutionEngine.nativeGetRSS();
             break;
         case PROCFS:
-            rss = getRSSFromProcFS();
-            break;
+            if (!procfs.sample()) {
+                return null;
+            }
+            return new Datum(procfs.rss,
+                             procfs.hwm,
+                             procfs.swap,
+                             procfs.cpuMillis,
+                             getThreadCPUMillis(ThreadType.NETWORK),
+                             getThreadCPUMillis(ThreadType.SITE));
         case PS:
-            rss = PSScraper.getPSData(pid).rss;
-            break;
+            PSScraper.PSData psdata = PSScraper.getPSData(pid);
+            if (psdata == null) {
+                return null;
+            }
+            return new Datum(psdata.rss, -1, -1, psdata.time,
+                             getThreadCPUMillis(ThreadType.NETWORK),
+                             getThreadCPUMillis(ThreadType.SITE));
         }
 
         // create a new Datum which adds java stats
@@ -495,12 +739,19 @@ public class SystemStatsCollector {
                 per, correct, repeat);
 
         // test linux procfs performance
+        ProcFSScraper scraper = null;
+        try {
+            scraper = new ProcFSScraper(new File("/proc/self"));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
         start = System.currentTimeMillis();
         correct = 0;
         for (int i = 0; i < repeat; i++) {
-            long rss = getRSSFromProcFS();
-            if (rss > 0) correct++;
+            if (scraper.sample() && scraper.rss > 0) correct++;
         }
+        scraper.close();
         duration = System.currentTimeMillis() - start;
         per = duration / (double) repeat;
         System.out.printf("%.2f ms per procfs read / %d / %d correct\n",
@@ -0,0 +1,280 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+#include "common/SQLException.h"
+#include "common/TupleSchema.h"
+#include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
+#include "common/tabletuple.h"
+#include "common/valuevector.h"
+#include "executors/aggregateexecutor.hpp"
+#include "executors/orderbyexecutor.h"
+#include "json_spirit/json_spirit.h"
+#include "logging/LogManager.h"
+#include "logging/StdoutLogProxy.h"
+#include "plannodes/abstractplannode.h"
+#include "plannodes/orderbynode.h"
+#include "storage/tablefactory.h"
+#include "storage/tableiterator.h"
+#include "storage/temptable.h"
+#include "storage/TempTableLimits.h"
+#include "storage/TempTableSpill.h"
+
+#include "boost/scoped_ptr.hpp"
+
+#include <cstdio>
+#include <map>
+#include <string>
+#include <vector>
+
+using namespace voltdb;
+using namespace std;
+
+static const int64_t TUPLE_COUNT = 400000;
+static const int64_t MEMORY_LIMIT = 4 * 1024 * 1024;
+
+static string columnRef(int index)
+{
+    char buffer[256];
+    snprintf(buffer, sizeof(buffer),
+             "{\"TYPE\":\"VALUE_TUPLE\",\"VALUE_TYPE\":\"BIGINT\",\"VALUE_SIZE\":8,"
+             "\"COLUMN_IDX\":%d,\"TABLE_NAME\":\"T\",\"COLUMN_NAME\":\"C%d\"}",
+             index, index);
+    return buffer;
+}
+
+static string outputColumn(int index, const string &expression)
+{
+    char buffer[512];
+    snprintf(buffer, sizeof(buffer),
+             "{\"TABLE_NAME\":\"T\",\"COLUMN_NAME\":\"C%d\",\"COLUMN_ALIAS\":\"C%d\","
+             "\"TYPE\":\"BIGINT\",\"SIZE\":8,\"EXPRESSION\":%s}",
+             index, index, expression.c_str());
+    return buffer;
+}
+
+/**
+ * Runs ORDER BY and hash aggregate executors over an input table that
+ * has spilled past its temp table limit.
+ */
+class SpilledExecutorTest : public Test
+{
+public:
+    SpilledExecutorTest()
+      : m_logManager(new StdoutLogProxy()), m_spill("/tmp", 512 * 1024 * 1024),
+        m_params(0)
+    {
+        m_limits.setMemoryLimit(MEMORY_LIMIT);
+        m_limits.setSpill(&m_spill);
+
+        vector<ValueType> types(2, VALUE_TYPE_BIGINT);
+        vector<int32_t> sizes(2, 8);
+        vector<bool> nulls(2, true);
+        TupleSchema *schema = TupleSchema::createTupleSchema(types, sizes, nulls, true);
+        string names[2] = { "C0", "C1" };
+        m_input = TableFactory::getTempTable(0, "T", schema, names, &m_limits);
+        m_child.reset(new OrderByPlanNode(1));
+        m_child->setOutputTable(m_input);
+    }
+
+    AbstractPlanNode* planNode(const string &json)
+    {
+        json_spirit::Value value;
+        EXPECT_TRUE(json_spirit::read(json, value));
+        json_spirit::Object object = value.get_obj();
+        AbstractPlanNode *node = AbstractPlanNode::fromJSONObject(object);
+        node->addChild(m_child.get());
+        return node;
+    }
+
+    /** ORDER BY C0, with an inline LIMIT if limit isn't negative */
+    AbstractPlanNode* orderByNode(int limit, int offset)
+    {
+        string schema = "[" + outputColumn(0, columnRef(0)) + "," +
+            outputColumn(1, columnRef(1)) + "]";
+        string inlineNodes = "[]";
+        if (limit >= 0)
+        {
+            char buffer[64];
+            snprintf(buffer, sizeof(buffer), "\"LIMIT\":%d,\"OFFSET\":%d", limit, offset);
+            inlineNodes = "[{\"PLAN_NODE_TYPE\":\"LIMIT\",\"ID\":3,\"INLINE_NODES\":[],"
+                "\"PARENT_IDS\":[],\"CHILDREN_IDS\":[],\"OUTPUT_SCHEMA\":" + schema +
+                "," + buffer + "}]";
+        }
+        AbstractPlanNode *node =
+            planNode("{\"PLAN_NODE_TYPE\":\"ORDERBY\",\"ID\":2,\"INLINE_NODES\":" +
+                     inlineNodes + ",\"PARENT_IDS\":[],\"CHILDREN_IDS\":[1],"
+                     "\"OUTPUT_SCHEMA\":" + schema + ",\"SORT_COLUMNS\":"
+                     "[{\"SORT_DIRECTION\":\"ASC\",\"SORT_EXPRESSION\":" +
+                     columnRef(0) + "}]}");
+        node->setExecutor(new OrderByExecutor(NULL, node));
+        EXPECT_TRUE(node->getExecutor()->init(NULL, &m_limits));
+        return node;
+    }
+
+    /** SELECT C1, SUM(C0), MAX(C0) ... GROUP BY C1 */
+    AbstractPlanNode* hashAggregateNode()
+    {
+        string schema = "[" + outputColumn(0, columnRef(1)) + "," +
+            outputColumn(1, columnRef(0)) + "," + outputColumn(2, columnRef(0)) + "]";
+        AbstractPlanNode *node =
+            planNode("{\"PLAN_NODE_TYPE\":\"HASHAGGREGATE\",\"ID\":2,\"INLINE_NODES\":[],"
+                     "\"PARENT_IDS\":[],\"CHILDREN_IDS\":[1],\"OUTPUT_SCHEMA\":" + schema +
+                     ",\"AGGREGATE_COLUMNS\":["
+                     "{\"AGGREGATE_TYPE\":\"AGGREGATE_SUM\",\"AGGREGATE_DISTINCT\":0,"
+                     "\"AGGREGATE_OUTPUT_COLUMN\":1,\"AGGREGATE_EXPRESSION\":" +
+                     columnRef(0) + "},"
+                     "{\"AGGREGATE_TYPE\":\"AGGREGATE_MAX\",\"AGGREGATE_DISTINCT\":0,"
+                     "\"AGGREGATE_OUTPUT_COLUMN\":2,\"AGGREGATE_EXPRESSION\":" +
+                     columnRef(0) + "}],"
+                     "\"GROUPBY_EXPRESSIONS\":[" + columnRef(1) + "]}");
+        node->setExecutor(new AggregateExecutor<PLAN_NODE_TYPE_HASHAGGREGATE>(NULL, node));
+        EXPECT_TRUE(node->getExecutor()->init(NULL, &m_limits));
+        return node;
+    }
+
+    /**
+     * Fill the input with the keys 0 to TUPLE_COUNT - 1 in a scrambled
+     * order, each in one of groups groups.
+     */
+    void fillInput(int64_t groups)
+    {
+        TableTuple &tuple = m_input->tempTuple();
+        for (int64_t ii = 0; ii < TUPLE_COUNT; ii++)
+        {
+            int64_t key = (ii * 7919) % TUPLE_COUNT;
+            int64_t group = (key * 31) % groups;
+            tuple.setNValue(0, ValueFactory::getBigIntValue(key));
+            tuple.setNValue(1, ValueFactory::getBigIntValue(group));
+            m_input->insertTuple(tuple);
+            pair<int64_t, int64_t> &expected = m_expected[group];
+            expected.first += key;
+            expected.second = max(expected.second, key);
+        }
+        ASSERT_TRUE(m_input->spilledBlockCount() > 0);
+    }
+
+    void checkSorted(Table *output, int64_t first, int64_t count)
+    {
+        EXPECT_EQ(count, output->activeTupleCount());
+        TableIterator iterator = output->iterator();
+        TableTuple tuple(output->schema());
+        int64_t expected = first;
+        while (iterator.next(tuple))
+        {
+            EXPECT_EQ(expected, ValuePeeker::peekAsBigInt(tuple.getNValue(0)));
+            expected++;
+        }
+        EXPECT_EQ(first + count, expected);
+    }
+
+    LogManager m_logManager;
+    TempTableSpill m_spill;
+    TempTableLimits m_limits;
+    NValueArray m_params;
+    TempTable *m_input;
+    boost::scoped_ptr<OrderByPlanNode> m_child;
+    map<int64_t, pair<int64_t, int64_t> > m_expected;
+};
+
+TEST_F(SpilledExecutorTest, OrderBy)
+{
+    boost::scoped_ptr<AbstractPlanNode> node(orderByNode(-1, 0));
+    // let the sorted output spill as well, as it would under a send node
+    dynamic_cast<TempTable*>(node->getOutputTable())->setSpillable(true);
+    fillInput(1000);
+
+    ASSERT_TRUE(node->getExecutor()->execute(m_params));
+    checkSorted(node->getOutputTable(), 0, TUPLE_COUNT);
+    EXPECT_TRUE(m_limits.getAllocated() <= MEMORY_LIMIT);
+}
+
+TEST_F(SpilledExecutorTest, OrderByLimit)
+{
+    boost::scoped_ptr<AbstractPlanNode> node(orderByNode(10, 0));
+    fillInput(1000);
+
+    ASSERT_TRUE(node->getExecutor()->execute(m_params));
+    checkSorted(node->getOutputTable(), 0, 10);
+}
+
+TEST_F(SpilledExecutorTest, OrderByLimitOffset)
+{
+    boost::scoped_ptr<AbstractPlanNode> node(orderByNode(10, 5));
+    fillInput(1000);
+
+    ASSERT_TRUE(node->getExecutor()->execute(m_params));
+    checkSorted(node->getOutputTable(), 5, 10);
+
+    // an offset past the end returns nothing
+    boost::scoped_ptr<AbstractPlanNode> past(orderByNode(10, TUPLE_COUNT));
+    ASSERT_TRUE(past->getExecutor()->execute(m_params));
+    EXPECT_EQ(0, past->getOutputTable()->activeTupleCount());
+}
+
+TEST_F(SpilledExecutorTest, HashAggregate)
+{
+    boost::scoped_ptr<AbstractPlanNode> node(hashAggregateNode());
+    fillInput(1000);
+
+    ASSERT_TRUE(node->getExecutor()->execute(m_params));
+    Table *output = node->getOutputTable();
+    EXPECT_EQ(1000, output->activeTupleCount());
+    TableIterator iterator = output->iterator();
+    TableTuple tuple(output->schema());
+    while (iterator.next(tuple))
+    {
+        int64_t group = ValuePeeker::peekAsBigInt(tuple.getNValue(0));
+        ASSERT_TRUE(m_expected.find(group) != m_expected.end());
+        EXPECT_EQ(m_expected[group].first, ValuePeeker::peekAsBigInt(tuple.getNValue(1)));
+        EXPECT_EQ(m_expected[group].second, ValuePeeker::peekAsBigInt(tuple.getNValue(2)));
+    }
+
+    // the partitions and the workspace have all been given back
+    m_input->deleteAllTuples(false);
+    dynamic_cast<TempTable*>(output)->deleteAllTuples(false);
+    EXPECT_TRUE(m_limits.getAllocated() <= 2 * 131072);
+}
+
+TEST_F(SpilledExecutorTest, HashAggregateOneLargeGroup)
+{
+    // a group that can't be split fails like any other temp table overflow
+    boost::scoped_ptr<AbstractPlanNode> node(hashAggregateNode());
+    fillInput(1);
+
+    bool threw = false;
+    try
+    {
+        node->getExecutor()->execute(m_params);
+    }
+    catch (SQLException& sqle)
+    {
+        threw = true;
+    }
+    EXPECT_TRUE(threw);
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
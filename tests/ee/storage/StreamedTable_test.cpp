@@ -81,7 +81,7 @@ class MockTopend : public Topend {
 
     }
 
-    void fallbackToEEAllocatedBuffer(char *buffer, size_t length) {}
+    char *nextResultBuffer(size_t minimumCapacity, size_t *capacity) { return NULL; }
     queue<int32_t> partitionIds;
     queue<std::string> signatures;
     vector<shared_ptr<StreamBlock> > blocks;
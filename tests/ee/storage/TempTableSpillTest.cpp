@@ -0,0 +1,279 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "storage/TempTableSpill.h"
+
+#include "harness.h"
+#include "common/SQLException.h"
+#include "common/TupleSchema.h"
+#include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
+#include "common/tabletuple.h"
+#include "storage/tablefactory.h"
+#include "storage/tableiterator.h"
+#include "storage/temptable.h"
+#include "storage/TempTableLimits.h"
+
+#include "boost/scoped_ptr.hpp"
+
+#include <cstring>
+#include <vector>
+
+using namespace voltdb;
+using namespace std;
+
+class TempTableSpillTest : public Test
+{
+public:
+    TempTableSpillTest() { }
+};
+
+TEST_F(TempTableSpillTest, WriteAndReadBack)
+{
+    TempTableSpill dut("/tmp", 1024 * 10);
+    char first[1024];
+    char second[1024];
+    memset(first, 'a', sizeof(first));
+    memset(second, 'b', sizeof(second));
+
+    int64_t firstOffset = dut.write(first, sizeof(first));
+    int64_t secondOffset = dut.write(second, sizeof(second));
+    EXPECT_EQ(0, firstOffset);
+    EXPECT_EQ(1024, secondOffset);
+    EXPECT_EQ(1024 * 2, dut.getBytesSpilled());
+
+    char buffer[1024];
+    dut.read(secondOffset, buffer, sizeof(buffer));
+    EXPECT_EQ(0, memcmp(second, buffer, sizeof(buffer)));
+    dut.read(firstOffset, buffer, sizeof(buffer));
+    EXPECT_EQ(0, memcmp(first, buffer, sizeof(buffer)));
+}
+
+TEST_F(TempTableSpillTest, ReleaseReusesSpace)
+{
+    TempTableSpill dut("/tmp", 1024 * 2);
+    char data[1024];
+    memset(data, 'c', sizeof(data));
+
+    dut.write(data, sizeof(data));
+    dut.write(data, sizeof(data));
+    // only reused once every spilled block was released
+    dut.release(sizeof(data));
+    bool threw = false;
+    try
+    {
+        dut.write(data, sizeof(data));
+    }
+    catch (SQLException& sqle)
+    {
+        threw = true;
+    }
+    EXPECT_TRUE(threw);
+
+    dut.release(sizeof(data));
+    EXPECT_EQ(0, dut.write(data, sizeof(data)));
+    // the total keeps counting
+    EXPECT_EQ(1024 * 3, dut.getBytesSpilled());
+}
+
+TEST_F(TempTableSpillTest, CheckSizeException)
+{
+    TempTableSpill dut("/tmp", 1024);
+    char data[1024 + 1];
+    memset(data, 'd', sizeof(data));
+    bool threw = false;
+    try
+    {
+        dut.write(data, sizeof(data));
+    }
+    catch (SQLException& sqle)
+    {
+        threw = true;
+    }
+    EXPECT_TRUE(threw);
+    EXPECT_EQ(0, dut.getBytesSpilled());
+}
+
+TEST_F(TempTableSpillTest, CheckDirectoryException)
+{
+    TempTableSpill dut("/nonexistent/temp_spill", 1024);
+    char data[16];
+    memset(data, 'e', sizeof(data));
+    bool threw = false;
+    try
+    {
+        dut.write(data, sizeof(data));
+    }
+    catch (SQLException& sqle)
+    {
+        threw = true;
+    }
+    EXPECT_TRUE(threw);
+}
+
+// Temp tables are allocated in blocks of this size
+static const int BLOCK_SIZE = 131072;
+static const int64_t TUPLE_COUNT = 100000;
+
+class TempTableSpillingTest : public Test
+{
+public:
+    TempTableSpillingTest() : m_spill("/tmp", 64 * 1024 * 1024)
+    {
+        m_limits.setMemoryLimit(BLOCK_SIZE * 4);
+        m_limits.setSpill(&m_spill);
+    }
+
+    TempTable* createTable(bool spillable)
+    {
+        std::vector<ValueType> types(2, VALUE_TYPE_BIGINT);
+        std::vector<int32_t> sizes(2, 8);
+        std::vector<bool> nulls(2, true);
+        TupleSchema *schema = TupleSchema::createTupleSchema(types, sizes, nulls, true);
+        std::string names[2] = { "A", "B" };
+        TempTable *table = TableFactory::getTempTable(0, "T", schema, names, &m_limits);
+        table->setSpillable(spillable);
+        return table;
+    }
+
+    void fill(TempTable *table, int64_t count)
+    {
+        TableTuple &tuple = table->tempTuple();
+        for (int64_t ii = 0; ii < count; ii++)
+        {
+            tuple.setNValue(0, ValueFactory::getBigIntValue(ii));
+            tuple.setNValue(1, ValueFactory::getBigIntValue(ii * 2));
+            table->insertTuple(tuple);
+        }
+    }
+
+    // Read count tuples and check that they are the ones fill inserted
+    void checkTuples(TableIterator &iterator, TableTuple &tuple, int64_t first, int64_t count)
+    {
+        for (int64_t ii = first; ii < first + count; ii++)
+        {
+            ASSERT_TRUE(iterator.next(tuple));
+            EXPECT_EQ(ii, ValuePeeker::peekAsBigInt(tuple.getNValue(0)));
+            EXPECT_EQ(ii * 2, ValuePeeker::peekAsBigInt(tuple.getNValue(1)));
+        }
+    }
+
+    TempTableSpill m_spill;
+    TempTableLimits m_limits;
+};
+
+TEST_F(TempTableSpillingTest, SpillsPastLimit)
+{
+    boost::scoped_ptr<TempTable> table(createTable(true));
+    ASSERT_TRUE(table->isSpillable());
+    fill(table.get(), TUPLE_COUNT);
+
+    EXPECT_EQ(TUPLE_COUNT, table->activeTupleCount());
+    EXPECT_TRUE(table->spilledBlockCount() > 0);
+    EXPECT_TRUE(m_spill.getBytesSpilled() > 0);
+    // only the block appended to is left in memory
+    EXPECT_EQ(BLOCK_SIZE, m_limits.getAllocated());
+}
+
+TEST_F(TempTableSpillingTest, NotSpillableThrows)
+{
+    boost::scoped_ptr<TempTable> table(createTable(false));
+    bool threw = false;
+    try
+    {
+        fill(table.get(), TUPLE_COUNT);
+    }
+    catch (SQLException& sqle)
+    {
+        threw = true;
+    }
+    EXPECT_TRUE(threw);
+    EXPECT_EQ(0, table->spilledBlockCount());
+    EXPECT_EQ(0, m_spill.getBytesSpilled());
+}
+
+TEST_F(TempTableSpillingTest, IteratesSpilledTuples)
+{
+    boost::scoped_ptr<TempTable> table(createTable(true));
+    fill(table.get(), TUPLE_COUNT);
+    TableTuple tuple(table->schema());
+
+    TableIterator &iterator = table->iterator();
+    checkTuples(iterator, tuple, 0, TUPLE_COUNT);
+    EXPECT_FALSE(iterator.next(tuple));
+
+    // each reader reads the spilled blocks back into a buffer of its own
+    boost::scoped_ptr<TableIterator> first(table->makeIterator());
+    boost::scoped_ptr<TableIterator> second(table->makeIterator());
+    TableTuple secondTuple(table->schema());
+    const int64_t step = 1000;
+    for (int64_t ii = 0; ii < TUPLE_COUNT; ii += step)
+    {
+        checkTuples(*first, tuple, ii, step);
+        checkTuples(*second, secondTuple, ii, step);
+    }
+    EXPECT_FALSE(first->next(tuple));
+    EXPECT_FALSE(second->next(secondTuple));
+}
+
+TEST_F(TempTableSpillingTest, DeleteAllTuplesReleasesSpill)
+{
+    boost::scoped_ptr<TempTable> table(createTable(true));
+    fill(table.get(), TUPLE_COUNT);
+    ASSERT_TRUE(table->spilledBlockCount() > 0);
+
+    table->deleteAllTuples(false);
+    EXPECT_EQ(0, table->activeTupleCount());
+    EXPECT_EQ(0, table->spilledBlockCount());
+    EXPECT_EQ(BLOCK_SIZE, m_limits.getAllocated());
+
+    // nothing is live anymore so the file was truncated
+    char data[16];
+    memset(data, 'f', sizeof(data));
+    EXPECT_EQ(0, m_spill.write(data, sizeof(data)));
+    m_spill.release(sizeof(data));
+
+    // and it spills again when refilled
+    fill(table.get(), TUPLE_COUNT);
+    EXPECT_TRUE(table->spilledBlockCount() > 0);
+    TableTuple tuple(table->schema());
+    checkTuples(table->iterator(), tuple, 0, TUPLE_COUNT);
+}
+
+TEST_F(TempTableSpillingTest, DestructorReturnsBlocks)
+{
+    TempTable *table = createTable(true);
+    fill(table, TUPLE_COUNT);
+    ASSERT_TRUE(table->spilledBlockCount() > 0);
+    EXPECT_TRUE(m_limits.getAllocated() > 0);
+
+    delete table;
+    EXPECT_EQ(0, m_limits.getAllocated());
+    char data[16];
+    memset(data, 'g', sizeof(data));
+    EXPECT_EQ(0, m_spill.write(data, sizeof(data)));
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
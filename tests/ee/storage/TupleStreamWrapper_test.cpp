@@ -89,7 +89,7 @@ public:
         receivedExportBuffer = true;
     }
 
-    void fallbackToEEAllocatedBuffer(char *buffer, size_t length) {}
+    char *nextResultBuffer(size_t minimumCapacity, size_t *capacity) { return NULL; }
     queue<int32_t> partitionIds;
     queue<std::string> signatures;
     deque<shared_ptr<StreamBlock> > blocks;
@@ -0,0 +1,106 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.messaging.InitiateTaskMessage;
+import org.voltdb.utils.VoltFile;
+
+/**
+ * Group commit throughput and commit latency of FileCommandLog for a few
+ * fsync intervals. A fixed number of clients each wait for their last
+ * transaction to be durable before logging the next one.
+ *
+ * Usage: FileCommandLogBenchmark [directory] [clients] [txns per client]
+ */
+public class FileCommandLogBenchmark {
+
+    static final int INTERVALS[] = new int[] { 1, 5, 10 };
+
+    static InitiateTaskMessage makeTask(long txnId) {
+        StoredProcedureInvocation spi = new StoredProcedureInvocation();
+        spi.setProcName("Insert");
+        spi.setParams(txnId, "value " + txnId);
+        InitiateTaskMessage task = new InitiateTaskMessage(0, 0, txnId, false, true, spi, txnId - 1);
+        task.receivedFromSiteId = 0;
+        return task;
+    }
+
+    public static void main(String args[]) throws Exception {
+        final File dir = new File(args.length > 0 ? args[0] :
+                                  "/tmp/" + System.getProperty("user.name") + "/command_log_bench");
+        final int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        final int txnsPerClient = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        System.out.printf("clients=%d txns/client=%d in %s%n", clients, txnsPerClient, dir);
+        for (final int interval : INTERVALS) {
+            VoltFile.recursivelyDelete(dir);
+            final FileCommandLog log = new FileCommandLog();
+            log.init(dir, 0, interval, 0, 64 * 1024 * 1024, Long.MAX_VALUE, true, null);
+
+            final AtomicLong nextTxnId = new AtomicLong(1);
+            final long latencies[] = new long[clients * txnsPerClient];
+            Thread threads[] = new Thread[clients];
+            for (int ii = 0; ii < clients; ii++) {
+                final int client = ii;
+                threads[ii] = new Thread() {
+                    @Override
+                    public void run() {
+                        for (int jj = 0; jj < txnsPerClient; jj++) {
+                            InitiateTaskMessage task = makeTask(nextTxnId.getAndIncrement());
+                            AtomicBoolean durable = task.getDurabilityFlag();
+                            final long start = System.nanoTime();
+                            log.log(task);
+                            while (!durable.get()) {
+                                Thread.yield();
+                            }
+                            latencies[client * txnsPerClient + jj] = System.nanoTime() - start;
+                        }
+                    }
+                };
+            }
+            final long start = System.nanoTime();
+            for (Thread t : threads) {
+                t.start();
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            final long elapsed = System.nanoTime() - start;
+            log.shutdown();
+
+            Arrays.sort(latencies);
+            System.out.printf("fsync interval %2dms: %8.0f txns/sec, median latency %.2fms, p99 %.2fms%n",
+                              interval,
+                              latencies.length / (elapsed / 1000000000.0),
+                              latencies[latencies.length / 2] / 1000000.0,
+                              latencies[(int)(latencies.length * 0.99)] / 1000000.0);
+        }
+        VoltFile.recursivelyDelete(dir);
+    }
+}
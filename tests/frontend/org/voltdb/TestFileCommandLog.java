@@ -0,0 +1,206 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.TestCase;
+
+import org.voltdb.messaging.InitiateTaskMessage;
+import org.voltdb.utils.VoltFile;
+
+public class TestFileCommandLog extends TestCase {
+    private final static String TEST_DIR = "/tmp/" + System.getProperty("user.name") + "/command_log";
+
+    private File m_dir;
+    private FileCommandLog m_log;
+
+    @Override
+    public void setUp() throws Exception {
+        m_dir = new File(TEST_DIR);
+        if (m_dir.exists()) {
+            VoltFile.recursivelyDelete(m_dir);
+        }
+        m_log = new FileCommandLog();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        m_log.shutdown();
+        VoltFile.recursivelyDelete(m_dir);
+    }
+
+    private static InitiateTaskMessage makeTask(long txnId, int siteId) {
+        StoredProcedureInvocation spi = new StoredProcedureInvocation();
+        spi.setProcName("Insert");
+        spi.setParams(txnId, "value " + txnId);
+        InitiateTaskMessage task = new InitiateTaskMessage(0, siteId, txnId, false, true, spi, txnId - 1);
+        task.receivedFromSiteId = siteId;
+        return task;
+    }
+
+    private static class Collector implements CommandLogSegment.RecordHandler {
+        final ArrayList<CommandLogSegment.Task> tasks = new ArrayList<CommandLogSegment.Task>();
+        final ArrayList<List<Long>> faults = new ArrayList<List<Long>>();
+
+        @Override
+        public void task(CommandLogSegment.Task task) {
+            tasks.add(task);
+        }
+
+        @Override
+        public void fault(long faultSequenceNumber, List<Integer> failedSites, List<Long> faultedTxns) {
+            faults.add(faultedTxns);
+        }
+    }
+
+    private Collector readAll() throws Exception {
+        Collector collector = new Collector();
+        for (CommandLogSegment segment : CommandLogSegment.scan(m_dir)) {
+            segment.read(collector);
+        }
+        return collector;
+    }
+
+    private static void awaitDurable(List<AtomicBoolean> flags) throws InterruptedException {
+        for (AtomicBoolean flag : flags) {
+            while (!flag.get()) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    public void testLogAndRead() throws Exception {
+        m_log.init(m_dir, 0, 5, 0, 1024 * 1024, Long.MAX_VALUE, true, null);
+        ArrayList<AtomicBoolean> flags = new ArrayList<AtomicBoolean>();
+        for (long txnId = 1; txnId <= 1000; txnId++) {
+            InitiateTaskMessage task = makeTask(txnId, (int)txnId % 4);
+            m_log.log(task);
+            flags.add(task.getDurabilityFlag());
+        }
+        awaitDurable(flags);
+        m_log.shutdown();
+
+        Collector collector = readAll();
+        assertEquals(1000, collector.tasks.size());
+        long expected = 1;
+        for (CommandLogSegment.Task task : collector.tasks) {
+            assertEquals(expected, task.txnId);
+            assertEquals((int)expected % 4, task.siteId);
+            assertTrue(task.isSinglePartition);
+            StoredProcedureInvocation spi = task.getInvocation();
+            assertEquals("Insert", spi.getProcName());
+            assertEquals(expected, ((Number)spi.getParams().toArray()[0]).longValue());
+            expected++;
+        }
+    }
+
+    public void testFaultIsWrittenBeforeRelease() throws Exception {
+        m_log.init(m_dir, 0, 1000, 0, 1024 * 1024, Long.MAX_VALUE, false, null);
+        m_log.log(makeTask(1, 0));
+        HashSet<Integer> failedSites = new HashSet<Integer>();
+        failedSites.add(3);
+        HashSet<Long> faultedTxns = new HashSet<Long>();
+        faultedTxns.add(1L);
+        Semaphore written = m_log.logFault(failedSites, faultedTxns);
+        // The fault flushes the window without waiting for the 1 second interval
+        written.acquire();
+        assertEquals(1, m_log.getFaultSequenceNumber());
+
+        Collector collector = readAll();
+        assertEquals(1, collector.tasks.size());
+        assertEquals(1, collector.faults.size());
+        assertEquals(Long.valueOf(1), collector.faults.get(0).get(0));
+    }
+
+    public void testSegmentRoll() throws Exception {
+        m_log.init(m_dir, 0, 1, 0, 64 * 1024, Long.MAX_VALUE, true, null);
+        ArrayList<AtomicBoolean> flags = new ArrayList<AtomicBoolean>();
+        for (long txnId = 1; txnId <= 5000; txnId++) {
+            InitiateTaskMessage task = makeTask(txnId, 0);
+            m_log.log(task);
+            flags.add(task.getDurabilityFlag());
+        }
+        awaitDurable(flags);
+        m_log.shutdown();
+
+        List<CommandLogSegment> segments = CommandLogSegment.scan(m_dir);
+        assertTrue(segments.size() > 1);
+        assertEquals(segments.size() - 1, m_log.getClosedSegmentCount());
+        for (int ii = 0; ii < segments.size(); ii++) {
+            assertEquals(ii, segments.get(ii).m_segmentId);
+        }
+        Collector collector = readAll();
+        assertEquals(5000, collector.tasks.size());
+        for (int ii = 0; ii < 5000; ii++) {
+            assertEquals(ii + 1, collector.tasks.get(ii).txnId);
+        }
+
+        // A truncation snapshot covering everything removes the closed segments
+        m_log.snapshotCompleted("nonce", 5001, true);
+        assertEquals(0, m_log.getClosedSegmentCount());
+        assertEquals(1, CommandLogSegment.scan(m_dir).size());
+    }
+
+    public void testTornBatchIsIgnored() throws Exception {
+        m_log.init(m_dir, 0, 1, 0, 1024 * 1024, Long.MAX_VALUE, true, null);
+        InitiateTaskMessage first = makeTask(1, 0);
+        m_log.log(first);
+        awaitDurable(Collections.singletonList(first.getDurabilityFlag()));
+        InitiateTaskMessage second = makeTask(2, 0);
+        m_log.log(second);
+        awaitDurable(Collections.singletonList(second.getDurabilityFlag()));
+        m_log.shutdown();
+
+        // Flip the last byte of the second batch as if the write was torn
+        Collector collector = readAll();
+        assertEquals(2, collector.tasks.size());
+        File segment = CommandLogSegment.scan(m_dir).get(0).m_file;
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        try {
+            long end = CommandLogSegment.SEGMENT_HEADER_SIZE;
+            for (int ii = 0; ii < 2; ii++) {
+                raf.seek(end + 4);
+                end += CommandLogSegment.BATCH_HEADER_SIZE + raf.readInt();
+            }
+            raf.seek(end - 1);
+            byte b = raf.readByte();
+            raf.seek(end - 1);
+            raf.writeByte(~b);
+        } finally {
+            raf.close();
+        }
+
+        collector = readAll();
+        assertEquals(1, collector.tasks.size());
+        assertEquals(1, collector.tasks.get(0).txnId);
+    }
+}
@@ -52,11 +52,15 @@ package org.voltdb;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import junit.framework.TestCase;
 
 import org.json_voltpatches.JSONException;
+import org.voltdb.messaging.FastDeserializer;
 import org.voltdb.messaging.FastSerializableTestUtil;
+import org.voltdb.messaging.FastSerializer;
 import org.voltdb.types.TimestampType;
 
 public class TestParameterSet extends TestCase {
@@ -123,4 +127,39 @@ public class TestParameterSet extends TestCase {
 
         assertEquals("0a1A0A", p2.m_params[6]);
     }
+
+    public void testGetParameterAtIndexSkipsInPlace() throws IOException {
+        VoltTable table = new VoltTable(new VoltTable.ColumnInfo("foo", VoltType.BIGINT));
+        table.addRow(5L);
+        params.setParameters(new Object[]{ null,
+                                           (byte)3,
+                                           (short)300,
+                                           123456,
+                                           12345678901L,
+                                           1.5,
+                                           "aabbcc",
+                                           new byte[] { 10, 26, 10 },
+                                           new TimestampType(12345),
+                                           new BigDecimal("123.450000000000"),
+                                           new int[] { 1, 2, 3 },
+                                           new String[] { "a", null, "ccc" },
+                                           table,
+                                           "last" });
+        ByteBuffer buf = ByteBuffer.wrap(FastSerializer.serialize(params));
+        Object expected[] = FastDeserializer.deserialize(buf.array(), ParameterSet.class).toArray();
+
+        for (int i = 0; i < expected.length; i++) {
+            Object value = ParameterSet.getParameterAtIndex(i, buf);
+            assertEquals(0, buf.position());
+            if (expected[i] instanceof int[]) {
+                assertTrue(Arrays.equals((int[])expected[i], (int[])value));
+            } else if (expected[i] instanceof Object[]) {
+                assertTrue(Arrays.equals((Object[])expected[i], (Object[])value));
+            } else if (expected[i] instanceof byte[]) {
+                assertTrue(Arrays.equals((byte[])expected[i], (byte[])value));
+            } else {
+                assertEquals(expected[i], value);
+            }
+        }
+    }
 }
@@ -24,14 +24,20 @@
 package org.voltdb;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.TestCase;
 
+import org.json_voltpatches.JSONArray;
 import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.json_voltpatches.JSONWriter;
 import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.client.ClientResponse;
 import org.voltdb.messaging.FastSerializableTestUtil;
 import org.voltdb.messaging.FastSerializer;
 import org.voltdb.types.TimestampType;
@@ -771,4 +777,157 @@ public class TestVoltTable extends TestCase {
         assertTrue(t1.equals(t2));
     }
 
+    public void testAdvanceToRowOutOfOrder() {
+        t = new VoltTable(new ColumnInfo("name", VoltType.STRING),
+                          new ColumnInfo("id", VoltType.BIGINT));
+        for (int i = 0; i < 100; i++) {
+            t.addRow(i % 3 == 0 ? null : "row " + i, i);
+        }
+        for (int i : new int[] { 50, 10, 99, 0, 11, 12, 98 }) {
+            assertTrue(t.advanceToRow(i));
+            assertEquals(i, t.getActiveRowIndex());
+            assertEquals(i, t.getLong(1));
+            assertEquals(i, t.fetchRow(i).getLong(1));
+        }
+        assertFalse(t.advanceToRow(100));
+        assertFalse(t.advanceToRow(-1));
+        assertEquals(-1, t.getActiveRowIndex());
+        assertTrue(t.advanceRow());
+        assertEquals(0, t.getLong(1));
+
+        // rows added after the index was built are found too
+        t.addRow("row 100", 100);
+        assertTrue(t.advanceToRow(100));
+        assertEquals("row 100", t.getString(0));
+        assertEquals(100, t.fetchRow(100).getLong(1));
+
+        // and clearing the rows forgets them
+        t.clearRowData();
+        t.addRow("first", 7);
+        assertEquals(7, t.fetchRow(0).getLong(1));
+        assertEquals("first", t.fetchRow(0).getString(0));
+    }
+
+    public void testConcurrentFetchRow() throws Exception {
+        t = new VoltTable(new ColumnInfo("name", VoltType.STRING),
+                          new ColumnInfo("id", VoltType.BIGINT));
+        final int rows = 10000;
+        for (int i = 0; i < rows; i++) {
+            t.addRow(i % 3 == 0 ? null : "row " + i, i);
+        }
+
+        // readers sharing the table each build up the row index from a different end
+        final AtomicInteger errors = new AtomicInteger();
+        Thread readers[] = new Thread[4];
+        for (int r = 0; r < readers.length; r++) {
+            final int reader = r;
+            readers[r] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < rows; i++) {
+                        final int row = reader % 2 == 0 ? i : rows - 1 - i;
+                        if (t.fetchRow(row).getLong(1) != row) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            };
+        }
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(0, errors.get());
+    }
+
+    public void testColumnAsPrimitives() {
+        t = new VoltTable(new ColumnInfo("tiny", VoltType.TINYINT),
+                          new ColumnInfo("dbl", VoltType.FLOAT),
+                          new ColumnInfo("name", VoltType.STRING),
+                          new ColumnInfo("ts", VoltType.TIMESTAMP),
+                          new ColumnInfo("big", VoltType.BIGINT));
+        for (int i = 0; i < 10; i++) {
+            t.addRow(i, i * 1.5, i % 2 == 0 ? null : "name" + i, new TimestampType(i * 1000), i * 10000000000L);
+        }
+        t.addRow(null, null, null, null, null);
+        t.advanceToRow(3);
+
+        long tiny[] = t.getColumnAsLongs(0);
+        double dbl[] = t.getColumnAsDoubles(1);
+        long ts[] = t.getColumnAsLongs(3);
+        long big[] = t.getColumnAsLongs(4);
+        assertEquals(11, big.length);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, tiny[i]);
+            assertEquals(i * 1.5, dbl[i]);
+            assertEquals(i * 1000, ts[i]);
+            assertEquals(i * 10000000000L, big[i]);
+        }
+        assertEquals(VoltType.NULL_TINYINT, tiny[10]);
+        assertEquals(VoltType.NULL_FLOAT, dbl[10]);
+        assertEquals(VoltType.NULL_BIGINT, big[10]);
+        // the active row doesn't move
+        assertEquals(3, t.getActiveRowIndex());
+        assertEquals(3, t.getLong(0));
+
+        try {
+            t.getColumnAsLongs(2);
+            fail();
+        } catch (IllegalArgumentException e) {}
+        try {
+            t.getColumnAsDoubles(0);
+            fail();
+        } catch (IllegalArgumentException e) {}
+    }
+
+    public void testStringAsByteBuffer() throws Exception {
+        t = new VoltTable(new ColumnInfo("name", VoltType.STRING));
+        t.addRow("h\u00e9llo");
+        t.addRow((Object)null);
+        t.addRow("");
+
+        t.advanceRow();
+        ByteBuffer buf = t.getStringAsByteBuffer(0);
+        assertFalse(t.wasNull());
+        assertTrue(buf.isReadOnly());
+        byte bytes[] = new byte[buf.remaining()];
+        buf.get(bytes);
+        assertTrue(Arrays.equals(t.getStringAsBytes(0), bytes));
+        assertEquals("h\u00e9llo", new String(bytes, "UTF-8"));
+
+        t.advanceRow();
+        assertNull(t.getStringAsByteBuffer(0));
+        assertTrue(t.wasNull());
+
+        t.advanceRow();
+        assertEquals(0, t.getStringAsByteBuffer(0).remaining());
+        assertFalse(t.wasNull());
+    }
+
+    public void testJSONWriterMatchesString() throws Exception {
+        VoltTable t1 = new VoltTable(new ColumnInfo("id", VoltType.BIGINT),
+                                     new ColumnInfo("name", VoltType.STRING),
+                                     new ColumnInfo("value", VoltType.FLOAT));
+        for (int i = 0; i < 100; i++) {
+            t1.addRow(i, i % 10 == 0 ? null : "name \"" + i + "\"", i / 3.0);
+        }
+        t1.addRow(null, null, null);
+        t1.advanceToRow(5);
+        ClientResponseImpl response =
+            new ClientResponseImpl(ClientResponse.SUCCESS, new VoltTable[] { t1, LONG_FIVE }, "ok");
+
+        StringWriter out = new StringWriter();
+        response.writeJSON(new JSONWriter(out));
+        assertEquals(response.toJSONString(), out.toString());
+        // the active row doesn't move
+        assertEquals(5, t1.getActiveRowIndex());
+
+        JSONObject json = new JSONObject(out.toString());
+        JSONArray results = json.getJSONArray("results");
+        assertEquals(2, results.length());
+        assertTrue(t1.hasSameContents(VoltTable.fromJSONObject(results.getJSONObject(0))));
+        assertTrue(LONG_FIVE.hasSameContents(VoltTable.fromJSONObject(results.getJSONObject(1))));
+    }
 }
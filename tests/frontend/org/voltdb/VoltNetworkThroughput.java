@@ -0,0 +1,189 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.network.Connection;
+import org.voltdb.network.QueueMonitor;
+import org.voltdb.network.VoltNetwork;
+import org.voltdb.network.VoltProtocolHandler;
+
+/**
+ * Companion to {@link TCPThroughput} that measures what VoltNetwork itself
+ * can push rather than a bare selector. Runs an echo server on a VoltNetwork
+ * and drives it from many client connections, each with a window of
+ * outstanding requests, once per requested selector loop configuration.
+ *
+ * Arguments: loops=0,1,2,4 (0 is the single selector plus thread pool
+ * default), connections=N, window=N, size=N (bytes per message), seconds=N.
+ */
+public class VoltNetworkThroughput {
+
+    private static final int port = 29700;
+    private static int connections = 200;
+    private static int window = 10;
+    private static int messageSize = 64;
+    private static int seconds = 10;
+
+    private static class EchoHandler extends VoltProtocolHandler {
+        @Override
+        public int getMaxRead() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public int getExpectedOutgoingMessageSize() {
+            return messageSize + 4;
+        }
+
+        @Override
+        public void handleMessage(ByteBuffer message, Connection c) {
+            ByteBuffer response = ByteBuffer.allocate(message.remaining() + 4);
+            response.putInt(message.remaining());
+            response.put(message);
+            response.flip();
+            c.writeStream().enqueue(response);
+        }
+
+        @Override
+        public Runnable onBackPressure() {
+            return null;
+        }
+
+        @Override
+        public Runnable offBackPressure() {
+            return null;
+        }
+
+        @Override
+        public QueueMonitor writestreamMonitor() {
+            return null;
+        }
+    }
+
+    private static long runOnce(int loops) throws Exception {
+        final VoltNetwork network = loops > 0 ? new VoltNetwork(loops, null) : new VoltNetwork();
+        network.start();
+
+        final ServerSocketChannel server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress(port));
+        final Thread acceptor = new Thread("Acceptor") {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        SocketChannel client = server.accept();
+                        client.socket().setTcpNoDelay(true);
+                        network.registerChannel(client, new EchoHandler());
+                    }
+                } catch (IOException e) {
+                    // server socket closed, we are done
+                }
+            }
+        };
+        acceptor.start();
+
+        final AtomicLong responses = new AtomicLong(0);
+        final long end = System.currentTimeMillis() + (seconds * 1000);
+        final ArrayList<Thread> clients = new ArrayList<Thread>();
+        for (int ii = 0; ii < connections; ii++) {
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Socket s = new Socket("localhost", port);
+                        s.setTcpNoDelay(true);
+                        DataOutputStream out = new DataOutputStream(s.getOutputStream());
+                        DataInputStream in = new DataInputStream(s.getInputStream());
+                        byte payload[] = new byte[messageSize];
+                        byte response[] = new byte[messageSize];
+                        for (int jj = 0; jj < window; jj++) {
+                            out.writeInt(messageSize);
+                            out.write(payload);
+                        }
+                        out.flush();
+                        while (System.currentTimeMillis() < end) {
+                            in.readInt();
+                            in.readFully(response);
+                            responses.incrementAndGet();
+                            out.writeInt(messageSize);
+                            out.write(payload);
+                            out.flush();
+                        }
+                        s.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            };
+            t.start();
+            clients.add(t);
+        }
+        for (Thread t : clients) {
+            t.join();
+        }
+        server.close();
+        acceptor.join();
+        network.shutdown();
+        return responses.get();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String loopConfigs[] = new String[] { "0", "1", "2", "4" };
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            if (parts.length == 1 || parts[1].startsWith("${")) {
+                continue;
+            } else if (parts[0].equals("loops")) {
+                loopConfigs = parts[1].split(",");
+            } else if (parts[0].equals("connections")) {
+                connections = Integer.parseInt(parts[1]);
+            } else if (parts[0].equals("window")) {
+                window = Integer.parseInt(parts[1]);
+            } else if (parts[0].equals("size")) {
+                messageSize = Integer.parseInt(parts[1]);
+            } else if (parts[0].equals("seconds")) {
+                seconds = Integer.parseInt(parts[1]);
+            }
+        }
+
+        for (String loopConfig : loopConfigs) {
+            int loops = Integer.parseInt(loopConfig);
+            long responses = runOnce(loops);
+            System.out.printf("loops=%d connections=%d window=%d size=%d: %.0f messages/sec\n",
+                    loops, connections, window, messageSize, responses / (double)seconds);
+        }
+    }
+}
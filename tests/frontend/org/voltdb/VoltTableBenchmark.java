@@ -0,0 +1,96 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * Times reading a large VoltTable through the row getters, random access
+ * with advanceToRow, and the column copies. Each way is checked to read the
+ * same values.
+ *
+ * Warmup passes are discarded before the measured passes, the best measured
+ * time of each is printed.
+ *
+ * Usage: VoltTableBenchmark [rows]
+ */
+public class VoltTableBenchmark {
+
+    static final int WARMUP_PASSES = 2;
+    static final int MEASURED_PASSES = 5;
+
+    public static void main(String args[]) {
+        final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        VoltTable t = new VoltTable(new ColumnInfo("id", VoltType.BIGINT),
+                                    new ColumnInfo("name", VoltType.STRING),
+                                    new ColumnInfo("value", VoltType.FLOAT));
+        for (int i = 0; i < rows; i++) {
+            t.addRow(i, "row", i * 0.5);
+        }
+
+        long rowScanBest = Long.MAX_VALUE, randomAccessBest = Long.MAX_VALUE, columnCopyBest = Long.MAX_VALUE;
+        for (int pass = 0; pass < WARMUP_PASSES + MEASURED_PASSES; pass++) {
+            long start = System.nanoTime();
+            long idSum = 0;
+            double valueSum = 0;
+            t.resetRowPosition();
+            while (t.advanceRow()) {
+                idSum += t.getLong(0);
+                valueSum += t.getDouble(2);
+            }
+            final long rowScan = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long randomSum = 0;
+            for (int i = 0; i < rows; i += 7) {
+                t.advanceToRow(rows - 1 - i);
+                randomSum += t.getLong(0);
+            }
+            final long randomAccess = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long ids[] = t.getColumnAsLongs(0);
+            double values[] = t.getColumnAsDoubles(2);
+            final long columnCopy = System.nanoTime() - start;
+
+            long idCheck = 0;
+            double valueCheck = 0;
+            for (int i = 0; i < rows; i++) {
+                idCheck += ids[i];
+                valueCheck += values[i];
+            }
+            if (idSum != idCheck || valueSum != valueCheck || (rows > 1 && randomSum <= 0)) {
+                throw new RuntimeException("Column copies don't match the row scan");
+            }
+            if (pass >= WARMUP_PASSES) {
+                rowScanBest = Math.min(rowScanBest, rowScan);
+                randomAccessBest = Math.min(randomAccessBest, randomAccess);
+                columnCopyBest = Math.min(columnCopyBest, columnCopy);
+            }
+        }
+        System.out.printf("%d rows: row scan %.1fms, random access %.1fms, column copy %.1fms\n",
+                          rows, rowScanBest / 1000000.0, randomAccessBest / 1000000.0,
+                          columnCopyBest / 1000000.0);
+    }
+}
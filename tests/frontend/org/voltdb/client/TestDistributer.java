@@ -37,6 +37,7 @@ import junit.framework.TestCase;
 import org.junit.Test;
 import org.voltdb.ClientResponseImpl;
 import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.TheHashinator;
 import org.voltdb.VoltTable;
 import org.voltdb.VoltType;
 import org.voltdb.messaging.FastDeserializer;
@@ -50,6 +51,7 @@ public class TestDistributer extends TestCase {
     class MockInputHandler extends VoltProtocolHandler {
 
         volatile boolean gotPing = false;
+        AtomicInteger topologyRequests = new AtomicInteger();
         AtomicBoolean sendResponses = new AtomicBoolean(true);
 
         @Override
@@ -67,6 +69,15 @@ public class TestDistributer extends TestCase {
                 if (spi.getProcName().equals("@Ping"))
                     gotPing = true;
 
+                // answer topology requests without counting them
+                if (spi.getProcName().equals("@Statistics")) {
+                    topologyRequests.incrementAndGet();
+                    ClientResponseImpl response =
+                        new ClientResponseImpl(ClientResponseImpl.SUCCESS, topology(), "", spi.getClientHandle());
+                    c.writeStream().enqueue(response);
+                    return;
+                }
+
                 if (sendResponses.get()) {
                     VoltTable vt[] = new VoltTable[1];
                     vt[0] = new VoltTable(new VoltTable.ColumnInfo("Foo", VoltType.BIGINT));
@@ -144,7 +155,13 @@ public class TestDistributer extends TestCase {
     // A fake server.
     class MockVolt extends Thread {
         boolean handleConnection = true;
+        final int hostId;
         MockVolt(int port) throws IOException {
+            this(port, 0);
+        }
+
+        MockVolt(int port, int hostId) throws IOException {
+            this.hostId = hostId;
             network = new VoltNetwork();
             network.start();
             socket = ServerSocketChannel.open();
@@ -198,7 +215,7 @@ public class TestDistributer extends TestCase {
                         responseBuffer.putInt(30);
                         responseBuffer.put((byte)0);//version
                         responseBuffer.put((byte)0);//success response
-                        responseBuffer.putInt(0);//hostId
+                        responseBuffer.putInt(hostId);//hostId
                         responseBuffer.putLong(0);//connectionId
                         responseBuffer.putLong(0);//instanceId
                         responseBuffer.putInt(0);//instanceId pt 2
@@ -239,6 +256,34 @@ public class TestDistributer extends TestCase {
         volatile VoltNetwork network;
     }
 
+    /**
+     * Two partitions each owned by the host with the same id, and one
+     * procedure partitioned on its first parameter.
+     */
+    static VoltTable[] topology() {
+        return topology(2);
+    }
+
+    /**
+     * Partitions 0 and 1 owned by the host with the same id out of
+     * partitionCount, and one procedure partitioned on its first parameter.
+     */
+    static VoltTable[] topology(int partitionCount) {
+        VoltTable partitions = new VoltTable(
+                new VoltTable.ColumnInfo("PARTITION_ID", VoltType.INTEGER),
+                new VoltTable.ColumnInfo("HOST_ID", VoltType.INTEGER));
+        partitions.addRow(0, 0);
+        partitions.addRow(1, 1);
+        VoltTable procedures = new VoltTable(
+                new VoltTable.ColumnInfo("PROCEDURE_NAME", VoltType.STRING),
+                new VoltTable.ColumnInfo("PARTITION_PARAMETER", VoltType.INTEGER));
+        procedures.addRow("Insert", 0);
+        VoltTable count = new VoltTable(
+                new VoltTable.ColumnInfo("PARTITION_COUNT", VoltType.INTEGER));
+        count.addRow(partitionCount);
+        return new VoltTable[] { partitions, procedures, count };
+    }
+
     private static class CSL extends ClientStatusListenerExt {
         private volatile boolean m_exceptionHandled = false;
         @Override
@@ -370,6 +415,154 @@ public class TestDistributer extends TestCase {
     }
 
 
+    @Test
+    public void testTopologyAwareQueue() throws Exception {
+        MockVolt volt0, volt1;
+        volt0 = volt1 = null;
+        try {
+            volt0 = new MockVolt(20000, 0);
+            volt0.start();
+            volt1 = new MockVolt(20001, 1);
+            volt1.start();
+
+            Distributer dist = new Distributer(128, null, false, null,
+                    ClientConfig.DEFAULT_PROCEDURE_TIMOUT_MS,
+                    ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                    true);
+            dist.createConnection("localhost", "", "", 20000);
+            dist.createConnection("localhost", "", "", 20001);
+            // apply the same topology the mocks answer with so routing doesn't race their responses
+            dist.updateTopology(topology());
+
+            // with two partitions even keys hash to partition 0 and odd keys to partition 1
+            int handle = 0;
+            for (long key = 0; key < 10; key += 2) {
+                dist.queue(new ProcedureInvocation(++handle, "Insert", key), new ProcCallback(), 128, true);
+            }
+            dist.drain();
+            assertEquals(5, volt0.handler.roundTrips.get());
+            assertEquals(0, volt1.handler.roundTrips.get());
+
+            for (long key = 1; key < 10; key += 2) {
+                dist.queue(new ProcedureInvocation(++handle, "Insert", key), new ProcCallback(), 128, true);
+            }
+            dist.drain();
+            assertEquals(5, volt0.handler.roundTrips.get());
+            assertEquals(5, volt1.handler.roundTrips.get());
+
+            // procedures that aren't single partition still go round robin
+            for (int i = 0; i < 4; i++) {
+                dist.queue(new ProcedureInvocation(++handle, "Select", 0L), new ProcCallback(), 128, true);
+            }
+            dist.drain();
+            assertEquals(7, volt0.handler.roundTrips.get());
+            assertEquals(7, volt1.handler.roundTrips.get());
+
+            dist.shutdown();
+        }
+        finally {
+            if (volt0 != null) {
+                volt0.shutdown();
+                volt0.join();
+            }
+            if (volt1 != null) {
+                volt1.shutdown();
+                volt1.join();
+            }
+        }
+    }
+
+    @Test
+    public void testTopologyPartitionCount() throws Exception {
+        MockVolt volt0, volt1;
+        volt0 = volt1 = null;
+        try {
+            volt0 = new MockVolt(20000, 0);
+            volt0.start();
+            volt1 = new MockVolt(20001, 1);
+            volt1.start();
+
+            Distributer dist = new Distributer(128, null, false, null,
+                    ClientConfig.DEFAULT_PROCEDURE_TIMOUT_MS,
+                    ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                    true);
+            dist.createConnection("localhost", "", "", 20000);
+            dist.createConnection("localhost", "", "", 20001);
+            // partition 2 has no live replica, keys are still hashed over three partitions
+            dist.updateTopology(topology(3));
+
+            int handle = 0;
+            int expected[] = new int[2];
+            for (long key = 0; key < 30; key++) {
+                final int partition = TheHashinator.hashToPartition(key, 3);
+                if (partition < 2) {
+                    expected[partition]++;
+                    dist.queue(new ProcedureInvocation(++handle, "Insert", key), new ProcCallback(), 128, true);
+                }
+            }
+            dist.drain();
+            assertTrue(expected[0] > 0 && expected[1] > 0);
+            assertEquals(expected[0], volt0.handler.roundTrips.get());
+            assertEquals(expected[1], volt1.handler.roundTrips.get());
+
+            dist.shutdown();
+        }
+        finally {
+            if (volt0 != null) {
+                volt0.shutdown();
+                volt0.join();
+            }
+            if (volt1 != null) {
+                volt1.shutdown();
+                volt1.join();
+            }
+        }
+    }
+
+    @Test
+    public void testTopologyRefreshedOnConnectionLoss() throws Exception {
+        MockVolt volt0, volt1;
+        volt0 = volt1 = null;
+        try {
+            volt0 = new MockVolt(20000, 0);
+            volt0.start();
+            volt1 = new MockVolt(20001, 1);
+            volt1.start();
+
+            Distributer dist = new Distributer(128, null, false, null,
+                    ClientConfig.DEFAULT_PROCEDURE_TIMOUT_MS,
+                    ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                    true);
+            dist.createConnection("localhost", "", "", 20000);
+            dist.createConnection("localhost", "", "", 20001);
+            while (volt0.handler == null || volt0.handler.topologyRequests.get() < 1) {
+                Thread.sleep(10);
+            }
+
+            // losing a host asks a surviving one where its partitions went
+            volt1.shutdown();
+            volt1.join();
+            volt1 = null;
+            final long start = System.currentTimeMillis();
+            while (volt0.handler.topologyRequests.get() < 2) {
+                assertTrue(System.currentTimeMillis() - start < Distributer.TOPOLOGY_REFRESH_MS);
+                Thread.sleep(10);
+            }
+
+            dist.shutdown();
+        }
+        finally {
+            if (volt0 != null) {
+                volt0.shutdown();
+                volt0.join();
+            }
+            if (volt1 != null) {
+                volt1.shutdown();
+                volt1.join();
+            }
+        }
+    }
+
     /**
      * Test connection timeouts.
      * Create a fake voltdb that runs all happy for a while, but
@@ -0,0 +1,248 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.compiler;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.json_voltpatches.JSONArray;
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.junit.Test;
+import org.voltdb.CatalogContext;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Catalog;
+import org.voltdb.utils.CatalogUtil;
+
+import static org.junit.Assert.*;
+
+public class TestAdHocPlanCache {
+
+    @Test
+    public void testNormalizeLiterals() {
+        AdHocSqlNormalizer.Result r =
+            AdHocSqlNormalizer.normalize("select  *\n from t where a = 5 and b = 'it''s' -- comment\n");
+        assertEquals("select * from t where a = 5 and b = 'it''s'", r.normalizedSql);
+        assertEquals("select * from t where a = ? and b = ?", r.parameterizedSql);
+        assertEquals(2, r.literals.size());
+        assertEquals("5", r.literals.get(0).value);
+        assertFalse(r.literals.get(0).isString);
+        assertEquals("it's", r.literals.get(1).value);
+        assertTrue(r.literals.get(1).isString);
+    }
+
+    @Test
+    public void testNormalizeKeepsIdentifiersAndTypedLiterals() {
+        AdHocSqlNormalizer.Result r =
+            AdHocSqlNormalizer.normalize("select c1, \"c 2\" from t2 where v = X'00FF' and f > 1.5e3");
+        assertEquals("select c1, \"c 2\" from t2 where v = X'00FF' and f > ?", r.parameterizedSql);
+        assertEquals(1, r.literals.size());
+        assertEquals("1.5e3", r.literals.get(0).value);
+    }
+
+    @Test
+    public void testNormalizeSameShape() {
+        AdHocSqlNormalizer.Result r1 = AdHocSqlNormalizer.normalize("select * from t where a = 1");
+        AdHocSqlNormalizer.Result r2 = AdHocSqlNormalizer.normalize("select * from t where a =  22");
+        assertEquals(r1.parameterizedSql, r2.parameterizedSql);
+        assertFalse(r1.normalizedSql.equals(r2.normalizedSql));
+    }
+
+    @Test
+    public void testNormalizeExistingParameter() {
+        // ad hoc SQL can't bind '?', leave such statements alone
+        AdHocSqlNormalizer.Result r = AdHocSqlNormalizer.normalize("select * from t where a = ? and b = 1");
+        assertFalse(r.hasLiterals());
+        assertEquals(r.normalizedSql, r.parameterizedSql);
+    }
+
+    @Test
+    public void testNormalizeBlockComments() {
+        AdHocSqlNormalizer.Result r =
+            AdHocSqlNormalizer.normalize("select /* all /* nested */ columns */ * from t /* where */ where a = 1");
+        assertEquals("select * from t where a = 1", r.normalizedSql);
+        assertEquals("select * from t where a = ?", r.parameterizedSql);
+    }
+
+    @Test
+    public void testNormalizeKeepsCountsAndOrdinals() {
+        AdHocSqlNormalizer.Result r = AdHocSqlNormalizer.normalize(
+                "select a, count(*) from t where a > 3 group by 1 order by 2 desc, 1 limit 5 offset 10");
+        assertEquals("select a, count(*) from t where a > ? group by 1 order by 2 desc, 1 limit 5 offset 10",
+                     r.parameterizedSql);
+        assertEquals(1, r.literals.size());
+
+        // different counts and ordinals must not share a plan
+        assertFalse(AdHocSqlNormalizer.normalize("select * from t where a = 1 limit 5").parameterizedSql.equals(
+                    AdHocSqlNormalizer.normalize("select * from t where a = 1 limit 10").parameterizedSql));
+        assertFalse(AdHocSqlNormalizer.normalize("select a, b from t where a = 1 order by 1").parameterizedSql.equals(
+                    AdHocSqlNormalizer.normalize("select a, b from t where a = 1 order by 2").parameterizedSql));
+        // while the same count and ordinal do
+        assertEquals(AdHocSqlNormalizer.normalize("select a, b from t where a = 1 order by 2 limit 5").parameterizedSql,
+                     AdHocSqlNormalizer.normalize("select a, b from t where a = 7 order by 2 limit 5").parameterizedSql);
+
+        // numbers elsewhere in the list and in subqueries are still lifted
+        r = AdHocSqlNormalizer.normalize("select * from t where a in (select a from t order by a limit 2) order by a + 1");
+        assertEquals("select * from t where a in (select a from t order by a limit 2) order by a + ?", r.parameterizedSql);
+    }
+
+    @Test
+    public void testLRUEviction() {
+        AdHocPlanCache cache = new AdHocPlanCache(2, 0);
+        PlannerTool.Result p1 = new PlannerTool.Result();
+        PlannerTool.Result p2 = new PlannerTool.Result();
+        PlannerTool.Result p3 = new PlannerTool.Result();
+        cache.put("a", p1, 0);
+        cache.put("b", p2, 0);
+        // touch a so b is the eldest
+        assertSame(p1, cache.get("a"));
+        cache.put("c", p3, 0);
+        assertNull(cache.get("b"));
+        assertSame(p1, cache.get("a"));
+        assertSame(p3, cache.get("c"));
+
+        long[] counters = cache.getCounters();
+        assertEquals(2, counters[0]);
+        assertEquals(3, counters[1]);
+        assertEquals(1, counters[2]);
+        assertEquals(1, counters[3]);
+    }
+
+    @Test
+    public void testInvalidate() {
+        AdHocPlanCache cache = new AdHocPlanCache(10, 0);
+        cache.put("a", new PlannerTool.Result(), 0);
+        cache.invalidate(1);
+        assertNull(cache.get("a"));
+        // a plan made against the old catalog must not be cached
+        cache.put("a", new PlannerTool.Result(), 0);
+        assertNull(cache.get("a"));
+        cache.put("a", new PlannerTool.Result(), 1);
+        assertNotNull(cache.get("a"));
+        assertEquals(1, cache.getCounters()[4]);
+    }
+
+    @Test
+    public void testKeyIncludesPartitioning() {
+        assertFalse(AdHocPlanCache.key("select 1", true, true).equals(
+                    AdHocPlanCache.key("select 1", true, false)));
+        assertFalse(AdHocPlanCache.key("select 1", true, true).equals(
+                    AdHocPlanCache.key("select 1", false, true)));
+    }
+
+    private static PlannerTool plannerTool() throws IOException {
+        VoltProjectBuilder builder = new VoltProjectBuilder();
+        builder.addLiteralSchema("create table t (a bigint not null, b varchar(10), " +
+                                 "primary key(a));");
+        builder.addPartitionInfo("t", "a");
+        builder.addStmtProcedure("MakeCompileHappy", "select * from t where a = ?;", "t.a: 0");
+        final File jar = new File("testadhocplancache-oop.jar");
+        jar.deleteOnExit();
+        assertTrue(builder.compile("testadhocplancache-oop.jar"));
+        byte[] bytes = CatalogUtil.toBytes(jar);
+        Catalog c = new Catalog();
+        c.execute(CatalogUtil.loadCatalogFromJar(bytes, null));
+        return new PlannerTool(new CatalogContext(0, c, bytes, 0, 0, 0));
+    }
+
+    @Test
+    public void testBindParameterizedPlan() throws IOException {
+        PlannerTool pt = plannerTool();
+        try {
+            AdHocSqlNormalizer.Result normalized =
+                AdHocSqlNormalizer.normalize("select * from t where a = 5 and b = 'x'");
+            PlannerTool.Result template = pt.planParameterizedSql(normalized.parameterizedSql, true);
+            assertEquals(2, template.paramTypes.length);
+            assertEquals(VoltType.BIGINT, template.paramTypes[0]);
+            assertEquals(VoltType.STRING, template.paramTypes[1]);
+
+            PlannerTool.Result bound = template.bind(normalized.literals);
+            assertNotNull(bound);
+            assertFalse(bound.onePlan.contains("VALUE_PARAMETER"));
+            assertTrue(bound.onePlan.contains("\"x\""));
+
+            // a string where the planner expects a number can't be bound
+            normalized = AdHocSqlNormalizer.normalize("select * from t where a = 'y' and b = 'x'");
+            assertNull(template.bind(normalized.literals));
+        }
+        finally {
+            pt.shutdown();
+        }
+    }
+
+    private static String sortColumn(String plan) throws JSONException {
+        JSONArray nodes = new JSONObject(plan).getJSONArray("PLAN_NODES");
+        for (int i = 0; i < nodes.length(); i++) {
+            JSONObject node = nodes.getJSONObject(i);
+            if ("ORDERBY".equals(node.getString("PLAN_NODE_TYPE"))) {
+                return node.getJSONArray("SORT_COLUMNS").getJSONObject(0)
+                           .getJSONObject("SORT_EXPRESSION").getString("COLUMN_NAME");
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testBindCountsAndOrdinals() throws IOException, JSONException {
+        PlannerTool pt = plannerTool();
+        try {
+            // each count gets its own template that binds to its own limit
+            AdHocSqlNormalizer.Result limit5 =
+                AdHocSqlNormalizer.normalize("select * from t where a > 1 order by a limit 5");
+            AdHocSqlNormalizer.Result limit10 =
+                AdHocSqlNormalizer.normalize("select * from t where a > 1 order by a limit 10");
+            PlannerTool.Result bound5 =
+                pt.planParameterizedSql(limit5.parameterizedSql, false).bind(limit5.literals);
+            PlannerTool.Result bound10 =
+                pt.planParameterizedSql(limit10.parameterizedSql, false).bind(limit10.literals);
+            assertNotNull(bound5);
+            assertNotNull(bound10);
+            assertTrue(bound5.allPlan.contains("\"LIMIT\":5"));
+            assertTrue(bound10.allPlan.contains("\"LIMIT\":10"));
+
+            // a template that takes its limit from a parameter can't be bound
+            AdHocSqlNormalizer.Result lifted =
+                AdHocSqlNormalizer.normalize("select * from t where a > 1 order by a limit 5");
+            PlannerTool.Result template =
+                pt.planParameterizedSql("select * from t where a > ? order by a limit ?", false);
+            assertNull(template.bind(lifted.literals));
+
+            // ordinals select different sort columns
+            AdHocSqlNormalizer.Result byA =
+                AdHocSqlNormalizer.normalize("select a, b from t where a > 1 order by 1");
+            AdHocSqlNormalizer.Result byB =
+                AdHocSqlNormalizer.normalize("select a, b from t where a > 1 order by 2");
+            PlannerTool.Result boundA =
+                pt.planParameterizedSql(byA.parameterizedSql, false).bind(byA.literals);
+            PlannerTool.Result boundB =
+                pt.planParameterizedSql(byB.parameterizedSql, false).bind(byB.literals);
+            assertEquals("A", sortColumn(boundA.onePlan));
+            assertEquals("B", sortColumn(boundB.onePlan));
+        }
+        finally {
+            pt.shutdown();
+        }
+    }
+}
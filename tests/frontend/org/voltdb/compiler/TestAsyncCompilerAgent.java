@@ -109,4 +109,34 @@ public class TestAsyncCompilerAgent {
         VerificationMode expected = times(AsyncCompilerAgent.MAX_QUEUE_DEPTH + 2);
         verify(m_agent.m_mailbox, expected).send(eq(100), eq(0), any(LocalObjectMessage.class));
     }
+
+    private static DatabaseEstimates measured(long tuples) {
+        DatabaseEstimates estimates = new DatabaseEstimates();
+        DatabaseEstimates.TableEstimates table = estimates.getEstimatesForTable("T");
+        table.maxTuples = tuples;
+        table.measured = true;
+        return estimates;
+    }
+
+    /**
+     * Checks that cached plans are only thrown away when a table's size
+     * changes by a factor of two, wherever the sizes fall.
+     */
+    @Test
+    public void testTableSizesChanged() {
+        assertTrue(AsyncCompilerAgent.tableSizesChanged(new DatabaseEstimates(), measured(10)));
+        assertFalse(AsyncCompilerAgent.tableSizesChanged(measured(10), new DatabaseEstimates()));
+
+        // 1023 and 1024 differ by one row but have different bit lengths
+        assertFalse(AsyncCompilerAgent.tableSizesChanged(measured(1023), measured(1024)));
+        assertFalse(AsyncCompilerAgent.tableSizesChanged(measured(1024), measured(1023)));
+        // nearly twice as large is still not a change
+        assertFalse(AsyncCompilerAgent.tableSizesChanged(measured(1025), measured(2049)));
+        assertTrue(AsyncCompilerAgent.tableSizesChanged(measured(1024), measured(2048)));
+        assertTrue(AsyncCompilerAgent.tableSizesChanged(measured(2048), measured(1024)));
+
+        assertFalse(AsyncCompilerAgent.tableSizesChanged(measured(0), measured(1)));
+        assertTrue(AsyncCompilerAgent.tableSizesChanged(measured(0), measured(2)));
+        assertTrue(AsyncCompilerAgent.tableSizesChanged(measured(5), measured(0)));
+    }
 }
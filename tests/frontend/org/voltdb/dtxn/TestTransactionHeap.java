@@ -0,0 +1,128 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.dtxn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class TestTransactionHeap extends TestCase {
+
+    static class MockTransaction extends OrderableTransaction {
+        MockTransaction(long txnId, int initiatorSiteId) {
+            super(txnId, initiatorSiteId);
+        }
+    }
+
+    public void testOrdering() {
+        TransactionHeap heap = new TransactionHeap();
+        assertNull(heap.peek());
+        assertNull(heap.poll());
+
+        ArrayList<MockTransaction> txns = new ArrayList<MockTransaction>();
+        for (int ii = 0; ii < 1000; ii++) {
+            txns.add(new MockTransaction(ii * 3, ii % 4));
+        }
+        Collections.shuffle(txns, new Random(0));
+        for (MockTransaction txn : txns) {
+            heap.add(txn);
+        }
+        assertEquals(1000, heap.size());
+
+        for (int ii = 0; ii < 1000; ii++) {
+            assertEquals(ii * 3, heap.peek().txnId);
+            assertEquals(ii * 3, heap.poll().txnId);
+        }
+        assertTrue(heap.isEmpty());
+    }
+
+    public void testRemove() {
+        TransactionHeap heap = new TransactionHeap();
+        PriorityQueue<OrderableTransaction> reference = new PriorityQueue<OrderableTransaction>();
+        ArrayList<MockTransaction> txns = new ArrayList<MockTransaction>();
+        Random r = new Random(42);
+        for (int ii = 0; ii < 2000; ii++) {
+            MockTransaction txn = new MockTransaction(r.nextInt(100000), 0);
+            txns.add(txn);
+            heap.add(txn);
+            reference.add(txn);
+        }
+
+        // remove a random half, including transactions already removed
+        for (int ii = 0; ii < 1500; ii++) {
+            MockTransaction txn = txns.get(r.nextInt(txns.size()));
+            assertEquals(reference.remove(txn), heap.remove(txn));
+            assertFalse(heap.contains(txn));
+        }
+        assertFalse(heap.remove(new MockTransaction(1, 0)));
+        assertFalse(heap.remove("not a transaction"));
+        assertEquals(reference.size(), heap.size());
+
+        while (!reference.isEmpty()) {
+            assertEquals(reference.poll().txnId, heap.poll().txnId);
+        }
+        assertNull(heap.poll());
+    }
+
+    public void testIteratorRemove() {
+        TransactionHeap heap = new TransactionHeap();
+        for (int ii = 0; ii < 100; ii++) {
+            heap.add(new MockTransaction(ii, ii % 2));
+        }
+        Iterator<OrderableTransaction> iter = heap.iterator();
+        int seen = 0;
+        while (iter.hasNext()) {
+            OrderableTransaction txn = iter.next();
+            seen++;
+            if (txn.initiatorSiteId == 1) {
+                iter.remove();
+            }
+        }
+        assertEquals(100, seen);
+        assertEquals(50, heap.size());
+        for (int ii = 0; ii < 50; ii++) {
+            assertEquals(ii * 2, heap.poll().txnId);
+        }
+    }
+
+    public void testReAddAfterRemove() {
+        TransactionHeap heap = new TransactionHeap();
+        MockTransaction txn = new MockTransaction(5, 0);
+        heap.add(new MockTransaction(1, 0));
+        heap.add(txn);
+        assertTrue(heap.remove(txn));
+        heap.add(txn);
+        assertTrue(heap.contains(txn));
+        heap.clear();
+        assertFalse(heap.contains(txn));
+        assertEquals(0, heap.size());
+        heap.add(txn);
+        assertEquals(txn, heap.poll());
+    }
+}
@@ -0,0 +1,138 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.dtxn;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Microbenchmark comparing java.util.PriorityQueue with TransactionHeap for the
+ * access pattern a RestrictedPriorityQueue sees: several initiators each
+ * producing increasing txnIds that arrive interleaved and slightly out of
+ * order, a standing backlog of queued transactions, and an occasional fault
+ * that removes an arbitrary transaction.
+ *
+ * Each configuration is run for a number of warmup iterations that are
+ * discarded before the measured iterations.
+ *
+ * Usage: TransactionHeapBenchmark [initiators] [backlog] [operations]
+ */
+public class TransactionHeapBenchmark {
+
+    static final int WARMUP_ITERATIONS = 5;
+    static final int MEASURED_ITERATIONS = 10;
+    static volatile long s_sink;
+
+    static class BenchTransaction extends OrderableTransaction {
+        BenchTransaction(long txnId, int initiatorSiteId) {
+            super(txnId, initiatorSiteId);
+        }
+    }
+
+    /**
+     * Generate arrivals from each initiator round robin with some jitter,
+     * every txnId unique and increasing per initiator.
+     */
+    static BenchTransaction[] workload(int initiators, int count, long seed) {
+        final Random r = new Random(seed);
+        final long next[] = new long[initiators];
+        final BenchTransaction txns[] = new BenchTransaction[count];
+        for (int ii = 0; ii < count; ii++) {
+            final int initiator = r.nextInt(initiators);
+            next[initiator] += 1 + r.nextInt(initiators * 4);
+            txns[ii] = new BenchTransaction(next[initiator] * initiators + initiator, initiator);
+        }
+        return txns;
+    }
+
+    interface Queue {
+        void add(OrderableTransaction txn);
+        OrderableTransaction poll();
+        boolean remove(OrderableTransaction txn);
+    }
+
+    static long run(Queue q, BenchTransaction txns[], int backlog) {
+        final long start = System.nanoTime();
+        int ii = 0;
+        for (; ii < backlog; ii++) {
+            q.add(txns[ii]);
+        }
+        long checksum = 0;
+        for (; ii < txns.length; ii++) {
+            q.add(txns[ii]);
+            if (ii % 64 == 0) {
+                // fault a transaction somewhere in the middle of the backlog
+                q.remove(txns[ii - backlog / 2]);
+            }
+            final OrderableTransaction polled = q.poll();
+            if (polled != null) {
+                checksum += polled.txnId;
+            }
+        }
+        while (q.poll() != null) {}
+        final long elapsed = System.nanoTime() - start;
+        // keep the polls from being optimized away
+        s_sink = checksum;
+        return elapsed;
+    }
+
+    public static void main(String args[]) {
+        final int initiators = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        final int backlog = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        final int operations = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+        final BenchTransaction txns[] = workload(initiators, operations, 0);
+
+        long pqBest = Long.MAX_VALUE, heapBest = Long.MAX_VALUE;
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS + MEASURED_ITERATIONS; iteration++) {
+            final PriorityQueue<OrderableTransaction> pq = new PriorityQueue<OrderableTransaction>();
+            final long pqTime = run(new Queue() {
+                @Override
+                public void add(OrderableTransaction txn) { pq.add(txn); }
+                @Override
+                public OrderableTransaction poll() { return pq.poll(); }
+                @Override
+                public boolean remove(OrderableTransaction txn) { return pq.remove(txn); }
+            }, txns, backlog);
+
+            final TransactionHeap heap = new TransactionHeap();
+            final long heapTime = run(new Queue() {
+                @Override
+                public void add(OrderableTransaction txn) { heap.add(txn); }
+                @Override
+                public OrderableTransaction poll() { return heap.poll(); }
+                @Override
+                public boolean remove(OrderableTransaction txn) { return heap.remove(txn); }
+            }, txns, backlog);
+
+            if (iteration >= WARMUP_ITERATIONS) {
+                pqBest = Math.min(pqBest, pqTime);
+                heapBest = Math.min(heapBest, heapTime);
+            }
+        }
+        System.out.printf("initiators=%d backlog=%d operations=%d\n", initiators, backlog, operations);
+        System.out.printf("PriorityQueue:   %.1f ns/op\n", pqBest / (double)operations);
+        System.out.printf("TransactionHeap: %.1f ns/op\n", heapBest / (double)operations);
+    }
+}
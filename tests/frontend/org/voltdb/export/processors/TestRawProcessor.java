@@ -26,6 +26,7 @@ package org.voltdb.export.processors;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingDeque;
 
 import junit.framework.TestCase;
@@ -41,6 +42,7 @@ import org.voltdb.messaging.FastSerializable;
 import org.voltdb.messaging.MessagingException;
 import org.voltdb.network.Connection;
 import org.voltdb.network.NIOReadStream;
+import org.voltdb.network.VoltProtocolHandler;
 import org.voltdb.network.WriteStream;
 import org.voltdb.utils.DBBPool;
 import org.voltdb.utils.VoltFile;
@@ -83,11 +85,17 @@ public class TestRawProcessor extends TestCase {
         public ExportProtoMessage pollWriteStream() {
             return m_writeStream.writequeue.poll();
         }
+
+        @Override
+        public void unregister() {
+        }
     }
 
     static class MockExportDataSource extends ExportDataSource {
         LinkedBlockingDeque<ExportProtoMessage> eequeue =
             new LinkedBlockingDeque<ExportProtoMessage>();
+        LinkedBlockingDeque<ExportProtoMessage> closequeue =
+            new LinkedBlockingDeque<ExportProtoMessage>();
 
 
         // not really sure how much of this is needed, but pass at least
@@ -118,6 +126,9 @@ public class TestRawProcessor extends TestCase {
         @Override
         public void exportAction(RawProcessor.ExportInternalMessage m) throws MessagingException {
             // Simulate what ExecutionEngineJNI and ExecutionSite do.
+            if (m.m_m.isClose()) {
+                closequeue.add(m.m_m);
+            }
             if (m.m_m.isPoll()) {
                 ExportProtoMessage r =
                     new ExportProtoMessage( m.m_m.getGeneration(), m.m_m.getPartitionId(), m.m_m.getSignature());
@@ -133,7 +144,7 @@ public class TestRawProcessor extends TestCase {
 
     RawProcessor rp;
     MockConnection c;
-    MockExportDataSource ds;
+    MockExportDataSource ds, ds2;
     ProtoStateBlock sb;
     ExportProtoMessage m, bad_m1, bad_m2, m_postadmin;
 
@@ -152,8 +163,10 @@ public class TestRawProcessor extends TestCase {
 
         rp = new RawProcessor();
         ds = new MockExportDataSource("db", "table", 1, 3, "foo");
+        ds2 = new MockExportDataSource("db", "table", 2, 3, "foo");
         ExportGeneration generation = new ExportGeneration( 0, null, directory);
         generation.addDataSource(ds);
+        generation.addDataSource(ds2);
         rp.setExportGeneration(generation);
 
         c = new MockConnection();
@@ -269,4 +282,76 @@ public class TestRawProcessor extends TestCase {
         assertEquals(RawProcessor.CONNECTED, sb.m_state);
         assertTrue(r.isPollResponse());
     }
+
+    // two clients draining different partitions
+    public void testCloseOnlyResetsPolledSources() {
+        MockConnection c2 = new MockConnection();
+        ProtoStateBlock sb2 = rp.new ProtoStateBlock(c2, false);
+        sb.m_state = RawProcessor.CONNECTED;
+        sb2.m_state = RawProcessor.CONNECTED;
+        sb.event(m.poll());
+        sb2.event(new ExportProtoMessage( -1, 2, "foo").poll());
+        assertTrue(pollDataSource().isPollResponse());
+        assertTrue(ds2.eequeue.poll().isPollResponse());
+
+        sb.event(new ExportProtoMessage( -1, 1, "foo").close());
+        assertEquals(RawProcessor.CLOSED, sb.m_state);
+        assertEquals(RawProcessor.CONNECTED, sb2.m_state);
+        assertNotNull(ds.closequeue.poll());
+        assertNull(ds2.closequeue.poll());
+
+        sb2.event(new ExportProtoMessage( -1, 2, "foo").close());
+        assertNull(ds.closequeue.poll());
+        assertNotNull(ds2.closequeue.poll());
+    }
+
+    // a message as the network hands it to the input handler, without its length prefix
+    private static ByteBuffer message(ExportProtoMessage m) {
+        try {
+            ByteBuffer b = m.toBuffer();
+            b.getInt();
+            return b.slice();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // messages wait for queued work such as a generation switch, and are dropped once it shut the processor down
+    public void testMessagesWaitForQueuedWork() throws Exception {
+        final VoltProtocolHandler handler = (VoltProtocolHandler)rp.createInputHandler("export", false);
+        handler.starting(c);
+        handler.handleMessage(message(m.open()), c);
+        assertTrue(pollWriteStream().isOpenResponse());
+
+        final CountDownLatch working = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        rp.queueWork(new Runnable() {
+            @Override
+            public void run() {
+                working.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {}
+                rp.shutdown();
+            }
+        });
+        working.await();
+
+        Thread network = new Thread() {
+            @Override
+            public void run() {
+                handler.handleMessage(message(new ExportProtoMessage( -1, 1, "foo").poll()), c);
+            }
+        };
+        network.start();
+        network.join(200);
+        assertTrue(network.isAlive());
+        assertNull(pollDataSource());
+
+        release.countDown();
+        network.join();
+        assertNull(pollDataSource());
+        handler.stopping(c);
+        assertNull(ds.closequeue.poll());
+    }
 }
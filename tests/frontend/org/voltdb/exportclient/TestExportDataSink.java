@@ -23,6 +23,10 @@
 package org.voltdb.exportclient;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.TestCase;
 
@@ -108,4 +112,64 @@ public class TestExportDataSink extends TestCase {
         assertTrue(m.isAck());
         assertEquals(m.getAckOffset(), 10);
     }
+
+    public void testBlockExecutor() throws Exception
+    {
+        String CONN_NAME = "ryanlovestheyankees";
+        final CountDownLatch decoding = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ExportDecoderBase decoder =
+            new TestExportDecoder(new AdvertisedDataSource(PARTITION_ID,
+                                                           TABLE_SIGNATURE,
+                                                           "coffeetable", 0, 32,
+                                                           null, null)) {
+            @Override
+            public boolean processRow(int rowSize, byte[] rowData) {
+                decoding.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return true;
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ExportDataSink dut =
+                new ExportDataSink( 0, PARTITION_ID, TABLE_SIGNATURE, "coffeetable", decoder, executor);
+            dut.addExportConnection(CONN_NAME, 0);
+            dut.work();
+            ExportProtoMessage m = dut.getTxQueue(CONN_NAME).poll();
+            assertTrue(m.isPoll());
+
+            // a block of two empty rows
+            ByteBuffer block = ByteBuffer.allocate(12);
+            block.putInt(8).putInt(0).putInt(0).flip();
+            m = new ExportProtoMessage( 0, PARTITION_ID, TABLE_SIGNATURE);
+            m.pollResponse(0, block);
+            dut.getRxQueue(CONN_NAME).offer(m);
+            dut.work();
+            assertTrue(decoding.await(5, TimeUnit.SECONDS));
+
+            // nothing is acked or polled while the block is being decoded
+            assertTrue(dut.isBlockPending());
+            dut.work();
+            assertNull(dut.getTxQueue(CONN_NAME).peek());
+
+            release.countDown();
+            while (dut.isBlockPending()) {
+                Thread.sleep(1);
+                dut.work();
+            }
+            m = dut.getTxQueue(CONN_NAME).poll();
+            assertNotNull(m);
+            assertTrue(m.isPoll());
+            assertTrue(m.isAck());
+            assertEquals(0, m.getAckOffset());
+            assertNull(dut.getTxQueue(CONN_NAME).peek());
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
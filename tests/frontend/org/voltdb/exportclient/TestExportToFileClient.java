@@ -23,11 +23,17 @@
 
 package org.voltdb.exportclient;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
+import java.io.FileReader;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Date;
+import java.util.concurrent.Future;
 
 import junit.framework.TestCase;
 
@@ -39,6 +45,7 @@ import org.voltdb.compiler.VoltProjectBuilder;
 import org.voltdb.export.ExportProtoMessage.AdvertisedDataSource;
 import org.voltdb.exportclient.ExportToFileClient.ExportToFileDecoder;
 import org.voltdb.regressionsuites.LocalCluster;
+import org.voltdb.utils.VoltFile;
 
 public class TestExportToFileClient extends TestCase {
 
@@ -65,6 +72,70 @@ public class TestExportToFileClient extends TestCase {
         decoder0.sourceNoLongerAdvertised(source0);
     }
 
+    public void testDecodeThreads() throws Exception {
+        File dir = new File("/tmp/" + System.getProperty("user.name") + "/decodethreads");
+        VoltFile.recursivelyDelete(dir);
+        dir.mkdirs();
+        ExportToFileClient exportClient =
+            new ExportToFileClient(
+                ',',
+                "decodethreads",
+                dir,
+                60,
+                "yyyyMMddHHmmss",
+                null,
+                0,
+                false,
+                false,
+                false,
+                0,
+                true,
+                2);
+        AdvertisedDataSource source0 = TestExportDecoderBase.constructTestSource(0);
+        AdvertisedDataSource source1 = TestExportDecoderBase.constructTestSource(1);
+        final ExportToFileDecoder decoder = exportClient.constructExportDecoder(source0);
+        assertEquals(decoder, exportClient.constructExportDecoder(source1));
+
+        // rows with every column null are just the null flags
+        final int rowsPerBlock = 1000;
+        Future<?>[] blocks = new Future<?>[8];
+        for (int ii = 0; ii < blocks.length; ii++) {
+            final ByteBuffer block = ByteBuffer.allocate(rowsPerBlock * 5).order(ByteOrder.LITTLE_ENDIAN);
+            for (int jj = 0; jj < rowsPerBlock; jj++) {
+                block.putInt(1).put((byte)0xff);
+            }
+            block.flip();
+            blocks[ii] = exportClient.m_blockExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    decoder.processBlock(block);
+                }
+            });
+        }
+        for (Future<?> block : blocks) {
+            block.get();
+        }
+        exportClient.roll(new Date());
+
+        File[] files = dir.listFiles();
+        assertEquals(1, files.length);
+        assertFalse(files[0].getName().startsWith("active-"));
+        BufferedReader reader = new BufferedReader(new FileReader(files[0]));
+        try {
+            int lines = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                assertEquals(8, line.split(",").length);
+                assertTrue(line.startsWith("\"NULL\","));
+                lines++;
+            }
+            assertEquals(blocks.length * rowsPerBlock, lines);
+        } finally {
+            reader.close();
+        }
+        VoltFile.recursivelyDelete(dir);
+    }
+
     public void testNoAutoDiscovery() throws Exception {
         // clean up any files that exist
         File tmpdir = new File("/tmp");
@@ -29,14 +29,18 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Types;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Properties;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -325,4 +329,59 @@ public class TestJDBCDriver {
         assertTrue(meta.isCaseSensitive(1));
         assertFalse(meta.isSigned(1));
     }
+
+    @Test
+    public void testBatchUpdates() throws SQLException {
+        checkBatchUpdates(conn, 0);
+    }
+
+    @Test
+    public void testPipelinedBatchUpdates() throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("pipelinebatches", "true");
+        Connection pipelined = DriverManager.getConnection("jdbc:voltdb://localhost:21212", props);
+        try {
+            checkBatchUpdates(pipelined, 100000);
+        } finally {
+            pipelined.close();
+        }
+    }
+
+    private static void checkBatchUpdates(Connection c, long firstKey) throws SQLException {
+        // more ad hoc statements then fit in the pipelined in flight window
+        final int count = JDBC4Statement.ADHOC_BATCH_WINDOW * 3 + 7;
+        PreparedStatement insert =
+            c.prepareStatement("insert into NEW_ORDER values (?, ?, ?);");
+        for (int i = 0; i < count; i++) {
+            insert.setLong(1, firstKey + i);
+            insert.setByte(2, (byte) 1);
+            insert.setByte(3, (byte) 1);
+            insert.addBatch();
+        }
+        int[] counts = insert.executeBatch();
+        assertEquals(count, counts.length);
+        for (int i = 0; i < count; i++) {
+            assertEquals(1, counts[i]);
+        }
+        insert.clearBatch();
+
+        // a duplicate key fails its entry in the batch
+        insert.setLong(1, firstKey + count);
+        insert.setByte(2, (byte) 1);
+        insert.setByte(3, (byte) 1);
+        insert.addBatch();
+        insert.setLong(1, firstKey);
+        insert.setByte(2, (byte) 1);
+        insert.setByte(3, (byte) 1);
+        insert.addBatch();
+        try {
+            insert.executeBatch();
+            fail("Duplicate key should have failed the batch");
+        } catch (BatchUpdateException e) {
+            counts = e.getUpdateCounts();
+            assertEquals(2, counts.length);
+            assertEquals(1, counts[0]);
+            assertEquals(Statement.EXECUTE_FAILED, counts[1]);
+        }
+    }
 }
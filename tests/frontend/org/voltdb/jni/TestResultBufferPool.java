@@ -0,0 +1,71 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.jni;
+
+import junit.framework.TestCase;
+
+import org.voltdb.utils.DBBPool.BBContainer;
+
+public class TestResultBufferPool extends TestCase {
+
+    public void testTiersAreReused() {
+        ResultBufferPool pool = new ResultBufferPool();
+        assertEquals(0, pool.allocatedBytes());
+
+        BBContainer small = pool.get(1024 * 1024 * 11, 0);
+        assertEquals(ResultBufferPool.TIER_SIZES[0], small.b.capacity());
+        assertEquals(ResultBufferPool.TIER_SIZES[0], pool.allocatedBytes());
+        small.b.position(100);
+
+        // the same buffer comes back cleared
+        assertSame(small, pool.get(1024 * 1024 * 12, 1));
+        assertEquals(0, small.b.position());
+        assertEquals(small.b.capacity(), small.b.limit());
+
+        BBContainer large = pool.get(ResultBufferPool.TIER_SIZES[0] + 1, 2);
+        assertEquals(ResultBufferPool.TIER_SIZES[1], large.b.capacity());
+        assertSame(large, pool.get(ResultBufferPool.TIER_SIZES[1], 3));
+
+        assertNull(pool.get(ResultBufferPool.TIER_SIZES[1] + 1, 4));
+        pool.release();
+        assertEquals(0, pool.allocatedBytes());
+    }
+
+    public void testTrimReleasesIdleTiers() {
+        ResultBufferPool pool = new ResultBufferPool();
+        pool.get(ResultBufferPool.TIER_SIZES[0], 0);
+        pool.get(ResultBufferPool.TIER_SIZES[1], 1000);
+
+        pool.trim(ResultBufferPool.IDLE_TIMEOUT);
+        assertEquals(ResultBufferPool.TIER_SIZES[0] + (long)ResultBufferPool.TIER_SIZES[1],
+                     pool.allocatedBytes());
+
+        pool.trim(ResultBufferPool.IDLE_TIMEOUT + 1);
+        assertEquals(ResultBufferPool.TIER_SIZES[1], pool.allocatedBytes());
+
+        // a trimmed tier is allocated again when needed
+        assertNotNull(pool.get(1, ResultBufferPool.IDLE_TIMEOUT + 2));
+        pool.release();
+    }
+}
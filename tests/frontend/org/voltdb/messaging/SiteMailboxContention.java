@@ -0,0 +1,113 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.messaging;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.voltdb.utils.DBBPool;
+
+/**
+ * Measures delivery throughput into a single execution site mailbox with
+ * many network threads producing and one thread receiving, comparing the
+ * monitor based SiteMailbox with LockFreeSiteMailbox.
+ *
+ * Usage: SiteMailboxContention [messagesPerProducer] [producers...]
+ */
+public class SiteMailboxContention {
+
+    static class BenchMessage extends VoltMessage {
+        @Override
+        protected void initFromBuffer() {}
+
+        @Override
+        protected void flattenToBuffer(DBBPool pool) {}
+    }
+
+    static long run(final SiteMailbox mailbox, int producers, final int perProducer)
+        throws InterruptedException
+    {
+        final CountDownLatch go = new CountDownLatch(1);
+        final BenchMessage message = new BenchMessage();
+        Thread threads[] = new Thread[producers];
+        for (int ii = 0; ii < producers; ii++) {
+            threads[ii] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        go.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int jj = 0; jj < perProducer; jj++) {
+                        mailbox.deliver(message);
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+
+        final long start = System.nanoTime();
+        go.countDown();
+        final long total = (long)producers * perProducer;
+        for (long ii = 0; ii < total; ii++) {
+            if (mailbox.recvBlocking() == null) {
+                throw new RuntimeException("Interrupted while receiving");
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+        for (Thread t : threads) {
+            t.join();
+        }
+        return elapsed;
+    }
+
+    public static void main(String args[]) throws Exception {
+        int perProducer = 200000;
+        int producerCounts[] = new int[] { 1, 8, 16, 32 };
+        if (args.length > 0) {
+            perProducer = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            producerCounts = new int[args.length - 1];
+            for (int ii = 1; ii < args.length; ii++) {
+                producerCounts[ii - 1] = Integer.parseInt(args[ii]);
+            }
+        }
+
+        for (int producers : producerCounts) {
+            // warm up both implementations before measuring
+            run(new SiteMailbox(null, 0, 0, false), producers, perProducer / 10);
+            run(new LockFreeSiteMailbox(null, 0, 0, false), producers, perProducer / 10);
+
+            final long total = (long)producers * perProducer;
+            final long locked = run(new SiteMailbox(null, 0, 0, false), producers, perProducer);
+            final long lockFree = run(new LockFreeSiteMailbox(null, 0, 0, false), producers, perProducer);
+            System.out.printf("producers=%d synchronized=%.0f msgs/sec lockfree=%.0f msgs/sec\n",
+                              producers,
+                              total / (locked / 1000000000.0),
+                              total / (lockFree / 1000000000.0));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.messaging;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.voltdb.utils.DBBPool;
+
+import junit.framework.TestCase;
+
+public class TestLockFreeSiteMailbox extends TestCase {
+
+    static class SubjectMessage extends VoltMessage {
+        final int m_value;
+
+        SubjectMessage(Subject subject, int value) {
+            m_subject = subject.getId();
+            m_value = value;
+        }
+
+        @Override
+        protected void initFromBuffer() {}
+
+        @Override
+        protected void flattenToBuffer(DBBPool pool) {}
+    }
+
+    LockFreeSiteMailbox m_mailbox;
+
+    @Override
+    public void setUp() {
+        m_mailbox = new LockFreeSiteMailbox(null, 1, 1, false);
+    }
+
+    public void testSubjectFilteredReceive() {
+        m_mailbox.deliver(new SubjectMessage(Subject.DEFAULT, 1));
+        m_mailbox.deliver(new SubjectMessage(Subject.FAILURE_SITE_UPDATE, 2));
+        m_mailbox.deliver(new SubjectMessage(Subject.FAILURE, 3));
+
+        // subjects are checked in the order given
+        assertEquals(3, ((SubjectMessage)m_mailbox.recv()).m_value);
+        assertEquals(1, ((SubjectMessage)m_mailbox.recv()).m_value);
+        assertNull(m_mailbox.recv());
+        assertEquals(2, ((SubjectMessage)m_mailbox.recv(
+                new Subject[] { Subject.FAILURE_SITE_UPDATE })).m_value);
+        assertEquals(1, m_mailbox.getSiteId());
+    }
+
+    public void testDeliverFront() {
+        m_mailbox.deliver(new SubjectMessage(Subject.DEFAULT, 1));
+        m_mailbox.deliver(new SubjectMessage(Subject.DEFAULT, 2));
+        m_mailbox.deliverFront(new SubjectMessage(Subject.DEFAULT, 3));
+        m_mailbox.deliverFront(new SubjectMessage(Subject.DEFAULT, 4));
+        assertEquals(4, m_mailbox.getWaitingCount());
+
+        assertEquals(4, ((SubjectMessage)m_mailbox.recv()).m_value);
+        assertEquals(3, ((SubjectMessage)m_mailbox.recv()).m_value);
+        assertEquals(1, ((SubjectMessage)m_mailbox.recv()).m_value);
+        assertEquals(2, ((SubjectMessage)m_mailbox.recv()).m_value);
+        assertEquals(0, m_mailbox.getWaitingCount());
+    }
+
+    public void testRecvBlockingTimeout() {
+        final long start = System.currentTimeMillis();
+        assertNull(m_mailbox.recvBlocking(50));
+        assertTrue(System.currentTimeMillis() - start >= 40);
+    }
+
+    public void testManyProducers() throws Exception {
+        final int producers = 8;
+        final int perProducer = 10000;
+        final CountDownLatch go = new CountDownLatch(1);
+        Thread threads[] = new Thread[producers];
+        for (int ii = 0; ii < producers; ii++) {
+            final int producer = ii;
+            threads[ii] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        go.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int jj = 0; jj < perProducer; jj++) {
+                        m_mailbox.deliver(new SubjectMessage(Subject.DEFAULT, producer * perProducer + jj));
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+        go.countDown();
+
+        // each producer's messages must arrive in the order they were sent
+        int last[] = new int[producers];
+        for (int ii = 0; ii < producers; ii++) {
+            last[ii] = -1;
+        }
+        for (int ii = 0; ii < producers * perProducer; ii++) {
+            SubjectMessage m = (SubjectMessage)m_mailbox.recvBlocking(10000);
+            assertNotNull(m);
+            final int producer = m.m_value / perProducer;
+            assertTrue(m.m_value % perProducer > last[producer]);
+            last[producer] = m.m_value % perProducer;
+        }
+        assertNull(m_mailbox.recv());
+        for (Thread t : threads) {
+            t.join();
+        }
+    }
+}
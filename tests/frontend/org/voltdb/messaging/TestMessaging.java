@@ -27,6 +27,7 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.util.HashSet;
@@ -413,6 +414,86 @@ public class TestMessaging extends TestCase {
         network.shutdown();
     }
 
+    private static MsgTest sequencedMessage(int sequence, int size) {
+        // constructing it directly registers MsgTest for the receiving side
+        MsgTest mt = new MsgTest();
+        mt.initNew();
+        mt.m_localValue = ByteBuffer.allocate(size).putInt(sequence).array();
+        return mt;
+    }
+
+    public void testBatching() throws Exception {
+        VoltNetwork network = new VoltNetwork();
+        network.start();
+        HostMessenger msg1 = new HostMessenger(network, ConnectionUtil.getLocalAddress(), 2, 0, 0, null);
+        Thread.sleep(20);
+        HostMessenger msg2 = new HostMessenger(network, ConnectionUtil.getLocalAddress(), 2, 0, 0, null);
+        msg1.waitForGroupJoin();
+        msg2.waitForGroupJoin();
+
+        int siteId1 = msg1.getHostId() * VoltDB.SITES_TO_HOST_DIVISOR + 1;
+        int siteId2 = msg2.getHostId() * VoltDB.SITES_TO_HOST_DIVISOR + 2;
+        msg1.createLocalSite(siteId1);
+        msg2.createLocalSite(siteId2);
+        Mailbox mb1 = msg1.createMailbox(siteId1, 1, false);
+
+        // small messages with one bigger than a batch frame in the middle,
+        // and a ready signal that has to arrive between the ones around it
+        final int count = 2001;
+        final int big = 1000;
+        final int ready = 500;
+        final int waitingFor = msg2.m_hostsToWaitFor.get();
+
+        // remember how many hosts msg2 was waiting for as each message arrived
+        final HostMessenger receiver = msg2;
+        final int waitingAtDelivery[] = new int[count];
+        Mailbox mb2 = new SiteMailbox(msg2, siteId2, 1, false) {
+            @Override
+            public void deliver(VoltMessage message) {
+                final int sequence = ByteBuffer.wrap(((MsgTest) message).m_localValue).getInt();
+                waitingAtDelivery[sequence] = receiver.m_hostsToWaitFor.get();
+                super.deliver(message);
+            }
+        };
+        msg2.createMailbox(siteId2, 1, mb2);
+        for (int i = 0; i < count; i++) {
+            if (i == ready) {
+                msg1.sendReadyMessage();
+            }
+            mb1.send(siteId2, 1, sequencedMessage(i, i == big ? ForeignHost.MAX_BATCH_BYTES * 2 : 16));
+        }
+
+        long now = System.currentTimeMillis();
+        int received = 0;
+        while (received < count) {
+            assertTrue((System.currentTimeMillis() - now) < 10000);
+            MsgTest mt = (MsgTest) mb2.recv();
+            if (mt == null) {
+                continue;
+            }
+            assertEquals(received, ByteBuffer.wrap(mt.m_localValue).getInt());
+            assertEquals(received == big ? ForeignHost.MAX_BATCH_BYTES * 2 : 16, mt.m_length);
+            assertEquals(received < ready ? waitingFor : waitingFor - 1, waitingAtDelivery[received]);
+            received++;
+        }
+
+        // the big message always goes in a frame of its own, between
+        // at least one frame on each side, and the rest share frames
+        long interval[] = msg1.getBatchStats(true).values().iterator().next();
+        assertEquals(count + 1, interval[0]);
+        assertTrue(interval[1] >= 3);
+        assertTrue(interval[1] < interval[0]);
+        interval = msg1.getBatchStats(true).values().iterator().next();
+        assertEquals(0, interval[0]);
+        assertEquals(0, interval[1]);
+        long total[] = msg1.getBatchStats(false).values().iterator().next();
+        assertEquals(count + 1, total[0]);
+
+        msg1.shutdown();
+        msg2.shutdown();
+        network.shutdown();
+    }
+
     public void testMultiMailbox() throws MessagingException, UnknownHostException, InterruptedException {
         VoltNetwork network = new VoltNetwork();
         network.start();
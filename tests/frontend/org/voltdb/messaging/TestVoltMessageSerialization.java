@@ -25,6 +25,9 @@ package org.voltdb.messaging;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 import junit.framework.TestCase;
 
@@ -75,6 +78,83 @@ public class TestVoltMessageSerialization extends TestCase {
         pool.clear();
     }
 
+    public void testInitiateTaskForwardsSerializedParams() throws IOException {
+        DBBPool pool = new DBBPool();
+        StoredProcedureInvocation spi = new StoredProcedureInvocation();
+        spi.setClientHandle(25);
+        spi.setProcName("johnisgreat");
+        spi.setOriginalTxnId(77);
+        spi.setParams(57, "gooniestoo", new int[] { 1, 2, 3 });
+
+        // Read it back the way ClientInterface does so the params stay serialized
+        FastSerializer fs = new FastSerializer();
+        fs.writeObject(spi);
+        StoredProcedureInvocation fromWire =
+            FastDeserializer.deserialize(fs.getBytes(), StoredProcedureInvocation.class);
+        InitiateTaskMessage itask = new InitiateTaskMessage(23, 8, 100045, false, true, fromWire, 2101);
+        InitiateTaskMessage itask2 = (InitiateTaskMessage) checkVoltMessage(itask, pool);
+
+        StoredProcedureInvocation spi2 = itask2.getStoredProcedureInvocation();
+        assertEquals("johnisgreat", spi2.getProcName());
+        assertEquals(25, spi2.getClientHandle());
+        assertEquals(77, spi2.getOriginalTxnId());
+        assertEquals(fromWire.getSerializedParams(), spi2.getSerializedParams());
+        Object params[] = spi2.getParams().toArray();
+        assertEquals(57, ((Number)params[0]).intValue());
+        assertEquals("gooniestoo", params[1]);
+        assertTrue(Arrays.equals(new int[] { 1, 2, 3 }, (int[])params[2]));
+
+        itask.discard();
+        itask2.discard();
+        pool.clear();
+    }
+
+    public void testInvocationFlattenedConcurrently() throws Exception {
+        StoredProcedureInvocation expected = new StoredProcedureInvocation();
+        expected.setClientHandle(25);
+        expected.setProcName("johnisgreat");
+        expected.setParams(57, "gooniestoo", new int[] { 1, 2, 3 });
+        FastSerializer fs = new FastSerializer();
+        fs.writeObject(expected);
+        final byte expectedBytes[] = fs.getBytes();
+
+        // the command log and the messaging threads size and flatten the same invocation
+        final int threadCount = 4;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int round = 0; round < 100; round++) {
+            final StoredProcedureInvocation spi = new StoredProcedureInvocation();
+            spi.setClientHandle(25);
+            spi.setProcName("johnisgreat");
+            spi.setParams(57, "gooniestoo", new int[] { 1, 2, 3 });
+            final CountDownLatch start = new CountDownLatch(1);
+            Thread threads[] = new Thread[threadCount];
+            for (int ii = 0; ii < threadCount; ii++) {
+                threads[ii] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            ByteBuffer buf = ByteBuffer.allocate(spi.getSerializedSize());
+                            spi.flattenToBuffer(buf);
+                            assertFalse(buf.hasRemaining());
+                            assertTrue(Arrays.equals(expectedBytes, buf.array()));
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                    }
+                };
+                threads[ii].start();
+            }
+            start.countDown();
+            for (Thread t : threads) {
+                t.join();
+            }
+            if (failure.get() != null) {
+                throw new Exception(failure.get());
+            }
+        }
+    }
+
     public void testInitiateResponse() throws IOException {
         DBBPool pool = new DBBPool();
         StoredProcedureInvocation spi = new StoredProcedureInvocation();
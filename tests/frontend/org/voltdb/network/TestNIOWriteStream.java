@@ -59,6 +59,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import org.voltdb.utils.DBBPool;
 import org.voltdb.utils.DBBPool.BBContainer;
+import org.voltdb.utils.DeferredSerialization;
 import org.voltdb.utils.EstTime;
 import org.voltdb.utils.EstTimeUpdater;
 
@@ -153,28 +154,7 @@ public class TestNIOWriteStream extends TestCase {
 
         @Override
         public long write(ByteBuffer src[]) throws IOException {
-            if (!m_open) throw new IOException();
-
-            if (m_behavior == SINK) {
-                int remaining = src[0].remaining();
-                src[0].position(src[0].limit());
-                return remaining;
-            }
-            else if (m_behavior == FULL) {
-                return 0;
-            }
-            else if (m_behavior == PARTIAL) {
-                if (wrotePartial) {
-                    return 0;
-                } else {
-                    wrotePartial = true;
-                }
-                ByteBuffer copy = ByteBuffer.allocate(src[0].remaining());
-                src[0].get(copy.array(), 0, src[0].remaining()/2);
-                return src[0].remaining();
-            }
-            assert(false);
-            return -1;
+            return write(src, 0, src.length);
         }
 
         @Override
@@ -196,9 +176,35 @@ public class TestNIOWriteStream extends TestCase {
         @Override
         public long write(ByteBuffer[] srcs, int offset, int length)
                 throws IOException {
-            // TODO Auto-generated method stub
-            return 0;
+            if (!m_open) throw new IOException();
+            m_gatheringWrites++;
+
+            if (m_behavior == SINK) {
+                long written = 0;
+                for (int ii = offset; ii < offset + length; ii++) {
+                    written += srcs[ii].remaining();
+                    srcs[ii].position(srcs[ii].limit());
+                }
+                return written;
+            }
+            else if (m_behavior == FULL) {
+                return 0;
+            }
+            else if (m_behavior == PARTIAL) {
+                if (wrotePartial) {
+                    return 0;
+                } else {
+                    wrotePartial = true;
+                }
+                ByteBuffer copy = ByteBuffer.allocate(srcs[offset].remaining());
+                srcs[offset].get(copy.array(), 0, srcs[offset].remaining()/2);
+                return srcs[offset].remaining();
+            }
+            assert(false);
+            return -1;
         }
+
+        public int m_gatheringWrites = 0;
     }
 
 
@@ -341,6 +347,87 @@ public class TestNIOWriteStream extends TestCase {
         wstream.shutdown();
     }
 
+    public void testGatheringWrite() throws IOException {
+        MockChannel channel = new MockChannel(MockChannel.SINK);
+        MockPort port = new MockPort();
+        NIOWriteStream wstream = new NIOWriteStream(port);
+
+        final int messages = NIOWriteStream.MAX_GATHERING_BUFFERS + 10;
+        for (int ii = 0; ii < messages; ii++) {
+            ByteBuffer tmp = ByteBuffer.allocate(4);
+            tmp.putInt(ii);
+            tmp.flip();
+            assertTrue(wstream.enqueue(tmp));
+        }
+        int written = wstream.drainTo( channel, wstream.swapAndSerializeQueuedWrites(pool));
+        assertEquals(messages * 4, written);
+        assertTrue(wstream.isEmpty());
+
+        // every queued buffer goes out in as few syscalls as the gather limit allows
+        assertEquals(2, channel.m_gatheringWrites);
+        long stats[] = wstream.getBytesAndMessagesWritten(false);
+        assertEquals(messages * 4, stats[0]);
+        assertEquals(messages, stats[1]);
+        assertEquals(2, stats[2]);
+
+        // a partial write stops the drain without another attempt
+        channel.m_behavior = MockChannel.PARTIAL;
+        for (int ii = 0; ii < 3; ii++) {
+            ByteBuffer tmp = ByteBuffer.allocate(4);
+            tmp.putInt(ii);
+            tmp.flip();
+            assertTrue(wstream.enqueue(tmp));
+        }
+        written = wstream.drainTo( channel, wstream.swapAndSerializeQueuedWrites(pool));
+        assertEquals(2, written);
+        assertEquals(3, channel.m_gatheringWrites);
+        assertFalse(wstream.isEmpty());
+        assertEquals(3, wstream.getBytesAndMessagesWritten(true)[2]);
+        wstream.shutdown();
+    }
+
+    public void testSharedGatheredWrite() throws IOException {
+        final AtomicInteger discardCount = new AtomicInteger(0);
+        final BBContainer body = new BBContainer(ByteBuffer.allocateDirect(64), 0) {
+            @Override
+            public void discard() {
+                discardCount.incrementAndGet();
+            }
+        };
+        //Three references, one of them is released without being written
+        final DBBPool.RefCountedContainer shared = new DBBPool.RefCountedContainer(body, 3);
+
+        MockChannel channel = new MockChannel(MockChannel.SINK);
+        NIOWriteStream streams[] = new NIOWriteStream[] {
+                new NIOWriteStream(new MockPort()), new NIOWriteStream(new MockPort()) };
+        for (final NIOWriteStream wstream : streams) {
+            wstream.enqueue(new DeferredSerialization() {
+                @Override
+                public BBContainer serialize(DBBPool p) {
+                    BBContainer header = p.acquire(4);
+                    header.b.putInt(64).flip();
+                    return new DBBPool.GatheredContainer(header, shared.reference());
+                }
+
+                @Override
+                public void cancel() {}
+            });
+        }
+        shared.release();
+
+        for (NIOWriteStream wstream : streams) {
+            assertEquals(0, discardCount.get());
+            int written = wstream.drainTo( channel, wstream.swapAndSerializeQueuedWrites(pool));
+            assertEquals(68, written);
+            assertTrue(wstream.isEmpty());
+            //Header and body went out together and count as one message
+            assertEquals(1, wstream.getBytesAndMessagesWritten(false)[1]);
+            wstream.shutdown();
+        }
+        assertEquals(2, channel.m_gatheringWrites);
+        assertEquals(1, discardCount.get());
+    }
+
     public void testLastWriteDelta() throws Exception {
         final MockChannel channel = new MockChannel(MockChannel.SINK);
         MockPort port = new MockPort();
@@ -23,8 +23,13 @@
 
 package org.voltdb.network;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
@@ -289,4 +294,78 @@ public class TestVoltNetwork extends TestCase {
         vn.shutdown();
         assertEquals(SelectionKey.OP_ACCEPT, vp.readyOps());
     }
+
+    private static class EchoHandler extends VoltProtocolHandler {
+        @Override
+        public int getMaxRead() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public int getExpectedOutgoingMessageSize() {
+            return 2048;
+        }
+
+        @Override
+        public void handleMessage(ByteBuffer message, Connection c) {
+            ByteBuffer response = ByteBuffer.allocate(message.remaining() + 4);
+            response.putInt(message.remaining());
+            response.put(message);
+            response.flip();
+            c.writeStream().enqueue(response);
+        }
+
+        @Override
+        public Runnable onBackPressure() {
+            return null;
+        }
+
+        @Override
+        public Runnable offBackPressure() {
+            return null;
+        }
+
+        @Override
+        public QueueMonitor writestreamMonitor() {
+            return null;
+        }
+    }
+
+    public void testSelectorLoops() throws Exception {
+        VoltNetwork vn = new VoltNetwork(2, null);
+        vn.start();
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress("localhost", 0));
+        Socket clients[] = new Socket[4];
+        try {
+            for (int ii = 0; ii < clients.length; ii++) {
+                clients[ii] = new Socket("localhost", server.socket().getLocalPort());
+                vn.registerChannel(server.accept(), new EchoHandler());
+            }
+            // one thread per selection loop
+            assertEquals(2, vn.getThreadIds().size());
+            // every connection plus the global row
+            assertEquals(clients.length + 1, vn.getIOStats(false).size());
+
+            for (int ii = 0; ii < clients.length; ii++) {
+                DataOutputStream out = new DataOutputStream(clients[ii].getOutputStream());
+                out.writeInt(4);
+                out.writeInt(ii);
+                out.flush();
+            }
+            for (int ii = 0; ii < clients.length; ii++) {
+                DataInputStream in = new DataInputStream(clients[ii].getInputStream());
+                assertEquals(4, in.readInt());
+                assertEquals(ii, in.readInt());
+            }
+        } finally {
+            for (Socket s : clients) {
+                if (s != null) {
+                    s.close();
+                }
+            }
+            server.close();
+            vn.shutdown();
+        }
+    }
 }
@@ -0,0 +1,124 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.planner;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import org.hsqldb_voltpatches.HSQLInterface;
+import org.voltdb.catalog.Catalog;
+import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DDLCompiler;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.StatementCompiler;
+import org.voltdb.compiler.VoltCompiler;
+
+/**
+ * Reports how long the planner takes to plan a chain of equi-joins as the
+ * number of joined tables grows, and which join enumeration it used.
+ */
+public class PlannerBenchmark {
+
+    static final int MAX_TABLES = StatementCompiler.DEFAULT_MAX_JOIN_TABLES;
+    static final int ITERATIONS = 5;
+
+    static String getSchema() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= MAX_TABLES; i++) {
+            sb.append("CREATE TABLE J").append(i).append(" (\n");
+            sb.append("  ID INTEGER NOT NULL,\n");
+            sb.append("  REF INTEGER NOT NULL,\n");
+            sb.append("  PRIMARY KEY (ID)\n");
+            sb.append(");\n");
+            sb.append("CREATE INDEX IDX_J").append(i).append("_REF ON J").append(i).append(" (REF);\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * select * from J1, ..., Jn where J1.REF = J2.ID and ... and Jn-1.REF = Jn.ID
+     */
+    static String getChainJoin(int tables) {
+        StringBuilder sb = new StringBuilder("select * from J1");
+        for (int i = 2; i <= tables; i++) {
+            sb.append(", J").append(i);
+        }
+        for (int i = 2; i <= tables; i++) {
+            sb.append((i == 2) ? " where " : " and ");
+            sb.append("J").append(i - 1).append(".REF = J").append(i).append(".ID");
+        }
+        return sb.append(";").toString();
+    }
+
+    static String getEnumeration(int tables) {
+        if (tables <= SelectSubPlanAssembler.MAX_EXHAUSTIVE_JOIN_TABLES)
+            return "exhaustive";
+        if (tables <= SelectSubPlanAssembler.MAX_DYNAMIC_PROGRAMMING_JOIN_TABLES)
+            return "dynamic programming";
+        return "greedy";
+    }
+
+    public static void main(String[] args) throws Exception {
+        File ddl = File.createTempFile("plannerbenchmark", "-ddl.sql");
+        ddl.deleteOnExit();
+        FileWriter writer = new FileWriter(ddl);
+        writer.write(getSchema());
+        writer.close();
+
+        Catalog catalog = new Catalog();
+        catalog.execute("add / clusters cluster");
+        catalog.execute("add /clusters[cluster] databases database");
+        Database db = catalog.getClusters().get("cluster").getDatabases().get("database");
+        HSQLInterface hsql = HSQLInterface.loadHsqldb();
+        DDLCompiler ddlCompiler = new DDLCompiler(new VoltCompiler(), hsql);
+        ddlCompiler.loadSchema(ddl.getPath());
+        ddlCompiler.compileToCatalog(catalog, db);
+
+        QueryPlanner planner = new QueryPlanner(catalog.getClusters().get("cluster"), db, hsql,
+                                                new DatabaseEstimates(), false, true);
+
+        System.out.printf("%6s  %-20s  %12s\n", "tables", "enumeration", "ms per plan");
+        for (int tables = 2; tables <= MAX_TABLES; tables++) {
+            String sql = getChainJoin(tables);
+            long elapsed = 0;
+            // the first iteration warms up and isn't timed
+            for (int i = 0; i <= ITERATIONS; i++) {
+                long start = System.nanoTime();
+                CompiledPlan plan = planner.compilePlan(new StatisticsCostModel(), sql, null,
+                                                        "stmt" + tables, "PlannerBenchmark", true,
+                                                        MAX_TABLES, null);
+                if (plan == null) {
+                    throw new RuntimeException("Unable to plan " + sql + ": " + planner.getErrorMessage());
+                }
+                if (i > 0) {
+                    elapsed += System.nanoTime() - start;
+                }
+            }
+            System.out.printf("%6d  %-20s  %12.2f\n", tables, getEnumeration(tables),
+                              elapsed / (ITERATIONS * 1000000.0));
+        }
+
+        hsql.close();
+    }
+}
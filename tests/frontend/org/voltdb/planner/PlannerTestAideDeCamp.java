@@ -136,7 +136,7 @@ public class PlannerTestAideDeCamp {
         String name = catalogStmt.getParent().getTypeName() + "-" + catalogStmt.getTypeName();
 
         DatabaseEstimates estimates = new DatabaseEstimates();
-        TrivialCostModel costModel = new TrivialCostModel();
+        StatisticsCostModel costModel = new StatisticsCostModel();
         QueryPlanner planner =
             new QueryPlanner(catalog.getClusters().get("cluster"), db, hsql,
                              estimates, true, false);
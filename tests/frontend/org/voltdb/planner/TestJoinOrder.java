@@ -23,6 +23,8 @@
 
 package org.voltdb.planner;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 
 import junit.framework.TestCase;
@@ -30,7 +32,10 @@ import junit.framework.TestCase;
 import org.voltdb.catalog.CatalogMap;
 import org.voltdb.catalog.Cluster;
 import org.voltdb.catalog.Table;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.expressions.TupleValueExpression;
 import org.voltdb.plannodes.*;
+import org.voltdb.types.PlanNodeType;
 
 public class TestJoinOrder extends TestCase {
     private PlannerTestAideDeCamp aide;
@@ -92,6 +97,81 @@ public class TestJoinOrder extends TestCase {
         }
     }
 
+    public void testLargeJoinWithoutJoinOrder() {
+        // too many tables to try every order
+        AbstractPlanNode pn = compile("select * FROM T1, T2, T3, T4, T5, T6, T7, T8 " +
+                                      "where T1.A = T2.B and T2.B = T3.C and T3.C = T4.D and " +
+                                      "T4.D = T5.E and T5.E = T6.F and T6.F = T7.G and T7.G = T8.H",
+                                      0, false, null);
+        HashSet<String> scanned = new HashSet<String>();
+        ArrayList<AbstractPlanNode> scans = pn.findAllNodesOfType(PlanNodeType.SEQSCAN);
+        for (AbstractPlanNode scan : scans) {
+            scanned.add(((SeqScanPlanNode) scan).getTargetTableName());
+        }
+        assertEquals(8, scans.size());
+        assertEquals(8, scanned.size());
+        // every table is joined on an equality
+        assertEquals(7, pn.findAllNodesOfType(PlanNodeType.HASHJOIN).size());
+        assertEquals(0, pn.findAllNodesOfType(PlanNodeType.NESTLOOP).size());
+    }
+
+    public void testHashJoinForUnindexedEquality() {
+        AbstractPlanNode pn = compile("select * FROM T1, T2 where T1.A = T2.B", 0, false, "T1,T2");
+        ArrayList<AbstractPlanNode> joins = pn.findAllNodesOfType(PlanNodeType.HASHJOIN);
+        assertEquals(1, joins.size());
+        HashJoinPlanNode join = (HashJoinPlanNode) joins.get(0);
+        assertEquals(1, join.getOuterKeys().size());
+        assertEquals(1, join.getInnerKeys().size());
+        assertNull(join.getPredicate());
+
+        // the key expressions must be over the child they are evaluated against
+        String outerTable = ((SeqScanPlanNode) join.getChild(0)).getTargetTableName();
+        String innerTable = ((SeqScanPlanNode) join.getChild(1)).getTargetTableName();
+        assertFalse(outerTable.equals(innerTable));
+        assertEquals(outerTable, ((TupleValueExpression) join.getOuterKeys().get(0)).getTableName());
+        assertEquals(innerTable, ((TupleValueExpression) join.getInnerKeys().get(0)).getTableName());
+
+        // a join without an equality has to compare every pair of tuples
+        pn = compile("select * FROM T1, T2 where T1.A > T2.B", 0, false, "T1,T2");
+        assertEquals(0, pn.findAllNodesOfType(PlanNodeType.HASHJOIN).size());
+        assertEquals(1, pn.findAllNodesOfType(PlanNodeType.NESTLOOP).size());
+
+        // equalities become keys, anything else is left in the predicate
+        pn = compile("select * FROM T1, T2 where T1.A = T2.B and T1.A > T2.B", 0, false, "T1,T2");
+        join = (HashJoinPlanNode) pn.findAllNodesOfType(PlanNodeType.HASHJOIN).get(0);
+        assertEquals(1, join.getOuterKeys().size());
+        assertNotNull(join.getPredicate());
+    }
+
+    private double cost(AbstractPlanNode pn) {
+        Cluster cluster = aide.getCatalog().getClusters().get("cluster");
+        PlanStatistics stats = new PlanStatistics();
+        assertTrue(pn.computeEstimatesRecursively(stats, cluster, cluster.getDatabases().get("database"),
+                                                  new DatabaseEstimates(), null));
+        return new StatisticsCostModel().getPlanCost(stats);
+    }
+
+    public void testJoinCostsAreNotCapped() {
+        // with the default cardinalities every extra table multiplies the
+        // tuples a cartesian product reads by a million
+        double three = cost(compile("select * FROM T1, T2, T3", 0, false, "T1,T2,T3"));
+        double four = cost(compile("select * FROM T1, T2, T3, T4", 0, false, "T1,T2,T3,T4"));
+        assertTrue(four > three * 1000);
+
+        // join predicates shrink what the later joins read
+        double filtered = cost(compile("select * FROM T1, T2, T3 where T1.A > T2.B and T2.B > T3.C",
+                                       0, false, "T1,T2,T3"));
+        assertTrue(filtered < three);
+    }
+
+    public void testJoinSelectivity() {
+        AbstractPlanNode pn = compile("select * FROM T1, T2 where T1.A = T2.B and T1.A > T2.B", 0, false, "T1,T2");
+        HashJoinPlanNode join = (HashJoinPlanNode) pn.findAllNodesOfType(PlanNodeType.HASHJOIN).get(0);
+        assertEquals(1.0, StatisticsCostModel.joinSelectivity(null, 10, 1000));
+        assertEquals(StatisticsCostModel.RANGE_SELECTIVITY,
+                     StatisticsCostModel.joinSelectivity(join.getPredicate(), 10, 1000));
+    }
+
     @Override
     protected void setUp() throws Exception {
         aide = new PlannerTestAideDeCamp(TestJoinOrder.class.getResource("testjoinorder-ddl.sql"),
@@ -29,8 +29,11 @@ import java.io.IOException;
 import junit.framework.TestCase;
 
 import org.voltdb.CatalogContext;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
 import org.voltdb.benchmark.tpcc.TPCCProjectBuilder;
 import org.voltdb.catalog.Catalog;
+import org.voltdb.compiler.DatabaseEstimates;
 import org.voltdb.compiler.PlannerTool;
 import org.voltdb.compiler.VoltProjectBuilder;
 import org.voltdb.utils.CatalogUtil;
@@ -66,7 +69,7 @@ public class TestPlannerTool extends TestCase {
         result = m_pt.planSql("select * from warehouse;", false);
         System.out.println(result);
 
-        // try too many tables
+        // joins of more than five tables are ordered without trying every order
         try {
             result = m_pt.planSql("select * from WAREHOUSE, DISTRICT, CUSTOMER, CUSTOMER_NAME, HISTORY, STOCK, ORDERS, NEW_ORDER, ORDER_LINE where " +
                 "WAREHOUSE.W_ID = DISTRICT.D_W_ID and " +
@@ -77,10 +80,12 @@ public class TestPlannerTool extends TestCase {
                 "WAREHOUSE.W_ID = ORDERS.O_W_ID and " +
                 "WAREHOUSE.W_ID = NEW_ORDER.NO_W_ID and " +
                 "WAREHOUSE.W_ID = ORDER_LINE.OL_W_ID and " +
-                "WAREHOUSE.W_ID = 0", false);
+                "WAREHOUSE.W_ID = 0", true);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
             fail();
         }
-        catch (Exception e) {}
 
         // commented out code put the big stat
         /*int i = 0;
@@ -159,4 +164,59 @@ public class TestPlannerTool extends TestCase {
         // would return a Stream Closed error
         m_pt.planSql("select * from A;", false);
     }
+
+    private static DatabaseEstimates measured(long aTuples, long bTuples) {
+        VoltTable tableStats = new VoltTable(new VoltTable.ColumnInfo("TABLE_NAME", VoltType.STRING),
+                                             new VoltTable.ColumnInfo("TUPLE_COUNT", VoltType.BIGINT));
+        tableStats.addRow("A", aTuples);
+        tableStats.addRow("B", bTuples);
+        VoltTable indexStats = new VoltTable(new VoltTable.ColumnInfo("INDEX_NAME", VoltType.STRING),
+                                             new VoltTable.ColumnInfo("TABLE_NAME", VoltType.STRING),
+                                             new VoltTable.ColumnInfo("ENTRY_COUNT", VoltType.BIGINT),
+                                             new VoltTable.ColumnInfo("IS_UNIQUE", VoltType.TINYINT));
+        indexStats.addRow("IDX_B_A", "B", bTuples, (byte) 0);
+        return DatabaseEstimates.fromStatistics(tableStats, indexStats);
+    }
+
+    public void testMeasuredEstimates() throws IOException
+    {
+        VoltProjectBuilder builder = new VoltProjectBuilder();
+        builder.addLiteralSchema("create table A (id bigint not null, primary key(id));\n" +
+                                 "create table B (id bigint not null, a_id bigint not null, primary key(id));\n" +
+                                 "create index IDX_B_A on B (a_id);");
+        builder.addStmtProcedure("MakeCompileHappy", "select * from A where id = ?;");
+
+        final File jar = new File("testestimates-oop.jar");
+        jar.deleteOnExit();
+        builder.compile("testestimates-oop.jar");
+        byte[] bytes = CatalogUtil.toBytes(jar);
+        Catalog c = new Catalog();
+        c.execute(CatalogUtil.loadCatalogFromJar(bytes, null));
+        m_pt = new PlannerTool(new CatalogContext(0, c, bytes, 0, 0, 0));
+
+        final String sql = "select * from A, B where A.id = B.a_id;";
+
+        // nothing has been measured, so there is nothing worth showing
+        String explained = m_pt.explainSql(sql, false);
+        assertFalse(explained.contains("est."));
+
+        // scan the small table and look its rows up in the large one
+        m_pt.setEstimates(measured(10, 1000000));
+        explained = m_pt.explainSql(sql, false);
+        assertTrue(explained.contains("SEQUENTIAL SCAN of \"A\" (est. 10 rows)"));
+        assertTrue(explained.contains("IDX_B_A"));
+
+        m_pt.setEstimates(measured(1000000, 10));
+        explained = m_pt.explainSql(sql, false);
+        assertTrue(explained.contains("SEQUENTIAL SCAN of \"B\" (est. 10 rows)"));
+        assertFalse(explained.contains("IDX_B_A"));
+
+        // only unique indexes tell how many distinct keys they hold
+        DatabaseEstimates estimates = measured(1000000, 10);
+        assertTrue(estimates.getEstimatesForTable("A").measured);
+        assertEquals(10, estimates.getEstimatesForTable("B").maxTuples);
+        assertEquals(10, estimates.getEstimatesForIndex("B", "IDX_B_A").entries);
+        assertEquals(-1, estimates.getEstimatesForIndex("B", "IDX_B_A").distinctKeys);
+        assertNull(estimates.getEstimatesForIndex("A", "IDX_B_A"));
+    }
 }
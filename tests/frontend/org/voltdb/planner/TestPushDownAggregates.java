@@ -215,6 +215,39 @@ public class TestPushDownAggregates extends TestCase {
         System.out.println(pnl.toDOTString("FRAG1"));
     }
 
+    public void testSinglePartTopN() {
+        List<AbstractPlanNode> pn =
+                compile("select A1 from T1 order by A1 limit 5 offset 1", 0, true);
+        assertEquals(1, pn.size());
+        checkTopN(pn.get(0), 5, 1);
+    }
+
+    public void testMultiPartTopN() {
+        List<AbstractPlanNode> pn =
+                compile("select A1 from T1 order by A1 limit 5 offset 1", 0, false);
+        assertEquals(2, pn.size());
+        // the coordinator applies the original limit and offset to the merged top-Ns
+        checkTopN(pn.get(0), 5, 1);
+        // each partition keeps its top limit + offset tuples
+        LimitPlanNode distLimit = checkTopN(pn.get(1), 6, 0);
+        assertNotNull(distLimit.getLimitExpression());
+    }
+
+    /**
+     * Check that a plan sorts with an inlined limit instead of limiting the sorted output
+     */
+    private LimitPlanNode checkTopN(AbstractPlanNode root, int limit, int offset) {
+        assertTrue(root.findAllNodesOfType(PlanNodeType.LIMIT).isEmpty());
+        List<AbstractPlanNode> orderBys = root.findAllNodesOfType(PlanNodeType.ORDERBY);
+        assertEquals(1, orderBys.size());
+        LimitPlanNode limitNode =
+            (LimitPlanNode) orderBys.get(0).getInlinePlanNode(PlanNodeType.LIMIT);
+        assertNotNull(limitNode);
+        assertEquals(limit, limitNode.getLimit());
+        assertEquals(offset, limitNode.getOffset());
+        return limitNode;
+    }
+
     /**
      * Check if the aggregate node is pushed-down in the given plan. If the
      * pushDownTypes is null, it assumes that the aggregate node should NOT be
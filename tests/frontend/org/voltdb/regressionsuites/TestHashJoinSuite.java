@@ -0,0 +1,212 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.regressionsuites;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.voltdb.BackendTarget;
+import org.voltdb.VoltTable;
+import org.voltdb.client.Client;
+import org.voltdb.client.ProcCallException;
+import org.voltdb.compiler.VoltProjectBuilder;
+
+/**
+ * Equi-joins of unindexed tables are planned as hash joins. Each query is
+ * checked against the join computed here, on the native EE and on HSQL.
+ */
+public class TestHashJoinSuite extends RegressionSuite {
+
+    static final int R1_ROWS = 60;
+    static final int R2_ROWS = 25;
+    static final int R3_ROWS = 10;
+
+    public TestHashJoinSuite(String name) {
+        super(name);
+    }
+
+    private static Integer r1V(int i) {
+        return (i % 11 == 0) ? null : i % 7;
+    }
+
+    private static String r1S(int i) {
+        return "s" + (i % 5);
+    }
+
+    private static Integer r2V(int i) {
+        return (i % 6 == 0) ? null : i % 5;
+    }
+
+    private static String r2S(int i) {
+        return "s" + (i % 3);
+    }
+
+    private static int r3V(int i) {
+        return i % 4;
+    }
+
+    private void load(Client client) throws IOException, ProcCallException {
+        for (int i = 0; i < R1_ROWS; i++) {
+            client.callProcedure("R1.insert", i, r1V(i), r1S(i));
+        }
+        for (int i = 0; i < R2_ROWS; i++) {
+            client.callProcedure("R2.insert", (long) i, r2V(i), r2S(i));
+        }
+        for (int i = 0; i < R3_ROWS; i++) {
+            client.callProcedure("R3.insert", i, r3V(i));
+        }
+    }
+
+    private static String pair(long a, long b) {
+        return a + "," + b;
+    }
+
+    /** Check the (ID, ID) pairs a query returned, in any order */
+    private void assertPairs(ArrayList<String> expected, VoltTable result) {
+        ArrayList<String> actual = new ArrayList<String>();
+        while (result.advanceRow()) {
+            actual.add(pair(result.getLong(0), result.getLong(1)));
+        }
+        Collections.sort(expected);
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+    }
+
+    public void testIntegerKey() throws IOException, ProcCallException {
+        Client client = getClient();
+        load(client);
+
+        ArrayList<String> expected = new ArrayList<String>();
+        for (int i = 0; i < R1_ROWS; i++) {
+            for (int j = 0; j < R2_ROWS; j++) {
+                // NULLs never match
+                if (r1V(i) != null && r1V(i).equals(r2V(j))) {
+                    expected.add(pair(i, j));
+                }
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertPairs(expected, client.callProcedure("JoinOnV").getResults()[0]);
+    }
+
+    public void testMixedIntegerKeys() throws IOException, ProcCallException {
+        Client client = getClient();
+        load(client);
+
+        // INTEGER compared with BIGINT
+        ArrayList<String> expected = new ArrayList<String>();
+        for (int i = 0; i < R2_ROWS; i++) {
+            expected.add(pair(i, i));
+        }
+        assertPairs(expected, client.callProcedure("JoinOnId").getResults()[0]);
+    }
+
+    public void testStringKey() throws IOException, ProcCallException {
+        Client client = getClient();
+        load(client);
+
+        ArrayList<String> expected = new ArrayList<String>();
+        for (int i = 0; i < R1_ROWS; i++) {
+            for (int j = 0; j < R2_ROWS; j++) {
+                if (r1S(i).equals(r2S(j))) {
+                    expected.add(pair(i, j));
+                }
+            }
+        }
+        assertPairs(expected, client.callProcedure("JoinOnS").getResults()[0]);
+    }
+
+    public void testKeyAndPredicate() throws IOException, ProcCallException {
+        Client client = getClient();
+        load(client);
+
+        ArrayList<String> expected = new ArrayList<String>();
+        for (int i = 0; i < R1_ROWS; i++) {
+            for (int j = 0; j < R2_ROWS; j++) {
+                if (r1V(i) != null && r1V(i).equals(r2V(j)) && r1S(i).equals(r2S(j)) && i < j) {
+                    expected.add(pair(i, j));
+                }
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertPairs(expected, client.callProcedure("JoinOnVAndS").getResults()[0]);
+    }
+
+    public void testThreeTables() throws IOException, ProcCallException {
+        Client client = getClient();
+        load(client);
+
+        long expected = 0;
+        for (int i = 0; i < R1_ROWS; i++) {
+            for (int j = 0; j < R2_ROWS; j++) {
+                for (int k = 0; k < R3_ROWS; k++) {
+                    if (r1V(i) != null && r1V(i).equals(r2V(j)) && r2V(j) == r3V(k)) {
+                        expected++;
+                    }
+                }
+            }
+        }
+        assertTrue(expected > 0);
+        VoltTable result = client.callProcedure("JoinThree").getResults()[0];
+        assertEquals(expected, result.asScalarLong());
+    }
+
+    public void testEmptyInput() throws IOException, ProcCallException {
+        Client client = getClient();
+        for (int i = 0; i < R1_ROWS; i++) {
+            client.callProcedure("R1.insert", i, r1V(i), r1S(i));
+        }
+        VoltTable result = client.callProcedure("JoinOnV").getResults()[0];
+        assertEquals(0, result.getRowCount());
+    }
+
+    static public junit.framework.Test suite() {
+        VoltServerConfig config = null;
+        MultiConfigSuiteBuilder builder = new MultiConfigSuiteBuilder(
+                TestHashJoinSuite.class);
+        VoltProjectBuilder project = new VoltProjectBuilder();
+
+        project.addSchema(TestHashJoinSuite.class.getResource("testhashjoin-ddl.sql"));
+        project.addStmtProcedure("JoinOnV", "SELECT R1.ID, R2.ID FROM R1, R2 WHERE R1.V = R2.V;");
+        project.addStmtProcedure("JoinOnId", "SELECT R1.ID, R2.ID FROM R1, R2 WHERE R1.ID = R2.ID;");
+        project.addStmtProcedure("JoinOnS", "SELECT R1.ID, R2.ID FROM R1, R2 WHERE R1.S = R2.S;");
+        project.addStmtProcedure("JoinOnVAndS", "SELECT R1.ID, R2.ID FROM R1, R2 " +
+                                 "WHERE R1.V = R2.V AND R1.S = R2.S AND R1.ID < R2.ID;");
+        project.addStmtProcedure("JoinThree", "SELECT COUNT(*) FROM R1, R2, R3 " +
+                                 "WHERE R1.V = R2.V AND R2.V = R3.V;");
+
+        config = new LocalSingleProcessServer("testhashjoin-onesite.jar",
+                                              1, BackendTarget.NATIVE_EE_JNI);
+        config.compile(project);
+        builder.addServerConfig(config);
+
+        config = new LocalSingleProcessServer("testhashjoin-hsql.jar",
+                                              1, BackendTarget.HSQLDB_BACKEND);
+        config.compile(project);
+        builder.addServerConfig(config);
+
+        return builder;
+    }
+}
@@ -0,0 +1,204 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.voltdb.regressionsuites;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.TreeMap;
+
+import org.voltdb.BackendTarget;
+import org.voltdb.VoltTable;
+import org.voltdb.client.Client;
+import org.voltdb.client.NullCallback;
+import org.voltdb.compiler.VoltProjectBuilder;
+
+/**
+ * ORDER BY and GROUP BY over scans several times the size of the temp
+ * table limit, which only complete if the scan output spills. Each query
+ * is checked against the result computed here, on the native EE and on
+ * HSQL.
+ */
+public class TestTempTableSpillSuite extends RegressionSuite {
+
+    // about 500 bytes a tuple, 6MB in all against a 4MB limit
+    static final int ROWS = 12000;
+    static final int GROUPS = 97;
+    static final int PADS = 8;
+    static final int PAD_LENGTH = 60;
+
+    static final String PAD_COLUMNS = "P1, P2, P3, P4, P5, P6, P7, P8";
+
+    public TestTempTableSpillSuite(String name) {
+        super(name);
+    }
+
+    private static long grp(int i) {
+        return i % GROUPS;
+    }
+
+    private static String pad(int i, int column) {
+        StringBuilder sb = new StringBuilder();
+        sb.append((i * (column + 7)) % 1000);
+        while (sb.length() < PAD_LENGTH) {
+            sb.append('x');
+        }
+        return sb.toString();
+    }
+
+    private void load(Client client) throws Exception {
+        for (int i = 0; i < ROWS; i++) {
+            Object[] row = new Object[PADS + 2];
+            // inserted out of order so that the sorts have work to do
+            row[0] = (long) ((i * 7919) % ROWS);
+            row[1] = grp(i);
+            for (int column = 0; column < PADS; column++) {
+                row[column + 2] = pad(i, column);
+            }
+            client.callProcedure(new NullCallback(), "T.insert", row);
+        }
+        client.drain();
+        VoltTable result = client.callProcedure("CountRows").getResults()[0];
+        assertEquals(ROWS, result.asScalarLong());
+    }
+
+    /** Check that a query returned the IDs from first on, in order */
+    private void assertIds(VoltTable result, int first, int count) {
+        assertEquals(count, result.getRowCount());
+        long expected = first;
+        while (result.advanceRow()) {
+            assertEquals(expected++, result.getLong(0));
+        }
+    }
+
+    public void testOrderBy() throws Exception {
+        Client client = getClient();
+        load(client);
+
+        // the wide tuples are sorted, and only then narrowed to ID, so
+        // the sorted output spills as well
+        VoltTable result = client.callProcedure("OrderByAll").getResults()[0];
+        ArrayList<String> expected = new ArrayList<String>();
+        for (int i = 0; i < ROWS; i++) {
+            // the pads all have the same length and the IDs are padded,
+            // so these sort like the rows
+            StringBuilder key = new StringBuilder();
+            for (int column = 0; column < PADS; column++) {
+                key.append(pad(i, column)).append(',');
+            }
+            expected.add(key.append(String.format("%05d", (i * 7919) % ROWS)).toString());
+        }
+        Collections.sort(expected);
+        assertEquals(ROWS, result.getRowCount());
+        for (String row : expected) {
+            assertTrue(result.advanceRow());
+            assertEquals(Long.parseLong(row.substring(row.lastIndexOf(',') + 1)),
+                         result.getLong(0));
+        }
+    }
+
+    public void testOrderByLimit() throws Exception {
+        Client client = getClient();
+        load(client);
+
+        assertIds(client.callProcedure("OrderByLimit", 10, 0).getResults()[0], 0, 10);
+        assertIds(client.callProcedure("OrderByLimit", 10, 5000).getResults()[0], 5000, 10);
+        assertIds(client.callProcedure("OrderByLimit", 10, ROWS - 3).getResults()[0], ROWS - 3, 3);
+        assertIds(client.callProcedure("OrderByLimit", 10, ROWS).getResults()[0], ROWS, 0);
+    }
+
+    public void testGroupBy() throws Exception {
+        Client client = getClient();
+        load(client);
+
+        // GRP -> COUNT(*), SUM(ID), MAX(P1), MIN(P8)
+        TreeMap<Long, Object[]> expected = new TreeMap<Long, Object[]>();
+        for (int i = 0; i < ROWS; i++) {
+            long id = (i * 7919) % ROWS;
+            Object[] group = expected.get(grp(i));
+            if (group == null) {
+                group = new Object[] { 0L, 0L, pad(i, 0), pad(i, PADS - 1) };
+                expected.put(grp(i), group);
+            }
+            group[0] = (Long) group[0] + 1;
+            group[1] = (Long) group[1] + id;
+            if (pad(i, 0).compareTo((String) group[2]) > 0) {
+                group[2] = pad(i, 0);
+            }
+            if (pad(i, PADS - 1).compareTo((String) group[3]) < 0) {
+                group[3] = pad(i, PADS - 1);
+            }
+        }
+
+        VoltTable result = client.callProcedure("GroupBy").getResults()[0];
+        assertEquals(GROUPS, result.getRowCount());
+        for (Long grp : expected.keySet()) {
+            assertTrue(result.advanceRow());
+            Object[] group = expected.get(grp);
+            assertEquals(grp.longValue(), result.getLong(0));
+            assertEquals(group[0], result.getLong(1));
+            assertEquals(group[1], result.getLong(2));
+            assertEquals(group[2], result.getString(3));
+            assertEquals(group[3], result.getString(4));
+        }
+    }
+
+    static public junit.framework.Test suite() {
+        VoltServerConfig config = null;
+        MultiConfigSuiteBuilder builder = new MultiConfigSuiteBuilder(
+                TestTempTableSpillSuite.class);
+        VoltProjectBuilder project = new VoltProjectBuilder();
+
+        try {
+            project.addLiteralSchema(
+                    "CREATE TABLE T (ID BIGINT NOT NULL, GRP BIGINT NOT NULL, " +
+                    "P1 VARCHAR(60), P2 VARCHAR(60), P3 VARCHAR(60), P4 VARCHAR(60), " +
+                    "P5 VARCHAR(60), P6 VARCHAR(60), P7 VARCHAR(60), P8 VARCHAR(60));");
+        } catch (IOException e) {
+            fail();
+        }
+        project.addStmtProcedure("CountRows", "SELECT COUNT(*) FROM T;");
+        // the predicates make the scans copy T into temp tables
+        project.addStmtProcedure("OrderByAll", "SELECT ID FROM T " +
+                                 "WHERE ID >= 0 ORDER BY " + PAD_COLUMNS + ", ID;");
+        project.addStmtProcedure("OrderByLimit", "SELECT ID, " + PAD_COLUMNS + " FROM T " +
+                                 "WHERE ID >= 0 ORDER BY ID LIMIT ? OFFSET ?;");
+        project.addStmtProcedure("GroupBy", "SELECT GRP, COUNT(*), SUM(ID), MAX(P1), MIN(P8) " +
+                                 "FROM T WHERE " + PAD_COLUMNS.replace(",", " IS NOT NULL AND") +
+                                 " IS NOT NULL GROUP BY GRP ORDER BY GRP;");
+        project.setMaxTempTableMemory(4);
+        project.setTempTableSpillSize(64);
+
+        config = new LocalSingleProcessServer("testtempspill-onesite.jar",
+                                              1, BackendTarget.NATIVE_EE_JNI);
+        config.compile(project);
+        builder.addServerConfig(config);
+
+        config = new LocalSingleProcessServer("testtempspill-hsql.jar",
+                                              1, BackendTarget.HSQLDB_BACKEND);
+        config.compile(project);
+        builder.addServerConfig(config);
+
+        return builder;
+    }
+}
@@ -0,0 +1,17 @@
+-- no indexes, so every join is planned as a hash join or a nest loop
+CREATE TABLE R1 (
+ ID            INTEGER NOT NULL,
+ V             INTEGER,
+ S             VARCHAR(16)
+);
+
+CREATE TABLE R2 (
+ ID            BIGINT NOT NULL,
+ V             INTEGER,
+ S             VARCHAR(16)
+);
+
+CREATE TABLE R3 (
+ ID            INTEGER NOT NULL,
+ V             INTEGER
+);
@@ -278,4 +278,38 @@ public class TestTableSaveFile extends TestCase {
         }
         assertEquals(table, reaggregate_table);
     }
+
+    public void testReadAheadPoll() throws Exception {
+        Pair<VoltTable, File> generated = generateTestTable(100000);
+        VoltTable table = generated.getFirst();
+        File f = generated.getSecond();
+
+        FileInputStream fis = new FileInputStream(f);
+        TableSaveFile savefile = new TableSaveFile(fis.getChannel(), 3, null);
+        savefile.startReadAhead();
+
+        VoltTable reaggregate_table = null;
+        while (savefile.hasMoreChunks()) {
+            // poll never waits for the reader, spin until it catches up
+            BBContainer c = savefile.pollNextChunk();
+            if (c == null) {
+                Thread.yield();
+                continue;
+            }
+            try {
+                VoltTable test_table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b, false);
+                if (reaggregate_table == null) {
+                    reaggregate_table = test_table.clone(10000);
+                }
+                while (test_table.advanceRow()) {
+                    // this will add the active row from test_table
+                    reaggregate_table.add(test_table);
+                }
+            } finally {
+                c.discard();
+            }
+        }
+        assertNull(savefile.pollNextChunk());
+        assertEquals(table, reaggregate_table);
+    }
 }
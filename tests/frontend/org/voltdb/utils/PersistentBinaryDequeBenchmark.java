@@ -0,0 +1,119 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.voltdb.utils.DBBPool.BBContainer;
+
+/**
+ * Export overflow throughput of PersistentBinaryDeque with and without
+ * mapped segments. Each iteration offers the blocks, syncs, then polls and
+ * discards all of them, checking that the data comes back intact.
+ *
+ * Each configuration is run for a number of warmup iterations that are
+ * discarded before the measured iterations.
+ *
+ * Usage: PersistentBinaryDequeBenchmark [directory] [blocks]
+ */
+public class PersistentBinaryDequeBenchmark {
+
+    static final int WARMUP_ITERATIONS = 2;
+    static final int MEASURED_ITERATIONS = 5;
+    static final int BLOCK_SIZE = 1024 * 1024 * 2;
+    static final String NONCE = "pbd_bench";
+
+    static void clear(File dir) {
+        for (File f : dir.listFiles()) {
+            if (f.getName().startsWith(NONCE)) {
+                f.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the offer+sync and poll times in nanoseconds
+     */
+    static long[] run(File dir, boolean useMmap, ByteBuffer block, int blocks) throws IOException {
+        clear(dir);
+        PersistentBinaryDeque pbd = new PersistentBinaryDeque(NONCE, dir, useMmap);
+        try {
+            long start = System.nanoTime();
+            for (int ii = 0; ii < blocks; ii++) {
+                block.clear();
+                pbd.offer(new BBContainer[] { DBBPool.wrapBB(block) });
+            }
+            pbd.sync();
+            final long offerNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long checksum = 0;
+            for (int ii = 0; ii < blocks; ii++) {
+                BBContainer retval = pbd.poll();
+                while (retval.b.remaining() > 7) {
+                    checksum += retval.b.getLong();
+                }
+                retval.discard();
+            }
+            final long pollNanos = System.nanoTime() - start;
+            if (checksum != 42L * (BLOCK_SIZE / 8) * blocks) {
+                throw new RuntimeException("Polled data doesn't match what was offered");
+            }
+            return new long[] { offerNanos, pollNanos };
+        } finally {
+            pbd.close();
+            clear(dir);
+        }
+    }
+
+    public static void main(String args[]) throws IOException {
+        final File dir = new File(args.length > 0 ? args[0] : "/tmp/" + System.getProperty("user.name"));
+        final int blocks = args.length > 1 ? Integer.parseInt(args[1]) : 96;
+        dir.mkdirs();
+
+        final ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE);
+        while (block.remaining() > 7) {
+            block.putLong(42);
+        }
+
+        final double megabytes = blocks * (BLOCK_SIZE / (1024.0 * 1024.0));
+        System.out.printf("blocks=%d (%.0f MB) in %s\n", blocks, megabytes, dir);
+        for (boolean useMmap : new boolean[] { false, true }) {
+            long offerBest = Long.MAX_VALUE, pollBest = Long.MAX_VALUE;
+            for (int iteration = 0; iteration < WARMUP_ITERATIONS + MEASURED_ITERATIONS; iteration++) {
+                final long times[] = run(dir, useMmap, block, blocks);
+                if (iteration >= WARMUP_ITERATIONS) {
+                    offerBest = Math.min(offerBest, times[0]);
+                    pollBest = Math.min(pollBest, times[1]);
+                }
+            }
+            System.out.printf("%s segments: offer+sync %6.1f MB/sec, poll %6.1f MB/sec\n",
+                              useMmap ? "mapped " : "channel",
+                              megabytes / (offerBest / 1000000000.0),
+                              megabytes / (pollBest / 1000000000.0));
+        }
+    }
+}
@@ -281,7 +281,7 @@ public class TestCatalogUtil extends TestCase {
             "   <paths><voltdbroot path=\"/tmp/" + System.getProperty("user.name") + "\" /></paths>" +
             "   <snapshot frequency=\"5s\" retain=\"10\" prefix=\"pref2\" enabled=\"true\"/>" +
             "   <systemsettings>" +
-            "      <temptables maxsize=\"200\"/>" +
+            "      <temptables maxsize=\"200\" spillsize=\"1024\"/>" +
             "   </systemsettings>" +
             "</deployment>";
 
@@ -289,12 +289,14 @@ public class TestCatalogUtil extends TestCase {
         long crcDepOff = CatalogUtil.compileDeploymentAndGetCRC(catalog, tmpDepOff.getPath(), true);
         Systemsettings sysset = catalog.getClusters().get("cluster").getDeployment().get("deployment").getSystemsettings().get("systemsettings");
         assertEquals(100, sysset.getMaxtemptablesize());
+        assertEquals(0, sysset.getTempspillsize());
 
         setUp();
         final File tmpDepOn = VoltProjectBuilder.writeStringToTempFile(depOn);
         long crcDepOn = CatalogUtil.compileDeploymentAndGetCRC(catalog, tmpDepOn.getPath(), true);
         sysset = catalog.getClusters().get("cluster").getDeployment().get("deployment").getSystemsettings().get("systemsettings");
         assertEquals(200, sysset.getMaxtemptablesize());
+        assertEquals(1024, sysset.getTempspillsize());
         assertTrue(crcDepOff != crcDepOn);
     }
 
@@ -307,6 +309,7 @@ public class TestCatalogUtil extends TestCase {
         final String exportpath = "test_export_overflow";
         final String commandlogpath = "test_command_log";
         final String commandlogsnapshotpath = "test_command_log_snapshot";
+        final String tempspillpath = "test_temp_spill";
 
         File voltroot = new File(voltdbroot);
         for (File f : voltroot.listFiles())
@@ -324,6 +327,7 @@ public class TestCatalogUtil extends TestCase {
             "       <exportoverflow path=\"" + exportpath + "\"/>" +
             "       <commandlog path=\"" + commandlogpath + "\"/>" +
             "       <commandlogsnapshot path=\"" + commandlogsnapshotpath + "\"/>" +
+            "       <tempspill path=\"" + tempspillpath + "\"/>" +
             "   </paths>" +
             "</deployment>";
 
@@ -340,6 +344,13 @@ public class TestCatalogUtil extends TestCase {
                    exportdir.exists());
         assertTrue("export overflow directory: " + exportdir.getAbsolutePath() + " is not a directory",
                    exportdir.isDirectory());
+        File tempspilldir = new File(voltdbroot, tempspillpath);
+        assertTrue("temp table spill directory: " + tempspilldir.getAbsolutePath() + " does not exist",
+                   tempspilldir.exists());
+        assertTrue("temp table spill directory: " + tempspilldir.getAbsolutePath() + " is not a directory",
+                   tempspilldir.isDirectory());
+        assertEquals(tempspilldir.getPath(),
+                     catalog.getClusters().get("cluster").getTempspill());
         if (VoltDB.instance().getConfig().m_isEnterprise)
         {
             File commandlogdir = new File(voltdbroot, commandlogpath);
@@ -0,0 +1,118 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import junit.framework.TestCase;
+
+public class TestLatencyHistogram extends TestCase {
+
+    public void testBucketBoundaries() {
+        assertEquals(464, LatencyHistogram.BUCKETS);
+        long expectedLow = 0;
+        for (int ii = 0; ii < LatencyHistogram.BUCKETS; ii++) {
+            final long low = LatencyHistogram.bucketLowValue(ii);
+            final long high = LatencyHistogram.bucketHighValue(ii);
+            assertEquals(expectedLow, low);
+            assertEquals(ii, LatencyHistogram.bucketIndex(low));
+            assertEquals(ii, LatencyHistogram.bucketIndex(high));
+            // never wider then 1/16th of the values it holds
+            if (low >= 32) {
+                assertTrue(high - low + 1 <= low / 16);
+            }
+            expectedLow = high + 1;
+        }
+        assertEquals(LatencyHistogram.MAX_VALUE + 1, expectedLow);
+    }
+
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        for (int ii = 1; ii <= 1000; ii++) {
+            histogram.record(ii);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertTrue(Math.abs(histogram.getValueAtPercentile(50) - 500) <= 500 / 16);
+        assertTrue(Math.abs(histogram.getValueAtPercentile(99) - 990) <= 990 / 16);
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.getValueAtPercentile(0));
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getMax());
+    }
+
+    public void testSinceAndAdd() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ii = 0; ii < 100; ii++) {
+            histogram.record(10000);
+        }
+        LatencyHistogram last = histogram.copy();
+        for (int ii = 0; ii < 10; ii++) {
+            histogram.record(20);
+        }
+        LatencyHistogram delta = histogram.since(last);
+        assertEquals(10, delta.getCount());
+        assertEquals(20, delta.getMax());
+        assertEquals(20, delta.getValueAtPercentile(99.9));
+
+        delta.add(last);
+        assertEquals(110, delta.getCount());
+        assertEquals(10000, delta.getMax());
+        assertEquals(0, histogram.since(histogram.copy()).getCount());
+    }
+
+    public void testRecorderMergesThreads() throws Exception {
+        final LatencyHistogram.Recorder recorder = new LatencyHistogram.Recorder();
+        final int perThread = 100000;
+        Thread threads[] = new Thread[4];
+        for (int ii = 0; ii < threads.length; ii++) {
+            final int value = (ii + 1) * 100;
+            threads[ii] = new Thread() {
+                @Override
+                public void run() {
+                    for (int jj = 0; jj < perThread; jj++) {
+                        recorder.record(value);
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+        // snapshots taken while recording never go backwards
+        long lastCount = 0;
+        for (int ii = 0; ii < 100; ii++) {
+            final long count = recorder.snapshot().getCount();
+            assertTrue(count >= lastCount);
+            lastCount = count;
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        LatencyHistogram snapshot = recorder.snapshot();
+        assertEquals(perThread * threads.length, snapshot.getCount());
+        assertEquals(400, snapshot.getMax());
+        assertEquals(LatencyHistogram.bucketHighValue(LatencyHistogram.bucketIndex(100)),
+                     snapshot.getValueAtPercentile(25));
+    }
+}
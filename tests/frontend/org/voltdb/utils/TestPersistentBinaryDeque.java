@@ -515,6 +515,98 @@ public class TestPersistentBinaryDeque {
         fail();
     }
 
+    @Test
+    public void testMmapOfferCloseThenReopen() throws Exception {
+        m_pbd.close();
+        m_pbd = new PersistentBinaryDeque( TEST_NONCE, TEST_DIR, true );
+        for (int ii = 0; ii < 64; ii++) {
+            m_pbd.offer(new BBContainer[] { DBBPool.wrapBB(getFilledBuffer(ii)) });
+        }
+        assertEquals(((1024 * 1024 * 2) + 4) * 64, m_pbd.sizeInBytes());
+        m_pbd.sync();
+        m_pbd.close();
+
+        //Segments are preallocated so the size has to come from the contents
+        m_pbd = new PersistentBinaryDeque( TEST_NONCE, TEST_DIR, true );
+        assertEquals(((1024 * 1024 * 2) + 4) * 64, m_pbd.sizeInBytes());
+
+        for (int ii = 0; ii < 64; ii++) {
+            BBContainer retval = m_pbd.poll();
+            //Polled objects are slices of the mapping, not heap copies
+            assertTrue(retval.b.isDirect());
+            assertTrue(retval.b.equals(getFilledBuffer(ii)));
+            retval.discard();
+        }
+        assertNull(m_pbd.poll());
+        assertEquals(0, m_pbd.sizeInBytes());
+    }
+
+    @Test
+    public void testMmapPreallocatesOnFirstOffer() throws Exception {
+        m_pbd.close();
+        m_pbd = new PersistentBinaryDeque( TEST_NONCE, TEST_DIR, true );
+
+        //Nothing has overflowed yet so the segment holds only its object count
+        File segment = new File(TEST_DIR, "pbd_nonce.0.pbd");
+        assertEquals(4, segment.length());
+        assertTrue(m_pbd.isEmpty());
+
+        m_pbd.offer(defaultContainer);
+        assertEquals(1024 * 1024 * 64, segment.length());
+        BBContainer retval = m_pbd.poll();
+        assertTrue(retval.b.isDirect());
+        defaultBuffer.clear();
+        assertTrue(retval.b.equals(defaultBuffer));
+        retval.discard();
+
+        //A deque that was never offered to leaves nothing behind
+        m_pbd.close();
+        for (File f : TEST_DIR.listFiles()) {
+            f.delete();
+        }
+        m_pbd = new PersistentBinaryDeque( TEST_NONCE, TEST_DIR, true );
+        m_pbd.close();
+        assertEquals(0, TEST_DIR.listFiles().length);
+        m_pbd = new PersistentBinaryDeque( TEST_NONCE, TEST_DIR );
+    }
+
+    @Test
+    public void testMmapRecyclesSegments() throws Exception {
+        m_pbd.close();
+        m_pbd = new PersistentBinaryDeque( TEST_NONCE, TEST_DIR, true );
+
+        //Steal the write segment and discard its only object
+        m_pbd.offer(defaultContainer);
+        BBContainer retval = m_pbd.poll();
+        defaultBuffer.clear();
+        assertTrue(retval.b.equals(defaultBuffer));
+        retval.discard();
+
+        TreeSet<String> names = getSortedDirectoryListing();
+        assertEquals( 2, names.size());
+        assertTrue(names.contains("pbd_nonce.1.pbd"));
+        assertTrue(names.contains("pbd_nonce.pbd.spare"));
+
+        //The next segment is the spare renamed
+        defaultBuffer.clear();
+        m_pbd.offer(defaultContainer);
+        retval = m_pbd.poll();
+        names = getSortedDirectoryListing();
+        assertEquals( 2, names.size());
+        assertTrue(names.contains("pbd_nonce.1.pbd"));
+        assertTrue(names.contains("pbd_nonce.2.pbd"));
+        assertEquals(1024 * 1024 * 64, new File(TEST_DIR, "pbd_nonce.2.pbd").length());
+        defaultBuffer.clear();
+        assertTrue(retval.b.equals(defaultBuffer));
+        retval.discard();
+
+        //An empty recycled segment is not mistaken for data on reopen
+        m_pbd.close();
+        m_pbd = new PersistentBinaryDeque( TEST_NONCE, TEST_DIR, true );
+        assertTrue(m_pbd.isEmpty());
+        assertEquals(0, m_pbd.sizeInBytes());
+    }
+
     @Before
     public void setUp() throws Exception {
         if (TEST_DIR.exists()) {
@@ -0,0 +1,138 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2012 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+public class TestSystemStatsCollector extends TestCase {
+    private File m_dir;
+
+    @Override
+    public void setUp() throws Exception {
+        m_dir = new File("/tmp/" + System.getProperty("user.name") + "/fake_proc");
+        VoltFile.recursivelyDelete(m_dir);
+        m_dir.mkdirs();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        VoltFile.recursivelyDelete(m_dir);
+    }
+
+    private void write(String name, String contents) throws IOException {
+        FileOutputStream fos = new FileOutputStream(new File(m_dir, name));
+        try {
+            fos.write(contents.getBytes());
+        } finally {
+            fos.close();
+        }
+    }
+
+    public void testParseProcFiles() throws Exception {
+        // a command name with spaces and parens shouldn't shift the fields
+        write("stat", "4242 (java (a) b) S 1 4242 4242 0 -1 4202496 123 0 0 0 " +
+                      "250 50 0 0 20 0 37 0 1000 123456789 5000 18446744073709551615\n");
+        write("statm", "30000 5000 1000 1 0 20000 0\n");
+        write("status", "Name:\tjava\nState:\tS (sleeping)\nVmPeak:\t 120000 kB\n" +
+                        "VmHWM:\t   25000 kB\nVmRSS:\t   20000 kB\nVmSwap:\t     16 kB\nThreads:\t37\n");
+
+        SystemStatsCollector.ProcFSScraper scraper = new SystemStatsCollector.ProcFSScraper(m_dir);
+        try {
+            assertTrue(scraper.sample());
+            assertEquals(5000 * SystemStatsCollector.ProcFSScraper.PAGE_SIZE, scraper.rss);
+            assertEquals(25000 * 1024, scraper.hwm);
+            assertEquals(16 * 1024, scraper.swap);
+            assertEquals(3000, scraper.cpuMillis);
+
+            // rewritten in place and re-read through the same open files
+            write("statm", "30000 6000 1000 1 0 20000 0\n");
+            write("status", "Name:\tjava\nVmHWM:\t   26000 kB\n");
+            assertTrue(scraper.sample());
+            assertEquals(6000 * SystemStatsCollector.ProcFSScraper.PAGE_SIZE, scraper.rss);
+            assertEquals(26000 * 1024, scraper.hwm);
+            assertEquals(-1, scraper.swap);
+
+            RandomAccessFile task = new RandomAccessFile(new File(m_dir, "stat"), "r");
+            try {
+                assertEquals(3000, scraper.readCPUMillis(task));
+            } finally {
+                task.close();
+            }
+        } finally {
+            scraper.close();
+        }
+    }
+
+    public void testSampleSelf() throws Exception {
+        if (!new File("/proc/self/stat").exists()) {
+            return;
+        }
+        SystemStatsCollector.registerThread(SystemStatsCollector.ThreadType.SITE);
+        SystemStatsCollector.Datum d = SystemStatsCollector.sampleSystemNow(false, false);
+        assertNotNull(d);
+        assertTrue(d.rss > 0);
+        assertTrue(d.rsspeak >= d.rss);
+        assertTrue(d.cpumillis >= 0);
+        assertTrue(d.sitecpumillis >= 0);
+        assertTrue(d.sitecpumillis <= d.cpumillis);
+        assertEquals(0, d.networkcpumillis);
+        assertSame(d, SystemStatsCollector.getRecentSample());
+    }
+
+    public void testRegisteredThreadCPU() throws Exception {
+        if (!new File("/proc/self/stat").exists()) {
+            return;
+        }
+        final CountDownLatch busy = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread network = new Thread() {
+            @Override
+            public void run() {
+                SystemStatsCollector.registerThread(SystemStatsCollector.ThreadType.NETWORK);
+                final long start = System.currentTimeMillis();
+                while (System.currentTimeMillis() - start < 200) {}
+                busy.countDown();
+                try {
+                    done.await();
+                } catch (InterruptedException e) {}
+            }
+        };
+        network.start();
+        busy.await();
+        SystemStatsCollector.Datum d = SystemStatsCollector.sampleSystemNow(false, false);
+        assertTrue(d.networkcpumillis > 0);
+
+        // threads that exited are no longer counted
+        done.countDown();
+        network.join();
+        d = SystemStatsCollector.sampleSystemNow(false, false);
+        assertEquals(0, d.networkcpumillis);
+    }
+}